@@ -0,0 +1,144 @@
+package com.github.frizzy.PoeDDSExtractor.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Generates the files the benchmarks run against, so they run offline without a game install. Every generator is
+ * seeded, the same parameters always produce the same files.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public final class BenchFixtures {
+
+    /**
+     * Formats the .dds generator can write, with the DXGI format written to the DX10 header.
+     */
+    public enum Format {
+        BC1( 71 , 8 ),
+        BC2( 74 , 16 ),
+        BC3( 77 , 16 ),
+        BC4( 80 , 8 ),
+        BC5( 83 , 16 ),
+        BC7( 98 , 16 ),
+        RGBA( 28 , 0 );
+
+        final int dxgi;
+
+        /**
+         * Bytes per 4x4 block, 0 for uncompressed formats.
+         */
+        final int blockSize;
+
+        Format( int dxgi , int blockSize ) {
+            this.dxgi = dxgi;
+            this.blockSize = blockSize;
+        }
+    }
+
+    private BenchFixtures( ) {
+
+    }
+
+    /**
+     * Turns off logging, the extractors log every texture at INFO, which would be measured along with them.
+     */
+    public static void quietLogging( ) {
+        LogManager.getLogManager( ).reset( );
+        Logger.getLogger( "" ).setLevel( Level.OFF );
+    }
+
+    /**
+     * Deletes the directory and everything in it.
+     */
+    public static void delete( Path directory ) throws IOException {
+        if ( !Files.exists( directory ) )
+            return;
+
+        try ( Stream < Path > paths = Files.walk( directory ) ) {
+            for ( Path p : paths.sorted( Comparator.reverseOrder( ) ).toList( ) ) {
+                Files.delete( p );
+            }
+        }
+    }
+
+    /**
+     * Internal path of the .dds file with the specified number.
+     */
+    public static String ddsPath( int atlas ) {
+        return "Art/Textures/Interface/2D/2DArt/UIImages/Bench/" + atlas + ".dds";
+    }
+
+    /**
+     * Writes a UTF-16LE uiimages.txt file with the specified amount of lines. Textures are spread over atlases in
+     * rows of 64x64 textures, texturesPerAtlas textures per atlas.
+     */
+    public static void writeUiImages( Path file , int lines , int texturesPerAtlas ) throws IOException {
+        StringBuilder text = new StringBuilder( lines * 110 );
+        int perRow = Math.max( 1 , ( int ) Math.sqrt( texturesPerAtlas ) );
+
+        for ( int i = 0; i < lines; i++ ) {
+            int slot = i % texturesPerAtlas;
+            int x = ( slot % perRow ) * 64;
+            int y = ( slot / perRow ) * 64;
+
+            text.append( "\"Art/2DArt/UIImages/Bench/Texture" ).append( i ).append( "\" \"" )
+                    .append( ddsPath( i / texturesPerAtlas ) ).append( "\" " )
+                    .append( x ).append( ' ' ).append( y ).append( ' ' )
+                    .append( x + 64 ).append( ' ' ).append( y + 64 ).append( "\r\n" );
+        }
+
+        Files.write( file , text.toString( ).getBytes( StandardCharsets.UTF_16LE ) );
+    }
+
+    /**
+     * Returns a .dds file of the format filled with random blocks or pixels.
+     * <br>
+     * Random BC7 blocks use every mode, weighted towards the low modes the way random mode bits fall.
+     */
+    public static byte[] dds( Format format , int width , int height , long seed ) {
+        int dataSize = format.blockSize == 0 ? width * height * 4
+                : ( ( width + 3 ) / 4 ) * ( ( height + 3 ) / 4 ) * format.blockSize;
+
+        ByteBuffer dds = ByteBuffer.allocate( 128 + 20 + dataSize ).order( ByteOrder.LITTLE_ENDIAN );
+        dds.put( "DDS ".getBytes( StandardCharsets.US_ASCII ) );
+        dds.putInt( 124 );
+        dds.putInt( 0x1007 );
+        dds.putInt( height );
+        dds.putInt( width );
+        dds.putInt( 0 );
+        dds.putInt( 0 );
+        dds.putInt( 1 );
+        dds.position( 76 );
+        dds.putInt( 32 );
+        dds.putInt( 0x4 ); //DDPF_FOURCC
+        dds.put( "DX10".getBytes( StandardCharsets.US_ASCII ) );
+        dds.position( 108 );
+        dds.putInt( 0x1000 );
+
+        dds.position( 128 );
+        dds.putInt( format.dxgi );
+        dds.putInt( 3 ); //Texture2D
+        dds.putInt( 0 );
+        dds.putInt( 1 );
+        dds.putInt( 0 );
+
+        byte[] data = new byte[ dataSize ];
+        new Random( seed ).nextBytes( data );
+        dds.put( data );
+
+        return dds.array( );
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.frizzy.PoeDDSExtractor.bench;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSExtractor2;
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSFile;
+import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DDSExtractor2 cropping every texture out of a BC7 atlas and writing it as a .png file.
+ * <br>
+ * With few textures the extractor decodes only the blocks covering them. With many, the atlas is decoded once
+ * into the AtlasCache and stays cached between invocations, so the cropping and .png writing is measured.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 , time = 2 )
+@Measurement( iterations = 5 , time = 2 )
+@Fork( 1 )
+public class CropBenchmark {
+
+    @Param( { "16" , "1024" } )
+    int textures;
+
+    @Param( "2048" )
+    int atlasSize;
+
+    private Path directory;
+
+    private Path ddsFile;
+
+    private Path output;
+
+    private List < Texture > textureList;
+
+    private DDSExtractor2 extractor;
+
+    @Setup( Level.Trial )
+    public void setup( ) throws IOException {
+        BenchFixtures.quietLogging( );
+
+        directory = Files.createTempDirectory( "crop-bench" );
+        ddsFile = directory.resolve( "0.dds" );
+        output = Files.createDirectory( directory.resolve( "textures" ) );
+        Files.write( ddsFile , BenchFixtures.dds( BenchFixtures.Format.BC7 , atlasSize , atlasSize , 1 ) );
+
+        String ddsPath = BenchFixtures.ddsPath( 0 );
+        int perRow = atlasSize / 64;
+        textureList = new ArrayList <>( textures );
+
+        for ( int i = 0; i < textures; i++ ) {
+            int[] coordinates = { ( i % perRow ) * 64 , ( i / perRow % perRow ) * 64 , 64 , 64 };
+            textureList.add( new Texture( "Art/2DArt/UIImages/Bench/Texture" + i , ddsPath , coordinates ) );
+        }
+
+        extractor = new DDSExtractor2( null , true );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown( ) throws IOException {
+        BenchFixtures.delete( directory );
+    }
+
+    @Benchmark
+    public DDSFile cropAndWrite( ) {
+        DDSFile file = new DDSFile( BenchFixtures.ddsPath( 0 ) , textureList , ddsFile );
+        return extractor.extractSubTextures( file , output );
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.frizzy.PoeDDSExtractor.bench;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSDecoder;
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a whole atlas and a single 64x64 texture, for every format DDSDecoder supports.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 , time = 2 )
+@Measurement( iterations = 5 , time = 2 )
+@Fork( 1 )
+public class DDSDecodeBenchmark {
+
+    @Param( { "BC1" , "BC2" , "BC3" , "BC4" , "BC5" , "BC7" , "RGBA" } )
+    BenchFixtures.Format format;
+
+    @Param( "1024" )
+    int size;
+
+    private ByteBuffer dds;
+
+    private List < int[] > texture;
+
+    @Setup( Level.Trial )
+    public void setup( ) {
+        dds = ByteBuffer.wrap( BenchFixtures.dds( format , size , size , 1 ) );
+        texture = List.of( new int[] { size / 2 , size / 2 , 64 , 64 } );
+    }
+
+    @Benchmark
+    public DDSImage decodeAtlas( ) throws IOException {
+        return DDSDecoder.decode( dds );
+    }
+
+    @Benchmark
+    public List < DDSImage > decodeTexture( ) throws IOException {
+        return DDSDecoder.decodeRegions( dds , texture );
+    }
+}
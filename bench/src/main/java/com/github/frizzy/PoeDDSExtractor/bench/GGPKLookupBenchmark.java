@@ -0,0 +1,116 @@
+package com.github.frizzy.PoeDDSExtractor.bench;
+
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKEntry;
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKReader;
+import com.github.frizzy.PoeDDSExtractor.Testing.FixtureGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up entries in a synthetic Content.ggpk file, and opening it with and without the saved index file.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3 , time = 2 )
+@Measurement( iterations = 5 , time = 2 )
+@Fork( 1 )
+public class GGPKLookupBenchmark {
+
+    @Param( "20000" )
+    int files;
+
+    private Path directory;
+
+    private Path contentPath;
+
+    private Path indexPath;
+
+    private String[] paths;
+
+    private GGPKReader reader;
+
+    private int next;
+
+    @Setup( Level.Trial )
+    public void setup( ) throws IOException {
+        BenchFixtures.quietLogging( );
+
+        directory = Files.createTempDirectory( "ggpk-bench" );
+        contentPath = directory.resolve( "Content.ggpk" );
+        indexPath = directory.resolve( "Content.ggpk.index" );
+
+        Random random = new Random( 1 );
+        Map < String, byte[] > contents = new LinkedHashMap <>( );
+        paths = new String[ files ];
+
+        for ( int i = 0; i < files; i++ ) {
+            paths[ i ] = "Art/Textures/Interface/2D/Bench" + ( i / 500 ) + "/" + i + ".dds";
+            byte[] data = new byte[ 64 ];
+            random.nextBytes( data );
+            contents.put( paths[ i ] , data );
+        }
+
+        FixtureGenerator.writeGGPK( contentPath , contents );
+        reader = GGPKReader.open( contentPath , indexPath );
+
+        //Look paths up in a random order, so the lookups do not walk the index in order.
+        for ( int i = paths.length - 1; i > 0; i-- ) {
+            int j = random.nextInt( i + 1 );
+            String swap = paths[ i ];
+            paths[ i ] = paths[ j ];
+            paths[ j ] = swap;
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown( ) throws IOException {
+        reader.close( );
+        BenchFixtures.delete( directory );
+    }
+
+    @Benchmark
+    public Optional < GGPKEntry > find( ) {
+        return reader.find( paths[ next++ % paths.length ] );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public int openWalkingRecords( ) throws IOException {
+        try ( GGPKReader opened = GGPKReader.open( contentPath ) ) {
+            return opened.size( );
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public int openWithIndex( ) throws IOException {
+        try ( GGPKReader opened = GGPKReader.open( contentPath , indexPath ) ) {
+            return opened.size( );
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.frizzy.PoeDDSExtractor.bench;
+
+import com.github.frizzy.PoeDDSExtractor.GGPKUtils;
+import com.github.frizzy.PoeDDSExtractor.UiImagesIndex;
+import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the uiimages.txt file and looking up the textures of a .dds file, against a synthetic uiimages.txt file.
+ * <br>
+ * getAllTexturesFor2 measures a lookup in the shared UiImagesIndex, parse measures building the index from the file.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 , time = 2 )
+@Measurement( iterations = 5 , time = 2 )
+@Fork( 1 )
+public class UiImagesBenchmark {
+
+    @Param( "50000" )
+    int lines;
+
+    @Param( "256" )
+    int texturesPerAtlas;
+
+    private Path directory;
+
+    private Path txtFile;
+
+    private String[] ddsPaths;
+
+    private int next;
+
+    @Setup( Level.Trial )
+    public void setup( ) throws IOException {
+        BenchFixtures.quietLogging( );
+
+        directory = Files.createTempDirectory( "uiimages-bench" );
+        txtFile = directory.resolve( "uiimages1.txt" );
+        BenchFixtures.writeUiImages( txtFile , lines , texturesPerAtlas );
+
+        ddsPaths = new String[ ( lines + texturesPerAtlas - 1 ) / texturesPerAtlas ];
+        for ( int i = 0; i < ddsPaths.length; i++ ) {
+            //Lookups ignore case, ask in lowercase like most callers do.
+            ddsPaths[ i ] = BenchFixtures.ddsPath( i ).toLowerCase( );
+        }
+
+        UiImagesIndex.of( txtFile );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown( ) throws IOException {
+        BenchFixtures.delete( directory );
+    }
+
+    @Benchmark
+    public List < Texture > getAllTexturesFor2( ) {
+        String ddsPath = ddsPaths[ next++ % ddsPaths.length ];
+        return GGPKUtils.getAllTexturesFor2( txtFile , ddsPath );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public UiImagesIndex parse( ) throws IOException {
+        return UiImagesIndex.load( txtFile );
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.frizzy.PoeDDSExtractor.Archive;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream reading from a ByteBuffer, letting mapped archive entries be passed to code expecting a stream
+ * without copying them first.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream( ByteBuffer buffer ) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read( ) {
+        return buffer.hasRemaining( ) ? buffer.get( ) & 0xFF : -1;
+    }
+
+    @Override
+    public int read( byte[] b , int off , int len ) {
+        if ( len == 0 )
+            return 0;
+
+        if ( !buffer.hasRemaining( ) )
+            return -1;
+
+        int count = Math.min( len , buffer.remaining( ) );
+        buffer.get( b , off , count );
+        return count;
+    }
+
+    @Override
+    public long skip( long n ) {
+        int count = ( int ) Math.max( 0 , Math.min( n , buffer.remaining( ) ) );
+        buffer.position( buffer.position( ) + count );
+        return count;
+    }
+
+    @Override
+    public int available( ) {
+        return buffer.remaining( );
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.frizzy.PoeDDSExtractor.Archive;
+
+/**
+ * Record tracking where a single FILE record's data is stored within the Content.ggpk file.
+ *
+ * @param path   The internal path of the file, as it was requested from the reader.
+ *               Something like "art/textures/interface/2d/2dart/uiimages/common/4k/1.dds".
+ * @param offset The absolute offset of the first data byte within the Content.ggpk file.
+ * @param length The length of the file data in bytes.
+ * @param hash   The SHA-256 hash stored in the FILE record.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public record GGPKEntry( String path , long offset , long length , byte[] hash ) {
+
+    /**
+     * Returns the file name of the entry, without any of the directories leading to it.
+     */
+    public String fileName( ) {
+        return path.substring( path.lastIndexOf( "/" ) + 1 );
+    }
+}
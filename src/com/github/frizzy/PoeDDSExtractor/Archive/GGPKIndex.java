@@ -0,0 +1,272 @@
+package com.github.frizzy.PoeDDSExtractor.Archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact lookup table of every FILE record in a Content.ggpk file, which can be saved to disk and loaded again
+ * instead of walking the record tree on every start.
+ * <br>
+ * Entries are stored as a 64-bit FNV-1a hash of the lowercase internal path, the offset and length of the file
+ * data, and the SHA-256 hash from the FILE record. Hashes are kept sorted, so lookups are a binary search.
+ * <br>
+ * The index remembers the size and last modified time of the Content.ggpk file and the hash of its root PDIR record.
+ * If any of those change, the game was patched and the index has to be rebuilt.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class GGPKIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( GGPKIndex.class.getName( ) );
+
+    /**
+     * "GIDX" written at the start of the index file.
+     */
+    static final int MAGIC = 0x47494458;
+
+    /**
+     * Bumped whenever the layout of the index file changes.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Bytes before the entries: magic, version, size, last modified time, root hash and entry count.
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + GGPKReader.HASH_LENGTH + 4;
+
+    /**
+     * Bytes of every entry: path hash, offset, length and SHA-256 hash.
+     */
+    private static final int ENTRY_LENGTH = 8 + 8 + 8 + GGPKReader.HASH_LENGTH;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long contentSize;
+
+    private final long contentModified;
+
+    private final byte[] rootHash;
+
+    private final long[] pathHashes;
+
+    private final long[] offsets;
+
+    private final long[] lengths;
+
+    /**
+     * SHA-256 hashes of every entry, 32 bytes each in the same order as pathHashes.
+     */
+    private final byte[] hashes;
+
+    private GGPKIndex( long contentSize , long contentModified , byte[] rootHash , long[] pathHashes , long[] offsets ,
+                       long[] lengths , byte[] hashes ) {
+        this.contentSize = contentSize;
+        this.contentModified = contentModified;
+        this.rootHash = rootHash;
+        this.pathHashes = pathHashes;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Returns the entry of the normalized internal path, if it exists.
+     *
+     * @param normalizedPath The lowercase internal path, as returned by GGPKReader.normalize().
+     * @param path           The path to place in the returned GGPKEntry.
+     */
+    Optional < GGPKEntry > find( String normalizedPath , String path ) {
+        int i = Arrays.binarySearch( pathHashes , hash( normalizedPath ) );
+
+        if ( i < 0 )
+            return Optional.empty( );
+
+        return Optional.of( new GGPKEntry( path , offsets[ i ] , lengths[ i ] ,
+                Arrays.copyOfRange( hashes , i * GGPKReader.HASH_LENGTH , ( i + 1 ) * GGPKReader.HASH_LENGTH ) ) );
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     */
+    public int size( ) {
+        return pathHashes.length;
+    }
+
+    /**
+     * Returns true if the index was built from a Content.ggpk file with the same size, last modified time
+     * and root PDIR hash.
+     */
+    boolean matches( long size , long modified , byte[] root ) {
+        return contentSize == size && contentModified == modified && Arrays.equals( rootHash , root );
+    }
+
+    /**
+     * Writes the index to the specified file. The index is written to a temporary file first and moved
+     * into place, so an interrupted write never leaves a broken index behind.
+     */
+    void write( Path indexPath ) throws IOException {
+        Path temp = indexPath.resolveSibling( indexPath.getFileName( ) + ".tmp" );
+
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            out.writeLong( contentSize );
+            out.writeLong( contentModified );
+            out.write( rootHash );
+            out.writeInt( pathHashes.length );
+
+            for ( int i = 0; i < pathHashes.length; i++ ) {
+                out.writeLong( pathHashes[ i ] );
+                out.writeLong( offsets[ i ] );
+                out.writeLong( lengths[ i ] );
+                out.write( hashes , i * GGPKReader.HASH_LENGTH , GGPKReader.HASH_LENGTH );
+            }
+        }
+
+        Files.move( temp , indexPath , StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    /**
+     * Reads a previously written index file. An empty Optional is returned if the file does not exist, was
+     * written by a different format version, or could not be read. A truncated or corrupt file, whose entry count
+     * does not match its size, is also rebuilt.
+     */
+    static Optional < GGPKIndex > read( Path indexPath ) {
+        if ( !Files.isRegularFile( indexPath ) )
+            return Optional.empty( );
+
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( indexPath ) ) ) ) {
+            if ( in.readInt( ) != MAGIC || in.readInt( ) != FORMAT_VERSION ) {
+                LOGGER.log( Level.INFO , "Index file " + indexPath + " is from a different version and will be rebuilt." );
+                return Optional.empty( );
+            }
+
+            long size = in.readLong( );
+            long modified = in.readLong( );
+            byte[] root = new byte[ GGPKReader.HASH_LENGTH ];
+            in.readFully( root );
+
+            int count = in.readInt( );
+            long expected = HEADER_LENGTH + ( long ) count * ENTRY_LENGTH;
+
+            if ( count < 0 || expected != Files.size( indexPath ) ) {
+                LOGGER.log( Level.WARNING , "Index file " + indexPath + " holds " + count + " entries, which does not match"
+                        + " its size, and will be rebuilt." );
+                return Optional.empty( );
+            }
+
+            long[] pathHashes = new long[ count ];
+            long[] offsets = new long[ count ];
+            long[] lengths = new long[ count ];
+            byte[] hashes = new byte[ count * GGPKReader.HASH_LENGTH ];
+
+            for ( int i = 0; i < count; i++ ) {
+                pathHashes[ i ] = in.readLong( );
+                offsets[ i ] = in.readLong( );
+                lengths[ i ] = in.readLong( );
+                in.readFully( hashes , i * GGPKReader.HASH_LENGTH , GGPKReader.HASH_LENGTH );
+            }
+
+            return Optional.of( new GGPKIndex( size , modified , root , pathHashes , offsets , lengths , hashes ) );
+        } catch ( IOException | RuntimeException e ) {
+            LOGGER.log( Level.WARNING , "Index file " + indexPath + " could not be read and will be rebuilt." , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * 64-bit FNV-1a hash over the characters of the normalized path.
+     */
+    static long hash( String normalizedPath ) {
+        long h = FNV_OFFSET;
+
+        for ( int i = 0; i < normalizedPath.length( ); i++ ) {
+            char c = normalizedPath.charAt( i );
+            h = ( h ^ ( c & 0xFF ) ) * FNV_PRIME;
+            h = ( h ^ ( c >>> 8 ) ) * FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    /**
+     * Collects entries while the record tree is walked, then sorts them into a GGPKIndex.
+     */
+    static class Builder {
+
+        private int count;
+
+        private long[] pathHashes = new long[ 1024 ];
+
+        private long[] offsets = new long[ 1024 ];
+
+        private long[] lengths = new long[ 1024 ];
+
+        private byte[] hashes = new byte[ 1024 * GGPKReader.HASH_LENGTH ];
+
+        /**
+         * Adds a FILE record to the index.
+         */
+        void add( String normalizedPath , long offset , long length , byte[] hash ) {
+            if ( count == pathHashes.length ) {
+                int grown = count * 2;
+                pathHashes = Arrays.copyOf( pathHashes , grown );
+                offsets = Arrays.copyOf( offsets , grown );
+                lengths = Arrays.copyOf( lengths , grown );
+                hashes = Arrays.copyOf( hashes , grown * GGPKReader.HASH_LENGTH );
+            }
+
+            pathHashes[ count ] = hash( normalizedPath );
+            offsets[ count ] = offset;
+            lengths[ count ] = length;
+            System.arraycopy( hash , 0 , hashes , count * GGPKReader.HASH_LENGTH , GGPKReader.HASH_LENGTH );
+            count++;
+        }
+
+        /**
+         * Sorts the collected entries by path hash and creates the index.
+         */
+        GGPKIndex build( long contentSize , long contentModified , byte[] rootHash ) {
+            Integer[] order = new Integer[ count ];
+            for ( int i = 0; i < count; i++ ) {
+                order[ i ] = i;
+            }
+            Arrays.sort( order , ( a , b ) -> Long.compare( pathHashes[ a ] , pathHashes[ b ] ) );
+
+            long[] sortedPaths = new long[ count ];
+            long[] sortedOffsets = new long[ count ];
+            long[] sortedLengths = new long[ count ];
+            byte[] sortedHashes = new byte[ count * GGPKReader.HASH_LENGTH ];
+
+            for ( int i = 0; i < count; i++ ) {
+                int from = order[ i ];
+
+                if ( i > 0 && pathHashes[ from ] == sortedPaths[ i - 1 ] )
+                    LOGGER.log( Level.WARNING , "Two internal paths share the index hash " + Long.toHexString( pathHashes[ from ] ) );
+
+                sortedPaths[ i ] = pathHashes[ from ];
+                sortedOffsets[ i ] = offsets[ from ];
+                sortedLengths[ i ] = lengths[ from ];
+                System.arraycopy( hashes , from * GGPKReader.HASH_LENGTH , sortedHashes , i * GGPKReader.HASH_LENGTH ,
+                        GGPKReader.HASH_LENGTH );
+            }
+
+            return new GGPKIndex( contentSize , contentModified , rootHash , sortedPaths , sortedOffsets , sortedLengths ,
+                    sortedHashes );
+        }
+    }
+}
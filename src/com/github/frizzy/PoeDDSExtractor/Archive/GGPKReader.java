@@ -0,0 +1,471 @@
+package com.github.frizzy.PoeDDSExtractor.Archive;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the Content.ggpk record tree directly from Java, without going through ExtractGGPK.exe.
+ * <br>
+ * The Content.ggpk file is a chain of records, each starting with a 4 byte length and a 4 byte tag:
+ * <br>
+ * GGPK - The header record at offset 0. Holds the version and the offsets of the root PDIR and first FREE record.
+ * <br>
+ * PDIR - A directory. Holds its name, a SHA-256 hash, and the offsets of every child record.
+ * <br>
+ * FILE - A file. Holds its name, a SHA-256 hash, and the file data itself.
+ * <br>
+ * FREE - Unused space left behind by patching. These are skipped.
+ * <br>
+ * The tree is walked once when the reader is opened and every FILE record is stored in a GGPKIndex by its
+ * lowercase internal path, so any entry can be served by offset afterwards. Reads are positional, so a single
+ * reader can be shared. If an index file is given, the index is saved there and reused by later readers until
+ * the Content.ggpk file changes.
+ * <br>
+ * Entry data can also be served as read-only slices of memory mapped windows with map(). A single mapping is
+ * limited to 2 GB, so the archive is mapped in 1 GB windows that overlap by 256 MB, letting any entry smaller
+ * than the overlap be sliced out of one window. Windows are only mapped the first time they are needed.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class GGPKReader implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger( GGPKReader.class.getName( ) );
+
+    static final int TAG_GGPK = tag( "GGPK" );
+    static final int TAG_PDIR = tag( "PDIR" );
+    static final int TAG_FILE = tag( "FILE" );
+    static final int TAG_FREE = tag( "FREE" );
+
+    /**
+     * Size of the SHA-256 hash stored in PDIR and FILE records.
+     */
+    static final int HASH_LENGTH = 32;
+
+    /**
+     * Version 4 archives ( Mac client ) store names as UTF-32LE instead of UTF-16LE.
+     */
+    private static final int UTF32_VERSION = 4;
+
+    /**
+     * Distance between the start of two mapped windows.
+     */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * How far each mapped window extends past the start of the next one.
+     */
+    static final long WINDOW_OVERLAP = 1L << 28;
+
+    private final Path contentPath;
+
+    private final FileChannel channel;
+
+    /**
+     * False if the channel was opened by the caller, who closes it.
+     */
+    private final boolean ownsChannel;
+
+    /**
+     * The version stored in the GGPK record.
+     */
+    private final int version;
+
+    /**
+     * The offset of the root PDIR record.
+     */
+    private final long rootOffset;
+
+    /**
+     * The SHA-256 hash of the root PDIR record. Changes whenever any file in the archive changes.
+     */
+    private final byte[] rootHash;
+
+    /**
+     * Every FILE record in the archive, keyed by the lowercase internal path.
+     */
+    private final GGPKIndex index;
+
+    /**
+     * True if the index was loaded from a previously written index file.
+     */
+    private final boolean indexReused;
+
+    /**
+     * Lazily mapped windows of the archive. Index i starts at i * WINDOW_SIZE.
+     */
+    private final MappedByteBuffer[] windows;
+
+    private GGPKReader( Path contentPath , FileChannel channel , boolean ownsChannel , Path indexPath ) throws IOException {
+        this.contentPath = contentPath;
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+
+        ByteBuffer header = readFully( 0 , 28 );
+        header.getInt( ); //record length
+
+        if ( header.getInt( ) != TAG_GGPK )
+            throw new IOException( contentPath + " does not start with a GGPK record." );
+
+        version = header.getInt( );
+        long first = header.getLong( );
+        long second = header.getLong( );
+
+        rootOffset = tagAt( first ) == TAG_PDIR ? first : second;
+        if ( tagAt( rootOffset ) != TAG_PDIR )
+            throw new IOException( "Root PDIR record of " + contentPath + " could not be located." );
+
+        rootHash = new byte[ HASH_LENGTH ];
+        readFully( rootOffset + 16 , HASH_LENGTH ).get( rootHash );
+
+        long size = channel.size( );
+        long modified = Files.getLastModifiedTime( contentPath ).toMillis( );
+        Optional < GGPKIndex > saved = indexPath == null ? Optional.empty( ) : GGPKIndex.read( indexPath );
+
+        if ( saved.isPresent( ) && saved.get( ).matches( size , modified , rootHash ) ) {
+            index = saved.get( );
+            indexReused = true;
+            LOGGER.log( Level.INFO , "Loaded " + index.size( ) + " entries from index file " + indexPath );
+        } else {
+            index = walk( size , modified );
+            indexReused = false;
+
+            if ( indexPath != null ) {
+                try {
+                    index.write( indexPath );
+                } catch ( IOException e ) {
+                    LOGGER.log( Level.WARNING , "Index file " + indexPath + " could not be written." , e );
+                }
+            }
+        }
+
+        windows = new MappedByteBuffer[ ( int ) ( ( channel.size( ) + WINDOW_SIZE - 1 ) / WINDOW_SIZE ) ];
+    }
+
+    /**
+     * Opens the Content.ggpk file and walks the record tree.
+     *
+     * @param contentPath Path to the Content.ggpk file.
+     */
+    public static GGPKReader open( Path contentPath ) throws IOException {
+        return open( contentPath , null );
+    }
+
+    /**
+     * Opens the Content.ggpk file, reusing the index file if it was built from the same Content.ggpk file.
+     * Otherwise, the record tree is walked and the index file is written for the next time.
+     *
+     * @param contentPath Path to the Content.ggpk file.
+     * @param indexPath   Path the index is loaded from and saved to. Can be null to skip the index file.
+     */
+    public static GGPKReader open( Path contentPath , Path indexPath ) throws IOException {
+        FileChannel channel = FileChannel.open( contentPath , StandardOpenOption.READ );
+
+        try {
+            return new GGPKReader( contentPath , channel , true , indexPath );
+        } catch ( IOException | RuntimeException e ) {
+            channel.close( );
+            throw e;
+        }
+    }
+
+    /**
+     * Same as open( contentPath , indexPath ), reading through a channel the caller already opened, for example
+     * to hold a lock on the Content.ggpk file for as long as it is read.
+     * <br>
+     * The channel is left open when the reader is closed.
+     *
+     * @param contentPath Path to the Content.ggpk file.
+     * @param channel     Readable channel of the Content.ggpk file.
+     * @param indexPath   Path the index is loaded from and saved to. Can be null to skip the index file.
+     */
+    public static GGPKReader open( Path contentPath , FileChannel channel , Path indexPath ) throws IOException {
+        return new GGPKReader( contentPath , channel , false , indexPath );
+    }
+
+    /**
+     * Returns the entry of the internal path, if it exists. The lookup is not case-sensitive.
+     *
+     * @param internalPath Path within the archive, such as "art/uiimages1.txt".
+     */
+    public Optional < GGPKEntry > find( String internalPath ) {
+        return index.find( normalize( internalPath ) , internalPath.replace( '\\' , '/' ) );
+    }
+
+    /**
+     * Returns the number of FILE records found in the archive.
+     */
+    public int size( ) {
+        return index.size( );
+    }
+
+    /**
+     * Returns true if the index was loaded from the index file, meaning the Content.ggpk file has not changed
+     * since the index file was written.
+     */
+    public boolean isIndexReused( ) {
+        return indexReused;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the root PDIR record.
+     */
+    public byte[] getRootHash( ) {
+        return rootHash.clone( );
+    }
+
+    /**
+     * Returns the version stored in the GGPK record.
+     */
+    public int getVersion( ) {
+        return version;
+    }
+
+    /**
+     * Returns the path to the Content.ggpk file this reader was opened on.
+     */
+    public Path getContentPath( ) {
+        return contentPath;
+    }
+
+    /**
+     * Reads the data of the entry into a new heap buffer.
+     */
+    public ByteBuffer read( GGPKEntry entry ) throws IOException {
+        if ( entry.length( ) > Integer.MAX_VALUE )
+            throw new IOException( entry.path( ) + " is too large to be read into memory." );
+
+        return readFully( entry.offset( ) , ( int ) entry.length( ) );
+    }
+
+    /**
+     * Returns a read-only view of the entry data, sliced out of a memory mapped window of the archive.
+     * No bytes are copied, the returned buffer reads straight from the mapped Content.ggpk file.
+     * <br>
+     * The buffer is little endian and positioned at 0. Each call returns an independent buffer, so the
+     * result can be handed to another thread.
+     */
+    public ByteBuffer map( GGPKEntry entry ) throws IOException {
+        if ( entry.length( ) > Integer.MAX_VALUE )
+            throw new IOException( entry.path( ) + " is too large to be mapped." );
+
+        int window = ( int ) ( entry.offset( ) / WINDOW_SIZE );
+        long windowStart = window * WINDOW_SIZE;
+        long relative = entry.offset( ) - windowStart;
+
+        if ( relative + entry.length( ) > WINDOW_SIZE + WINDOW_OVERLAP ) {
+            //Entry runs past the overlap of its window, so it gets a mapping of its own.
+            return channel.map( FileChannel.MapMode.READ_ONLY , entry.offset( ) , entry.length( ) )
+                    .order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        return window( window ).slice( ( int ) relative , ( int ) entry.length( ) ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Copies the data of the entry into the target channel. The copy is done with transferTo, letting the
+     * operating system move the bytes without passing them through the Java heap.
+     */
+    public void copyTo( GGPKEntry entry , FileChannel target ) throws IOException {
+        long position = entry.offset( );
+        long end = entry.offset( ) + entry.length( );
+
+        while ( position < end ) {
+            long transferred = channel.transferTo( position , end - position , target );
+
+            if ( transferred <= 0 )
+                throw new EOFException( "Unexpected end of " + contentPath + " while copying " + entry.path( ) );
+
+            position += transferred;
+        }
+    }
+
+    /**
+     * Closes the channel, unless it was passed in by the caller.
+     */
+    @Override
+    public void close( ) throws IOException {
+        if ( ownsChannel )
+            channel.close( );
+    }
+
+    /**
+     * Returns the mapped window, mapping it first if this is the first time it is used.
+     */
+    private synchronized MappedByteBuffer window( int index ) throws IOException {
+        MappedByteBuffer window = windows[ index ];
+
+        if ( window == null ) {
+            long start = index * WINDOW_SIZE;
+            long length = Math.min( WINDOW_SIZE + WINDOW_OVERLAP , channel.size( ) - start );
+
+            window = channel.map( FileChannel.MapMode.READ_ONLY , start , length );
+            windows[ index ] = window;
+        }
+
+        return window;
+    }
+
+    /**
+     * Walks every PDIR record starting from the root, collecting all FILE records.
+     * <br>
+     * A damaged or half patched Content.ggpk file throws an IOException, rather than reading past the end of the
+     * file or following a child offset back to a record already walked.
+     */
+    private GGPKIndex walk( long size , long modified ) throws IOException {
+        GGPKIndex.Builder found = new GGPKIndex.Builder( );
+        int count = 0;
+        Deque < PendingRecord > pending = new ArrayDeque <>( );
+        Set < Long > visited = new HashSet <>( );
+        pending.push( new PendingRecord( rootOffset , null ) );
+
+        while ( !pending.isEmpty( ) ) {
+            PendingRecord record = pending.pop( );
+
+            if ( !visited.add( record.offset ) )
+                throw new IOException( "Record at offset " + record.offset + " of " + contentPath + " is referenced more than once." );
+
+            ByteBuffer head = readFully( record.offset , 8 );
+            int length = head.getInt( );
+            int tag = head.getInt( );
+
+            if ( ( tag == TAG_PDIR || tag == TAG_FILE ) && ( length < 8 + 4 + HASH_LENGTH || record.offset + length > size ) )
+                throw new IOException( "Record at offset " + record.offset + " of " + contentPath + " has an invalid length of " + length );
+
+            if ( tag == TAG_PDIR ) {
+                ByteBuffer dir = readFully( record.offset + 8 , length - 8 );
+
+                if ( dir.remaining( ) < 4 + 4 + HASH_LENGTH )
+                    throw new IOException( "Directory at offset " + record.offset + " of " + contentPath + " is truncated." );
+
+                int nameLength = dir.getInt( );
+                int childCount = dir.getInt( );
+                dir.position( dir.position( ) + HASH_LENGTH );
+
+                if ( nameLength < 0 || childCount < 0
+                        || ( long ) nameLength * charSize( ) + ( long ) childCount * ( 4 + 8 ) > dir.remaining( ) )
+                    throw new IOException( "Directory at offset " + record.offset + " of " + contentPath + " does not fit its record." );
+
+                String name = readName( dir , nameLength );
+                String dirPath = record.parent == null ? "" : record.parent + name + "/";
+
+                for ( int i = 0; i < childCount; i++ ) {
+                    dir.getInt( ); //name hash
+                    pending.push( new PendingRecord( dir.getLong( ) , dirPath ) );
+                }
+            } else if ( tag == TAG_FILE ) {
+                ByteBuffer fileHead = readFully( record.offset + 8 , 4 + HASH_LENGTH );
+                int nameLength = fileHead.getInt( );
+                byte[] hash = new byte[ HASH_LENGTH ];
+                fileHead.get( hash );
+
+                if ( nameLength < 0 || ( long ) nameLength * charSize( ) > length - ( 8 + 4 + HASH_LENGTH ) )
+                    throw new IOException( "File at offset " + record.offset + " of " + contentPath + " does not fit its record." );
+
+                int nameBytes = nameLength * charSize( );
+                String name = readName( readFully( record.offset + 8 + 4 + HASH_LENGTH , nameBytes ) , nameLength );
+                long dataOffset = record.offset + 8 + 4 + HASH_LENGTH + nameBytes;
+                long dataLength = length - ( dataOffset - record.offset );
+
+                String path = record.parent == null ? name : record.parent + name;
+                found.add( normalize( path ) , dataOffset , dataLength , hash );
+                count++;
+            } else if ( tag != TAG_FREE ) {
+                LOGGER.log( Level.WARNING , "Unknown record tag at offset " + record.offset + " in " + contentPath );
+            }
+        }
+
+        LOGGER.log( Level.INFO , "Indexed " + count + " files from " + contentPath );
+        return found.build( size , modified , rootHash );
+    }
+
+    /**
+     * Reads a null terminated name of the specified length in characters.
+     */
+    private String readName( ByteBuffer buffer , int nameLength ) {
+        int size = charSize( );
+        byte[] raw = new byte[ nameLength * size ];
+        buffer.get( raw );
+
+        //Drop the null terminator.
+        int usable = Math.max( 0 , nameLength - 1 ) * size;
+        return new String( raw , 0 , usable , charset( ) );
+    }
+
+    private int charSize( ) {
+        return version == UTF32_VERSION ? 4 : 2;
+    }
+
+    private Charset charset( ) {
+        return version == UTF32_VERSION ? Charset.forName( "UTF-32LE" ) : StandardCharsets.UTF_16LE;
+    }
+
+    /**
+     * Returns the tag of the record at the offset.
+     */
+    private int tagAt( long offset ) throws IOException {
+        return readFully( offset , 8 ).getInt( 4 );
+    }
+
+    /**
+     * Reads the specified amount of bytes at the position, without moving the channel position.
+     * <br>
+     * Throws an EOFException if the bytes are not within the file, before anything is allocated.
+     */
+    ByteBuffer readFully( long position , int length ) throws IOException {
+        if ( position < 0 || length < 0 || position + length > channel.size( ) )
+            throw new EOFException( length + " bytes at offset " + position + " are outside of " + contentPath );
+
+        ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+
+        while ( buffer.hasRemaining( ) ) {
+            int read = channel.read( buffer , position + buffer.position( ) );
+
+            if ( read < 0 )
+                throw new EOFException( "Unexpected end of " + contentPath + " at offset " + position );
+        }
+
+        return buffer.flip( );
+    }
+
+    /**
+     * Lowercases the internal path and replaces any backslashes, so lookups match regardless of how
+     * the caller typed the path.
+     */
+    static String normalize( String internalPath ) {
+        String normalized = internalPath.replace( '\\' , '/' ).toLowerCase( Locale.ROOT );
+        return normalized.startsWith( "/" ) ? normalized.substring( 1 ) : normalized;
+    }
+
+    private static int tag( String tag ) {
+        byte[] raw = tag.getBytes( StandardCharsets.US_ASCII );
+        return ( raw[ 0 ] & 0xFF ) | ( raw[ 1 ] & 0xFF ) << 8 | ( raw[ 2 ] & 0xFF ) << 16 | ( raw[ 3 ] & 0xFF ) << 24;
+    }
+
+    /**
+     * A record waiting to be visited, with the path of the directory it belongs to.
+     * The parent is null for the root PDIR record, which has no name.
+     */
+    private record PendingRecord( long offset , String parent ) {
+
+    }
+}
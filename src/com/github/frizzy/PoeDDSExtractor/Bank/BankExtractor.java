@@ -2,8 +2,11 @@ package com.github.frizzy.PoeDDSExtractor.Bank;
 
 import com.github.frizzy.PoeDDSExtractor.*;
 import com.github.frizzy.PoeDDSExtractor.Command.CommandArg;
-import com.github.frizzy.PoeDDSExtractor.Command.CommandPair;
-import org.apache.commons.exec.DefaultExecuteResultHandler;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolResult;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolRunner;
+import com.github.frizzy.PoeDDSExtractor.Metrics.ExtractionMetrics;
+import com.github.frizzy.PoeDDSExtractor.Metrics.Stage;
+import com.github.frizzy.PoeDDSExtractor.Output.OutputSink;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
@@ -33,6 +36,21 @@ public class BankExtractor {
      */
     private final String toolsPath;
 
+    /**
+     * Registry the bank extractions report into.
+     */
+    private volatile ExtractionMetrics metrics = ExtractionMetrics.getDefault( );
+
+    /**
+     * Runs quickbms.exe and the fsb extraction batch file.
+     */
+    private volatile ToolRunner toolRunner = ToolRunner.getDefault( );
+
+    /**
+     * Receives the .wav files instead of the directory next to the bank, when set.
+     */
+    private volatile OutputSink outputSink;
+
     /**
      * Creates the BankExtractor instance.
      * <br>
@@ -54,32 +72,94 @@ public class BankExtractor {
         LOGGER.addHandler( handler );
     }
 
+    /**
+     * Sets the registry the bank extractions report into, instead of the default registry.
+     */
+    public void setMetrics ( ExtractionMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the runner the bank tools are run by, instead of the default runner.
+     */
+    public void setToolRunner ( ToolRunner toolRunner ) {
+        this.toolRunner = toolRunner;
+    }
+
+    /**
+     * Moves the extracted .wav files into the OutputSink, such as a ZipSink, as "BANKNAME/FILE.wav" entries. The
+     * bank tools still extract into the directory next to the bank, which is deleted once its .wav files are in
+     * the sink. The wav files of a BankFile are then the relative entry names. The sink is not closed.
+     *
+     * @param outputSink The sink, or null to keep the .wav files next to the bank.
+     */
+    public void setOutputSink ( OutputSink outputSink ) {
+        this.outputSink = outputSink;
+    }
+
     /**
      * Extracts all .wav files from the banks in the provided list.
      * @return A map with the .bank file as the key and a list of wav files as the values.
      */
     public List < BankFile > extractWavFiles( List < BankFile > banks  ) {
         for ( BankFile bank : banks ) {
-            try {
-                Optional < Path > opt = completeExtraction( bank.getDiskPath() );
+            try ( ExtractionMetrics.Timer timer = metrics.start( Stage.BANK_EXTRACT ) ) {
+                try {
+                    timer.read( Files.size( bank.getDiskPath() ) );
+                    Optional < Path > opt = completeExtraction( bank.getDiskPath() );
 
-                opt.ifPresent( wavFilesDir -> {
-                    try ( Stream < Path > paths = Files.list( wavFilesDir ) ) {
-                        List < Path > pathList = paths.toList();
+                    if ( opt.isEmpty() )
+                        timer.failed( );
 
-                        bank.setWavFiles( pathList );
-                    } catch ( IOException e ) {
-                        LOGGER.log( Level.SEVERE, e.getMessage(), e );
-                    }
-                } );
-            } catch ( IOException e ) {
-                LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+                    OutputSink sink = outputSink;
+
+                    opt.ifPresent( wavFilesDir -> {
+                        try ( Stream < Path > paths = Files.list( wavFilesDir ) ) {
+                            List < Path > pathList = paths.toList();
+
+                            for ( Path wav : pathList ) {
+                                timer.written( Files.size( wav ) );
+                            }
+
+                            bank.setWavFiles( sink == null ? pathList : moveTo( sink , wavFilesDir , pathList ) );
+                        } catch ( IOException e ) {
+                            timer.failed( );
+                            LOGGER.log( Level.SEVERE, e.getMessage(), e );
+                        }
+                    } );
+                } catch ( IOException e ) {
+                    timer.failed( );
+                    LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+                }
             }
         }
 
         return banks;
     }
 
+    /**
+     * Writes the .wav files into the sink and deletes them along with their directory, returning the entry names.
+     */
+    private List < Path > moveTo ( OutputSink sink , Path wavFilesDir , List < Path > wavFiles ) throws IOException {
+        List < Path > entries = new ArrayList <>( );
+
+        for ( Path wav : wavFiles ) {
+            String entry = wavFilesDir.getFileName() + "/" + wav.getFileName();
+
+            sink.write( entry , wav );
+            Files.delete( wav );
+            entries.add( Path.of( entry ) );
+        }
+
+        try {
+            Files.delete( wavFilesDir );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.WARNING, wavFilesDir + " was not deleted, it is not empty.", e );
+        }
+
+        return entries;
+    }
+
     /**
      * Completes the extraction process of the .wav files, returning the directory they are stored
      * in or an empty optional if the process failed.
@@ -103,16 +183,13 @@ public class BankExtractor {
             }
         }
 
-        CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > cPair = GGPKUtils.runCommandLine(
-                Path.of( bmsExePath ),
+        ToolResult bms = toolRunner.run(
+                Path.of( bmsExePath ), line -> LOGGER.log( Level.FINE, line ),
                 new CommandArg <>( bmsScriptPath, true ),
                 new CommandArg <>( bankFile.toAbsolutePath().toString(), true ),
                 new CommandArg <>( bankOutputDir.toAbsolutePath().toString() , true ) );
 
-        int bmsExitCode = cPair.rh.getExitValue();
-
-        if ( bmsExitCode == 0 ) {
-            LOGGER.log( Level.FINE, cPair.bs.toString() );
+        if ( bms.isSuccess() ) {
             ToolsUnpacker unpacker = new ToolsUnpacker();
 
             boolean success = unpacker.exportBankToolsTo(
@@ -120,14 +197,11 @@ public class BankExtractor {
 
             if ( success ) {
                 final String command = "/C \"\"" + bankOutputDir.toAbsolutePath() + File.separator + "batch.bat\"\"";
-                CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > cPair2 = GGPKUtils.runCommandLine(
-                        Path.of( "cmd.exe" ),
+                ToolResult fsb = toolRunner.run(
+                        Path.of( "cmd.exe" ), line -> LOGGER.log( Level.FINE, line ),
                         new CommandArg <>( command, false  ) );
 
-                int fsbExitCode = cPair2.rh.getExitValue();
-
-                if ( fsbExitCode == 0 ) {
-                    LOGGER.log( Level.FINE, cPair2.bs.toString() );
+                if ( fsb.isSuccess() ) {
                     try ( Stream < Path > paths = Files.list( bankOutputDir ) ) {
                         List < Path > pathList = paths.toList();
 
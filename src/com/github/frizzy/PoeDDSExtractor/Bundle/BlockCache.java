@@ -0,0 +1,118 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of decompressed bundle blocks, bounded by the total size of the cached blocks.
+ * <br>
+ * Bundles group many small files into 256 KB blocks. Without the cache, reading every icon stored in one block
+ * would decompress that block once per icon.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class BlockCache {
+
+    /**
+     * Default capacity, enough for 256 blocks of 256 KB.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    private final long capacity;
+
+    private final LinkedHashMap < Long, byte[] > blocks = new LinkedHashMap <>( 64 , 0.75f , true );
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    public BlockCache( ) {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param capacity The maximum amount of decompressed bytes kept in the cache.
+     */
+    public BlockCache( long capacity ) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached block, or null if the block is not cached.
+     *
+     * @param bundle The index of the bundle in the _.index.bin file.
+     * @param block  The index of the block in the bundle.
+     */
+    public synchronized byte[] get( int bundle , int block ) {
+        byte[] cached = blocks.get( key( bundle , block ) );
+
+        if ( cached == null ) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return cached;
+    }
+
+    /**
+     * Adds the decompressed block to the cache, evicting the least recently used blocks until the cache
+     * fits within its capacity again.
+     */
+    public synchronized void put( int bundle , int block , byte[] data ) {
+        byte[] previous = blocks.put( key( bundle , block ) , data );
+
+        if ( previous != null )
+            size -= previous.length;
+
+        size += data.length;
+
+        var iterator = blocks.entrySet( ).iterator( );
+        while ( size > capacity && iterator.hasNext( ) ) {
+            Map.Entry < Long, byte[] > eldest = iterator.next( );
+
+            if ( eldest.getValue( ) == data )
+                break;
+
+            size -= eldest.getValue( ).length;
+            iterator.remove( );
+        }
+    }
+
+    /**
+     * Removes every block from the cache.
+     */
+    public synchronized void clear( ) {
+        blocks.clear( );
+        size = 0;
+    }
+
+    /**
+     * Returns the amount of decompressed bytes currently cached.
+     */
+    public synchronized long getSize( ) {
+        return size;
+    }
+
+    /**
+     * Returns how many times get() found the block.
+     */
+    public synchronized long getHits( ) {
+        return hits;
+    }
+
+    /**
+     * Returns how many times get() did not find the block.
+     */
+    public synchronized long getMisses( ) {
+        return misses;
+    }
+
+    private static long key( int bundle , int block ) {
+        return ( ( long ) bundle << 32 ) | ( block & 0xFFFFFFFFL );
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decompresses a single block of a .bundle.bin file.
+ * <br>
+ * PoE compresses bundle blocks with Oodle, which is a closed source native library and cannot be shipped
+ * with PoeDDSExtractor. Implement this interface with whatever binding to Oodle is available ( for example,
+ * the oo2core dll loaded through JNA or the Foreign Function API ) and pass it to BundleReader.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@FunctionalInterface
+public interface BlockDecompressor {
+
+    /**
+     * Decompresses the block.
+     *
+     * @param encoding     The compressor id stored in the bundle header ( 8 is Kraken, 9 is Mermaid, 13 is Leviathan ).
+     * @param compressed   The compressed block. Positioned at 0 with the block size as the limit.
+     * @param destination  The array the decompressed block is written into, starting at index 0.
+     * @param decompressedLength The size of the block once decompressed.
+     * @throws IOException If the block could not be decompressed.
+     */
+    void decompress( int encoding , ByteBuffer compressed , byte[] destination , int decompressedLength ) throws IOException;
+}
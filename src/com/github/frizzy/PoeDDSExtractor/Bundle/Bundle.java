@@ -0,0 +1,174 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A parsed .bundle.bin file.
+ * <br>
+ * A bundle is a header followed by compressed blocks. Every block decompresses to the block granularity
+ * ( 256 KB ), except for the last block which holds whatever is left. The header layout is:
+ * <br>
+ * int32 uncompressed size, int32 total payload size, int32 head payload size, int32 encoding, int32 unknown,
+ * int64 uncompressed size, int64 total payload size, int32 block count, int32 block granularity,
+ * int32[4] unknown, int32[block count] compressed block sizes.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class Bundle {
+
+    /**
+     * Size of the header before the block sizes.
+     */
+    static final int HEADER_SIZE = 60;
+
+    /**
+     * The index of the bundle in the _.index.bin file, used to key cached blocks.
+     * The _.index.bin file itself uses -1.
+     */
+    private final int id;
+
+    private final ByteBuffer data;
+
+    private final int encoding;
+
+    private final long uncompressedSize;
+
+    private final int granularity;
+
+    /**
+     * Offset of every compressed block within data, with one extra value marking the end of the last block.
+     */
+    private final long[] blockOffsets;
+
+    /**
+     * @param id   The index of the bundle in the _.index.bin file.
+     * @param data The bytes of the .bundle.bin file.
+     */
+    public Bundle( int id , ByteBuffer data ) throws IOException {
+        this.id = id;
+        this.data = data.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+
+        if ( data.remaining( ) < HEADER_SIZE )
+            throw new IOException( "Bundle " + id + " is too small to hold a bundle header." );
+
+        ByteBuffer header = this.data.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+        header.position( 12 );
+        encoding = header.getInt( );
+        header.getInt( ); //unknown
+        uncompressedSize = header.getLong( );
+        header.getLong( ); //total payload size
+        int blockCount = header.getInt( );
+        granularity = header.getInt( );
+        header.position( HEADER_SIZE );
+
+        if ( blockCount < 0 || granularity <= 0 || HEADER_SIZE + 4L * blockCount > data.remaining( ) )
+            throw new IOException( "Bundle " + id + " has a corrupt header." );
+
+        blockOffsets = new long[ blockCount + 1 ];
+        blockOffsets[ 0 ] = HEADER_SIZE + 4L * blockCount;
+
+        for ( int i = 0; i < blockCount; i++ ) {
+            blockOffsets[ i + 1 ] = blockOffsets[ i ] + ( header.getInt( ) & 0xFFFFFFFFL );
+        }
+
+        if ( blockOffsets[ blockCount ] > data.remaining( ) )
+            throw new IOException( "Bundle " + id + " is shorter than its blocks." );
+    }
+
+    /**
+     * Reads part of the decompressed bundle, decompressing only the blocks it covers. Blocks are taken from
+     * the cache when possible, and added to it when they had to be decompressed.
+     *
+     * @param offset       The offset within the decompressed bundle.
+     * @param length       The amount of bytes to read.
+     * @param decompressor Decompressor for the blocks.
+     * @param cache        Cache of decompressed blocks. Can be null.
+     */
+    public byte[] read( long offset , int length , BlockDecompressor decompressor , BlockCache cache ) throws IOException {
+        if ( offset < 0 || offset + length > uncompressedSize )
+            throw new IOException( "Read of " + length + " bytes at " + offset + " is outside of bundle " + id );
+
+        byte[] out = new byte[ length ];
+        int written = 0;
+
+        while ( written < length ) {
+            long position = offset + written;
+            int block = ( int ) ( position / granularity );
+            int inBlock = ( int ) ( position % granularity );
+
+            byte[] decompressed = block( block , decompressor , cache );
+            int count = Math.min( length - written , decompressed.length - inBlock );
+
+            System.arraycopy( decompressed , inBlock , out , written , count );
+            written += count;
+        }
+
+        return out;
+    }
+
+    /**
+     * Decompresses the whole bundle.
+     */
+    public byte[] readAll( BlockDecompressor decompressor , BlockCache cache ) throws IOException {
+        if ( uncompressedSize > Integer.MAX_VALUE )
+            throw new IOException( "Bundle " + id + " is too large to be read into memory." );
+
+        return read( 0 , ( int ) uncompressedSize , decompressor , cache );
+    }
+
+    /**
+     * Returns the decompressed block.
+     */
+    private byte[] block( int block , BlockDecompressor decompressor , BlockCache cache ) throws IOException {
+        byte[] cached = cache == null ? null : cache.get( id , block );
+
+        if ( cached != null )
+            return cached;
+
+        long start = ( long ) block * granularity;
+        int decompressedLength = ( int ) Math.min( granularity , uncompressedSize - start );
+
+        ByteBuffer compressed = data.slice( ( int ) blockOffsets[ block ] ,
+                ( int ) ( blockOffsets[ block + 1 ] - blockOffsets[ block ] ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+        byte[] decompressed = new byte[ decompressedLength ];
+        decompressor.decompress( encoding , compressed , decompressed , decompressedLength );
+
+        if ( cache != null )
+            cache.put( id , block , decompressed );
+
+        return decompressed;
+    }
+
+    /**
+     * Returns the size of the bundle once decompressed.
+     */
+    public long getUncompressedSize( ) {
+        return uncompressedSize;
+    }
+
+    /**
+     * Returns the number of blocks in the bundle.
+     */
+    public int getBlockCount( ) {
+        return blockOffsets.length - 1;
+    }
+
+    /**
+     * Returns the size of a decompressed block.
+     */
+    public int getGranularity( ) {
+        return granularity;
+    }
+
+    /**
+     * Returns the compressor id stored in the header.
+     */
+    public int getEncoding( ) {
+        return encoding;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+/**
+ * Record tracking where a file is stored within the bundles.
+ *
+ * @param path       The internal path of the file, as it was requested.
+ * @param pathHash   The hash of the path stored in the _.index.bin file.
+ * @param bundle     The index of the bundle in the _.index.bin file.
+ * @param bundleName The name of the bundle, such as "Folders/art/textures/interface/2d/2dart/uiimages/common/4k".
+ * @param offset     The offset of the file within the decompressed bundle.
+ * @param size       The size of the file in bytes.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public record BundleEntry( String path , long pathHash , int bundle , String bundleName , int offset , int size ) {
+
+}
@@ -0,0 +1,348 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parsed _.index.bin file, mapping internal file paths to the bundle, offset and size they are stored at.
+ * <br>
+ * The _.index.bin file is a bundle itself. Once decompressed it holds:
+ * <br>
+ * The bundle table. int32 count, then per bundle an int32 name length, the UTF-8 name, and the int32 uncompressed size.
+ * <br>
+ * The file table. int32 count, then per file an int64 path hash, int32 bundle index, int32 offset and int32 size.
+ * <br>
+ * The directory table. int32 count, then per directory an int64 path hash, int32 offset, int32 size and int32
+ * recursive size. The offset and size point into the path data.
+ * <br>
+ * The path data, another bundle holding the compressed list of every path.
+ * <br>
+ * Files are looked up by hashing the requested path. Older clients hash with FNV-1a over the lowercase path
+ * followed by "++", while newer clients hash with MurmurHash64A. Which one is used is detected by hashing the
+ * first path from the path data both ways.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class BundleIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( BundleIndex.class.getName( ) );
+
+    /**
+     * Seed of the MurmurHash64A path hashes.
+     */
+    static final long MURMUR_SEED = 0x1337b33fL;
+
+    private final String[] bundleNames;
+
+    private final long[] bundleSizes;
+
+    /**
+     * File records sorted by path hash.
+     */
+    private final long[] pathHashes;
+    private final int[] bundles;
+    private final int[] offsets;
+    private final int[] sizes;
+
+    /**
+     * Directory records, kept to decode the path data.
+     */
+    private final int[] directoryOffsets;
+    private final int[] directorySizes;
+
+    /**
+     * The compressed path data.
+     */
+    private final ByteBuffer pathData;
+
+    private final boolean murmur;
+
+    /**
+     * @param decompressedIndex The decompressed contents of the _.index.bin bundle.
+     * @param decompressor      Decompressor used for the path data, which is needed to detect the hash function.
+     */
+    public BundleIndex( byte[] decompressedIndex , BlockDecompressor decompressor ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( decompressedIndex ).order( ByteOrder.LITTLE_ENDIAN );
+
+        try {
+            int bundleCount = buffer.getInt( );
+            bundleNames = new String[ bundleCount ];
+            bundleSizes = new long[ bundleCount ];
+
+            for ( int i = 0; i < bundleCount; i++ ) {
+                byte[] name = new byte[ buffer.getInt( ) ];
+                buffer.get( name );
+                bundleNames[ i ] = new String( name , StandardCharsets.UTF_8 );
+                bundleSizes[ i ] = buffer.getInt( ) & 0xFFFFFFFFL;
+            }
+
+            int fileCount = buffer.getInt( );
+            long[] hashes = new long[ fileCount ];
+            int[] fileBundles = new int[ fileCount ];
+            int[] fileOffsets = new int[ fileCount ];
+            int[] fileSizes = new int[ fileCount ];
+
+            for ( int i = 0; i < fileCount; i++ ) {
+                hashes[ i ] = buffer.getLong( );
+                fileBundles[ i ] = buffer.getInt( );
+                fileOffsets[ i ] = buffer.getInt( );
+                fileSizes[ i ] = buffer.getInt( );
+            }
+
+            int directoryCount = buffer.getInt( );
+            directoryOffsets = new int[ directoryCount ];
+            directorySizes = new int[ directoryCount ];
+
+            for ( int i = 0; i < directoryCount; i++ ) {
+                buffer.getLong( ); //path hash
+                directoryOffsets[ i ] = buffer.getInt( );
+                directorySizes[ i ] = buffer.getInt( );
+                buffer.getInt( ); //recursive size
+            }
+
+            pathData = buffer.slice( ).order( ByteOrder.LITTLE_ENDIAN );
+
+            Integer[] order = new Integer[ fileCount ];
+            for ( int i = 0; i < fileCount; i++ ) {
+                order[ i ] = i;
+            }
+            Arrays.sort( order , ( a , b ) -> Long.compare( hashes[ a ] , hashes[ b ] ) );
+
+            pathHashes = new long[ fileCount ];
+            bundles = new int[ fileCount ];
+            offsets = new int[ fileCount ];
+            sizes = new int[ fileCount ];
+
+            for ( int i = 0; i < fileCount; i++ ) {
+                int from = order[ i ];
+                pathHashes[ i ] = hashes[ from ];
+                bundles[ i ] = fileBundles[ from ];
+                offsets[ i ] = fileOffsets[ from ];
+                sizes[ i ] = fileSizes[ from ];
+            }
+        } catch ( BufferUnderflowException e ) {
+            throw new IOException( "_.index.bin ended before all of its records were read." , e );
+        }
+
+        murmur = detectMurmur( decompressor );
+    }
+
+    /**
+     * Returns the entry of the internal path, if it exists. The lookup is not case-sensitive.
+     */
+    public Optional < BundleEntry > find( String internalPath ) {
+        long hash = hash( internalPath );
+        int i = Arrays.binarySearch( pathHashes , hash );
+
+        if ( i < 0 )
+            return Optional.empty( );
+
+        return Optional.of( new BundleEntry( internalPath , hash , bundles[ i ] , bundleNames[ bundles[ i ] ] ,
+                offsets[ i ] , sizes[ i ] ) );
+    }
+
+    /**
+     * Hashes the internal path the same way the client that wrote the index does.
+     */
+    public long hash( String internalPath ) {
+        String normalized = internalPath.replace( '\\' , '/' ).toLowerCase( Locale.ROOT );
+
+        if ( murmur ) {
+            return murmurHash64A( normalized.getBytes( StandardCharsets.UTF_8 ) , MURMUR_SEED );
+        }
+
+        return fnv1a64( ( normalized + "++" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Returns the number of bundles.
+     */
+    public int getBundleCount( ) {
+        return bundleNames.length;
+    }
+
+    /**
+     * Returns the name of the bundle, such as "Folders/art/textures". The file on disk is the name followed
+     * by ".bundle.bin".
+     */
+    public String getBundleName( int bundle ) {
+        return bundleNames[ bundle ];
+    }
+
+    /**
+     * Returns the uncompressed size of the bundle as recorded in the index.
+     */
+    public long getBundleSize( int bundle ) {
+        return bundleSizes[ bundle ];
+    }
+
+    /**
+     * Returns the number of files in the index.
+     */
+    public int getFileCount( ) {
+        return pathHashes.length;
+    }
+
+    /**
+     * Decodes the path data into every internal path in the index. This decompresses the whole path bundle,
+     * so it should only be called when a listing is actually needed.
+     */
+    public List < String > readPaths( BlockDecompressor decompressor ) throws IOException {
+        List < String > paths = new ArrayList <>( );
+        byte[] data = new Bundle( -1 , pathData ).readAll( decompressor , null );
+
+        for ( int i = 0; i < directoryOffsets.length; i++ ) {
+            readDirectoryPaths( data , directoryOffsets[ i ] , directorySizes[ i ] , paths , false );
+        }
+
+        return paths;
+    }
+
+    /**
+     * Decodes the paths of a single directory record.
+     * <br>
+     * The path data alternates between two modes, switched by a zero. In base mode, every string read is added
+     * to a list of bases. Otherwise, every string read is a path. Each string starts with a 1-based index
+     * into the bases that it is appended to, or an index past the end of the bases if it is a full string.
+     *
+     * @param firstOnly Stops after the first path, used when detecting the hash function.
+     */
+    private static void readDirectoryPaths( byte[] data , int offset , int size , List < String > paths , boolean firstOnly ) {
+        ByteBuffer buffer = ByteBuffer.wrap( data , offset , size ).order( ByteOrder.LITTLE_ENDIAN );
+        List < String > bases = new ArrayList <>( );
+        boolean base = false;
+
+        while ( buffer.remaining( ) >= 4 ) {
+            int index = buffer.getInt( );
+
+            if ( index == 0 ) {
+                base = !base;
+
+                if ( base )
+                    bases.clear( );
+
+                continue;
+            }
+
+            int start = buffer.position( );
+            int end = start;
+            while ( end < buffer.limit( ) && data[ end ] != 0 ) {
+                end++;
+            }
+            buffer.position( Math.min( end + 1 , buffer.limit( ) ) );
+
+            String part = new String( data , start , end - start , StandardCharsets.UTF_8 );
+
+            index--;
+            String full = index < bases.size( ) ? bases.get( index ) + part : part;
+
+            if ( base ) {
+                bases.add( full );
+            } else {
+                paths.add( full );
+
+                if ( firstOnly )
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Checks which hash function finds the first path of the path data in the file table.
+     */
+    private boolean detectMurmur( BlockDecompressor decompressor ) {
+        if ( directoryOffsets.length == 0 || pathHashes.length == 0 )
+            return true;
+
+        try {
+            Bundle paths = new Bundle( -1 , pathData );
+            int first = 0;
+            for ( int i = 1; i < directoryOffsets.length; i++ ) {
+                if ( directoryOffsets[ i ] < directoryOffsets[ first ] )
+                    first = i;
+            }
+
+            byte[] data = paths.read( directoryOffsets[ first ] , directorySizes[ first ] , decompressor , null );
+            List < String > firstPath = new ArrayList <>( 1 );
+            readDirectoryPaths( data , 0 , data.length , firstPath , true );
+
+            if ( !firstPath.isEmpty( ) ) {
+                String path = firstPath.get( 0 ).toLowerCase( Locale.ROOT );
+                long fnv = fnv1a64( ( path + "++" ).getBytes( StandardCharsets.UTF_8 ) );
+
+                if ( Arrays.binarySearch( pathHashes , fnv ) >= 0 )
+                    return false;
+            }
+        } catch ( IOException | RuntimeException e ) {
+            LOGGER.log( Level.WARNING , "Path data could not be read, assuming MurmurHash64A path hashes." , e );
+        }
+
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a hash.
+     */
+    static long fnv1a64( byte[] data ) {
+        long h = 0xcbf29ce484222325L;
+
+        for ( byte b : data ) {
+            h = ( h ^ ( b & 0xFF ) ) * 0x100000001b3L;
+        }
+
+        return h;
+    }
+
+    /**
+     * MurmurHash64A by Austin Appleby.
+     */
+    static long murmurHash64A( byte[] data , long seed ) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+
+        long h = seed ^ ( data.length * m );
+        int blocks = data.length / 8;
+
+        for ( int i = 0; i < blocks; i++ ) {
+            int o = i * 8;
+            long k = ( data[ o ] & 0xFFL ) | ( data[ o + 1 ] & 0xFFL ) << 8 | ( data[ o + 2 ] & 0xFFL ) << 16
+                    | ( data[ o + 3 ] & 0xFFL ) << 24 | ( data[ o + 4 ] & 0xFFL ) << 32 | ( data[ o + 5 ] & 0xFFL ) << 40
+                    | ( data[ o + 6 ] & 0xFFL ) << 48 | ( data[ o + 7 ] & 0xFFL ) << 56;
+
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+
+            h ^= k;
+            h *= m;
+        }
+
+        int tail = blocks * 8;
+        int remaining = data.length & 7;
+
+        if ( remaining > 0 ) {
+            for ( int i = remaining - 1; i >= 0; i-- ) {
+                h ^= ( data[ tail + i ] & 0xFFL ) << ( 8 * i );
+            }
+            h *= m;
+        }
+
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+
+        return h;
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads files out of the PoE bundles, used by the Steam client and newer standalone clients.
+ * <br>
+ * The _.index.bin file is read once to build the BundleIndex. Requested files are then resolved to their bundle,
+ * and only the blocks of that bundle covering the file are decompressed. Decompressed blocks are kept in a
+ * BlockCache, so reading many small files from the same block only decompresses it once.
+ * <br>
+ * BundleReader is thread safe as long as the BlockDecompressor is.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class BundleReader {
+
+    private static final Logger LOGGER = Logger.getLogger( BundleReader.class.getName( ) );
+
+    private final BundleSource source;
+
+    private final BlockDecompressor decompressor;
+
+    private final BlockCache cache;
+
+    private final BundleIndex index;
+
+    /**
+     * Parsed bundle headers, keyed by the bundle index.
+     */
+    private final ConcurrentHashMap < Integer, Bundle > bundles = new ConcurrentHashMap <>( );
+
+    /**
+     * @param source       Source of the _.index.bin and .bundle.bin files.
+     * @param decompressor Decompressor for the bundle blocks.
+     * @param cache        Cache of decompressed blocks.
+     */
+    public BundleReader( BundleSource source , BlockDecompressor decompressor , BlockCache cache ) throws IOException {
+        this.source = source;
+        this.decompressor = decompressor;
+        this.cache = cache;
+
+        Bundle indexBundle = new Bundle( -1 , source.open( BundleSource.INDEX_NAME ) );
+        index = new BundleIndex( indexBundle.readAll( decompressor , null ) , decompressor );
+
+        LOGGER.log( Level.INFO , "Indexed " + index.getFileCount( ) + " files in " + index.getBundleCount( ) + " bundles." );
+    }
+
+    /**
+     * Returns where the internal path is stored, if it exists.
+     */
+    public Optional < BundleEntry > find( String internalPath ) {
+        return index.find( internalPath );
+    }
+
+    /**
+     * Reads the file. An empty Optional is returned if the file does not exist.
+     */
+    public Optional < ByteBuffer > read( String internalPath ) throws IOException {
+        Optional < BundleEntry > entry = find( internalPath );
+
+        if ( entry.isPresent( ) ) {
+            return Optional.of( read( entry.get( ) ) );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Reads the file the entry points to, returning it as a little endian buffer.
+     */
+    public ByteBuffer read( BundleEntry entry ) throws IOException {
+        byte[] data = bundle( entry.bundle( ) ).read( entry.offset( ) , entry.size( ) , decompressor , cache );
+        return ByteBuffer.wrap( data ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Returns the parsed index.
+     */
+    public BundleIndex getIndex( ) {
+        return index;
+    }
+
+    /**
+     * Returns the block cache.
+     */
+    public BlockCache getCache( ) {
+        return cache;
+    }
+
+    /**
+     * Returns the parsed bundle, opening it the first time it is needed.
+     */
+    private Bundle bundle( int bundle ) throws IOException {
+        Bundle parsed = bundles.get( bundle );
+
+        if ( parsed == null ) {
+            parsed = new Bundle( bundle , source.open( index.getBundleName( bundle ) + ".bundle.bin" ) );
+
+            Bundle previous = bundles.putIfAbsent( bundle , parsed );
+            if ( previous != null )
+                parsed = previous;
+        }
+
+        return parsed;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.frizzy.PoeDDSExtractor.Bundle;
+
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKEntry;
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Provides the raw bytes of the .bundle.bin files.
+ * <br>
+ * The Steam client keeps the bundles as loose files in the Bundles2 directory, while the standalone client keeps
+ * them as files within the Content.ggpk file. Both are memory mapped, so nothing is copied until a block is
+ * decompressed.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@FunctionalInterface
+public interface BundleSource {
+
+    /**
+     * The name of the index file within the Bundles2 directory.
+     */
+    String INDEX_NAME = "_.index.bin";
+
+    /**
+     * Returns the bytes of the bundle as a little endian buffer positioned at 0.
+     *
+     * @param bundleFile The path of the bundle file relative to the Bundles2 directory, such as "_.index.bin"
+     *                   or "Folders/art/textures.bundle.bin".
+     */
+    ByteBuffer open( String bundleFile ) throws IOException;
+
+    /**
+     * Source reading loose bundle files from the Bundles2 directory on disk.
+     */
+    static BundleSource directory( Path bundles2Directory ) {
+        return bundleFile -> {
+            Path file = Path.of( bundles2Directory + File.separator + bundleFile.replace( "/" , File.separator ) );
+
+            try ( FileChannel channel = FileChannel.open( file , StandardOpenOption.READ ) ) {
+                return channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ).order( ByteOrder.LITTLE_ENDIAN );
+            }
+        };
+    }
+
+    /**
+     * Source reading the bundle files stored within the Bundles2 directory of the Content.ggpk file.
+     */
+    static BundleSource ggpk( GGPKReader reader ) {
+        return bundleFile -> {
+            Optional < GGPKEntry > entry = reader.find( "Bundles2/" + bundleFile );
+
+            if ( entry.isEmpty( ) )
+                throw new NoSuchFileException( "Bundles2/" + bundleFile + " is not in " + reader.getContentPath( ) );
+
+            return reader.map( entry.get( ) );
+        };
+    }
+}
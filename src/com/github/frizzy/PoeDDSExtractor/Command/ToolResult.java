@@ -0,0 +1,23 @@
+package com.github.frizzy.PoeDDSExtractor.Command;
+
+import org.apache.commons.exec.ExecuteException;
+
+/**
+ * The outcome of a tool run by ToolRunner.
+ *
+ * @param exitValue The exit value of the process.
+ * @param exception The exception the process failed with, or null if it exited normally.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public record ToolResult( int exitValue , ExecuteException exception ) {
+
+    /**
+     * Returns true if the process exited with 0.
+     */
+    public boolean isSuccess( ) {
+        return exitValue == 0 && exception == null;
+    }
+}
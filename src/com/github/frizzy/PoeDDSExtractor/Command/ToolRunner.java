@@ -0,0 +1,195 @@
+package com.github.frizzy.PoeDDSExtractor.Command;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.LogOutputStream;
+import org.apache.commons.exec.PumpStreamHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs external tools such as texconv.exe, ExtractGGPK.exe and quickbms.exe, bounding how many of their processes
+ * run at once.
+ * <br>
+ * Whatever a tool prints is passed on line by line while it runs, instead of being buffered until the process
+ * exits. Tools that take many inputs in one invocation, like texconv.exe, can be given a whole batch of files at
+ * once with batch(), starting one process per batch instead of one per file.
+ * <br>
+ * A ToolRunner can be shared between threads and classes. Once maxProcesses tools are running, run() blocks
+ * until one of them exits.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ToolRunner {
+
+    private static final ToolRunner DEFAULT = new ToolRunner( Runtime.getRuntime( ).availableProcessors( ) );
+
+    private final int maxProcesses;
+
+    private final Semaphore processes;
+
+    /**
+     * @param maxProcesses The maximum amount of tool processes running at once.
+     */
+    public ToolRunner( int maxProcesses ) {
+        if ( maxProcesses < 1 )
+            throw new IllegalArgumentException( "maxProcesses must be at least 1." );
+
+        this.maxProcesses = maxProcesses;
+        this.processes = new Semaphore( maxProcesses , true );
+    }
+
+    /**
+     * Returns the runner shared by GGPK2, DDSConverter2 and BankExtractor unless they are given another one,
+     * running one process per available processor.
+     */
+    public static ToolRunner getDefault( ) {
+        return DEFAULT;
+    }
+
+    public int getMaxProcesses( ) {
+        return maxProcesses;
+    }
+
+    /**
+     * Runs the tool with the arguments and waits for it to exit, passing every line it prints to stdout or stderr
+     * to onLine, on a thread of the process.
+     * <br>
+     * If the calling thread is interrupted while waiting, the process is destroyed and an InterruptedIOException is
+     * thrown.
+     *
+     * @param tool   The tool, or "cmd.exe".
+     * @param onLine Receives every printed line. Can be null to drop the output.
+     * @param args   The arguments, each with whether commons-exec should quote it.
+     */
+    @SafeVarargs
+    public final ToolResult run( Path tool , Consumer < String > onLine , CommandArg < String, Boolean >... args ) throws IOException {
+        List < CommandArg < String, Boolean > > list = new ArrayList <>( args.length );
+
+        for ( CommandArg < String, Boolean > arg : args ) {
+            list.add( arg );
+        }
+
+        return run( tool , onLine , list );
+    }
+
+    /**
+     * Same as run( tool , onLine , args ), with the arguments in a list.
+     */
+    public ToolResult run( Path tool , Consumer < String > onLine , List < CommandArg < String, Boolean > > args ) throws IOException {
+        CommandLine cmdLine = tool.toString( ).equalsIgnoreCase( "cmd.exe" ) ? new CommandLine( "cmd.exe" ) : new CommandLine( tool );
+
+        for ( CommandArg < String, Boolean > arg : args ) {
+            cmdLine.addArgument( arg.arg , arg.quoting );
+        }
+
+        return run( cmdLine , onLine );
+    }
+
+    /**
+     * Splits the items into batches of at most batchSize items, in order, to be passed to a tool that takes many
+     * inputs in one invocation.
+     */
+    public static < T > List < List < T > > batch( List < T > items , int batchSize ) {
+        return batch( items , batchSize , Long.MAX_VALUE , item -> 0 );
+    }
+
+    /**
+     * Splits the items into batches of at most batchSize items, in order, closing a batch early once the weight of
+     * its items would exceed maxWeight. An item heavier than maxWeight gets a batch of its own.
+     * <br>
+     * With items sorted by size, this keeps a few large files from being queued behind, or holding up, a batch full
+     * of small ones.
+     */
+    public static < T > List < List < T > > batch( List < T > items , int batchSize , long maxWeight , ToLongFunction < T > weight ) {
+        if ( batchSize < 1 )
+            throw new IllegalArgumentException( "batchSize must be at least 1." );
+
+        List < List < T > > batches = new ArrayList <>( );
+        List < T > current = new ArrayList <>( );
+        long currentWeight = 0;
+
+        for ( T item : items ) {
+            long w = weight.applyAsLong( item );
+
+            if ( !current.isEmpty( ) && ( current.size( ) >= batchSize || currentWeight + w > maxWeight ) ) {
+                batches.add( List.copyOf( current ) );
+                current.clear( );
+                currentWeight = 0;
+            }
+
+            current.add( item );
+            currentWeight += w;
+        }
+
+        if ( !current.isEmpty( ) )
+            batches.add( List.copyOf( current ) );
+
+        return batches;
+    }
+
+    private ToolResult run( CommandLine cmdLine , Consumer < String > onLine ) throws IOException {
+        try {
+            processes.acquire( );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread( ).interrupt( );
+            throw new InterruptedIOException( "Interrupted while waiting to run " + cmdLine.getExecutable( ) );
+        }
+
+        LineStream lines = new LineStream( onLine );
+
+        try {
+            ExecuteWatchdog watchdog = ExecuteWatchdog.builder( ).setTimeout( ExecuteWatchdog.INFINITE_TIMEOUT_DURATION ).get( );
+            DefaultExecutor executor = DefaultExecutor.builder( ).get( );
+            DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler( );
+
+            executor.setStreamHandler( new PumpStreamHandler( lines ) );
+            executor.setWatchdog( watchdog );
+            executor.setExitValue( 0 );
+            executor.execute( cmdLine , handler );
+
+            try {
+                handler.waitFor( );
+            } catch ( InterruptedException e ) {
+                watchdog.destroyProcess( );
+                Thread.currentThread( ).interrupt( );
+                throw new InterruptedIOException( cmdLine.getExecutable( ) + " was interrupted and destroyed." );
+            }
+
+            return new ToolResult( handler.getExitValue( ) , handler.getException( ) );
+        } finally {
+            //Passes on a last line that did not end with a line break.
+            lines.close( );
+            processes.release( );
+        }
+    }
+
+    /**
+     * Passes every line written by the process to the consumer.
+     */
+    private static final class LineStream extends LogOutputStream {
+
+        private final Consumer < String > onLine;
+
+        LineStream( Consumer < String > onLine ) {
+            this.onLine = onLine;
+        }
+
+        @Override
+        protected void processLine( String line , int logLevel ) {
+            if ( onLine != null )
+                onLine.accept( line );
+        }
+    }
+}
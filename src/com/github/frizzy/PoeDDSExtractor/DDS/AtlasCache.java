@@ -0,0 +1,224 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Least recently used cache of decoded atlases, bounded by the total size of the cached rasters.
+ * <br>
+ * A single .dds atlas can hold hundreds of textures. The atlas is decoded once and every texture is cropped from
+ * the cached raster, instead of decoding the atlas again for every texture. Atlases are weighed by their raster
+ * size, 4 bytes per pixel, so one 4096x4096 atlas counts as much as 256 256x256 atlases. An atlas larger than the
+ * whole capacity is returned but never cached.
+ * <br>
+ * If several threads ask for the same atlas at once, it is decoded by the first thread while the others wait for
+ * its result.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class AtlasCache {
+
+    /**
+     * Default capacity, enough for four 4096x4096 atlases.
+     */
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+
+    /**
+     * Decodes an atlas on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        DDSImage load( ) throws IOException;
+    }
+
+    private final long capacity;
+
+    private final LinkedHashMap < String, DDSImage > atlases = new LinkedHashMap <>( 16 , 0.75f , true );
+
+    /**
+     * Atlases currently being decoded, keyed like the cached atlases.
+     */
+    private final Map < String, CompletableFuture < DDSImage > > loading = new HashMap <>( );
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    public AtlasCache( ) {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param capacity The maximum amount of raster bytes kept in the cache.
+     */
+    public AtlasCache( long capacity ) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached atlas, decoding it with the loader if it is not cached.
+     *
+     * @param ddsPath The internal path of the .dds file the atlas was decoded from.
+     * @param loader  Decodes the atlas if it is not cached.
+     */
+    public DDSImage get( String ddsPath , Loader loader ) throws IOException {
+        String key = key( ddsPath );
+        CompletableFuture < DDSImage > pending;
+        boolean owner = false;
+
+        synchronized ( this ) {
+            DDSImage cached = atlases.get( key );
+
+            if ( cached != null ) {
+                hits++;
+                return cached;
+            }
+
+            pending = loading.get( key );
+
+            if ( pending == null ) {
+                misses++;
+                pending = new CompletableFuture <>( );
+                loading.put( key , pending );
+                owner = true;
+            } else {
+                //Waiting for another thread's decode still saves decoding the atlas again.
+                hits++;
+            }
+        }
+
+        if ( !owner )
+            return await( pending );
+
+        try {
+            DDSImage image = loader.load( );
+
+            synchronized ( this ) {
+                //An atlas invalidated while it was decoded may have been decoded from the old file, so it is not cached.
+                if ( loading.get( key ) == pending )
+                    put( key , image );
+            }
+
+            pending.complete( image );
+            return image;
+        } catch ( IOException | RuntimeException e ) {
+            pending.completeExceptionally( e );
+            throw e;
+        } finally {
+            synchronized ( this ) {
+                loading.remove( key , pending );
+            }
+        }
+    }
+
+    /**
+     * Returns true if the atlas is cached or currently being decoded. Does not count as a hit or miss.
+     */
+    public synchronized boolean isCached( String ddsPath ) {
+        String key = key( ddsPath );
+        return atlases.containsKey( key ) || loading.containsKey( key );
+    }
+
+    /**
+     * Removes the atlas from the cache, for example once its .dds file changed. An atlas still being decoded is
+     * not cached once it is done, later lookups decode it again.
+     */
+    public synchronized void invalidate( String ddsPath ) {
+        String key = key( ddsPath );
+        DDSImage removed = atlases.remove( key );
+        loading.remove( key );
+
+        if ( removed != null )
+            size -= weight( removed );
+    }
+
+    /**
+     * Removes every atlas from the cache.
+     */
+    public synchronized void clear( ) {
+        atlases.clear( );
+        size = 0;
+    }
+
+    /**
+     * Returns the amount of raster bytes currently cached.
+     */
+    public synchronized long getSize( ) {
+        return size;
+    }
+
+    /**
+     * Returns how many times get() found the atlas cached or being decoded, including lookups that waited for
+     * another thread's decode.
+     */
+    public synchronized long getHits( ) {
+        return hits;
+    }
+
+    /**
+     * Returns how many times get() had to decode the atlas.
+     */
+    public synchronized long getMisses( ) {
+        return misses;
+    }
+
+    /**
+     * Adds the atlas, evicting the least recently used atlases until the cache fits within its capacity again.
+     */
+    private synchronized void put( String key , DDSImage image ) {
+        long weight = weight( image );
+
+        if ( weight > capacity )
+            return;
+
+        DDSImage previous = atlases.put( key , image );
+
+        if ( previous != null )
+            size -= weight( previous );
+
+        size += weight;
+
+        var iterator = atlases.entrySet( ).iterator( );
+        while ( size > capacity && iterator.hasNext( ) ) {
+            Map.Entry < String, DDSImage > eldest = iterator.next( );
+
+            if ( eldest.getValue( ) == image )
+                break;
+
+            size -= weight( eldest.getValue( ) );
+            iterator.remove( );
+        }
+    }
+
+    private static DDSImage await( CompletableFuture < DDSImage > pending ) throws IOException {
+        try {
+            return pending.join( );
+        } catch ( CompletionException e ) {
+            if ( e.getCause( ) instanceof IOException io )
+                throw io;
+            if ( e.getCause( ) instanceof UncheckedIOException unchecked )
+                throw unchecked.getCause( );
+
+            throw e;
+        }
+    }
+
+    private static long weight( DDSImage image ) {
+        return ( long ) image.getWidth( ) * image.getHeight( ) * Integer.BYTES;
+    }
+
+    private static String key( String ddsPath ) {
+        return ddsPath.replace( '\\' , '/' ).toLowerCase( Locale.ROOT );
+    }
+}
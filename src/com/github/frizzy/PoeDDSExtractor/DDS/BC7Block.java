@@ -0,0 +1,324 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.util.Arrays;
+
+/**
+ * Decodes BC7 blocks, the format most PoE textures are stored in.
+ * <br>
+ * A BC7 block is 128 bits holding one of eight modes. The mode decides how many subsets the block is split into,
+ * how the pixels are assigned to the subsets ( the partition ), the precision of the endpoints and of the indices,
+ * and whether alpha is stored separately. Every pixel is interpolated between the two endpoints of its subset.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+final class BC7Block {
+
+    /**
+     * Subsets, partition bits, rotation bits, index selection bits, color bits, alpha bits, per endpoint p-bits,
+     * shared p-bits, index bits and secondary index bits of each mode.
+     */
+    private static final int[][] MODES = {
+            { 3 , 4 , 0 , 0 , 4 , 0 , 1 , 0 , 3 , 0 } ,
+            { 2 , 6 , 0 , 0 , 6 , 0 , 0 , 1 , 3 , 0 } ,
+            { 3 , 6 , 0 , 0 , 5 , 0 , 0 , 0 , 2 , 0 } ,
+            { 2 , 6 , 0 , 0 , 7 , 0 , 1 , 0 , 2 , 0 } ,
+            { 1 , 0 , 2 , 1 , 5 , 6 , 0 , 0 , 2 , 3 } ,
+            { 1 , 0 , 2 , 0 , 7 , 8 , 0 , 0 , 2 , 2 } ,
+            { 1 , 0 , 0 , 0 , 7 , 7 , 1 , 0 , 4 , 0 } ,
+            { 2 , 6 , 0 , 0 , 5 , 5 , 1 , 0 , 2 , 0 }
+    };
+
+    /**
+     * Two subset partitions. Bit i is set if pixel i belongs to the second subset.
+     */
+    static final int[] PARTITIONS_2 = {
+            0xCCCC , 0x8888 , 0xEEEE , 0xECC8 , 0xC880 , 0xFEEC , 0xFEC8 , 0xEC80 ,
+            0xC800 , 0xFFEC , 0xFE80 , 0xE800 , 0xFFE8 , 0xFF00 , 0xFFF0 , 0xF000 ,
+            0xF710 , 0x008E , 0x7100 , 0x08CE , 0x008C , 0x7310 , 0x3100 , 0x8CCE ,
+            0x088C , 0x3110 , 0x6666 , 0x366C , 0x17E8 , 0x0FF0 , 0x718E , 0x399C ,
+            0xAAAA , 0xF0F0 , 0x5A5A , 0x33CC , 0x3C3C , 0x55AA , 0x9696 , 0xA55A ,
+            0x73CE , 0x13C8 , 0x324C , 0x3BDC , 0x6996 , 0xC33C , 0x9966 , 0x0660 ,
+            0x0272 , 0x04E4 , 0x4E40 , 0x2720 , 0xC936 , 0x936C , 0x39C6 , 0x639C ,
+            0x9336 , 0x9CC6 , 0x817E , 0xE718 , 0xCCF0 , 0x0FCC , 0x7744 , 0xEE22
+    };
+
+    /**
+     * Three subset partitions, one digit per pixel.
+     */
+    private static final String[] PARTITIONS_3_TABLE = {
+            "0011001102212222" , "0001001122112221" , "0000200122112211" , "0222002200110111" ,
+            "0000000011221122" , "0011001100220022" , "0022002211111111" , "0011001122112211" ,
+            "0000000011112222" , "0000111111112222" , "0000111122222222" , "0012001200120012" ,
+            "0112011201120112" , "0122012201220122" , "0011011211221222" , "0011200122002220" ,
+            "0001001101121122" , "0111001120012200" , "0000112211221122" , "0022002200221111" ,
+            "0111011102220222" , "0001000122212221" , "0000001101220122" , "0000110022102210" ,
+            "0122012200110000" , "0012001211222222" , "0110122112210110" , "0000011012211221" ,
+            "0022110211020022" , "0110011020022222" , "0011012201220011" , "0000200022112221" ,
+            "0000000211221222" , "0222002200120011" , "0011001200220222" , "0120012001200120" ,
+            "0000111122220000" , "0120120120120120" , "0120201212010120" , "0011220011220011" ,
+            "0011112222000011" , "0101010122222222" , "0000000021212121" , "0022112200221122" ,
+            "0022001100220011" , "0220122102201221" , "0101222222220101" , "0000212121212121" ,
+            "0101010101012222" , "0222011102220111" , "0002111200021112" , "0000211221122112" ,
+            "0222011101110222" , "0002111211120002" , "0110011001102222" , "0000000021122112" ,
+            "0110011022222222" , "0022001100110022" , "0022112211220022" , "0000000000002112" ,
+            "0002000100020001" , "0222122202221222" , "0101222222222222" , "0111201122012220"
+    };
+
+    static final byte[][] PARTITIONS_3 = new byte[ 64 ][ 16 ];
+
+    /**
+     * The anchor pixel of the second subset of two subset partitions.
+     */
+    static final int[] ANCHORS_2 = {
+            15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 ,
+            15 , 2 , 8 , 2 , 2 , 8 , 8 , 15 , 2 , 8 , 2 , 2 , 8 , 8 , 2 , 2 ,
+            15 , 15 , 6 , 8 , 2 , 8 , 15 , 15 , 2 , 8 , 2 , 2 , 2 , 15 , 15 , 6 ,
+            6 , 2 , 6 , 8 , 15 , 15 , 2 , 2 , 15 , 15 , 15 , 15 , 15 , 2 , 2 , 15
+    };
+
+    /**
+     * The anchor pixel of the second subset of three subset partitions.
+     */
+    static final int[] ANCHORS_3_SECOND = {
+            3 , 3 , 15 , 15 , 8 , 3 , 15 , 15 , 8 , 8 , 6 , 6 , 6 , 5 , 3 , 3 ,
+            3 , 3 , 8 , 15 , 3 , 3 , 6 , 10 , 5 , 8 , 8 , 6 , 8 , 5 , 15 , 15 ,
+            8 , 15 , 3 , 5 , 6 , 10 , 8 , 15 , 15 , 3 , 15 , 5 , 15 , 15 , 15 , 15 ,
+            3 , 15 , 5 , 5 , 5 , 8 , 5 , 10 , 5 , 10 , 8 , 13 , 15 , 12 , 3 , 3
+    };
+
+    /**
+     * The anchor pixel of the third subset of three subset partitions.
+     */
+    static final int[] ANCHORS_3_THIRD = {
+            15 , 8 , 8 , 3 , 15 , 15 , 3 , 8 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 8 ,
+            15 , 8 , 15 , 3 , 15 , 8 , 15 , 8 , 3 , 15 , 6 , 10 , 15 , 15 , 10 , 8 ,
+            15 , 3 , 15 , 10 , 10 , 8 , 9 , 10 , 6 , 15 , 8 , 15 , 3 , 6 , 6 , 8 ,
+            15 , 3 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 15 , 3 , 15 , 15 , 8
+    };
+
+    private static final int[][] WEIGHTS = {
+            null ,
+            null ,
+            { 0 , 21 , 43 , 64 } ,
+            { 0 , 9 , 18 , 27 , 37 , 46 , 55 , 64 } ,
+            { 0 , 4 , 9 , 13 , 17 , 21 , 26 , 30 , 34 , 38 , 43 , 47 , 51 , 55 , 60 , 64 }
+    };
+
+    static {
+        for ( int p = 0; p < 64; p++ ) {
+            for ( int i = 0; i < 16; i++ ) {
+                PARTITIONS_3[ p ][ i ] = ( byte ) ( PARTITIONS_3_TABLE[ p ].charAt( i ) - '0' );
+            }
+        }
+    }
+
+    private BC7Block( ) {
+
+    }
+
+    /**
+     * Decodes the block into 16 ARGB pixels. Blocks with an invalid mode decode to transparent black.
+     *
+     * @param lo  The low 64 bits of the block.
+     * @param hi  The high 64 bits of the block.
+     * @param out Receives the 16 pixels, row by row.
+     */
+    static void decode( long lo , long hi , int[] out ) {
+        int mode = Long.numberOfTrailingZeros( lo & 0xFF );
+
+        if ( mode > 7 ) {
+            Arrays.fill( out , 0 , 16 , 0 );
+            return;
+        }
+
+        int[] m = MODES[ mode ];
+        int subsets = m[ 0 ];
+        int colorBits = m[ 4 ];
+        int alphaBits = m[ 5 ];
+        int indexBits = m[ 8 ];
+        int secondaryBits = m[ 9 ];
+
+        int pos = mode + 1;
+        int partition = bits( lo , hi , pos , m[ 1 ] );
+        pos += m[ 1 ];
+        int rotation = bits( lo , hi , pos , m[ 2 ] );
+        pos += m[ 2 ];
+        int indexSelection = bits( lo , hi , pos , m[ 3 ] );
+        pos += m[ 3 ];
+
+        int endpoints = subsets * 2;
+        //Endpoint e channel c ( r, g, b, a ) is stored at e * 4 + c.
+        int[] ep = new int[ endpoints * 4 ];
+
+        for ( int c = 0; c < 3; c++ ) {
+            for ( int e = 0; e < endpoints; e++ ) {
+                ep[ e * 4 + c ] = bits( lo , hi , pos , colorBits );
+                pos += colorBits;
+            }
+        }
+
+        if ( alphaBits > 0 ) {
+            for ( int e = 0; e < endpoints; e++ ) {
+                ep[ e * 4 + 3 ] = bits( lo , hi , pos , alphaBits );
+                pos += alphaBits;
+            }
+        }
+
+        boolean hasPBits = m[ 6 ] > 0 || m[ 7 ] > 0;
+
+        if ( hasPBits ) {
+            for ( int e = 0; e < endpoints; e++ ) {
+                int pBit;
+
+                if ( m[ 6 ] > 0 ) {
+                    pBit = bits( lo , hi , pos++ , 1 );
+                } else {
+                    //Shared p-bits are stored once per subset.
+                    pBit = bits( lo , hi , pos + e / 2 , 1 );
+                }
+
+                for ( int c = 0; c < 4; c++ ) {
+                    ep[ e * 4 + c ] = ep[ e * 4 + c ] << 1 | pBit;
+                }
+            }
+
+            if ( m[ 7 ] > 0 )
+                pos += subsets;
+        }
+
+        int precision = colorBits + ( hasPBits ? 1 : 0 );
+        int alphaPrecision = alphaBits + ( hasPBits ? 1 : 0 );
+
+        for ( int e = 0; e < endpoints; e++ ) {
+            for ( int c = 0; c < 3; c++ ) {
+                ep[ e * 4 + c ] = expand( ep[ e * 4 + c ] , precision );
+            }
+
+            ep[ e * 4 + 3 ] = alphaBits == 0 ? 255 : expand( ep[ e * 4 + 3 ] , alphaPrecision );
+        }
+
+        int[] indices = new int[ 16 ];
+        for ( int i = 0; i < 16; i++ ) {
+            int n = isAnchor( subsets , partition , i ) ? indexBits - 1 : indexBits;
+            indices[ i ] = bits( lo , hi , pos , n );
+            pos += n;
+        }
+
+        int[] secondary = null;
+        if ( secondaryBits > 0 ) {
+            secondary = new int[ 16 ];
+            for ( int i = 0; i < 16; i++ ) {
+                int n = i == 0 ? secondaryBits - 1 : secondaryBits;
+                secondary[ i ] = bits( lo , hi , pos , n );
+                pos += n;
+            }
+        }
+
+        int[] colorIndices = indices;
+        int[] alphaIndices = secondary == null ? indices : secondary;
+        int[] colorWeights = WEIGHTS[ indexBits ];
+        int[] alphaWeights = secondary == null ? colorWeights : WEIGHTS[ secondaryBits ];
+
+        if ( indexSelection == 1 ) {
+            colorIndices = secondary;
+            alphaIndices = indices;
+            colorWeights = WEIGHTS[ secondaryBits ];
+            alphaWeights = WEIGHTS[ indexBits ];
+        }
+
+        for ( int i = 0; i < 16; i++ ) {
+            int subset = subset( subsets , partition , i );
+            int e0 = subset * 8;
+            int e1 = e0 + 4;
+
+            int cw = colorWeights[ colorIndices[ i ] ];
+            int aw = alphaWeights[ alphaIndices[ i ] ];
+
+            int r = interpolate( ep[ e0 ] , ep[ e1 ] , cw );
+            int g = interpolate( ep[ e0 + 1 ] , ep[ e1 + 1 ] , cw );
+            int b = interpolate( ep[ e0 + 2 ] , ep[ e1 + 2 ] , cw );
+            int a = interpolate( ep[ e0 + 3 ] , ep[ e1 + 3 ] , aw );
+
+            int swap;
+            switch ( rotation ) {
+                case 1 -> {
+                    swap = a;
+                    a = r;
+                    r = swap;
+                }
+                case 2 -> {
+                    swap = a;
+                    a = g;
+                    g = swap;
+                }
+                case 3 -> {
+                    swap = a;
+                    a = b;
+                    b = swap;
+                }
+                default -> {
+                }
+            }
+
+            out[ i ] = DDSDecoder.argb( a , r , g , b );
+        }
+    }
+
+    /**
+     * Returns the subset pixel i belongs to.
+     */
+    static int subset( int subsets , int partition , int i ) {
+        return switch ( subsets ) {
+            case 2 -> ( PARTITIONS_2[ partition ] >>> i ) & 1;
+            case 3 -> PARTITIONS_3[ partition ][ i ];
+            default -> 0;
+        };
+    }
+
+    /**
+     * Returns true if pixel i is the anchor of its subset. Anchor indices are stored with one bit less, since
+     * their highest bit is always 0.
+     */
+    static boolean isAnchor( int subsets , int partition , int i ) {
+        if ( i == 0 )
+            return true;
+
+        return switch ( subsets ) {
+            case 2 -> i == ANCHORS_2[ partition ];
+            case 3 -> i == ANCHORS_3_SECOND[ partition ] || i == ANCHORS_3_THIRD[ partition ];
+            default -> false;
+        };
+    }
+
+    /**
+     * Reads count bits starting at bit start of the 128 bit block.
+     */
+    private static int bits( long lo , long hi , int start , int count ) {
+        if ( count == 0 )
+            return 0;
+
+        long mask = ( 1L << count ) - 1;
+
+        if ( start >= 64 )
+            return ( int ) ( ( hi >>> ( start - 64 ) ) & mask );
+
+        if ( start + count <= 64 )
+            return ( int ) ( ( lo >>> start ) & mask );
+
+        return ( int ) ( ( ( lo >>> start ) | ( hi << ( 64 - start ) ) ) & mask );
+    }
+
+    /**
+     * Expands a value of the given precision to 8 bits by replicating its highest bits.
+     */
+    private static int expand( int value , int precision ) {
+        int v = value << ( 8 - precision );
+        return v | ( v >>> precision );
+    }
+
+    private static int interpolate( int e0 , int e1 , int weight ) {
+        return ( ( 64 - weight ) * e0 + weight * e1 + 32 ) >> 6;
+    }
+}
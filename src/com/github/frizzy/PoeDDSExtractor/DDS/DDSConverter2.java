@@ -1,24 +1,46 @@
 package com.github.frizzy.PoeDDSExtractor.DDS;
 
 import com.github.frizzy.PoeDDSExtractor.Command.CommandArg;
-import com.github.frizzy.PoeDDSExtractor.Command.CommandPair;
-import com.github.frizzy.PoeDDSExtractor.GGPKUtils;
-import org.apache.commons.exec.DefaultExecuteResultHandler;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolResult;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolRunner;
+import com.github.frizzy.PoeDDSExtractor.Metrics.ExtractionMetrics;
+import com.github.frizzy.PoeDDSExtractor.Metrics.Stage;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Converts .dds files to png using the Microsoft texconv.exe command line tool.
+ * <br>
+ * If texconv.exe is not available, for example when running on Linux, the .dds files are decoded by DDSDecoder
+ * and written with PngEncoder instead.
+ * <br>
+ * texconv.exe takes many files in one invocation, so a list of .dds files is converted in batches of limited size,
+ * see convertAsync(), one process per batch and up to getParallelism() batches at once. texconv.exe writes every
+ * file of a batch into one directory, and files from different directories often share a name, such as 1.dds.
+ * Those are linked into a temporary directory under unique names, converted there, and the .png files moved next
+ * to their .dds files afterwards.
  *
  * @author Frizzy
  * @version 0.0.2
@@ -47,7 +69,61 @@ public class DDSConverter2 {
      * <br>
      * This can improve performance when restarting the conversion process.
      */
-    private boolean overwrite;
+    private volatile boolean overwrite;
+
+    /**
+     * Registry the conversions report into.
+     */
+    private volatile ExtractionMetrics metrics = ExtractionMetrics.getDefault( );
+
+    /**
+     * Runs texconv.exe, bounding how many of its processes run at once.
+     */
+    private volatile ToolRunner toolRunner = ToolRunner.getDefault( );
+
+    /**
+     * Writes the .png files when texconv.exe is not available.
+     */
+    private volatile PngEncoder pngEncoder = PngEncoder.getDefault( );
+
+    /**
+     * The most .dds files given to one texconv.exe process.
+     */
+    static final int BATCH_SIZE = 64;
+
+    /**
+     * Batches are kept below this many characters of file paths, Windows limits a command line to 32767.
+     */
+    static final int MAX_COMMAND_LENGTH = 30000;
+
+    /**
+     * A batch is closed once its .dds files add up to this many bytes, a 4K BC7 atlas being 16 MB.
+     */
+    static final long MAX_BATCH_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The most batches, or files without texconv.exe, converted at once.
+     */
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Progress of a conversion started by convertAsync().
+     *
+     * @param converted  Files converted so far.
+     * @param failed     Files that could not be converted.
+     * @param total      Files being converted, not counting files skipped because their .png file exists.
+     * @param bytesDone  Size of the .dds files done so far.
+     * @param bytesTotal Size of all .dds files being converted.
+     */
+    public record Progress( int converted , int failed , int total , long bytesDone , long bytesTotal ) {
+
+        /**
+         * Returns the done fraction of the bytes being converted, from 0 to 1.
+         */
+        public double getFraction ( ) {
+            return bytesTotal == 0 ? ( double ) ( converted + failed ) / total : ( double ) bytesDone / bytesTotal;
+        }
+    }
 
     /**
      * Creates the DDSConverter instance with the path to the convert.bat file, texconv.exe file, and if
@@ -74,60 +150,372 @@ public class DDSConverter2 {
         this.overwrite = overwrite;
     }
 
+    /**
+     * Sets the registry the conversions report into, instead of the default registry.
+     */
+    public void setMetrics ( ExtractionMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the runner texconv.exe is run by, instead of the default runner.
+     */
+    public void setToolRunner ( ToolRunner toolRunner ) {
+        this.toolRunner = toolRunner;
+    }
+
+    /**
+     * Sets the encoder the .png files are written with when texconv.exe is not available.
+     */
+    public void setPngEncoder ( PngEncoder pngEncoder ) {
+        this.pngEncoder = pngEncoder;
+    }
+
+    /**
+     * Sets how many batches, or files without texconv.exe, are converted at once. Defaults to one per available
+     * processor. With texconv.exe, the ToolRunner may bound the amount of processes further.
+     * <br>
+     * Only affects conversions started after the call.
+     */
+    public void setParallelism ( int parallelism ) {
+        if ( parallelism < 1 )
+            throw new IllegalArgumentException( "parallelism must be at least 1." );
+
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism ( ) {
+        return parallelism;
+    }
+
     /**
      * Converts the supplied .dds files to .png files, and then returns them with the
-     * png file reference added. The .bat file used to run the commands
-     * in texconv.exe should preserve color accuracy.
+     * png file reference added.
+     * <br>
+     * Blocks until every file is converted, see convertAsync(). If the calling thread is interrupted, the
+     * conversion is cancelled.
      */
     public List < DDSFile > convert ( List < DDSFile > ddsFiles ) {
-        //The directory that convert.bat and texconv.exe will be copied to.
+        CompletableFuture < List < DDSFile > > future = convertAsync( ddsFiles, null );
+
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            future.cancel( true );
+            Thread.currentThread().interrupt();
+            LOGGER.log( Level.WARNING, "Interrupted while converting, the remaining files were cancelled." );
+        } catch ( ExecutionException e ) {
+            LOGGER.log( Level.SEVERE, e.getMessage(), e.getCause() );
+        }
+
+        return ddsFiles;
+    }
+
+    /**
+     * Converts the supplied .dds files to .png files on a pool of getParallelism() threads. The returned future
+     * completes with the supplied list once every file is done, files that failed are logged and have no png file
+     * reference.
+     * <br>
+     * The files are sorted by size, largest first. With texconv.exe they are converted in batches of up to
+     * BATCH_SIZE files, a batch being closed early once it holds MAX_BATCH_BYTES, so the 4K atlases are spread over
+     * many small batches started first, instead of a few of them holding up the end of the conversion. Each batch
+     * reports into the metrics as one sample. Without texconv.exe, every file is decoded on its own.
+     * <br>
+     * Cancelling the future stops batches from being started, and destroys the running texconv.exe processes.
+     *
+     * @param ddsFiles   The .dds files to convert.
+     * @param onProgress Receives the progress each time a batch or file is done, on the converting thread. Can be
+     *                   null.
+     */
+    public CompletableFuture < List < DDSFile > > convertAsync ( List < DDSFile > ddsFiles , Consumer < Progress > onProgress ) {
+        Map < DDSFile, Long > sizes = new HashMap <>( );
 
         for ( DDSFile ddsFile : ddsFiles ) {
-            Path ref = ddsFile.getDiskPath();
+            if ( needsConversion( ddsFile ) )
+                sizes.put( ddsFile, size( ddsFile.getDiskPath() ) );
+        }
 
-            if ( ref.getFileName().toString().endsWith( ".dds" ) ) {
-                Path pngFile = Path.of ( ref.toAbsolutePath().toString().replace( ".dds", ".png" ) );
+        if ( sizes.isEmpty( ) )
+            return CompletableFuture.completedFuture( ddsFiles );
 
-                if ( ( Files.exists( pngFile ) && overwrite ) || !Files.exists( pngFile ) ) {
+        List < DDSFile > pending = ddsFiles.stream().filter( sizes::containsKey ).distinct()
+                .sorted( Comparator.comparingLong( ( DDSFile f ) -> sizes.get( f ) ).reversed() ).toList();
+        boolean texConv = isTexConvAvailable( );
+        List < List < DDSFile > > tasks = texConv
+                ? ToolRunner.batch( pending, getBatchSize( pending ), MAX_BATCH_BYTES, sizes::get )
+                : pending.stream().map( List::of ).toList();
 
-                    try {
-                        Optional < Path > opt = executeConvert( ref );
+        ProgressCounter counter = new ProgressCounter( pending.size(), sizes.values().stream().mapToLong( Long::longValue ).sum(), onProgress );
+        CompletableFuture < List < DDSFile > > result = new CompletableFuture <>( );
+        AtomicInteger remaining = new AtomicInteger( tasks.size() );
+        ExecutorService pool = Executors.newFixedThreadPool( Math.min( tasks.size(), parallelism ), threads( ) );
+        List < Future < ? > > futures = new ArrayList <>( tasks.size() );
 
-                        if ( opt.isPresent() ) {
-                            ddsFile.setPNGPath( opt.get() );
-                        } else {
-                            LOGGER.log( Level.WARNING, "No png file was returned." );
-                        }
-                    } catch ( IOException e ) {
-                        LOGGER.log( Level.SEVERE, e.getMessage(), e );
-                    }
+        for ( List < DDSFile > task : tasks ) {
+            futures.add( pool.submit( ( ) -> {
+                try {
+                    if ( result.isDone( ) )
+                        return;
+
+                    int converted = texConv ? convertBatch( task ) : convertNative( task.get( 0 ) ) ? 1 : 0;
+                    counter.done( converted, task.size() - converted, task.stream().mapToLong( sizes::get ).sum() );
+                } catch ( RuntimeException e ) {
+                    result.completeExceptionally( e );
+                } finally {
+                    if ( remaining.decrementAndGet() == 0 )
+                        result.complete( ddsFiles );
                 }
+            } ) );
+        }
+
+        result.whenComplete( ( files, error ) -> {
+            if ( result.isCancelled( ) ) {
+                LOGGER.log( Level.INFO, "Conversion was cancelled, the remaining files were not converted." );
+
+                for ( Future < ? > future : futures ) {
+                    future.cancel( true );
+                }
+            }
+
+            pool.shutdownNow();
+        } );
+
+        return result;
+    }
+
+    /**
+     * Converts a single .dds file to a .png file, and returns it with the png file reference added.
+     * <br>
+     * Each conversion runs in its own texconv.exe process, so this can be called from several threads at once.
+     */
+    public DDSFile convert ( DDSFile ddsFile ) {
+        if ( needsConversion( ddsFile ) ) {
+            if ( isTexConvAvailable( ) ) {
+                convertBatch( List.of( ddsFile ) );
+            } else {
+                convertNative( ddsFile );
             }
         }
 
-        return ddsFiles;
+        return ddsFile;
     }
 
     /**
-     * Executes the convert.bat file to convert .dds files within its location.
+     * Returns true if the file is a .dds file, and its .png file does not exist yet or should be overwritten.
+     */
+    private boolean needsConversion ( DDSFile ddsFile ) {
+        Path ref = ddsFile.getDiskPath();
+
+        return ref.getFileName().toString().endsWith( ".dds" ) && ( overwrite || !Files.exists( getPNGFile( ref ) ) );
+    }
+
+    /**
+     * Returns true if texconv.exe can be used for the conversion.
+     */
+    private boolean isTexConvAvailable ( ) {
+        return texConvPath != null && Files.exists( texConvPath )
+                && System.getProperty( "os.name" ).toLowerCase().contains( "windows" );
+    }
+
+    /**
+     * Returns the amount of files per batch, so the paths of a full batch fit on one command line.
+     */
+    private static int getBatchSize ( List < DDSFile > ddsFiles ) {
+        int longest = 1;
+
+        for ( DDSFile ddsFile : ddsFiles ) {
+            longest = Math.max( longest, ddsFile.getDiskPath().toAbsolutePath().toString().length() + 3 );
+        }
+
+        return Math.max( 1, Math.min( BATCH_SIZE, MAX_COMMAND_LENGTH / longest ) );
+    }
+
+    private static Path getPNGFile ( Path ddsFile ) {
+        return ddsFile.toAbsolutePath().resolveSibling( ddsFile.getFileName().toString().replace( ".dds", ".png" ) );
+    }
+
+    /**
+     * Decodes the .dds file with DDSDecoder and writes it to the .png file.
+     */
+    private boolean convertNative ( DDSFile ddsFile ) {
+        Path ref = ddsFile.getDiskPath();
+        Path pngFile = getPNGFile( ref );
+
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.DDS_CONVERT ) ) {
+            try {
+                timer.read( Files.size( ref ) );
+                DDSImage image = DDSDecoder.decode( ref );
+
+                timer.written( pngEncoder.write( image, pngFile ) );
+                LOGGER.log( Level.INFO, "Converted " + ref + " to " + pngFile + "." );
+                ddsFile.setPNGPath( pngFile );
+                return true;
+            } catch ( IOException e ) {
+                timer.failed( );
+                LOGGER.log( Level.SEVERE, e.getMessage(), e );
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the batch with one texconv.exe process.
      * <br>
-     * Returns the created .png file.
+     * If every file is in the same directory, texconv.exe writes the .png files next to them. Otherwise the files
+     * are linked into a temporary directory, prefixed by their index in the batch so names can not collide, and the
+     * .png files are moved next to their .dds files once texconv.exe exits.
+     *
+     * @return The amount of files converted.
+     */
+    private int convertBatch ( List < DDSFile > batch ) {
+        Path directory = batch.get( 0 ).getDiskPath().toAbsolutePath().getParent();
+        boolean sameDirectory = batch.stream().allMatch( f -> f.getDiskPath().toAbsolutePath().getParent().equals( directory ) );
+        Path outLocation = directory;
+        int done = 0;
+
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.DDS_CONVERT ) ) {
+            try {
+                if ( !sameDirectory )
+                    outLocation = Files.createTempDirectory( directory, "texconv" );
+
+                List < CommandArg < String, Boolean > > args = new ArrayList <>( List.of(
+                        new CommandArg <>( "-srgb", false ), new CommandArg <>( "-ft", false ), new CommandArg <>( "png", false ),
+                        new CommandArg <>( "-f", false ), new CommandArg <>( "R8G8B8A8_UNORM_SRGB", false ),
+                        new CommandArg <>( "-y", false ), new CommandArg <>( "-o", false ),
+                        new CommandArg <>( outLocation.toString(), true ) ) );
+
+                for ( int i = 0; i < batch.size(); i++ ) {
+                    Path ref = batch.get( i ).getDiskPath().toAbsolutePath();
+                    timer.read( Files.size( ref ) );
+
+                    if ( !sameDirectory )
+                        ref = stage( ref, outLocation.resolve( i + "_" + ref.getFileName() ) );
+
+                    args.add( new CommandArg <>( ref.toString(), true ) );
+                }
+
+                ToolResult result = toolRunner.run( texConvPath, line -> LOGGER.log( Level.FINE, line ), args );
+
+                if ( !result.isSuccess() )
+                    LOGGER.log( Level.WARNING, "texconv.exe exited with " + result.exitValue() + ", some .dds files of the batch may not have been converted." );
+
+                for ( int i = 0; i < batch.size(); i++ ) {
+                    DDSFile ddsFile = batch.get( i );
+                    Path pngFile = getPNGFile( ddsFile.getDiskPath() );
+                    Path converted = outLocation.resolve( sameDirectory ? pngFile.getFileName().toString() : i + "_" + pngFile.getFileName() );
+
+                    if ( Files.exists( converted ) ) {
+                        if ( !sameDirectory )
+                            Files.move( converted, pngFile, StandardCopyOption.REPLACE_EXISTING );
+
+                        ddsFile.setPNGPath( pngFile );
+                        timer.written( Files.size( pngFile ) );
+                        done++;
+                    } else {
+                        timer.failed( );
+                        LOGGER.log( Level.WARNING, "No png file was returned for " + ddsFile.getDiskPath() + "." );
+                    }
+                }
+            } catch ( InterruptedIOException e ) {
+                timer.failed( );
+                LOGGER.log( Level.INFO, e.getMessage() );
+            } catch ( IOException e ) {
+                timer.failed( );
+                LOGGER.log( Level.SEVERE, e.getMessage(), e );
+            } finally {
+                if ( !sameDirectory && !outLocation.equals( directory ) )
+                    delete( outLocation );
+            }
+        }
+
+        return done;
+    }
+
+    /**
+     * Hard links the .dds file into the temporary directory, copying it if the file system does not support links.
      */
-    private Optional < Path > executeConvert ( Path ddsFile ) throws IOException {
-        Path outLocation = ddsFile.getParent();
-        String command = "\"\"" + ddsFile + "\"\" -srgb -ft png -f R8G8B8A8_UNORM_SRGB " + "-y -o \"\"" + outLocation + "\"\"";
+    private static Path stage ( Path ddsFile , Path staged ) throws IOException {
+        try {
+            return Files.createLink( staged, ddsFile );
+        } catch ( IOException | UnsupportedOperationException e ) {
+            return Files.copy( ddsFile, staged );
+        }
+    }
 
-        CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > cPair = GGPKUtils.runCommandLine(
-                texConvPath , new CommandArg <>( command, false ) );
+    /**
+     * Deletes the temporary directory and anything texconv.exe left in it.
+     */
+    private static void delete ( Path directory ) {
+        try ( Stream < Path > paths = Files.walk( directory ) ) {
+            for ( Path p : paths.sorted( Comparator.reverseOrder() ).toList() ) {
+                Files.deleteIfExists( p );
+            }
+        } catch ( IOException e ) {
+            LOGGER.log( Level.WARNING, "Temporary directory " + directory + " could not be deleted.", e );
+        }
+    }
 
-        int exitCode = cPair.rh.getExitValue();
-        LOGGER.log( Level.INFO, cPair.bs.toString() );
+    /**
+     * Returns the size of the file, or 0 if it can not be read, leaving the error to the conversion.
+     */
+    private static long size ( Path file ) {
+        try {
+            return Files.size( file );
+        } catch ( IOException e ) {
+            return 0;
+        }
+    }
+
+    private static ThreadFactory threads ( ) {
+        AtomicInteger count = new AtomicInteger( );
+
+        return runnable -> {
+            Thread thread = new Thread( runnable, "dds-convert-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+
+    /**
+     * Counts the finished files of one convertAsync() call and passes the progress on.
+     */
+    private static final class ProgressCounter {
+
+        private final int total;
 
-        if ( exitCode == 0 ) {
-            String name = ddsFile.getFileName().toString().replace( ".dds", ".png" );
-            return Optional.of( Path.of ( ddsFile.getParent() + File.separator + name ) );
+        private final long bytesTotal;
+
+        private final Consumer < Progress > onProgress;
+
+        private int converted;
+
+        private int failed;
+
+        private long bytesDone;
+
+        ProgressCounter ( int total , long bytesTotal , Consumer < Progress > onProgress ) {
+            this.total = total;
+            this.bytesTotal = bytesTotal;
+            this.onProgress = onProgress;
         }
 
-        return Optional.empty();
+        /**
+         * Adds a finished batch. Synchronized so the listener sees the progress in order.
+         */
+        synchronized void done ( int converted , int failed , long bytes ) {
+            this.converted += converted;
+            this.failed += failed;
+            this.bytesDone += bytes;
+
+            if ( onProgress == null )
+                return;
+
+            try {
+                onProgress.accept( new Progress( this.converted, this.failed, total, bytesDone, bytesTotal ) );
+            } catch ( RuntimeException e ) {
+                LOGGER.log( Level.WARNING, "Progress listener failed.", e );
+            }
+        }
     }
 }
@@ -0,0 +1,483 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes .dds files straight into an ARGB raster, replacing the texconv.exe conversion to .png.
+ * <br>
+ * Supports the block compressed formats PoE uses ( BC1, BC2, BC3, BC4, BC5 and BC7, through either a legacy
+ * FourCC or a DX10 header ) as well as uncompressed RGB and RGBA pixel formats. Only the top mip level of the
+ * first surface is decoded.
+ * <br>
+ * Block compressed images are stored as 4x4 pixel blocks, row by row. Each block is decoded on its own into 16
+ * pixels, which are then copied into the raster.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class DDSDecoder {
+
+    /**
+     * "DDS " at the start of every .dds file.
+     */
+    static final int MAGIC = 0x20534444;
+
+    /**
+     * Size of the magic and DDS_HEADER.
+     */
+    static final int HEADER_SIZE = 128;
+
+    /**
+     * Size of the DDS_HEADER_DXT10 following the DDS_HEADER when the FourCC is "DX10".
+     */
+    static final int DX10_HEADER_SIZE = 20;
+
+    private static final int DDPF_ALPHAPIXELS = 0x1;
+    private static final int DDPF_ALPHA = 0x2;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDPF_RGB = 0x40;
+    private static final int DDPF_LUMINANCE = 0x20000;
+
+    /**
+     * The pixel formats the decoder understands.
+     */
+    public enum Format {
+        BC1( 8 ), BC2( 16 ), BC3( 16 ), BC4( 8 ), BC4S( 8 ), BC5( 16 ), BC5S( 16 ), BC7( 16 ), UNCOMPRESSED( 0 );
+
+        /**
+         * Bytes per 4x4 block, 0 for uncompressed formats.
+         */
+        final int blockSize;
+
+        Format( int blockSize ) {
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Returns true if the format is stored in 4x4 blocks.
+         */
+        public boolean isBlockCompressed( ) {
+            return blockSize > 0;
+        }
+    }
+
+    /**
+     * The parts of the .dds header needed to decode the image.
+     *
+     * @param width      The width of the top mip level.
+     * @param height     The height of the top mip level.
+     * @param format     The pixel format.
+     * @param dataOffset The offset of the pixel data from the start of the file.
+     * @param bitCount   Bits per pixel of uncompressed formats.
+     * @param masks      Red, green, blue and alpha masks of uncompressed formats.
+     */
+    public record DDSHeader( int width , int height , Format format , int dataOffset , int bitCount , int[] masks ) {
+
+        /**
+         * Returns the number of 4x4 blocks per row.
+         */
+        public int blocksWide( ) {
+            return ( width + 3 ) / 4;
+        }
+
+        /**
+         * Returns the number of 4x4 block rows.
+         */
+        public int blocksHigh( ) {
+            return ( height + 3 ) / 4;
+        }
+    }
+
+    private DDSDecoder( ) {
+
+    }
+
+    /**
+     * Maps the .dds file and decodes it.
+     */
+    public static DDSImage decode( Path ddsFile ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( ddsFile , StandardOpenOption.READ ) ) {
+            return decode( channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ) );
+        }
+    }
+
+    /**
+     * Decodes the .dds file held in the buffer. The buffer is read from its position, which is left unchanged.
+     */
+    public static DDSImage decode( ByteBuffer dds ) throws IOException {
+        ByteBuffer data = dds.slice( ).order( ByteOrder.LITTLE_ENDIAN );
+        DDSHeader header = readHeader( data );
+
+        return decodeRegion( data , header , 0 , 0 , header.width( ) , header.height( ) );
+    }
+
+    /**
+     * Maps the .dds file and decodes only the requested areas, see decodeRegions( ByteBuffer , List ).
+     */
+    public static List < DDSImage > decodeRegions( Path ddsFile , List < int[] > regions ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( ddsFile , StandardOpenOption.READ ) ) {
+            return decodeRegions( channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ) , regions );
+        }
+    }
+
+    /**
+     * Decodes only the requested areas of the .dds file held in the buffer, returning one image per area.
+     * <br>
+     * Only the 4x4 blocks intersecting an area are decompressed, so the work and memory needed scale with the
+     * requested area instead of the size of the whole atlas. When the buffer is mapped, the blocks outside of the
+     * areas are never even read from disk.
+     *
+     * @param dds     The .dds file. Read from its position, which is left unchanged.
+     * @param regions The areas as x, y, width and height, the layout of Texture.coordinates().
+     * @throws IllegalArgumentException If an area is outside of the image.
+     */
+    public static List < DDSImage > decodeRegions( ByteBuffer dds , List < int[] > regions ) throws IOException {
+        ByteBuffer data = dds.slice( ).order( ByteOrder.LITTLE_ENDIAN );
+        DDSHeader header = readHeader( data );
+        List < DDSImage > images = new ArrayList <>( regions.size( ) );
+
+        for ( int[] region : regions ) {
+            images.add( decodeRegion( data , header , region[ 0 ] , region[ 1 ] , region[ 2 ] , region[ 3 ] ) );
+        }
+
+        return images;
+    }
+
+    /**
+     * Decodes one area of the image.
+     *
+     * @param data   The .dds file, starting at position 0.
+     * @param header The header read from data.
+     * @throws IllegalArgumentException If the area is outside of the image.
+     */
+    static DDSImage decodeRegion( ByteBuffer data , DDSHeader header , int x , int y , int w , int h ) throws IOException {
+        if ( x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > header.width( ) || y + h > header.height( ) )
+            throw new IllegalArgumentException( "Area " + x + "," + y + " " + w + "x" + h + " is outside of the "
+                    + header.width( ) + "x" + header.height( ) + " image." );
+
+        int[] argb = new int[ w * h ];
+
+        if ( header.format( ).isBlockCompressed( ) ) {
+            requireData( data , header , ( long ) header.blocksWide( ) * header.blocksHigh( ) * header.format( ).blockSize );
+            int[] block = new int[ 16 ];
+
+            for ( int by = y / 4; by <= ( y + h - 1 ) / 4; by++ ) {
+                for ( int bx = x / 4; bx <= ( x + w - 1 ) / 4; bx++ ) {
+                    int offset = header.dataOffset( ) + ( by * header.blocksWide( ) + bx ) * header.format( ).blockSize;
+                    decodeBlock( header.format( ) , data , offset , block );
+                    copyBlock( block , bx * 4 - x , by * 4 - y , argb , w , h );
+                }
+            }
+        } else {
+            decodeUncompressed( data , header , x , y , w , h , argb );
+        }
+
+        return new DDSImage( w , h , argb );
+    }
+
+    /**
+     * Reads the header of the .dds file held in the buffer, from position 0 of the buffer.
+     */
+    public static DDSHeader readHeader( ByteBuffer data ) throws IOException {
+        ByteBuffer dds = data.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+
+        if ( dds.limit( ) < HEADER_SIZE || dds.getInt( 0 ) != MAGIC )
+            throw new IOException( "Not a .dds file, the DDS magic is missing." );
+
+        int height = dds.getInt( 12 );
+        int width = dds.getInt( 16 );
+        int pixelFlags = dds.getInt( 80 );
+        int fourCC = dds.getInt( 84 );
+        int bitCount = dds.getInt( 88 );
+        int[] masks = { dds.getInt( 92 ) , dds.getInt( 96 ) , dds.getInt( 100 ) , dds.getInt( 104 ) };
+
+        if ( width <= 0 || height <= 0 )
+            throw new IOException( "Invalid .dds dimensions " + width + "x" + height );
+
+        if ( ( pixelFlags & DDPF_FOURCC ) != 0 ) {
+            if ( fourCC == fourCC( "DX10" ) ) {
+                if ( dds.limit( ) < HEADER_SIZE + DX10_HEADER_SIZE )
+                    throw new IOException( ".dds file ends inside of the DX10 header." );
+
+                int dxgi = dds.getInt( HEADER_SIZE );
+                return dxgiHeader( width , height , dxgi );
+            }
+
+            Format format = fourCCFormat( fourCC );
+            return new DDSHeader( width , height , format , HEADER_SIZE , 0 , masks );
+        }
+
+        if ( ( pixelFlags & ( DDPF_RGB | DDPF_LUMINANCE | DDPF_ALPHA ) ) != 0 ) {
+            if ( bitCount != 8 && bitCount != 16 && bitCount != 24 && bitCount != 32 )
+                throw new IOException( "Unsupported uncompressed bit count " + bitCount );
+
+            if ( ( pixelFlags & DDPF_ALPHAPIXELS ) == 0 && ( pixelFlags & DDPF_ALPHA ) == 0 )
+                masks[ 3 ] = 0;
+
+            if ( ( pixelFlags & DDPF_LUMINANCE ) != 0 ) {
+                masks[ 1 ] = masks[ 0 ];
+                masks[ 2 ] = masks[ 0 ];
+            } else if ( ( pixelFlags & DDPF_ALPHA ) != 0 && ( pixelFlags & DDPF_RGB ) == 0 ) {
+                masks[ 0 ] = 0;
+                masks[ 1 ] = 0;
+                masks[ 2 ] = 0;
+            }
+
+            return new DDSHeader( width , height , Format.UNCOMPRESSED , HEADER_SIZE , bitCount , masks );
+        }
+
+        throw new IOException( "Unsupported .dds pixel format flags 0x" + Integer.toHexString( pixelFlags ) );
+    }
+
+    /**
+     * Decodes one 4x4 block into 16 ARGB pixels.
+     *
+     * @param format The block compressed format.
+     * @param data   The .dds file.
+     * @param offset Offset of the block within data.
+     * @param out    Receives the 16 pixels, row by row.
+     */
+    static void decodeBlock( Format format , ByteBuffer data , int offset , int[] out ) {
+        switch ( format ) {
+            case BC1 -> decodeColor( data , offset , out , true );
+            case BC2 -> {
+                decodeColor( data , offset + 8 , out , false );
+                long alpha = data.getLong( offset );
+                for ( int i = 0; i < 16; i++ ) {
+                    int a = ( int ) ( ( alpha >>> ( i * 4 ) ) & 0xF );
+                    out[ i ] = ( out[ i ] & 0x00FFFFFF ) | ( a * 17 ) << 24;
+                }
+            }
+            case BC3 -> {
+                decodeColor( data , offset + 8 , out , false );
+                int[] alpha = new int[ 16 ];
+                decodeChannel( data , offset , alpha , false );
+                for ( int i = 0; i < 16; i++ ) {
+                    out[ i ] = ( out[ i ] & 0x00FFFFFF ) | alpha[ i ] << 24;
+                }
+            }
+            case BC4 , BC4S -> {
+                int[] red = new int[ 16 ];
+                decodeChannel( data , offset , red , format == Format.BC4S );
+                for ( int i = 0; i < 16; i++ ) {
+                    out[ i ] = 0xFF000000 | red[ i ] << 16 | red[ i ] << 8 | red[ i ];
+                }
+            }
+            case BC5 , BC5S -> {
+                int[] red = new int[ 16 ];
+                int[] green = new int[ 16 ];
+                decodeChannel( data , offset , red , format == Format.BC5S );
+                decodeChannel( data , offset + 8 , green , format == Format.BC5S );
+                for ( int i = 0; i < 16; i++ ) {
+                    out[ i ] = 0xFF000000 | red[ i ] << 16 | green[ i ] << 8;
+                }
+            }
+            case BC7 -> BC7Block.decode( data.getLong( offset ) , data.getLong( offset + 8 ) , out );
+            default -> throw new IllegalArgumentException( format + " is not block compressed." );
+        }
+    }
+
+    /**
+     * Decodes a BC1 color block. BC2 and BC3 color blocks always use four colors, while BC1 blocks use three
+     * colors and transparent black when the first endpoint is not greater than the second.
+     */
+    private static void decodeColor( ByteBuffer data , int offset , int[] out , boolean bc1 ) {
+        int c0 = data.getShort( offset ) & 0xFFFF;
+        int c1 = data.getShort( offset + 2 ) & 0xFFFF;
+        int indices = data.getInt( offset + 4 );
+
+        int r0 = expand5( c0 >>> 11 ), g0 = expand6( ( c0 >>> 5 ) & 0x3F ), b0 = expand5( c0 & 0x1F );
+        int r1 = expand5( c1 >>> 11 ), g1 = expand6( ( c1 >>> 5 ) & 0x3F ), b1 = expand5( c1 & 0x1F );
+
+        int[] palette = new int[ 4 ];
+        palette[ 0 ] = argb( 255 , r0 , g0 , b0 );
+        palette[ 1 ] = argb( 255 , r1 , g1 , b1 );
+
+        if ( c0 > c1 || !bc1 ) {
+            palette[ 2 ] = argb( 255 , ( 2 * r0 + r1 + 1 ) / 3 , ( 2 * g0 + g1 + 1 ) / 3 , ( 2 * b0 + b1 + 1 ) / 3 );
+            palette[ 3 ] = argb( 255 , ( r0 + 2 * r1 + 1 ) / 3 , ( g0 + 2 * g1 + 1 ) / 3 , ( b0 + 2 * b1 + 1 ) / 3 );
+        } else {
+            palette[ 2 ] = argb( 255 , ( r0 + r1 ) / 2 , ( g0 + g1 ) / 2 , ( b0 + b1 ) / 2 );
+            palette[ 3 ] = 0;
+        }
+
+        for ( int i = 0; i < 16; i++ ) {
+            out[ i ] = palette[ ( indices >>> ( i * 2 ) ) & 0x3 ];
+        }
+    }
+
+    /**
+     * Decodes a single channel block, used for BC3 alpha and BC4/BC5 channels, into values from 0 to 255.
+     */
+    private static void decodeChannel( ByteBuffer data , int offset , int[] out , boolean signed ) {
+        int e0 = signed ? Math.max( data.get( offset ) , -127 ) : data.get( offset ) & 0xFF;
+        int e1 = signed ? Math.max( data.get( offset + 1 ) , -127 ) : data.get( offset + 1 ) & 0xFF;
+
+        long indices = 0;
+        for ( int i = 0; i < 6; i++ ) {
+            indices |= ( data.get( offset + 2 + i ) & 0xFFL ) << ( i * 8 );
+        }
+
+        int[] palette = new int[ 8 ];
+        palette[ 0 ] = e0;
+        palette[ 1 ] = e1;
+
+        if ( e0 > e1 ) {
+            for ( int i = 1; i < 7; i++ ) {
+                palette[ i + 1 ] = ( ( 7 - i ) * e0 + i * e1 + 3 ) / 7;
+            }
+        } else {
+            for ( int i = 1; i < 5; i++ ) {
+                palette[ i + 1 ] = ( ( 5 - i ) * e0 + i * e1 + 2 ) / 5;
+            }
+            palette[ 6 ] = signed ? -127 : 0;
+            palette[ 7 ] = signed ? 127 : 255;
+        }
+
+        for ( int i = 0; i < 16; i++ ) {
+            int value = palette[ ( int ) ( ( indices >>> ( i * 3 ) ) & 0x7 ) ];
+            //Signed channels go from -127 to 127, shift them into 0 to 255 like the unsigned ones.
+            out[ i ] = signed ? ( ( value + 127 ) * 255 + 127 ) / 254 : value;
+        }
+    }
+
+    /**
+     * Decodes an area of an uncompressed image by applying the channel masks to every pixel.
+     */
+    private static void decodeUncompressed( ByteBuffer data , DDSHeader header , int x0 , int y0 , int w , int h ,
+                                            int[] argb ) throws IOException {
+        int bytesPerPixel = header.bitCount( ) / 8;
+        int pitch = header.width( ) * bytesPerPixel;
+        requireData( data , header , ( long ) pitch * header.height( ) );
+
+        int[] masks = header.masks( );
+        int[] shifts = new int[ 4 ];
+        int[] maxima = new int[ 4 ];
+
+        for ( int c = 0; c < 4; c++ ) {
+            shifts[ c ] = masks[ c ] == 0 ? 0 : Integer.numberOfTrailingZeros( masks[ c ] );
+            maxima[ c ] = masks[ c ] == 0 ? 0 : masks[ c ] >>> shifts[ c ];
+        }
+
+        for ( int y = 0; y < h; y++ ) {
+            int row = header.dataOffset( ) + ( y0 + y ) * pitch;
+
+            for ( int x = 0; x < w; x++ ) {
+                int p = row + ( x0 + x ) * bytesPerPixel;
+                int value = 0;
+
+                for ( int b = 0; b < bytesPerPixel; b++ ) {
+                    value |= ( data.get( p + b ) & 0xFF ) << ( b * 8 );
+                }
+
+                int a = masks[ 3 ] == 0 ? 255 : scale( ( value & masks[ 3 ] ) >>> shifts[ 3 ] , maxima[ 3 ] );
+                int r = scale( ( value & masks[ 0 ] ) >>> shifts[ 0 ] , maxima[ 0 ] );
+                int g = scale( ( value & masks[ 1 ] ) >>> shifts[ 1 ] , maxima[ 1 ] );
+                int bl = scale( ( value & masks[ 2 ] ) >>> shifts[ 2 ] , maxima[ 2 ] );
+
+                argb[ y * w + x ] = argb( a , r , g , bl );
+            }
+        }
+    }
+
+    /**
+     * Copies the part of a decoded block that overlaps the raster. x and y are the position of the block relative
+     * to the raster and can be negative, pixels outside of the raster are dropped.
+     */
+    static void copyBlock( int[] block , int x , int y , int[] argb , int width , int height ) {
+        int fromX = Math.max( 0 , -x );
+        int fromY = Math.max( 0 , -y );
+        int toX = Math.min( 4 , width - x );
+        int toY = Math.min( 4 , height - y );
+
+        for ( int row = fromY; row < toY; row++ ) {
+            System.arraycopy( block , row * 4 + fromX , argb , ( y + row ) * width + x + fromX , toX - fromX );
+        }
+    }
+
+    private static DDSHeader dxgiHeader( int width , int height , int dxgi ) throws IOException {
+        int offset = HEADER_SIZE + DX10_HEADER_SIZE;
+
+        Format format = switch ( dxgi ) {
+            case 70 , 71 , 72 -> Format.BC1;
+            case 73 , 74 , 75 -> Format.BC2;
+            case 76 , 77 , 78 -> Format.BC3;
+            case 79 , 80 -> Format.BC4;
+            case 81 -> Format.BC4S;
+            case 82 , 83 -> Format.BC5;
+            case 84 -> Format.BC5S;
+            case 97 , 98 , 99 -> Format.BC7;
+            default -> Format.UNCOMPRESSED;
+        };
+
+        if ( format != Format.UNCOMPRESSED )
+            return new DDSHeader( width , height , format , offset , 0 , new int[ 4 ] );
+
+        return switch ( dxgi ) {
+            case 27 , 28 , 29 -> new DDSHeader( width , height , format , offset , 32 ,
+                    new int[] { 0xFF , 0xFF00 , 0xFF0000 , 0xFF000000 } );
+            case 87 , 90 , 91 -> new DDSHeader( width , height , format , offset , 32 ,
+                    new int[] { 0xFF0000 , 0xFF00 , 0xFF , 0xFF000000 } );
+            case 88 , 92 , 93 -> new DDSHeader( width , height , format , offset , 32 ,
+                    new int[] { 0xFF0000 , 0xFF00 , 0xFF , 0 } );
+            case 61 -> new DDSHeader( width , height , format , offset , 8 , new int[] { 0xFF , 0xFF , 0xFF , 0 } );
+            case 65 -> new DDSHeader( width , height , format , offset , 8 , new int[] { 0 , 0 , 0 , 0xFF } );
+            default -> throw new IOException( "Unsupported DXGI format " + dxgi );
+        };
+    }
+
+    private static Format fourCCFormat( int fourCC ) throws IOException {
+        if ( fourCC == fourCC( "DXT1" ) )
+            return Format.BC1;
+        if ( fourCC == fourCC( "DXT2" ) || fourCC == fourCC( "DXT3" ) )
+            return Format.BC2;
+        if ( fourCC == fourCC( "DXT4" ) || fourCC == fourCC( "DXT5" ) )
+            return Format.BC3;
+        if ( fourCC == fourCC( "ATI1" ) || fourCC == fourCC( "BC4U" ) )
+            return Format.BC4;
+        if ( fourCC == fourCC( "BC4S" ) )
+            return Format.BC4S;
+        if ( fourCC == fourCC( "ATI2" ) || fourCC == fourCC( "BC5U" ) )
+            return Format.BC5;
+        if ( fourCC == fourCC( "BC5S" ) )
+            return Format.BC5S;
+
+        throw new IOException( "Unsupported .dds FourCC 0x" + Integer.toHexString( fourCC ) );
+    }
+
+    private static void requireData( ByteBuffer data , DDSHeader header , long size ) throws IOException {
+        if ( header.dataOffset( ) + size > data.limit( ) )
+            throw new IOException( ".dds file is truncated, expected " + size + " bytes of pixel data." );
+    }
+
+    static int fourCC( String code ) {
+        return code.charAt( 0 ) | code.charAt( 1 ) << 8 | code.charAt( 2 ) << 16 | code.charAt( 3 ) << 24;
+    }
+
+    private static int scale( int value , int max ) {
+        if ( max == 0 )
+            return 0;
+
+        return max == 255 ? value : ( value * 255 + max / 2 ) / max;
+    }
+
+    private static int expand5( int v ) {
+        return ( v << 3 ) | ( v >>> 2 );
+    }
+
+    private static int expand6( int v ) {
+        return ( v << 2 ) | ( v >>> 4 );
+    }
+
+    static int argb( int a , int r , int g , int b ) {
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+}
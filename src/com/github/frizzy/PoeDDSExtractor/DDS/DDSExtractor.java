@@ -1,12 +1,12 @@
 package com.github.frizzy.PoeDDSExtractor.DDS;
 
 import com.github.frizzy.PoeDDSExtractor.GGPKUtils;
+import com.github.frizzy.PoeDDSExtractor.UiImagesIndex;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.awt.image.RasterFormatException;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
@@ -84,18 +84,18 @@ public class DDSExtractor {
                 final String sourcePath = GGPKUtils.getSourcePath( pngFile );
 
                 if ( !sourcePath.equals( "Unavailable" ) ) {
-                    List < String > coordinateLines = getCoordinateLines( sourcePath );
+                    List < Texture > listedTextures = getListedTextures( sourcePath );
 
                     /*
                      * THERES TOO MANY LOOPS, WHAT DO
                      * probably fine tho
                      */
-                    for ( String line : coordinateLines ) {
+                    for ( Texture listed : listedTextures ) {
 
                         for ( String textureName : textures ) {
-                            if ( line.toLowerCase( ).contains( textureName.toLowerCase( ) ) ) {
+                            if ( listed.name( ).toLowerCase( ).contains( textureName.toLowerCase( ) ) ) {
 
-                                int[] coords = GGPKUtils.getCoordinatesFrom( line );
+                                int[] coords = listed.coordinates( );
 
                                 Optional < File > opt = extract( coords[ 0 ] , coords[ 2 ] , coords[ 1 ] , coords[ 3 ] , pngFile , textureName, outputPath );
                                 opt.ifPresentOrElse( extracted -> {
@@ -138,13 +138,13 @@ public class DDSExtractor {
                 final String sourcePath = GGPKUtils.getSourcePath( pngFile );
 
                 if ( !sourcePath.equals( "Unavailable" ) ) {
-                    List < String > coordinateLines = getCoordinateLines( sourcePath );
+                    List < Texture > listedTextures = getListedTextures( sourcePath );
 
-                    for ( String line : coordinateLines ) {
+                    for ( Texture listed : listedTextures ) {
 
-                        String textureName = line.substring( 1 , line.indexOf( "\" " ) );
+                        String textureName = listed.name( );
 
-                        int[] coords = GGPKUtils.getCoordinatesFrom( line );
+                        int[] coords = listed.coordinates( );
 
                         Optional < File > opt = extract( coords[ 0 ] , coords[ 2 ] , coords[ 1 ] , coords[ 3 ] , pngFile , textureName, output );
                         opt.ifPresentOrElse( extracted -> {
@@ -245,29 +245,19 @@ public class DDSExtractor {
     }
 
     /**
-     * Retrieves the lines that contains the texture path/name, internal ggpk file path, and
-     * x1, x2, y1, y2 coordinate information from the uiimages.txt file.
+     * Retrieves the textures listed for the sourcePath in the uiimages.txt file, with their texture path/name
+     * and x1, x2, y1, y2 coordinate information.
      * <br>
-     * Any line containing the sourcePath means the converted .dds file contains that sub texture.
+     * The file is only parsed once, through the UiImagesIndex shared with GGPK2 and DDSExtractor2.
      */
-    private List < String > getCoordinateLines( final String sourcePath ) {
-        List < String > coordinateLines = new ArrayList <>( );
-
-        try ( BufferedReader bReader = new BufferedReader( new InputStreamReader( new FileInputStream( txtFile ) , StandardCharsets.UTF_16LE ) ) ) {
-            String line;
-            while ( ( line = bReader.readLine( ) ) != null ) {
-                if ( line.toLowerCase( ).contains( sourcePath.toLowerCase( ) ) ) {
-
-                    if ( !coordinateLines.contains( line ) ) {
-                        coordinateLines.add( line );
-                    }
-                }
-            }
+    private List < Texture > getListedTextures( final String sourcePath ) {
+        try {
+            return UiImagesIndex.of( txtFile.toPath( ) ).getTextures( sourcePath );
         } catch ( IOException | NullPointerException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
         }
 
-        return coordinateLines;
+        return new ArrayList <>( );
     }
 
 //    /**
@@ -1,15 +1,30 @@
 package com.github.frizzy.PoeDDSExtractor.DDS;
 
+import com.github.frizzy.PoeDDSExtractor.Metrics.ExtractionMetrics;
+import com.github.frizzy.PoeDDSExtractor.Metrics.Stage;
+import com.github.frizzy.PoeDDSExtractor.Output.OutputSink;
+import com.github.frizzy.PoeDDSExtractor.Output.TextureStore;
+import com.github.frizzy.PoeDDSExtractor.Packing.SpriteSheetBuilder;
+import com.github.frizzy.PoeDDSExtractor.UiImagesIndex;
+
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.awt.image.RasterFormatException;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,14 +54,234 @@ public class DDSExtractor2 {
      * <br>
      * Setting this to true can drastically improve performance when restarting the process.
      */
-    private boolean overwrite;
+    private volatile boolean overwrite;
+
+    /**
+     * Decoded atlases, so each atlas is decoded once no matter how many textures are cropped from it.
+     */
+    private final AtlasCache atlasCache;
+
+    /**
+     * The name the AtlasCache is registered under in the metrics.
+     */
+    private volatile String cacheName;
+
+    /**
+     * Registry the decode and texture extraction stages report into.
+     */
+    private volatile ExtractionMetrics metrics = ExtractionMetrics.getDefault( );
+
+    /**
+     * Writes the extracted textures, in the format they are saved in.
+     */
+    private volatile TextureEncoder textureEncoder = PngEncoder.getDefault( );
+
+    /**
+     * Collects the cropped textures into sprite sheets instead of writing them, when set.
+     */
+    private volatile SpriteSheetBuilder spriteSheets;
+
+    /**
+     * Receives the encoded textures instead of the output path, when set.
+     */
+    private volatile OutputSink outputSink;
+
+    /**
+     * Stores each distinct texture once, when set.
+     */
+    private volatile TextureStore textureStore;
+
+    /**
+     * Textures are decoded straight from the .dds blocks covering them, instead of decoding the whole atlas, when
+     * the atlas is at least this many times larger than the combined area of the wanted textures.
+     */
+    static final int REGION_DECODE_RATIO = 4;
+
+    /**
+     * Crops a texture out of an atlas.
+     */
+    @FunctionalInterface
+    private interface TextureCropper {
+
+        BufferedImage crop( int x , int y , int width , int height ) throws IOException;
+    }
 
     /**
      * @param txtFile The uiimages.txt or uidivinationimages.txt file the texture name, path, and coordinate information is retrieved from.
      */
     public DDSExtractor2( Path txtFile , boolean overwrite ) {
+        this( txtFile , overwrite , new AtlasCache( ) );
+    }
+
+    /**
+     * @param txtFile    The uiimages.txt or uidivinationimages.txt file the texture name, path, and coordinate information is retrieved from.
+     * @param atlasCache The cache decoded atlases are kept in. Can be shared between extractors.
+     */
+    public DDSExtractor2( Path txtFile , boolean overwrite , AtlasCache atlasCache ) {
         this.txtFile = txtFile;
         this.overwrite = overwrite;
+        this.atlasCache = atlasCache;
+
+        registerCache( );
+    }
+
+    /**
+     * Sets the registry the decode and texture extraction stages report into, instead of the default registry.
+     */
+    public void setMetrics( ExtractionMetrics metrics ) {
+        this.metrics = metrics;
+
+        registerCache( );
+    }
+
+    /**
+     * Returns the name the AtlasCache is registered under in the metrics, such as "AtlasCache-uiimages1".
+     */
+    public String getCacheName( ) {
+        return cacheName;
+    }
+
+    /**
+     * Registers the AtlasCache under a name of its own, named after the txtFile, so the caches of the uiimages and
+     * divination extractors do not replace each other when they report into the same metrics.
+     */
+    private void registerCache( ) {
+        String name = "AtlasCache";
+
+        if ( txtFile != null && txtFile.getFileName( ) != null ) {
+            String fileName = txtFile.getFileName( ).toString( );
+            int dot = fileName.lastIndexOf( '.' );
+
+            name += "-" + ( dot > 0 ? fileName.substring( 0 , dot ) : fileName ).toLowerCase( Locale.ROOT );
+        }
+
+        cacheName = metrics.registerUniqueCache( name , atlasCache , AtlasCache::getHits , AtlasCache::getMisses );
+    }
+
+    /**
+     * Sets the encoder the extracted textures are written with, and so the format and extension of the texture
+     * files. Defaults to PngEncoder.getDefault(), a PngEncoder of level 1 writes faster at larger files and
+     * QoiEncoder faster still.
+     */
+    public void setTextureEncoder( TextureEncoder textureEncoder ) {
+        this.textureEncoder = textureEncoder;
+    }
+
+    public TextureEncoder getTextureEncoder( ) {
+        return textureEncoder;
+    }
+
+    /**
+     * Adds every cropped texture to the SpriteSheetBuilder instead of writing it to its own file. The sheets are
+     * written once writeSpriteSheets(), or the builder's write(), is called. While set, the DDSFiles extracted get
+     * no extracted textures.
+     *
+     * @param spriteSheets The builder, or null to write each texture to its own file again.
+     */
+    public void setSpriteSheets( SpriteSheetBuilder spriteSheets ) {
+        this.spriteSheets = spriteSheets;
+    }
+
+    public Optional < SpriteSheetBuilder > getSpriteSheets( ) {
+        return Optional.ofNullable( spriteSheets );
+    }
+
+    /**
+     * Packs the textures added to the SpriteSheetBuilder and writes the sheets and manifest into the OutputSink if
+     * one is set, or into the directory otherwise. Call it once the extraction is done.
+     *
+     * @return What was written, or empty if no SpriteSheetBuilder is set.
+     */
+    public Optional < SpriteSheetBuilder.Output > writeSpriteSheets( Path directory ) throws IOException {
+        SpriteSheetBuilder sheets = spriteSheets;
+        OutputSink sink = outputSink;
+
+        if ( sheets == null )
+            return Optional.empty( );
+
+        return Optional.of( sink != null ? sheets.write( sink ) : sheets.write( directory ) );
+    }
+
+    /**
+     * Writes every texture into the OutputSink, such as a ZipSink, instead of into the output path. Each texture
+     * is encoded on the extracting thread and written as an entry named after the last part of the texture name,
+     * the same name its file gets in the output path.
+     * <br>
+     * While set, the output path passed to extractSubTextures is ignored, existing files are not checked for, and
+     * the extracted textures of a DDSFile are the relative entry names. The sink is not closed by the extractor.
+     *
+     * @param outputSink The sink, or null to write the textures to the output path again.
+     */
+    public void setOutputSink( OutputSink outputSink ) {
+        this.outputSink = outputSink;
+    }
+
+    public Optional < OutputSink > getOutputSink( ) {
+        return Optional.ofNullable( outputSink );
+    }
+
+    /**
+     * Adds every texture to the TextureStore instead of writing it, so textures of the same pixels are encoded and
+     * written only once, named after the hash of their pixels. Takes precedence over an OutputSink set on the
+     * extractor, the store writes into its own.
+     * <br>
+     * While set, the output path passed to extractSubTextures is ignored, and the extracted textures of a DDSFile
+     * are the entries the textures are stored as. Call writeManifest() on the store once the extraction is done.
+     *
+     * @param textureStore The store, or null to write every texture again.
+     */
+    public void setTextureStore( TextureStore textureStore ) {
+        this.textureStore = textureStore;
+    }
+
+    public Optional < TextureStore > getTextureStore( ) {
+        return Optional.ofNullable( textureStore );
+    }
+
+    /**
+     * Returns the decoded atlas from the AtlasCache, decoding the .dds data held in memory if it is not cached.
+     *
+     * @param ddsPath The internal path of the .dds file.
+     * @param dds     The .dds file, read from the position of the buffer. The buffer is not modified.
+     */
+    public DDSImage getAtlas( String ddsPath , ByteBuffer dds ) throws IOException {
+        return atlasCache.get( ddsPath , ( ) -> decode( ( ) -> DDSDecoder.decode( dds.slice( ).order( ByteOrder.LITTLE_ENDIAN ) ) ) );
+    }
+
+    /**
+     * Decodes the atlas of the DDSFile from its .dds file on disk into the AtlasCache, so it can be decoded on
+     * another thread than the textures are extracted on, with extractSubTextures( dFile , atlas , ... ).
+     * <br>
+     * An empty Optional is returned if the textures are read from a converted .png file, or would be decoded on
+     * their own from the .dds blocks covering them. extractSubTextures( dFile , outputPath ) handles those.
+     */
+    public Optional < DDSImage > decodeAtlas( DDSFile dFile ) throws IOException {
+        Path ddsFile = dFile.getDiskPath();
+        List < Texture > textures = dFile.getUnextractedTextures();
+
+        if ( dFile.getPNGPath() != null || ddsFile == null || textures == null || dFile.getDdsPath().equals( "Unavailable" )
+                || !ddsFile.getFileName().toString().endsWith( ".dds" ) )
+            return Optional.empty( );
+
+        if ( Files.exists( Path.of ( ddsFile.toAbsolutePath().toString().replace( ".dds" , ".png" ) ) ) )
+            return Optional.empty( );
+
+        try ( FileChannel channel = FileChannel.open( ddsFile , StandardOpenOption.READ ) ) {
+            //The mapping stays valid once the channel is closed.
+            ByteBuffer data = channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+            if ( !atlasCache.isCached( dFile.getDdsPath() ) && decodesRegions( data , textures ) )
+                return Optional.empty( );
+
+            return Optional.of( getAtlas( dFile.getDdsPath() , data ) );
+        }
+    }
+
+    /**
+     * Returns the cache decoded atlases are kept in.
+     */
+    public AtlasCache getAtlasCache( ) {
+        return atlasCache;
     }
 
     /**
@@ -74,39 +309,278 @@ public class DDSExtractor2 {
      *
      * @param outputPath A path that can be optionally specified to have all extracted textures saved to.
      */
-    @SuppressWarnings( "all" ) //temp
     public List < DDSFile > extractSubTextures( List < DDSFile > wantedTextures, Path outputPath ) {
         if ( wantedTextures != null && !wantedTextures.isEmpty( ) ) {
             for ( DDSFile dFile : wantedTextures ) {
-                List < Path > extractedTextures = new ArrayList <>(  );
+                extractSubTextures( dFile, outputPath );
+            }
+        }
+
+        return wantedTextures;
+    }
+
+    /**
+     * Extracts the textures of a single DDSFile, returning it once its textures have been extracted.
+     * <br>
+     * Nothing is shared between calls, so this can be called from several threads at once.
+     *
+     * @param dFile A DDSFile that has been extracted and needs its textures extracted.
+     *
+     * @param outputPath A path that can be optionally specified to have all extracted textures saved to.
+     */
+    public DDSFile extractSubTextures( DDSFile dFile, Path outputPath ) {
+        return extractSubTextures( dFile, outputPath, null );
+    }
+
+    /**
+     * Extracts the textures of a single DDSFile, passing each texture to the listener as soon as it has been
+     * written, and returning the DDSFile once all of its textures have been extracted.
+     *
+     * @param dFile A DDSFile that has been extracted and needs its textures extracted.
+     *
+     * @param outputPath A path that can be optionally specified to have all extracted textures saved to.
+     *
+     * @param onTexture Called with every extracted texture, on the calling thread. Can be null.
+     */
+    @SuppressWarnings( "all" ) //temp
+    public DDSFile extractSubTextures( DDSFile dFile, Path outputPath, Consumer < Path > onTexture ) {
+        /*
+         * Without a converted .png file, the textures are cropped straight out of the .dds file.
+         */
+        Path pngFile = dFile.getPNGPath() != null ? dFile.getPNGPath() : dFile.getDiskPath();
+        final String sourcePath = dFile.getDdsPath();
+
+        List < Texture > textures = dFile.getUnextractedTextures();
+
+        if ( textures == null )
+            textures = getListedTextures( sourcePath );
+
+        Optional < TextureCropper > parent = Optional.empty( );
+
+        if ( !sourcePath.equals( "Unavailable" ) && pngFile != null ) {
+            /*
+             * A few textures out of a large atlas are decoded on their own. Otherwise the atlas is decoded once,
+             * and every texture is cropped from the same raster.
+             */
+            parent = readRegions( sourcePath , pngFile , textures );
 
-                Path pngFile = dFile.getPNGPath();
-                List < Texture > textures = dFile.getUnextractedTextures();
+            if ( parent.isEmpty( ) )
+                parent = readAtlas( sourcePath , pngFile );
 
-                final String sourcePath = dFile.getDdsPath();
+            if ( parent.isEmpty( ) )
+                LOGGER.log( Level.WARNING , "Parent image was null, no textures can be extracted." );
+        }
+
+        cropAll( dFile , parent , pngFile , textures , outputPath , onTexture );
+
+        return dFile;
+    }
+
+    /**
+     * Extracts the textures of a single DDSFile from the .dds data held in memory, so neither the .dds file or a
+     * converted .png file have to exist on disk. Only the cropped textures are written.
+     * <br>
+     * Like the file based extraction, a few textures out of a large atlas are decoded on their own, otherwise the
+     * atlas is decoded once into the AtlasCache.
+     *
+     * @param dFile A DDSFile read from the Content.ggpk file or bundles.
+     *
+     * @param dds The .dds file, read from the position of the buffer. The buffer is not modified.
+     *
+     * @param outputPath The path all extracted textures are saved to. Can be null to save them next to the disk path
+     *                   of the DDSFile.
+     *
+     * @param onTexture Called with every extracted texture, on the calling thread. Can be null.
+     */
+    public DDSFile extractSubTextures( DDSFile dFile, ByteBuffer dds, Path outputPath, Consumer < Path > onTexture ) {
+        final String sourcePath = dFile.getDdsPath();
+        ByteBuffer data = dds.slice().order( ByteOrder.LITTLE_ENDIAN );
+
+        List < Texture > textures = dFile.getUnextractedTextures();
+
+        if ( textures == null )
+            textures = getListedTextures( sourcePath );
 
-                if ( !sourcePath.equals( "Unavailable" ) ) {
+        Optional < TextureCropper > parent = atlasCache.isCached( sourcePath ) ? Optional.empty( ) : readRegions( sourcePath , data , textures );
 
-                    for ( Texture t : textures ) {
-                        int[] coords = t.coordinates();
+        if ( parent.isEmpty( ) ) {
+            try {
+                BufferedImage atlas = getAtlas( sourcePath , data ).toBufferedImage( );
+                parent = Optional.of( atlas::getSubimage );
+            } catch ( IOException e ) {
+                LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+            }
+        }
+
+        cropAll( dFile , parent , dFile.getDiskPath() , textures , outputPath , onTexture );
+
+        return dFile;
+    }
 
-                        Optional < Path > opt = extract( coords[ 0 ] , coords[ 2 ] , coords[ 1 ] , coords[ 3 ] , pngFile , t.name(), outputPath );
-                        opt.ifPresentOrElse( extracted -> {
-                                    if ( Files.exists( extracted ) ) {
-                                       extractedTextures.add( extracted );
-                                    }
-                                } ,
-                                ( ) -> {
-                                    LOGGER.log( Level.WARNING , "No file was returned. The sub texture was not extracted." );
-                                } );
+    /**
+     * Extracts the textures of a single DDSFile from an atlas that was already decoded, for example on another
+     * thread with getAtlas(), so the atlas does not have to be looked up or decoded again.
+     *
+     * @param dFile A DDSFile whose textures are cropped from the atlas.
+     *
+     * @param atlas The decoded atlas of the DDSFile.
+     *
+     * @param outputPath The path all extracted textures are saved to. Can be null to save them next to the disk path
+     *                   of the DDSFile.
+     *
+     * @param onTexture Called with every extracted texture, on the calling thread. Can be null.
+     */
+    public DDSFile extractSubTextures( DDSFile dFile, DDSImage atlas, Path outputPath, Consumer < Path > onTexture ) {
+        Path pngFile = dFile.getPNGPath() != null ? dFile.getPNGPath() : dFile.getDiskPath();
+        List < Texture > textures = dFile.getUnextractedTextures();
+
+        if ( textures == null )
+            textures = getListedTextures( dFile.getDdsPath() );
+
+        BufferedImage image = atlas.toBufferedImage( );
+        cropAll( dFile , Optional.of( image::getSubimage ) , pngFile , textures , outputPath , onTexture );
+
+        return dFile;
+    }
+
+    /**
+     * Returns true if the textures would be decoded straight from the .dds blocks covering them, rather than
+     * decoding the whole atlas, because they cover a small part of it.
+     *
+     * @param dds The .dds file, read from the position of the buffer.
+     */
+    public static boolean decodesRegions( ByteBuffer dds , List < Texture > textures ) throws IOException {
+        DDSDecoder.DDSHeader header = DDSDecoder.readHeader( dds.slice() );
+
+        return wantedArea( textures ) * REGION_DECODE_RATIO <= ( long ) header.width( ) * header.height( );
+    }
+
+    /**
+     * Crops every texture out of the parent and writes it, recording the written textures in the DDSFile.
+     */
+    private void cropAll( DDSFile dFile , Optional < TextureCropper > parent , Path pngFile , List < Texture > textures ,
+                          Path outputPath , Consumer < Path > onTexture ) {
+        List < Path > extractedTextures = new ArrayList <>(  );
+        SpriteSheetBuilder sheets = spriteSheets;
+        TextureStore store = textureStore;
+        OutputSink sink = outputSink;
+        TextureEncoder encoder = textureEncoder;
+        int packed = 0;
+
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.TEXTURE_EXTRACT ) ) {
+            if ( parent.isPresent( ) ) {
+                for ( Texture t : textures ) {
+                    int[] coords = t.coordinates();
+
+                    if ( sheets != null ) {
+                        if ( pack( sheets , coords , parent.get( ) , t.name( ) ) )
+                            packed++;
+
+                        continue;
                     }
-                }
 
-                dFile.setExtractedTextures( extractedTextures );
+                    if ( store != null ) {
+                        Optional < TextureStore.Stored > stored = store( store , coords , parent.get( ) , t.name( ) );
+
+                        if ( stored.isPresent( ) ) {
+                            extractedTextures.add( Path.of( stored.get( ).entry( ) ) );
+                            timer.written( stored.get( ).written( ) );
+
+                            if ( onTexture != null )
+                                onTexture.accept( Path.of( stored.get( ).entry( ) ) );
+                        }
+
+                        continue;
+                    }
+
+                    if ( sink != null ) {
+                        String entry = getEntryName( t.name( ) , encoder.getExtension( ) );
+                        long written = write( sink , entry , encoder , coords , parent.get( ) , t.name( ) );
+
+                        if ( written >= 0 ) {
+                            extractedTextures.add( Path.of( entry ) );
+                            timer.written( written );
+
+                            if ( onTexture != null )
+                                onTexture.accept( Path.of( entry ) );
+                        }
+
+                        continue;
+                    }
+
+                    Optional < Path > opt = extract( coords[ 0 ] , coords[ 2 ] , coords[ 1 ] , coords[ 3 ] , parent.get( ) , pngFile , t.name(), outputPath );
+                    opt.ifPresentOrElse( extracted -> {
+                                if ( Files.exists( extracted ) ) {
+                                   extractedTextures.add( extracted );
+                                   timer.written( sizeOf( extracted ) );
+
+                                   if ( onTexture != null )
+                                       onTexture.accept( extracted );
+                                }
+                            } ,
+                            ( ) -> {
+                                LOGGER.log( Level.WARNING , "No file was returned. The sub texture was not extracted." );
+                            } );
+                }
             }
+
+            if ( extractedTextures.size( ) + packed < textures.size( ) )
+                timer.failed( );
         }
 
-        return wantedTextures;
+        dFile.setExtractedTextures( extractedTextures );
+    }
+
+    /**
+     * Crops the sub texture and adds it to the sprite sheets.
+     *
+     * @return True if the texture was added.
+     */
+    private boolean pack( SpriteSheetBuilder sheets , int[] coords , TextureCropper parent , String textureName ) {
+        try {
+            LOGGER.log( Level.INFO , "Packing texture: " + textureName );
+            return sheets.add( textureName , parent.crop( coords[ 0 ] , coords[ 1 ] , coords[ 2 ] , coords[ 3 ] ) );
+        } catch ( IOException | RasterFormatException | IllegalArgumentException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return false;
+    }
+
+    /**
+     * Crops the sub texture and adds it to the store.
+     */
+    private Optional < TextureStore.Stored > store( TextureStore store , int[] coords , TextureCropper parent , String textureName ) {
+        try {
+            LOGGER.log( Level.INFO , "Extracting texture: " + textureName );
+            return Optional.of( store.add( textureName , parent.crop( coords[ 0 ] , coords[ 1 ] , coords[ 2 ] , coords[ 3 ] ) ) );
+        } catch ( IOException | RasterFormatException | IllegalArgumentException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Crops and encodes the sub texture, and writes it into the sink.
+     *
+     * @return The size of the encoded texture, or -1 if it was not written.
+     */
+    private long write( OutputSink sink , String entry , TextureEncoder encoder , int[] coords , TextureCropper parent ,
+                        String textureName ) {
+        try {
+            LOGGER.log( Level.INFO , "Extracting texture: " + textureName );
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream( );
+
+            encoder.encode( parent.crop( coords[ 0 ] , coords[ 1 ] , coords[ 2 ] , coords[ 3 ] ) , encoded );
+            sink.write( entry , encoded.toByteArray( ) );
+
+            return encoded.size( );
+        } catch ( IOException | RasterFormatException | IllegalArgumentException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return -1;
     }
 
     /**
@@ -116,69 +590,213 @@ public class DDSExtractor2 {
      * @param x2          The second x coordinate of the sub texture. x1 is subtracted to create the width of the image.
      * @param y1          The first y coordinate of the sub texture.
      * @param y2          The second y coordinate of the sub texture. y1 is subtracted to create the height of the image.
-     * @param pngFile     The png file containing the sub textures.
+     * @param parent      Crops the sub texture out of the atlas.
+     * @param pngFile     The .png file the atlas was read from, or the .dds file if it was not converted.
      * @param textureName The name of the sub texture being extracted.
      * @param output A path that all extracted textures will be saved to. Can be null.
      * @return Returns an Optional of File to help protect the process from null values.
      */
-    private Optional < Path > extract( int x1 , int x2 , int y1 , int y2 , Path pngFile , String textureName, Path output ) {
-        if ( pngFile == null )
+    private Optional < Path > extract( int x1 , int x2 , int y1 , int y2 , TextureCropper parent , Path pngFile , String textureName, Path output ) {
+        try {
+            LOGGER.log( Level.INFO , "Extracting texture: " + textureName );
+            BufferedImage extracted = parent.crop( x1 , y1 , x2 , y2 );
+
+            TextureEncoder encoder = textureEncoder;
+            Path extractedFile = getOutputFile( output , pngFile , textureName , encoder.getExtension( ) );
+
+            if ( Files.exists( extractedFile ) && overwrite || !Files.exists( extractedFile ) ) {
+                completeWrite( encoder , extracted , extractedFile , textureName );
+            } else {
+                LOGGER.log( Level.INFO , "Overwrite is false and file already exists. Image was not saved." );
+            }
+
+            return Optional.of( extractedFile );
+        } catch ( IOException | RasterFormatException | IllegalArgumentException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Returns the file a texture is saved to, named after the last part of the texture name.
+     *
+     * @param output      A path that all extracted textures will be saved to. Can be null to save the texture next
+     *                    to the pngFile.
+     * @param pngFile     The .png or .dds file the texture is cropped from.
+     * @param textureName The name of the texture, such as "Art/2DArt/UIImages/Common/4K/ButtonTickNormal".
+     */
+    public static Path getOutputFile( Path output , Path pngFile , String textureName ) {
+        return getOutputFile( output , pngFile , textureName , "png" );
+    }
+
+    /**
+     * Returns the file a texture is saved to, named after the last part of the texture name, with the extension
+     * of the TextureEncoder it is written with.
+     */
+    public static Path getOutputFile( Path output , Path pngFile , String textureName , String extension ) {
+        String subbedName = textureName.substring( textureName.lastIndexOf( "/" ) );
+
+        if ( output != null )
+            return Path.of ( output + File.separator + subbedName + "." + extension );
+
+        return Path.of ( pngFile.getParent().toAbsolutePath( ) + File.separator + subbedName + "." + extension );
+    }
+
+    /**
+     * Returns the name a texture is written to an OutputSink as, the name of its file in the output path.
+     */
+    public static String getEntryName( String textureName , String extension ) {
+        return textureName.substring( textureName.lastIndexOf( "/" ) + 1 ) + "." + extension;
+    }
+
+    /**
+     * Looks up every texture the txtFile lists for the .dds file, through the UiImagesIndex shared with GGPK2.
+     */
+    private List < Texture > getListedTextures( String ddsPath ) {
+        try {
+            if ( txtFile != null )
+                return UiImagesIndex.of( txtFile ).getTextures( ddsPath );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return new ArrayList <>( );
+    }
+
+    /**
+     * Returns the decoded atlas of the .dds file, decoding it only if it is not in the AtlasCache yet.
+     * <br>
+     * getSubimage shares the raster of the atlas, nothing is copied until a texture is written.
+     */
+    private Optional < TextureCropper > readAtlas( String ddsPath , Path pngFile ) {
+        try {
+            BufferedImage atlas = atlasCache.get( ddsPath , ( ) -> decode( ( ) -> readParent( pngFile ) ) ).toBufferedImage( );
+            return Optional.of( atlas::getSubimage );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Returns a cropper decoding each texture from only the .dds blocks covering it, if the wanted textures cover
+     * a small part of the atlas.
+     * <br>
+     * An empty Optional is returned if the atlas is already cached, was converted to a .png file, or if the
+     * textures cover too much of it. The whole atlas is decoded and cached in that case.
+     */
+    private Optional < TextureCropper > readRegions( String ddsPath , Path imageFile , List < Texture > textures ) {
+        if ( !imageFile.getFileName().toString().endsWith( ".dds" ) || atlasCache.isCached( ddsPath ) )
             return Optional.empty( );
 
-        /*
-         * In case a .dds file is passed, we get the .png file if it exists. ImageIO cannot read .dds files.
-         * In the event someone else looks at this, the TwelveMonkeys ImageIO plugin library cannot read the .dds
-         * files as it does not support the correct format.
-         */
-        if ( pngFile.getFileName().toString().contains( ".dds" ) ) {
-            pngFile = Path.of ( pngFile.toAbsolutePath().toString().replace( ".dds" , ".png" ) );
+        if ( Files.exists( Path.of ( imageFile.toAbsolutePath().toString().replace( ".dds" , ".png" ) ) ) )
+            return Optional.empty( );
 
-            if ( !Files.exists( pngFile) ) {
-                LOGGER.log( Level.WARNING , "File: " + pngFile.toAbsolutePath() + " does not exist." );
+        try ( FileChannel channel = FileChannel.open( imageFile , StandardOpenOption.READ ) ) {
+            //The mapping stays valid once the channel is closed.
+            ByteBuffer data = channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ).order( ByteOrder.LITTLE_ENDIAN );
+            return readRegions( imageFile.toString( ) , data , textures );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Returns a cropper decoding each texture from only the .dds blocks covering it, if the wanted textures cover
+     * a small part of the atlas held in the little endian buffer.
+     */
+    private Optional < TextureCropper > readRegions( String name , ByteBuffer data , List < Texture > textures ) {
+        try {
+            DDSDecoder.DDSHeader header = DDSDecoder.readHeader( data );
+
+            if ( wantedArea( textures ) * REGION_DECODE_RATIO > ( long ) header.width( ) * header.height( ) )
                 return Optional.empty( );
+
+            LOGGER.log( Level.INFO , "Decoding " + textures.size( ) + " textures of file: " + name );
+            return Optional.of( ( x , y , width , height ) ->
+                    DDSDecoder.decodeRegion( data , header , x , y , width , height ).toBufferedImage( ) );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Decodes an atlas with the loader, reporting it as the decode stage.
+     */
+    private DDSImage decode( AtlasCache.Loader loader ) throws IOException {
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.DDS_DECODE ) ) {
+            try {
+                DDSImage image = loader.load( );
+                timer.written( ( long ) image.getWidth( ) * image.getHeight( ) * 4 );
+                return image;
+            } catch ( IOException | RuntimeException e ) {
+                timer.failed( );
+                throw e;
             }
         }
+    }
 
+    private static long sizeOf( Path file ) {
         try {
-            LOGGER.log( Level.INFO , "Reading file: " + pngFile );
-            BufferedImage parent = ImageIO.read( Files.newInputStream( pngFile ) );
+            return Files.size( file );
+        } catch ( IOException e ) {
+            return 0;
+        }
+    }
 
-            if ( parent != null ) {
-                LOGGER.log( Level.INFO , "Extracting texture: " + textureName );
-                BufferedImage extracted = parent.getSubimage( x1 , y1 , x2 , y2 );
+    private static long wantedArea( List < Texture > textures ) {
+        long area = 0;
 
-                String subbedName = textureName.substring( textureName.lastIndexOf( "/" ) );
-                Path extractedFile;
+        for ( Texture t : textures ) {
+            area += ( long ) Math.max( 0 , t.coordinates()[ 2 ] ) * Math.max( 0 , t.coordinates()[ 3 ] );
+        }
 
-                if ( output != null ) {
-                    extractedFile = Path.of ( output + File.separator + subbedName + ".png" );
-                } else {
-                    extractedFile = Path.of ( pngFile.getParent().toAbsolutePath( ) + File.separator + subbedName + ".png" );
-                }
+        return area;
+    }
 
-                if ( Files.exists( extractedFile ) && overwrite || !Files.exists( extractedFile ) ) {
-                    completeWrite( extracted , extractedFile , textureName );
-                } else {
-                    LOGGER.log( Level.INFO , "Overwrite is false and file already exists. Image was not saved." );
-                }
+    /**
+     * Reads the image the textures are cropped from. If a .dds file is passed, the .png file converted from it is
+     * read if it exists. Otherwise the .dds file is decoded by DDSDecoder, so texconv.exe is not needed.
+     */
+    private DDSImage readParent( Path imageFile ) throws IOException {
+        if ( imageFile.getFileName().toString().endsWith( ".dds" ) ) {
+            Path converted = Path.of ( imageFile.toAbsolutePath().toString().replace( ".dds" , ".png" ) );
 
-                return Optional.of( extractedFile );
-            } else {
-                LOGGER.log( Level.WARNING , "Parent image was null, no textures can be extracted." );
+            if ( !Files.exists( converted ) ) {
+                LOGGER.log( Level.INFO , "Decoding file: " + imageFile );
+                return DDSDecoder.decode( imageFile );
             }
-        } catch ( IOException | RasterFormatException e ) {
-            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+
+            imageFile = converted;
         }
 
-        return Optional.empty( );
+        LOGGER.log( Level.INFO , "Reading file: " + imageFile );
+        BufferedImage image;
+
+        try ( InputStream in = Files.newInputStream( imageFile ) ) {
+            image = ImageIO.read( in );
+        }
+
+        if ( image == null )
+            throw new IOException( "File: " + imageFile.toAbsolutePath() + " could not be read as an image." );
+
+        int w = image.getWidth( );
+        int h = image.getHeight( );
+        return new DDSImage( w , h , image.getRGB( 0 , 0 , w , h , null , 0 , w ) );
     }
 
     /**
      * Completes the image write process when a texture has been extracted from the parent .png file.
      */
-    private void completeWrite( BufferedImage extractedImg , Path extractedFile , String textureName ) {
+    private void completeWrite( TextureEncoder encoder , BufferedImage extractedImg , Path extractedFile , String textureName ) {
         try {
-            ImageIO.write( extractedImg , "png" , extractedFile.toFile() );
+            encoder.write( extractedImg , extractedFile );
             LOGGER.log( Level.INFO , "Extracted texture: " + textureName + " was saved to: " + extractedFile.toAbsolutePath() + "." );
         } catch ( IOException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
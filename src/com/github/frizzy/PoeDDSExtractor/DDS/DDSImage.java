@@ -0,0 +1,96 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * A decoded .dds image, stored as one ARGB int per pixel, row by row.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class DDSImage {
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] argb;
+
+    public DDSImage( int width , int height , int[] argb ) {
+        if ( argb.length < width * height )
+            throw new IllegalArgumentException( "Raster holds " + argb.length + " pixels, expected " + width * height );
+
+        this.width = width;
+        this.height = height;
+        this.argb = argb;
+    }
+
+    /**
+     * Copies the pixels of the image. TYPE_INT_ARGB images, including sub images of an atlas, are copied row by
+     * row from their raster.
+     */
+    public static DDSImage of( BufferedImage image ) {
+        ImagePixels pixels = ImagePixels.of( image );
+        return new DDSImage( pixels.width( ) , pixels.height( ) , pixels.toArray( ) );
+    }
+
+    /**
+     * Returns the width in pixels.
+     */
+    public int getWidth( ) {
+        return width;
+    }
+
+    /**
+     * Returns the height in pixels.
+     */
+    public int getHeight( ) {
+        return height;
+    }
+
+    /**
+     * Returns the ARGB pixels. The array is not copied, changes to it change the image.
+     */
+    public int[] getARGB( ) {
+        return argb;
+    }
+
+    /**
+     * Copies the area out of the image.
+     *
+     * @param x      The x coordinate of the area.
+     * @param y      The y coordinate of the area.
+     * @param w      The width of the area.
+     * @param h      The height of the area.
+     */
+    public DDSImage crop( int x , int y , int w , int h ) {
+        if ( x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > width || y + h > height )
+            throw new IllegalArgumentException( "Area " + x + "," + y + " " + w + "x" + h + " is outside of the "
+                    + width + "x" + height + " image." );
+
+        int[] cropped = new int[ w * h ];
+
+        for ( int row = 0; row < h; row++ ) {
+            System.arraycopy( argb , ( y + row ) * width + x , cropped , row * w , w );
+        }
+
+        return new DDSImage( w , h , cropped );
+    }
+
+    /**
+     * Wraps the pixels in a BufferedImage of TYPE_INT_ARGB without copying them.
+     */
+    public BufferedImage toBufferedImage( ) {
+        DirectColorModel model = ( DirectColorModel ) ColorModel.getRGBdefault( );
+        DataBufferInt buffer = new DataBufferInt( argb , width * height );
+        WritableRaster raster = Raster.createPackedRaster( buffer , width , height , width , model.getMasks( ) , null );
+
+        return new BufferedImage( model , raster , false , null );
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Reads the ARGB pixels of an image for the TextureEncoders. TYPE_INT_ARGB images, including sub images sharing
+ * the raster of an atlas, are read straight from their int array. Other images are copied with getRGB().
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+final class ImagePixels {
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] data;
+
+    private final int offset;
+
+    private final int stride;
+
+    private ImagePixels( int width , int height , int[] data , int offset , int stride ) {
+        this.width = width;
+        this.height = height;
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    static ImagePixels of( BufferedImage image ) {
+        int w = image.getWidth( );
+        int h = image.getHeight( );
+        Raster raster = image.getRaster( );
+
+        if ( image.getType( ) == BufferedImage.TYPE_INT_ARGB && raster.getDataBuffer( ) instanceof DataBufferInt buffer
+                && raster.getSampleModel( ) instanceof SinglePixelPackedSampleModel model
+                && image.getColorModel( ) instanceof DirectColorModel && buffer.getNumBanks( ) == 1 ) {
+            int offset = buffer.getOffset( ) + model.getOffset( -raster.getSampleModelTranslateX( ) , -raster.getSampleModelTranslateY( ) );
+            return new ImagePixels( w , h , buffer.getData( ) , offset , model.getScanlineStride( ) );
+        }
+
+        return new ImagePixels( w , h , image.getRGB( 0 , 0 , w , h , null , 0 , w ) , 0 , w );
+    }
+
+    int width( ) {
+        return width;
+    }
+
+    int height( ) {
+        return height;
+    }
+
+    /**
+     * Returns the ARGB pixel.
+     */
+    int get( int x , int y ) {
+        return data[ offset + y * stride + x ];
+    }
+
+    boolean isOpaque( ) {
+        for ( int y = 0; y < height; y++ ) {
+            int start = offset + y * stride;
+
+            for ( int x = 0; x < width; x++ ) {
+                if ( data[ start + x ] >>> 24 != 0xFF )
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the pixels row by row into a new array, width pixels per row.
+     */
+    int[] toArray( ) {
+        int[] argb = new int[ width * height ];
+
+        for ( int y = 0; y < height; y++ ) {
+            System.arraycopy( data , offset + y * stride , argb , y * width , width );
+        }
+
+        return argb;
+    }
+
+    /**
+     * Copies the row into out as RGB or RGBA bytes.
+     *
+     * @param bpp 3 for RGB, 4 for RGBA.
+     */
+    void row( int y , int bpp , byte[] out ) {
+        int start = offset + y * stride;
+        int o = 0;
+
+        for ( int x = 0; x < width; x++ ) {
+            int argb = data[ start + x ];
+            out[ o++ ] = ( byte ) ( argb >>> 16 );
+            out[ o++ ] = ( byte ) ( argb >>> 8 );
+            out[ o++ ] = ( byte ) argb;
+
+            if ( bpp == 4 )
+                out[ o++ ] = ( byte ) ( argb >>> 24 );
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes images as 8 bit RGBA, or RGB if every pixel is opaque, .png files without going through ImageIO.
+ * <br>
+ * Each thread keeps one Deflater per encoder, reset between images, instead of creating one per texture. Images
+ * with more than PARALLEL_THRESHOLD bytes of pixel data are split into CHUNK_SIZE row ranges which are filtered and
+ * deflated at the same time on the executor. Every range but the last ends with a sync flush, so the ranges
+ * concatenate into one zlib stream the same way pigz does it.
+ * <br>
+ * Rows are filtered with the filter giving the smallest sum of absolute differences, as libpng does. Level 0
+ * stores the rows unfiltered and uncompressed, which is the fastest but largest output.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class PngEncoder implements TextureEncoder {
+
+    private static final byte[] SIGNATURE = { ( byte ) 0x89 , 'P' , 'N' , 'G' , '\r' , '\n' , 0x1A , '\n' };
+
+    /**
+     * The level ImageIO's png writer deflates with.
+     */
+    public static final int DEFAULT_LEVEL = 4;
+
+    /**
+     * Images with more bytes of pixel data than this are deflated in parallel chunks.
+     */
+    static final int PARALLEL_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Bytes of pixel data per parallel chunk. Each chunk starts without the previous chunk as its dictionary,
+     * which costs a little compression at the start of every chunk.
+     */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private static final PngEncoder DEFAULT = new PngEncoder( DEFAULT_LEVEL );
+
+    /**
+     * Deflated rows of an image.
+     *
+     * @param data           The raw deflate data.
+     * @param adler          Adler-32 of the filtered rows.
+     * @param filteredLength Length of the filtered rows.
+     */
+    private record Chunk( byte[] data , long adler , int filteredLength ) {
+
+    }
+
+    private final int level;
+
+    private final Executor executor;
+
+    /**
+     * Deflater of each thread. The Deflaters write raw deflate data, the zlib header and checksum are written by
+     * the encoder since a chunked image is deflated by several of them.
+     */
+    private final ThreadLocal < Deflater > deflaters;
+
+    /**
+     * Creates an encoder deflating large images on the common ForkJoinPool.
+     *
+     * @param level The deflate level, from 0 ( stored ) to 9, or 1 for the fastest compression.
+     */
+    public PngEncoder( int level ) {
+        this( level , ForkJoinPool.commonPool( ) );
+    }
+
+    /**
+     * @param level    The deflate level, from 0 ( stored ) to 9, or 1 for the fastest compression.
+     * @param executor Runs the chunks of large images.
+     */
+    public PngEncoder( int level , Executor executor ) {
+        if ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION )
+            throw new IllegalArgumentException( "level must be between 0 and 9." );
+
+        this.level = level;
+        this.executor = executor;
+        this.deflaters = ThreadLocal.withInitial( ( ) -> new Deflater( level , true ) );
+    }
+
+    /**
+     * Returns the encoder used by DDSExtractor2 and DDSConverter2 unless they are given another one, deflating at
+     * DEFAULT_LEVEL.
+     */
+    public static PngEncoder getDefault( ) {
+        return DEFAULT;
+    }
+
+    public int getLevel( ) {
+        return level;
+    }
+
+    @Override
+    public String getExtension( ) {
+        return "png";
+    }
+
+    /**
+     * Writes the image to the file, replacing it if it exists.
+     *
+     * @return The size of the written file.
+     */
+    @Override
+    public long write( BufferedImage image , Path file ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            return encode( image , channel );
+        }
+    }
+
+    /**
+     * Writes the image to the file, replacing it if it exists.
+     *
+     * @return The size of the written file.
+     */
+    public long write( DDSImage image , Path file ) throws IOException {
+        return write( image.toBufferedImage( ) , file );
+    }
+
+    /**
+     * Writes the image to the channel. The channel is not closed.
+     *
+     * @return The amount of bytes written.
+     */
+    public long encode( BufferedImage image , WritableByteChannel channel ) throws IOException {
+        ByteBuffer[] buffers = encode( image );
+        long written = 0;
+
+        for ( ByteBuffer buffer : buffers ) {
+            while ( buffer.hasRemaining( ) ) {
+                written += channel.write( buffer );
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes the image to the stream. The stream is not closed.
+     *
+     * @return The amount of bytes written.
+     */
+    @Override
+    public long encode( BufferedImage image , OutputStream out ) throws IOException {
+        ByteBuffer[] buffers = encode( image );
+        long written = 0;
+
+        for ( ByteBuffer buffer : buffers ) {
+            out.write( buffer.array( ) , buffer.arrayOffset( ) + buffer.position( ) , buffer.remaining( ) );
+            written += buffer.remaining( );
+        }
+
+        return written;
+    }
+
+    /**
+     * Returns the .png file as buffers to be written in order.
+     */
+    private ByteBuffer[] encode( BufferedImage image ) {
+        ImagePixels pixels = ImagePixels.of( image );
+        boolean opaque = pixels.isOpaque( );
+        int bpp = opaque ? 3 : 4;
+        long rowSize = 1 + ( long ) pixels.width( ) * bpp;
+
+        if ( rowSize * pixels.height( ) > Integer.MAX_VALUE - 64 )
+            throw new IllegalArgumentException( "Image of " + pixels.width( ) + "x" + pixels.height( ) + " is too large for one png file." );
+
+        int rowsPerChunk = ( int ) Math.max( 1 , CHUNK_SIZE / rowSize );
+        List < Chunk > deflated;
+
+        if ( rowSize * pixels.height( ) <= PARALLEL_THRESHOLD || pixels.height( ) <= rowsPerChunk ) {
+            deflated = List.of( deflate( pixels , bpp , 0 , pixels.height( ) ) );
+        } else {
+            List < CompletableFuture < Chunk > > chunks = new ArrayList <>( );
+
+            for ( int row = 0; row < pixels.height( ); row += rowsPerChunk ) {
+                int start = row;
+                int end = Math.min( pixels.height( ) , row + rowsPerChunk );
+                chunks.add( CompletableFuture.supplyAsync( ( ) -> deflate( pixels , bpp , start , end ) , executor ) );
+            }
+
+            deflated = chunks.stream( ).map( CompletableFuture::join ).toList( );
+        }
+
+        ByteBuffer header = ByteBuffer.allocate( SIGNATURE.length + 25 + 8 + 2 );
+        header.put( SIGNATURE );
+
+        ByteBuffer ihdr = ByteBuffer.allocate( 13 );
+        ihdr.putInt( pixels.width( ) ).putInt( pixels.height( ) ).put( ( byte ) 8 ).put( ( byte ) ( opaque ? 2 : 6 ) )
+                .put( ( byte ) 0 ).put( ( byte ) 0 ).put( ( byte ) 0 );
+        putChunk( header , "IHDR" , ihdr.array( ) );
+
+        //One IDAT holding the zlib header, every deflated chunk and the checksum.
+        byte[] zlibHeader = { 0x78 , zlibFlags( level ) };
+        long idatLength = 2 + 4;
+        long adler = 1;
+        CRC32 crc = new CRC32( );
+        crc.update( new byte[] { 'I' , 'D' , 'A' , 'T' } );
+        crc.update( zlibHeader );
+
+        for ( Chunk chunk : deflated ) {
+            idatLength += chunk.data( ).length;
+            adler = combineAdler( adler , chunk.adler( ) , chunk.filteredLength( ) );
+            crc.update( chunk.data( ) );
+        }
+
+        if ( idatLength > Integer.MAX_VALUE )
+            throw new IllegalArgumentException( "Image of " + pixels.width( ) + "x" + pixels.height( ) + " is too large for one png file." );
+
+        header.putInt( ( int ) idatLength ).put( new byte[] { 'I' , 'D' , 'A' , 'T' } ).put( zlibHeader ).flip( );
+
+        ByteBuffer trailer = ByteBuffer.allocate( 4 + 4 + 12 );
+        byte[] checksum = ByteBuffer.allocate( 4 ).putInt( ( int ) adler ).array( );
+        crc.update( checksum );
+        trailer.put( checksum ).putInt( ( int ) crc.getValue( ) );
+        putChunk( trailer , "IEND" , new byte[ 0 ] );
+        trailer.flip( );
+
+        ByteBuffer[] buffers = new ByteBuffer[ deflated.size( ) + 2 ];
+        buffers[ 0 ] = header;
+
+        for ( int i = 0; i < deflated.size( ); i++ ) {
+            buffers[ i + 1 ] = ByteBuffer.wrap( deflated.get( i ).data( ) );
+        }
+
+        buffers[ buffers.length - 1 ] = trailer;
+        return buffers;
+    }
+
+    /**
+     * Filters and deflates the rows from start to end with the Deflater of the thread.
+     */
+    private Chunk deflate( ImagePixels pixels , int bpp , int start , int end ) {
+        int rowSize = 1 + pixels.width( ) * bpp;
+        byte[] filtered = new byte[ rowSize * ( end - start ) ];
+        byte[] previous = new byte[ rowSize - 1 ];
+        byte[] current = new byte[ rowSize - 1 ];
+        byte[][] scratch = new byte[ FILTER_PAETH + 1 ][ rowSize - 1 ];
+
+        if ( start > 0 )
+            pixels.row( start - 1 , bpp , previous );
+
+        for ( int row = start; row < end; row++ ) {
+            pixels.row( row , bpp , current );
+            filter( current , previous , bpp , scratch , filtered , ( row - start ) * rowSize );
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 adler = new Adler32( );
+        adler.update( filtered );
+
+        Deflater deflater = deflaters.get( );
+        deflater.reset( );
+        deflater.setInput( filtered );
+
+        boolean last = end == pixels.height( );
+        if ( last )
+            deflater.finish( );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream( level == 0 ? filtered.length + 64 : filtered.length / 4 + 64 );
+        byte[] buffer = new byte[ 64 * 1024 ];
+
+        if ( last ) {
+            while ( !deflater.finished( ) ) {
+                out.write( buffer , 0 , deflater.deflate( buffer ) );
+            }
+        } else {
+            while ( !deflater.needsInput( ) ) {
+                out.write( buffer , 0 , deflater.deflate( buffer ) );
+            }
+
+            //Ends the chunk on a byte boundary without marking the last block, so the next chunk can follow it.
+            int n;
+            do {
+                n = deflater.deflate( buffer , 0 , buffer.length , Deflater.SYNC_FLUSH );
+                out.write( buffer , 0 , n );
+            } while ( n == buffer.length );
+        }
+
+        return new Chunk( out.toByteArray( ) , adler.getValue( ) , filtered.length );
+    }
+
+    /**
+     * Filters the row into out at the offset, preceded by its filter type. Every filter is applied to its own row
+     * of the scratch rows, and the one with the smallest sum of its bytes, taken as signed values, is kept.
+     */
+    private void filter( byte[] row , byte[] previous , int bpp , byte[][] scratch , byte[] out , int offset ) {
+        if ( level == 0 ) {
+            out[ offset ] = FILTER_NONE;
+            System.arraycopy( row , 0 , out , offset + 1 , row.length );
+            return;
+        }
+
+        int best = FILTER_NONE;
+        long bestSum = sum( row );
+
+        for ( int type = FILTER_SUB; type <= FILTER_PAETH; type++ ) {
+            byte[] filtered = scratch[ type ];
+
+            switch ( type ) {
+                case FILTER_SUB -> sub( row , bpp , filtered );
+                case FILTER_UP -> up( row , previous , filtered );
+                case FILTER_AVERAGE -> average( row , previous , bpp , filtered );
+                default -> paeth( row , previous , bpp , filtered );
+            }
+
+            long sum = sum( filtered );
+            if ( sum < bestSum ) {
+                best = type;
+                bestSum = sum;
+            }
+        }
+
+        out[ offset ] = ( byte ) best;
+        System.arraycopy( best == FILTER_NONE ? row : scratch[ best ] , 0 , out , offset + 1 , row.length );
+    }
+
+    private static long sum( byte[] filtered ) {
+        long sum = 0;
+
+        for ( byte b : filtered ) {
+            sum += Math.abs( b );
+        }
+
+        return sum;
+    }
+
+    private static void sub( byte[] row , int bpp , byte[] out ) {
+        System.arraycopy( row , 0 , out , 0 , bpp );
+
+        for ( int i = bpp; i < row.length; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - row[ i - bpp ] );
+        }
+    }
+
+    private static void up( byte[] row , byte[] previous , byte[] out ) {
+        for ( int i = 0; i < row.length; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - previous[ i ] );
+        }
+    }
+
+    private static void average( byte[] row , byte[] previous , int bpp , byte[] out ) {
+        for ( int i = 0; i < bpp; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - ( ( previous[ i ] & 0xFF ) >>> 1 ) );
+        }
+
+        for ( int i = bpp; i < row.length; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - ( ( ( row[ i - bpp ] & 0xFF ) + ( previous[ i ] & 0xFF ) ) >>> 1 ) );
+        }
+    }
+
+    private static void paeth( byte[] row , byte[] previous , int bpp , byte[] out ) {
+        //Without a left pixel, the predictor is the pixel above.
+        for ( int i = 0; i < bpp; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - previous[ i ] );
+        }
+
+        for ( int i = bpp; i < row.length; i++ ) {
+            out[ i ] = ( byte ) ( row[ i ] - paeth( row[ i - bpp ] & 0xFF , previous[ i ] & 0xFF , previous[ i - bpp ] & 0xFF ) );
+        }
+    }
+
+    private static int paeth( int a , int b , int c ) {
+        int p = a + b - c;
+        int pa = Math.abs( p - a );
+        int pb = Math.abs( p - b );
+        int pc = Math.abs( p - c );
+
+        if ( pa <= pb && pa <= pc )
+            return a;
+
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Returns the Adler-32 of two concatenated pieces of data from their own checksums, as zlib's adler32_combine.
+     */
+    static long combineAdler( long adler1 , long adler2 , long length2 ) {
+        final long base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = ( rem * sum1 ) % base;
+
+        sum1 += ( adler2 & 0xFFFF ) + base - 1;
+        sum2 += ( ( adler1 >>> 16 ) & 0xFFFF ) + ( ( adler2 >>> 16 ) & 0xFFFF ) + base - rem;
+
+        if ( sum1 >= base ) sum1 -= base;
+        if ( sum1 >= base ) sum1 -= base;
+        if ( sum2 >= base << 1 ) sum2 -= base << 1;
+        if ( sum2 >= base ) sum2 -= base;
+
+        return sum2 << 16 | sum1;
+    }
+
+    /**
+     * Returns the second zlib header byte advertising the level, chosen so the header is a multiple of 31.
+     */
+    private static byte zlibFlags( int level ) {
+        if ( level <= 1 )
+            return 0x01;
+
+        if ( level <= 5 )
+            return 0x5E;
+
+        return level == 6 ? ( byte ) 0x9C : ( byte ) 0xDA;
+    }
+
+    private static void putChunk( ByteBuffer buffer , String type , byte[] data ) {
+        byte[] name = type.getBytes( StandardCharsets.US_ASCII );
+        CRC32 crc = new CRC32( );
+        crc.update( name );
+        crc.update( data );
+
+        buffer.putInt( data.length ).put( name ).put( data ).putInt( ( int ) crc.getValue( ) );
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes images in the Quite OK Image format, https://qoiformat.org/qoi-specification.pdf.
+ * <br>
+ * QOI compresses in a single pass over the pixels, with no entropy coding, which makes it many times faster to
+ * write than png at somewhat larger files. Each pixel is written as a run of the previous pixel, an index into the
+ * 64 most recently seen pixels, a small difference to the previous pixel, or the pixel itself. Images without
+ * transparent pixels are marked as having 3 channels.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class QoiEncoder implements TextureEncoder {
+
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+
+    private static final int MAX_RUN = 62;
+
+    private static final int HEADER_SIZE = 14;
+
+    private static final byte[] END_MARKER = { 0 , 0 , 0 , 0 , 0 , 0 , 0 , 1 };
+
+    @Override
+    public String getExtension( ) {
+        return "qoi";
+    }
+
+    @Override
+    public long encode( BufferedImage image , OutputStream out ) throws IOException {
+        ImagePixels pixels = ImagePixels.of( image );
+        int w = pixels.width( );
+        int h = pixels.height( );
+
+        //Worst case every pixel is an OP_RGBA.
+        byte[] bytes = new byte[ HEADER_SIZE + w * h * 5 + END_MARKER.length ];
+        int p = 0;
+
+        bytes[ p++ ] = 'q';
+        bytes[ p++ ] = 'o';
+        bytes[ p++ ] = 'i';
+        bytes[ p++ ] = 'f';
+        p = putInt( bytes , p , w );
+        p = putInt( bytes , p , h );
+        bytes[ p++ ] = ( byte ) ( pixels.isOpaque( ) ? 3 : 4 );
+        bytes[ p++ ] = 0; //sRGB with linear alpha
+
+        int[] index = new int[ 64 ];
+        int previous = 0xFF000000;
+        int run = 0;
+
+        for ( int y = 0; y < h; y++ ) {
+            for ( int x = 0; x < w; x++ ) {
+                int px = pixels.get( x , y );
+
+                if ( px == previous ) {
+                    run++;
+
+                    if ( run == MAX_RUN || ( y == h - 1 && x == w - 1 ) ) {
+                        bytes[ p++ ] = ( byte ) ( OP_RUN | ( run - 1 ) );
+                        run = 0;
+                    }
+
+                    continue;
+                }
+
+                if ( run > 0 ) {
+                    bytes[ p++ ] = ( byte ) ( OP_RUN | ( run - 1 ) );
+                    run = 0;
+                }
+
+                int a = px >>> 24;
+                int r = ( px >>> 16 ) & 0xFF;
+                int g = ( px >>> 8 ) & 0xFF;
+                int b = px & 0xFF;
+                int hash = ( r * 3 + g * 5 + b * 7 + a * 11 ) & 63;
+
+                if ( index[ hash ] == px ) {
+                    bytes[ p++ ] = ( byte ) ( OP_INDEX | hash );
+                } else {
+                    index[ hash ] = px;
+
+                    if ( a == previous >>> 24 ) {
+                        int vr = ( byte ) ( r - ( ( previous >>> 16 ) & 0xFF ) );
+                        int vg = ( byte ) ( g - ( ( previous >>> 8 ) & 0xFF ) );
+                        int vb = ( byte ) ( b - ( previous & 0xFF ) );
+                        int vgr = vr - vg;
+                        int vgb = vb - vg;
+
+                        if ( vr > -3 && vr < 2 && vg > -3 && vg < 2 && vb > -3 && vb < 2 ) {
+                            bytes[ p++ ] = ( byte ) ( OP_DIFF | ( vr + 2 ) << 4 | ( vg + 2 ) << 2 | ( vb + 2 ) );
+                        } else if ( vgr > -9 && vgr < 8 && vg > -33 && vg < 32 && vgb > -9 && vgb < 8 ) {
+                            bytes[ p++ ] = ( byte ) ( OP_LUMA | ( vg + 32 ) );
+                            bytes[ p++ ] = ( byte ) ( ( vgr + 8 ) << 4 | ( vgb + 8 ) );
+                        } else {
+                            bytes[ p++ ] = ( byte ) OP_RGB;
+                            bytes[ p++ ] = ( byte ) r;
+                            bytes[ p++ ] = ( byte ) g;
+                            bytes[ p++ ] = ( byte ) b;
+                        }
+                    } else {
+                        bytes[ p++ ] = ( byte ) OP_RGBA;
+                        bytes[ p++ ] = ( byte ) r;
+                        bytes[ p++ ] = ( byte ) g;
+                        bytes[ p++ ] = ( byte ) b;
+                        bytes[ p++ ] = ( byte ) a;
+                    }
+                }
+
+                previous = px;
+            }
+        }
+
+        System.arraycopy( END_MARKER , 0 , bytes , p , END_MARKER.length );
+        p += END_MARKER.length;
+
+        out.write( bytes , 0 , p );
+        return p;
+    }
+
+    private static int putInt( byte[] bytes , int p , int value ) {
+        bytes[ p ] = ( byte ) ( value >>> 24 );
+        bytes[ p + 1 ] = ( byte ) ( value >>> 16 );
+        bytes[ p + 2 ] = ( byte ) ( value >>> 8 );
+        bytes[ p + 3 ] = ( byte ) value;
+        return p + 4;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Dumps the pixels as 8 bit RGBA, row by row, without a header or compression.
+ * <br>
+ * A texture of w x h pixels is w * h * 4 bytes. The width and height are not stored, they are the ones listed for
+ * the texture in uiimages.txt.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class RawEncoder implements TextureEncoder {
+
+    @Override
+    public String getExtension( ) {
+        return "rgba";
+    }
+
+    @Override
+    public long encode( BufferedImage image , OutputStream out ) throws IOException {
+        ImagePixels pixels = ImagePixels.of( image );
+        byte[] row = new byte[ pixels.width( ) * 4 ];
+
+        for ( int y = 0; y < pixels.height( ); y++ ) {
+            pixels.row( y , 4 , row );
+            out.write( row );
+        }
+
+        return ( long ) row.length * pixels.height( );
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Encodes the textures cropped by DDSExtractor2 into the format they are saved in.
+ * <br>
+ * The encoder is chosen per extraction with DDSExtractor2.setTextureEncoder(), so textures can be written in the
+ * format they are served in instead of being converted from .png files afterwards. PngEncoder is used by default,
+ * RawEncoder, QoiEncoder and WebPEncoder are the alternatives. Encoders are used by several threads at once.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public interface TextureEncoder {
+
+    /**
+     * Returns the file extension of the format without the dot, such as "png".
+     */
+    String getExtension( );
+
+    /**
+     * Writes the image to the stream. The stream is not closed.
+     *
+     * @return The amount of bytes written.
+     */
+    long encode( BufferedImage image , OutputStream out ) throws IOException;
+
+    /**
+     * Writes the image to the file, replacing it if it exists.
+     *
+     * @return The size of the written file.
+     */
+    default long write( BufferedImage image , Path file ) throws IOException {
+        try ( OutputStream out = new BufferedOutputStream( Files.newOutputStream( file ) , 64 * 1024 ) ) {
+            return encode( image , out );
+        }
+    }
+
+    /**
+     * Returns the default encoder of the format, by its extension: "png", "rgba", "qoi" or "webp".
+     */
+    static Optional < TextureEncoder > forExtension( String extension ) {
+        TextureEncoder encoder = switch ( extension.toLowerCase( Locale.ROOT ) ) {
+            case "png" -> PngEncoder.getDefault( );
+            case "rgba" , "raw" -> new RawEncoder( );
+            case "qoi" -> new QoiEncoder( );
+            case "webp" -> new WebPEncoder( );
+            default -> null;
+        };
+
+        return Optional.ofNullable( encoder );
+    }
+}
@@ -0,0 +1,725 @@
+package com.github.frizzy.PoeDDSExtractor.DDS;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Writes images as lossless WebP files, following the VP8L bitstream of RFC 9649.
+ * <br>
+ * The encoder trades some compression for speed compared to libwebp:
+ * <br>
+ * - The subtract green transform is applied, followed by the predictor transform with one of a few predictors
+ * chosen per 16x16 block.
+ * <br>
+ * - Backward references are found greedily, comparing the pixel to the left, the pixel above and the last position
+ * with the same two pixels.
+ * <br>
+ * - No color cache and a single prefix code group for the whole image.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class WebPEncoder implements TextureEncoder {
+
+    /**
+     * The largest width and height a WebP image can have.
+     */
+    public static final int MAX_DIMENSION = 16384;
+
+    private static final int PREDICTOR_TRANSFORM = 0;
+    private static final int SUBTRACT_GREEN = 2;
+
+    /**
+     * Predictor blocks are 1 << PREDICTOR_BITS pixels wide.
+     */
+    private static final int PREDICTOR_BITS = 4;
+
+    /**
+     * The predictors tried for every block: left, top, average of left and top, select and clamped gradient.
+     */
+    private static final int[] PREDICTORS = { 1 , 2 , 7 , 11 , 12 };
+
+    private static final int NUM_LITERALS = 256;
+    private static final int NUM_LENGTH_CODES = 24;
+    private static final int NUM_DISTANCE_CODES = 40;
+
+    private static final int MIN_MATCH = 3;
+    private static final int MAX_MATCH = 4096;
+
+    /**
+     * Distances are written plus 120, the codes below are the 2D neighbourhood of the pixel.
+     */
+    private static final int DISTANCE_OFFSET = 120;
+    private static final int MAX_DISTANCE = ( 1 << 20 ) - DISTANCE_OFFSET;
+
+    private static final int HASH_BITS = 16;
+
+    private static final int MAX_CODE_LENGTH = 15;
+    private static final int MAX_CODE_LENGTH_CODE_LENGTH = 7;
+
+    private static final int[] CODE_LENGTH_ORDER = { 17 , 18 , 0 , 1 , 2 , 3 , 4 , 5 , 16 , 6 , 7 , 8 , 9 , 10 , 11 , 12 , 13 , 14 , 15 };
+
+    @Override
+    public String getExtension( ) {
+        return "webp";
+    }
+
+    @Override
+    public long encode( BufferedImage image , OutputStream out ) throws IOException {
+        ImagePixels pixels = ImagePixels.of( image );
+        int w = pixels.width( );
+        int h = pixels.height( );
+
+        if ( w > MAX_DIMENSION || h > MAX_DIMENSION )
+            throw new IllegalArgumentException( "Image of " + w + "x" + h + " is larger than WebP allows." );
+
+        int[] argb = pixels.toArray( );
+        subtractGreen( argb );
+
+        int blocksWide = subSampleSize( w );
+        int[] predictors = new int[ blocksWide * subSampleSize( h ) ];
+        int[] residuals = predict( argb , w , h , predictors );
+
+        BitWriter bits = new BitWriter( w * h + 1024 );
+        bits.write( 0x2F , 8 );
+        bits.write( w - 1 , 14 );
+        bits.write( h - 1 , 14 );
+        bits.write( pixels.isOpaque( ) ? 0 : 1 , 1 );
+        bits.write( 0 , 3 );
+
+        //Transforms in the order they were applied, the decoder reverts them last to first.
+        bits.write( 1 , 1 );
+        bits.write( SUBTRACT_GREEN , 2 );
+        bits.write( 1 , 1 );
+        bits.write( PREDICTOR_TRANSFORM , 2 );
+        bits.write( PREDICTOR_BITS - 2 , 3 );
+        writeImage( bits , predictors , blocksWide , false );
+        bits.write( 0 , 1 );
+
+        writeImage( bits , residuals , w , true );
+
+        byte[] payload = bits.toByteArray( );
+        int pad = payload.length & 1;
+        byte[] header = new byte[ 20 ];
+
+        putTag( header , 0 , "RIFF" );
+        putIntLE( header , 4 , 4 + 8 + payload.length + pad );
+        putTag( header , 8 , "WEBP" );
+        putTag( header , 12 , "VP8L" );
+        putIntLE( header , 16 , payload.length );
+
+        out.write( header );
+        out.write( payload );
+        if ( pad == 1 )
+            out.write( 0 );
+
+        return header.length + payload.length + pad;
+    }
+
+    private static int subSampleSize( int size ) {
+        return ( size + ( 1 << PREDICTOR_BITS ) - 1 ) >> PREDICTOR_BITS;
+    }
+
+    private static void subtractGreen( int[] argb ) {
+        for ( int i = 0; i < argb.length; i++ ) {
+            int p = argb[ i ];
+            int g = ( p >>> 8 ) & 0xFF;
+            int r = ( ( p >>> 16 ) - g ) & 0xFF;
+            int b = ( p - g ) & 0xFF;
+            argb[ i ] = ( p & 0xFF00FF00 ) | r << 16 | b;
+        }
+    }
+
+    /**
+     * Chooses the predictor of every block, writing them into predictors, and returns the residuals of the image.
+     */
+    private static int[] predict( int[] argb , int w , int h , int[] predictors ) {
+        int size = 1 << PREDICTOR_BITS;
+        int blocksWide = subSampleSize( w );
+        int[] residuals = new int[ argb.length ];
+
+        for ( int by = 0; by * size < h; by++ ) {
+            for ( int bx = 0; bx * size < w; bx++ ) {
+                int x0 = bx * size;
+                int y0 = by * size;
+                int x1 = Math.min( w , x0 + size );
+                int y1 = Math.min( h , y0 + size );
+
+                int best = PREDICTORS[ 0 ];
+                long bestCost = Long.MAX_VALUE;
+
+                for ( int mode : PREDICTORS ) {
+                    long cost = 0;
+
+                    for ( int y = y0; y < y1 && cost < bestCost; y++ ) {
+                        for ( int x = x0; x < x1; x++ ) {
+                            cost += cost( subPixels( argb[ y * w + x ] , predict( argb , w , x , y , mode ) ) );
+                        }
+                    }
+
+                    if ( cost < bestCost ) {
+                        best = mode;
+                        bestCost = cost;
+                    }
+                }
+
+                predictors[ by * blocksWide + bx ] = 0xFF000000 | best << 8;
+
+                for ( int y = y0; y < y1; y++ ) {
+                    for ( int x = x0; x < x1; x++ ) {
+                        residuals[ y * w + x ] = subPixels( argb[ y * w + x ] , predict( argb , w , x , y , best ) );
+                    }
+                }
+            }
+        }
+
+        return residuals;
+    }
+
+    /**
+     * Returns the prediction of the pixel. The top left pixel is predicted as opaque black, the rest of the top
+     * row from the left and the left column from the top. The pixel above and to the right of the rightmost
+     * column is the leftmost pixel of the current row, which is where it is in memory.
+     */
+    private static int predict( int[] argb , int w , int x , int y , int mode ) {
+        int i = y * w + x;
+
+        if ( y == 0 )
+            return x == 0 ? 0xFF000000 : argb[ i - 1 ];
+
+        if ( x == 0 )
+            return argb[ i - w ];
+
+        int l = argb[ i - 1 ];
+        int t = argb[ i - w ];
+
+        return switch ( mode ) {
+            case 1 -> l;
+            case 2 -> t;
+            case 7 -> average( l , t );
+            case 11 -> select( l , t , argb[ i - w - 1 ] );
+            case 12 -> clampAddSubtractFull( l , t , argb[ i - w - 1 ] );
+            default -> throw new IllegalArgumentException( "Unsupported predictor " + mode );
+        };
+    }
+
+    private static int average( int a , int b ) {
+        return ( ( ( a ^ b ) & 0xFEFEFEFE ) >>> 1 ) + ( a & b );
+    }
+
+    /**
+     * Returns the left or top pixel, whichever is closer to the gradient estimate L + T - TL.
+     */
+    private static int select( int l , int t , int tl ) {
+        int pl = 0;
+        int pt = 0;
+
+        for ( int shift = 0; shift < 32; shift += 8 ) {
+            int lc = ( l >>> shift ) & 0xFF;
+            int tc = ( t >>> shift ) & 0xFF;
+            int tlc = ( tl >>> shift ) & 0xFF;
+            pl += Math.abs( tc - tlc );
+            pt += Math.abs( lc - tlc );
+        }
+
+        return pl < pt ? l : t;
+    }
+
+    private static int clampAddSubtractFull( int l , int t , int tl ) {
+        int result = 0;
+
+        for ( int shift = 0; shift < 32; shift += 8 ) {
+            int c = ( ( l >>> shift ) & 0xFF ) + ( ( t >>> shift ) & 0xFF ) - ( ( tl >>> shift ) & 0xFF );
+            result |= Math.max( 0 , Math.min( 255 , c ) ) << shift;
+        }
+
+        return result;
+    }
+
+    /**
+     * Subtracts the pixels channel by channel, modulo 256.
+     */
+    private static int subPixels( int a , int b ) {
+        int alphaGreen = 0x00FF00FF + ( a & 0xFF00FF00 ) - ( b & 0xFF00FF00 );
+        int redBlue = 0xFF00FF00 + ( a & 0x00FF00FF ) - ( b & 0x00FF00FF );
+        return ( alphaGreen & 0xFF00FF00 ) | ( redBlue & 0x00FF00FF );
+    }
+
+    /**
+     * Returns the sum of the channels of a residual, taken as signed values.
+     */
+    private static int cost( int residual ) {
+        return Math.abs( ( byte ) residual ) + Math.abs( ( byte ) ( residual >>> 8 ) )
+                + Math.abs( ( byte ) ( residual >>> 16 ) ) + Math.abs( ( byte ) ( residual >>> 24 ) );
+    }
+
+    /**
+     * Writes the pixels as an entropy coded image: no color cache, one prefix code group, then the pixels as
+     * literals and backward references.
+     *
+     * @param main True for the image itself, which also states it has no meta prefix codes.
+     */
+    private static void writeImage( BitWriter bits , int[] argb , int width , boolean main ) {
+        int[] lengths = new int[ argb.length ];
+        int[] distances = new int[ argb.length ];
+        int tokens = findReferences( argb , width , lengths , distances );
+
+        int[] green = new int[ NUM_LITERALS + NUM_LENGTH_CODES ];
+        int[] red = new int[ NUM_LITERALS ];
+        int[] blue = new int[ NUM_LITERALS ];
+        int[] alpha = new int[ NUM_LITERALS ];
+        int[] distance = new int[ NUM_DISTANCE_CODES ];
+
+        for ( int t = 0, i = 0; t < tokens; t++ ) {
+            if ( lengths[ t ] == 0 ) {
+                int p = argb[ i++ ];
+                green[ ( p >>> 8 ) & 0xFF ]++;
+                red[ ( p >>> 16 ) & 0xFF ]++;
+                blue[ p & 0xFF ]++;
+                alpha[ p >>> 24 ]++;
+            } else {
+                green[ NUM_LITERALS + prefix( lengths[ t ] ) ]++;
+                distance[ prefix( distances[ t ] ) ]++;
+                i += lengths[ t ];
+            }
+        }
+
+        bits.write( 0 , 1 );
+        if ( main )
+            bits.write( 0 , 1 );
+
+        PrefixCode greenCode = PrefixCode.of( green , MAX_CODE_LENGTH );
+        PrefixCode redCode = PrefixCode.of( red , MAX_CODE_LENGTH );
+        PrefixCode blueCode = PrefixCode.of( blue , MAX_CODE_LENGTH );
+        PrefixCode alphaCode = PrefixCode.of( alpha , MAX_CODE_LENGTH );
+        PrefixCode distanceCode = PrefixCode.of( distance , MAX_CODE_LENGTH );
+
+        for ( PrefixCode code : new PrefixCode[] { greenCode , redCode , blueCode , alphaCode , distanceCode } ) {
+            writeCode( bits , code );
+        }
+
+        for ( int t = 0, i = 0; t < tokens; t++ ) {
+            if ( lengths[ t ] == 0 ) {
+                int p = argb[ i++ ];
+                greenCode.write( bits , ( p >>> 8 ) & 0xFF );
+                redCode.write( bits , ( p >>> 16 ) & 0xFF );
+                blueCode.write( bits , p & 0xFF );
+                alphaCode.write( bits , p >>> 24 );
+            } else {
+                greenCode.write( bits , NUM_LITERALS + prefix( lengths[ t ] ) );
+                writeExtraBits( bits , lengths[ t ] );
+                distanceCode.write( bits , prefix( distances[ t ] ) );
+                writeExtraBits( bits , distances[ t ] );
+                i += lengths[ t ];
+            }
+        }
+    }
+
+    /**
+     * Greedily splits the pixels into literals and backward references, comparing the previous pixel, the pixel
+     * above and the last position the same two pixels were seen at.
+     *
+     * @param lengths   Receives the length of every backward reference, or 0 for a literal.
+     * @param distances Receives the distance code of every backward reference.
+     * @return The amount of literals and backward references.
+     */
+    private static int findReferences( int[] argb , int width , int[] lengths , int[] distances ) {
+        int[] last = new int[ 1 << HASH_BITS ];
+        Arrays.fill( last , -1 );
+
+        int tokens = 0;
+        int i = 0;
+
+        while ( i < argb.length ) {
+            int bestLength = 0;
+            int bestDistance = 0;
+
+            if ( i > 0 ) {
+                bestLength = matchLength( argb , i , 1 );
+                bestDistance = 1;
+            }
+
+            if ( i >= width && width > 1 ) {
+                int length = matchLength( argb , i , width );
+
+                if ( length > bestLength ) {
+                    bestLength = length;
+                    bestDistance = width;
+                }
+            }
+
+            if ( i + 1 < argb.length ) {
+                int hash = hash( argb[ i ] , argb[ i + 1 ] );
+                int candidate = last[ hash ];
+                last[ hash ] = i;
+
+                if ( candidate >= 0 && i - candidate <= MAX_DISTANCE ) {
+                    int length = matchLength( argb , i , i - candidate );
+
+                    if ( length > bestLength ) {
+                        bestLength = length;
+                        bestDistance = i - candidate;
+                    }
+                }
+            }
+
+            if ( bestLength >= MIN_MATCH ) {
+                lengths[ tokens ] = bestLength;
+                distances[ tokens ] = distanceCode( bestDistance , width );
+
+                //Positions inside the reference are hashed so later pixels can refer back to them.
+                for ( int j = i + 1; j < i + bestLength && j + 1 < argb.length; j++ ) {
+                    last[ hash( argb[ j ] , argb[ j + 1 ] ) ] = j;
+                }
+
+                i += bestLength;
+            } else {
+                lengths[ tokens ] = 0;
+                i++;
+            }
+
+            tokens++;
+        }
+
+        return tokens;
+    }
+
+    private static int matchLength( int[] argb , int i , int distance ) {
+        int max = Math.min( MAX_MATCH , argb.length - i );
+        int length = 0;
+
+        while ( length < max && argb[ i + length ] == argb[ i + length - distance ] ) {
+            length++;
+        }
+
+        return length;
+    }
+
+    private static int hash( int a , int b ) {
+        return ( int ) ( ( ( a * 0x9E3779B1L ) ^ ( b * 0x85EBCA6BL ) ) >>> 16 ) & ( ( 1 << HASH_BITS ) - 1 );
+    }
+
+    /**
+     * Returns the distance code of the distance. The pixel above and the pixel to the left have short codes, other
+     * distances are written plus DISTANCE_OFFSET.
+     */
+    private static int distanceCode( int distance , int width ) {
+        if ( distance == width )
+            return 1;
+
+        if ( distance == 1 )
+            return 2;
+
+        return distance + DISTANCE_OFFSET;
+    }
+
+    /**
+     * Returns the prefix code of a length or distance code, the value being its prefix and extra bits.
+     */
+    private static int prefix( int value ) {
+        int d = value - 1;
+
+        if ( d < 4 )
+            return d;
+
+        int highest = 31 - Integer.numberOfLeadingZeros( d );
+        int second = ( d >>> ( highest - 1 ) ) & 1;
+        return 2 * highest + second;
+    }
+
+    private static void writeExtraBits( BitWriter bits , int value ) {
+        int d = value - 1;
+
+        if ( d < 4 )
+            return;
+
+        int extraBits = 31 - Integer.numberOfLeadingZeros( d ) - 1;
+        bits.write( d & ( ( 1 << extraBits ) - 1 ) , extraBits );
+    }
+
+    /**
+     * Writes the prefix code: a simple code for up to two symbols below 256, otherwise the code lengths, run length
+     * coded and written with a code of their own.
+     */
+    private static void writeCode( BitWriter bits , PrefixCode code ) {
+        int[] symbols = code.usedSymbols( );
+
+        if ( symbols.length <= 2 && ( symbols.length == 0 || symbols[ symbols.length - 1 ] < NUM_LITERALS ) ) {
+            int first = symbols.length == 0 ? 0 : symbols[ 0 ];
+
+            bits.write( 1 , 1 );
+            bits.write( Math.max( 0 , symbols.length - 1 ) , 1 );
+
+            if ( first < 2 ) {
+                bits.write( 0 , 1 );
+                bits.write( first , 1 );
+            } else {
+                bits.write( 1 , 1 );
+                bits.write( first , 8 );
+            }
+
+            if ( symbols.length == 2 )
+                bits.write( symbols[ 1 ] , 8 );
+
+            return;
+        }
+
+        //Run length codes of the code lengths: 0 to 15 literally, 16 repeats the previous length, 17 and 18 zeros.
+        int[] lengths = code.lengths( );
+        int[] runSymbols = new int[ lengths.length ];
+        int[] runExtra = new int[ lengths.length ];
+        int runs = 0;
+        int i = 0;
+
+        while ( i < lengths.length ) {
+            int value = lengths[ i ];
+            int run = 1;
+
+            while ( i + run < lengths.length && lengths[ i + run ] == value ) {
+                run++;
+            }
+
+            i += run;
+
+            if ( value == 0 ) {
+                while ( run >= 11 ) {
+                    int r = Math.min( run , 138 );
+                    runSymbols[ runs ] = 18;
+                    runExtra[ runs++ ] = r - 11;
+                    run -= r;
+                }
+
+                if ( run >= 3 ) {
+                    runSymbols[ runs ] = 17;
+                    runExtra[ runs++ ] = run - 3;
+                    run = 0;
+                }
+            } else {
+                runSymbols[ runs++ ] = value;
+                run--;
+
+                while ( run >= 3 ) {
+                    int r = Math.min( run , 6 );
+                    runSymbols[ runs ] = 16;
+                    runExtra[ runs++ ] = r - 3;
+                    run -= r;
+                }
+            }
+
+            while ( run-- > 0 ) {
+                runSymbols[ runs++ ] = value;
+            }
+        }
+
+        int[] histogram = new int[ CODE_LENGTH_ORDER.length ];
+        for ( int r = 0; r < runs; r++ ) {
+            histogram[ runSymbols[ r ] ]++;
+        }
+
+        PrefixCode lengthCode = PrefixCode.of( histogram , MAX_CODE_LENGTH_CODE_LENGTH );
+        int[] codeLengthLengths = lengthCode.lengths( );
+        int count = CODE_LENGTH_ORDER.length;
+
+        while ( count > 4 && codeLengthLengths[ CODE_LENGTH_ORDER[ count - 1 ] ] == 0 ) {
+            count--;
+        }
+
+        bits.write( 0 , 1 );
+        bits.write( count - 4 , 4 );
+
+        for ( int c = 0; c < count; c++ ) {
+            bits.write( codeLengthLengths[ CODE_LENGTH_ORDER[ c ] ] , 3 );
+        }
+
+        //Every symbol of the alphabet is written.
+        bits.write( 0 , 1 );
+
+        for ( int r = 0; r < runs; r++ ) {
+            lengthCode.write( bits , runSymbols[ r ] );
+
+            switch ( runSymbols[ r ] ) {
+                case 16 -> bits.write( runExtra[ r ] , 2 );
+                case 17 -> bits.write( runExtra[ r ] , 3 );
+                case 18 -> bits.write( runExtra[ r ] , 7 );
+                default -> { }
+            }
+        }
+    }
+
+    private static void putTag( byte[] bytes , int offset , String tag ) {
+        for ( int i = 0; i < 4; i++ ) {
+            bytes[ offset + i ] = ( byte ) tag.charAt( i );
+        }
+    }
+
+    private static void putIntLE( byte[] bytes , int offset , int value ) {
+        bytes[ offset ] = ( byte ) value;
+        bytes[ offset + 1 ] = ( byte ) ( value >>> 8 );
+        bytes[ offset + 2 ] = ( byte ) ( value >>> 16 );
+        bytes[ offset + 3 ] = ( byte ) ( value >>> 24 );
+    }
+
+    /**
+     * A canonical prefix code. A code with a single used symbol writes 0 bits per symbol.
+     *
+     * @param lengths The code length of every symbol, 0 for unused symbols.
+     * @param codes   The code of every symbol, bit reversed to be written least significant bit first.
+     * @param single  True if only one symbol is used.
+     */
+    private record PrefixCode( int[] lengths , int[] codes , boolean single ) {
+
+        /**
+         * Builds the code from the histogram, limiting code lengths to maxLength by flattening the histogram
+         * until the tree fits.
+         */
+        static PrefixCode of( int[] histogram , int maxLength ) {
+            int n = histogram.length;
+            int[] lengths = new int[ n ];
+            int used = 0;
+            int only = 0;
+
+            for ( int s = 0; s < n; s++ ) {
+                if ( histogram[ s ] > 0 ) {
+                    used++;
+                    only = s;
+                }
+            }
+
+            if ( used <= 1 ) {
+                lengths[ only ] = 1;
+                return new PrefixCode( lengths , new int[ n ] , true );
+            }
+
+            for ( int minCount = 1; ; minCount *= 2 ) {
+                if ( buildLengths( histogram , minCount , lengths ) <= maxLength )
+                    break;
+            }
+
+            return new PrefixCode( lengths , canonicalCodes( lengths ) , false );
+        }
+
+        /**
+         * Builds a Huffman tree of the counts, raising counts below minCount to it, and returns its depth.
+         */
+        private static int buildLengths( int[] histogram , int minCount , int[] lengths ) {
+            int n = histogram.length;
+            long[] weights = new long[ 2 * n ];
+            int[] parents = new int[ 2 * n ];
+            PriorityQueue < Integer > queue = new PriorityQueue <>( ( a , b ) ->
+                    weights[ a ] != weights[ b ] ? Long.compare( weights[ a ] , weights[ b ] ) : Integer.compare( a , b ) );
+
+            for ( int s = 0; s < n; s++ ) {
+                if ( histogram[ s ] > 0 ) {
+                    weights[ s ] = Math.max( histogram[ s ] , minCount );
+                    queue.add( s );
+                }
+            }
+
+            int next = n;
+
+            while ( queue.size( ) > 1 ) {
+                int a = queue.poll( );
+                int b = queue.poll( );
+                weights[ next ] = weights[ a ] + weights[ b ];
+                parents[ a ] = next;
+                parents[ b ] = next;
+                queue.add( next++ );
+            }
+
+            int root = next - 1;
+            int depth = 0;
+
+            for ( int s = 0; s < n; s++ ) {
+                lengths[ s ] = 0;
+
+                if ( histogram[ s ] > 0 ) {
+                    for ( int node = s; node != root; node = parents[ node ] ) {
+                        lengths[ s ]++;
+                    }
+
+                    depth = Math.max( depth , lengths[ s ] );
+                }
+            }
+
+            return depth;
+        }
+
+        private static int[] canonicalCodes( int[] lengths ) {
+            int[] counts = new int[ MAX_CODE_LENGTH + 1 ];
+            for ( int length : lengths ) {
+                counts[ length ]++;
+            }
+
+            counts[ 0 ] = 0;
+            int[] next = new int[ MAX_CODE_LENGTH + 1 ];
+            int code = 0;
+
+            for ( int bits = 1; bits <= MAX_CODE_LENGTH; bits++ ) {
+                code = ( code + counts[ bits - 1 ] ) << 1;
+                next[ bits ] = code;
+            }
+
+            int[] codes = new int[ lengths.length ];
+
+            for ( int s = 0; s < lengths.length; s++ ) {
+                if ( lengths[ s ] > 0 )
+                    codes[ s ] = Integer.reverse( next[ lengths[ s ] ]++ ) >>> ( 32 - lengths[ s ] );
+            }
+
+            return codes;
+        }
+
+        int[] usedSymbols( ) {
+            return IntStream.range( 0 , lengths.length ).filter( s -> lengths[ s ] > 0 ).toArray( );
+        }
+
+        void write( BitWriter bits , int symbol ) {
+            if ( !single )
+                bits.write( codes[ symbol ] , lengths[ symbol ] );
+        }
+    }
+
+    /**
+     * Writes bits least significant bit first.
+     */
+    private static final class BitWriter {
+
+        private byte[] bytes;
+
+        private int size;
+
+        private long buffer;
+
+        private int count;
+
+        BitWriter( int capacity ) {
+            bytes = new byte[ Math.max( 16 , capacity ) ];
+        }
+
+        void write( int value , int bits ) {
+            buffer |= ( value & ( ( 1L << bits ) - 1 ) ) << count;
+            count += bits;
+
+            while ( count >= 8 ) {
+                if ( size == bytes.length )
+                    bytes = Arrays.copyOf( bytes , bytes.length * 2 );
+
+                bytes[ size++ ] = ( byte ) buffer;
+                buffer >>>= 8;
+                count -= 8;
+            }
+        }
+
+        byte[] toByteArray( ) {
+            if ( count > 0 )
+                write( 0 , 8 - count );
+
+            return Arrays.copyOf( bytes , size );
+        }
+    }
+}
@@ -0,0 +1,734 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSConverter2;
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSExtractor2;
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSFile;
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSImage;
+import com.github.frizzy.PoeDDSExtractor.DDS.PngEncoder;
+import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs the GGPK2, DDSConverter2 and DDSExtractor2 process for many .dds files at once.
+ * <br>
+ * Every .dds file passes through three stages, each running on its own executor:
+ * <br>
+ * Read - The .dds file is extracted from the Content.ggpk file or bundles by GGPK2. I/O bound.
+ * <br>
+ * Decode - The .dds file is converted to a .png file by DDSConverter2, or decoded by DDSDecoder if no converter is
+ * set. CPU bound.
+ * <br>
+ * Write - The textures are cropped out of the .png file and written by DDSExtractor2. Mostly I/O bound.
+ * <br>
+ * While one file is being decoded, the next is already being read and the previous is being written, so
+ * every core has work to do. At most maxInFlight files are between the read and write stages at any time;
+ * reading the next file waits until one finishes, so a slow stage cannot pile up files in memory or on disk.
+ * <br>
+ * Files are started in the order of GGPK2's ExtractionPlan, and the result list keeps that order.
+ * <br>
+ * extractInMemory() skips the per file directories, .dds and .png files, reading the .dds files into memory and
+ * writing nothing but the cropped textures, unless the intermediate files are asked for.
+ * <br>
+ * extractIncremental() uses an ExtractionManifest to only extract what changed since the previous extraction.
+ * <br>
+ * extract() only completes once everything is done. publish() and stream() hand out each atlas and texture as soon
+ * as it is ready, for consumers that can start working on the first files while the rest are still extracted.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ExtractionEngine implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger( ExtractionEngine.class.getName( ) );
+
+    private final GGPK2 ggpk;
+
+    private final DDSConverter2 converter;
+
+    private final DDSExtractor2 extractor;
+
+    private final ExecutorService readExecutor;
+
+    private final ExecutorService decodeExecutor;
+
+    private final ExecutorService writeExecutor;
+
+    /**
+     * True if the executors were created by the engine and have to be shut down by close().
+     */
+    private final boolean ownsExecutors;
+
+    /**
+     * The maximum amount of files between the read and write stages.
+     */
+    private volatile int maxInFlight;
+
+    /**
+     * Creates the engine with its own executors. Reads use up to 4 threads, decoding uses one thread per core
+     * and writing uses half as many. Call close() once the engine is no longer needed.
+     * <br>
+     * Virtual threads would suit the read and write stages, but they need Java 21. Pass your own executors to
+     * the other constructor to use them.
+     *
+     * @param ggpk      GGPK2 instance the .dds files are extracted with.
+     * @param converter Converter for the .dds files. Can be null if the extractor reads .dds files itself.
+     * @param extractor Extractor for the textures.
+     */
+    public ExtractionEngine( GGPK2 ggpk , DDSConverter2 converter , DDSExtractor2 extractor ) {
+        this( ggpk , converter , extractor ,
+                Executors.newFixedThreadPool( Math.min( 4 , cores( ) ) , threads( "read" ) ) ,
+                Executors.newFixedThreadPool( cores( ) , threads( "decode" ) ) ,
+                Executors.newFixedThreadPool( Math.max( 1 , cores( ) / 2 ) , threads( "write" ) ) ,
+                true );
+    }
+
+    /**
+     * Creates the engine with the provided executors. The executors are not shut down by close().
+     *
+     * @param ggpk           GGPK2 instance the .dds files are extracted with.
+     * @param converter      Converter for the .dds files. Can be null if the extractor reads .dds files itself.
+     * @param extractor      Extractor for the textures.
+     * @param readExecutor   Executor for the read stage.
+     * @param decodeExecutor Executor for the decode stage.
+     * @param writeExecutor  Executor for the write stage.
+     */
+    public ExtractionEngine( GGPK2 ggpk , DDSConverter2 converter , DDSExtractor2 extractor , ExecutorService readExecutor ,
+                             ExecutorService decodeExecutor , ExecutorService writeExecutor ) {
+        this( ggpk , converter , extractor , readExecutor , decodeExecutor , writeExecutor , false );
+    }
+
+    private ExtractionEngine( GGPK2 ggpk , DDSConverter2 converter , DDSExtractor2 extractor , ExecutorService readExecutor ,
+                              ExecutorService decodeExecutor , ExecutorService writeExecutor , boolean ownsExecutors ) {
+        this.ggpk = ggpk;
+        this.converter = converter;
+        this.extractor = extractor;
+        this.readExecutor = readExecutor;
+        this.decodeExecutor = decodeExecutor;
+        this.writeExecutor = writeExecutor;
+        this.ownsExecutors = ownsExecutors;
+        this.maxInFlight = cores( ) * 2;
+    }
+
+    /**
+     * Adds a handler to the logger.
+     */
+    public void addLoggerHandler( Handler handler ) {
+        LOGGER.addHandler( handler );
+    }
+
+    /**
+     * Sets the maximum amount of files between the read and write stages. Only affects extractions started
+     * after the call.
+     */
+    public void setMaxInFlight( int maxInFlight ) {
+        if ( maxInFlight < 1 )
+            throw new IllegalArgumentException( "maxInFlight must be at least 1." );
+
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Extracts the wanted .dds files and their textures. The returned future completes once every file has
+     * passed through every stage, with the DDSFiles in extraction order. Files that failed in any stage are
+     * logged and left out.
+     *
+     * @param outputPath     The output directory where extracted .dds files and related files will be extracted to.
+     * @param wantedFiles    The internal paths of the wanted .dds files.
+     * @param texturesOutput A path all extracted textures will be saved to. Can be null to save the textures next
+     *                       to their .dds file.
+     */
+    public CompletableFuture < List < DDSFile > > extract( Path outputPath , List < String > wantedFiles , Path texturesOutput ) {
+        return run( wantedFiles , wanted -> process( outputPath , wanted , texturesOutput , null ) , ( ) -> false );
+    }
+
+    /**
+     * Extracts the wanted .dds files and their textures, publishing every atlas and every texture as soon as it is
+     * ready instead of waiting for the whole extraction. See ExtractionResult for what is published.
+     * <br>
+     * The publisher is cold: every subscriber starts its own extraction. Publishing waits while the subscriber
+     * has not requested more results, which in turn holds back the stages, so a slow subscriber never causes more
+     * than maxInFlight files to be held in memory. Cancelling the subscription stops new files from being started.
+     *
+     * @param outputPath     The output directory where extracted .dds files and related files will be extracted to.
+     * @param wantedFiles    The internal paths of the wanted .dds files.
+     * @param texturesOutput A path all extracted textures will be saved to. Can be null to save the textures next
+     *                       to their .dds file.
+     */
+    public Flow.Publisher < ExtractionResult > publish( Path outputPath , List < String > wantedFiles , Path texturesOutput ) {
+        return subscriber -> {
+            SubmissionPublisher < ExtractionResult > publisher = new SubmissionPublisher <>( );
+            publisher.subscribe( subscriber );
+
+            run( wantedFiles , wanted -> process( outputPath , wanted , texturesOutput , publisher::submit ) ,
+                    ( ) -> !publisher.hasSubscribers( ) )
+                    .whenComplete( ( files , error ) -> {
+                        if ( error == null ) {
+                            publisher.close( );
+                        } else {
+                            publisher.closeExceptionally( error );
+                        }
+                    } );
+        };
+    }
+
+    /**
+     * Extracts the wanted .dds files and their textures, streaming every DDSFile as soon as all of its textures
+     * have been extracted. Files are streamed in the order they complete, failed files are logged and left out.
+     * <br>
+     * At most maxInFlight completed files wait to be consumed; the stages are held back until the stream catches
+     * up. Close the stream, for example with try-with-resources, if it is not consumed to the end.
+     *
+     * @param outputPath     The output directory where extracted .dds files and related files will be extracted to.
+     * @param wantedFiles    The internal paths of the wanted .dds files.
+     * @param texturesOutput A path all extracted textures will be saved to. Can be null to save the textures next
+     *                       to their .dds file.
+     */
+    public Stream < DDSFile > stream( Path outputPath , List < String > wantedFiles , Path texturesOutput ) {
+        BlockingQueue < Object > queue = new ArrayBlockingQueue <>( maxInFlight + 1 );
+        AtomicBoolean closed = new AtomicBoolean( );
+        Object end = new Object( );
+
+        Consumer < ExtractionResult > sink = result -> {
+            if ( result.kind( ) == ExtractionResult.Kind.COMPLETE )
+                offer( queue , result.file( ) , closed );
+        };
+
+        run( wantedFiles , wanted -> process( outputPath , wanted , texturesOutput , sink ) , closed::get ).whenComplete( ( files , error ) -> offer( queue , error == null ? end : error , closed ) );
+
+        Spliterator < DDSFile > spliterator = new Spliterators.AbstractSpliterator <>( Long.MAX_VALUE ,
+                Spliterator.ORDERED | Spliterator.NONNULL ) {
+
+            @Override
+            public boolean tryAdvance( Consumer < ? super DDSFile > action ) {
+                Object next;
+
+                try {
+                    next = queue.take( );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread( ).interrupt( );
+                    throw new CancellationException( "Interrupted while waiting for the next file." );
+                }
+
+                if ( next == end ) {
+                    queue.offer( end );
+                    return false;
+                }
+
+                if ( next instanceof Throwable error )
+                    throw new CompletionException( error );
+
+                action.accept( ( DDSFile ) next );
+                return true;
+            }
+        };
+
+        return StreamSupport.stream( spliterator , false ).onClose( ( ) -> {
+            closed.set( true );
+            queue.clear( );
+        } );
+    }
+
+    /**
+     * Extracts the textures of the wanted .dds files without writing anything but the textures to disk.
+     * <br>
+     * The .dds files are read into memory from the Content.ggpk file or bundles, decoded, and the textures are
+     * cropped from the decoded atlas. No per file directory, .dds file, .png file or path.txt file is created,
+     * and DDSConverter2 is not used. The disk paths of the returned DDSFiles are their internal paths.
+     *
+     * @param wantedFiles    The internal paths of the wanted .dds files.
+     * @param texturesOutput The path all extracted textures will be saved to.
+     */
+    public CompletableFuture < List < DDSFile > > extractInMemory( List < String > wantedFiles , Path texturesOutput ) {
+        return extractInMemory( wantedFiles , texturesOutput , null );
+    }
+
+    /**
+     * Same as extractInMemory( List , Path ), optionally keeping the intermediate files.
+     * <br>
+     * If intermediatesOutput is set, the .dds file and the decoded atlas are also written there as a .dds and .png
+     * file, in the same per file directories GGPK2 extracts to, and the DDSFiles point to them.
+     *
+     * @param wantedFiles         The internal paths of the wanted .dds files.
+     * @param texturesOutput      The path all extracted textures will be saved to. Can be null to save the textures
+     *                            next to the kept .dds files, if intermediatesOutput is set, or if the extractor
+     *                            writes into an OutputSink or TextureStore.
+     * @param intermediatesOutput The output directory the .dds and .png files are kept in. Can be null to keep
+     *                            nothing but the textures.
+     */
+    public CompletableFuture < List < DDSFile > > extractInMemory( List < String > wantedFiles , Path texturesOutput ,
+                                                                 Path intermediatesOutput ) {
+        if ( texturesOutput == null && intermediatesOutput == null && extractor.getOutputSink( ).isEmpty( )
+                && extractor.getTextureStore( ).isEmpty( ) )
+            throw new IllegalArgumentException( "A textures output is needed when the intermediate files are not kept." );
+
+        return run( wantedFiles , wanted -> processInMemory( wanted , texturesOutput , intermediatesOutput ) , ( ) -> false );
+    }
+
+    /**
+     * Extracts only the textures that changed since the previous extraction into the same textures output.
+     * <br>
+     * The ExtractionManifest saved in texturesOutput records the hash of every .dds file and the textures cropped
+     * from it. .dds files stored in the Content.ggpk file are compared by the hash of their FILE record, without
+     * reading them; bundled .dds files are read and hashed. Unchanged .dds files are not decoded, and only the
+     * added and changed textures of a changed .dds file are written. Outputs of removed textures are deleted.
+     * <br>
+     * Everything runs in memory like extractInMemory(), and does not depend on the overwrite flags of GGPK2 or
+     * DDSExtractor2. The returned Report lists the added, changed and removed textures.
+     * <br>
+     * The manifest compares against the texture files in texturesOutput, so an extractor writing into an
+     * OutputSink or TextureStore can not be used.
+     *
+     * @param wantedFiles    The internal paths of the wanted .dds files.
+     * @param texturesOutput The path all extracted textures and the manifest are saved to.
+     */
+    public CompletableFuture < ExtractionManifest.Report > extractIncremental( List < String > wantedFiles , Path texturesOutput ) {
+        if ( extractor.getOutputSink( ).isPresent( ) || extractor.getTextureStore( ).isPresent( ) )
+            throw new IllegalStateException( "Incremental extraction needs the textures written to texturesOutput, not to an OutputSink or TextureStore." );
+
+        ExtractionManifest manifest = ExtractionManifest.load( texturesOutput );
+
+        return run( wantedFiles , wanted -> processIncremental( wanted , texturesOutput , manifest ) , ( ) -> false )
+                .thenApply( files -> {
+                    /*
+                     * Without a native reader nothing can be found, which must not be mistaken for every file
+                     * having been removed.
+                     */
+                    if ( ggpk.contains( GGPK2.UIIMAGES_TXT_LOC ) ) {
+                        manifest.removeMissing( ddsPath -> {
+                            if ( ggpk.contains( ddsPath ) )
+                                return true;
+
+                            extractor.getAtlasCache( ).invalidate( ddsPath );
+                            return false;
+                        } );
+                    }
+
+                    try {
+                        manifest.save( );
+                    } catch ( IOException e ) {
+                        throw new UncheckedIOException( e );
+                    }
+
+                    ExtractionManifest.Report report = manifest.getReport( );
+                    LOGGER.log( Level.INFO , report.added( ).size( ) + " textures added, " + report.changed( ).size( )
+                            + " changed, " + report.removed( ).size( ) + " removed and " + report.unchanged( ) + " unchanged." );
+
+                    return report;
+                } );
+    }
+
+    /**
+     * Starts every planned file from a separate thread, since waiting for a permit would otherwise block the caller
+     * or one of the stage threads.
+     *
+     * @param process   Chains the stages for a single file.
+     * @param cancelled Checked before each file is started, no further files are started once it returns true.
+     */
+    private CompletableFuture < List < DDSFile > > run( List < String > wantedFiles , Function < String, CompletableFuture < DDSFile > > process ,
+                                                       BooleanSupplier cancelled ) {
+        List < String > planned = ggpk.plan( wantedFiles ).getPaths( );
+        Semaphore inFlight = new Semaphore( maxInFlight );
+        List < CompletableFuture < DDSFile > > futures = new ArrayList <>( planned.size( ) );
+
+        CompletableFuture < Void > submitted = new CompletableFuture <>( );
+
+        threads( "submit" ).newThread( ( ) -> {
+            for ( String wanted : planned ) {
+                try {
+                    inFlight.acquire( );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread( ).interrupt( );
+                    LOGGER.log( Level.WARNING , "Extraction was interrupted, remaining files were not started." );
+                    break;
+                }
+
+                if ( cancelled.getAsBoolean( ) ) {
+                    LOGGER.log( Level.INFO , "Extraction was cancelled, remaining files were not started." );
+                    break;
+                }
+
+                CompletableFuture < DDSFile > chain;
+
+                try {
+                    chain = process.apply( wanted ).whenComplete( ( result , error ) -> inFlight.release( ) );
+                } catch ( RuntimeException e ) {
+                    //Such as a RejectedExecutionException once the engine was closed.
+                    inFlight.release( );
+                    LOGGER.log( Level.SEVERE , "Extraction of " + wanted + " could not be started, remaining files were not started." , e );
+                    submitted.completeExceptionally( e );
+                    return;
+                }
+
+                synchronized ( futures ) {
+                    futures.add( chain );
+                }
+            }
+
+            submitted.complete( null );
+        } ).start( );
+
+        return submitted.thenCompose( v -> {
+            List < CompletableFuture < DDSFile > > all;
+            synchronized ( futures ) {
+                all = new ArrayList <>( futures );
+            }
+
+            return CompletableFuture.allOf( all.toArray( CompletableFuture[]::new ) ).thenApply( done -> {
+                List < DDSFile > results = new ArrayList <>( all.size( ) );
+
+                for ( CompletableFuture < DDSFile > f : all ) {
+                    DDSFile file = f.join( );
+                    if ( file != null )
+                        results.add( file );
+                }
+
+                return results;
+            } );
+        } );
+    }
+
+    /**
+     * Chains the three stages for a single file. The returned future completes with null if the file failed.
+     */
+    CompletableFuture < DDSFile > process( Path outputPath , String wanted , Path texturesOutput ) {
+        return process( outputPath , wanted , texturesOutput , null );
+    }
+
+    /**
+     * Chains the three stages for a single file, passing the results to the sink as they happen. The returned
+     * future completes with null if the file failed.
+     */
+    CompletableFuture < DDSFile > process( Path outputPath , String wanted , Path texturesOutput , Consumer < ExtractionResult > sink ) {
+        return CompletableFuture
+                .supplyAsync( ( ) -> read( outputPath , wanted ) , readExecutor )
+                .thenApplyAsync( file -> {
+                    if ( file.isEmpty( ) ) {
+                        emit( sink , ExtractionResult.failed( wanted , new NoSuchFileException( wanted ) ) );
+                        return null;
+                    }
+
+                    DecodedFile decoded = decode( file.get( ) );
+                    emit( sink , ExtractionResult.atlas( decoded.ddsFile( ) ) );
+                    return decoded;
+                } , decodeExecutor )
+                .thenApplyAsync( file -> file == null ? null : write( file , texturesOutput , sink ) , writeExecutor )
+                .exceptionally( error -> {
+                    LOGGER.log( Level.SEVERE , "Extraction of " + wanted + " failed." , error );
+                    emit( sink , ExtractionResult.failed( wanted , error ) );
+                    return null;
+                } );
+    }
+
+    /**
+     * Chains the three stages for a single file, keeping the .dds file and atlas in memory. The returned future
+     * completes with null if the file failed.
+     */
+    CompletableFuture < DDSFile > processInMemory( String wanted , Path texturesOutput , Path intermediatesOutput ) {
+        return CompletableFuture
+                .supplyAsync( ( ) -> open( wanted , intermediatesOutput ) , readExecutor )
+                .thenApplyAsync( file -> file.map( f -> decode( f , intermediatesOutput != null ) ).orElse( null ) , decodeExecutor )
+                .thenApplyAsync( file -> file == null ? null : write( file , texturesOutput , intermediatesOutput != null ) , writeExecutor )
+                .exceptionally( error -> {
+                    LOGGER.log( Level.SEVERE , "Extraction of " + wanted + " failed." , error );
+                    return null;
+                } );
+    }
+
+    /**
+     * Chains the three stages for a single file, skipping the file if the manifest shows nothing changed. The
+     * returned future completes with null if the file failed or was skipped.
+     */
+    CompletableFuture < DDSFile > processIncremental( String wanted , Path texturesOutput , ExtractionManifest manifest ) {
+        return CompletableFuture
+                .supplyAsync( ( ) -> openChanged( wanted , manifest ) , readExecutor )
+                .thenApplyAsync( file -> file.map( f -> decode( f , false ) ).orElse( null ) , decodeExecutor )
+                .thenApplyAsync( file -> {
+                    if ( file == null )
+                        return null;
+
+                    DDSFile dFile = write( file , texturesOutput , false );
+                    manifest.update( wanted , file.hash( ) , file.listed( ) , dFile.getExtractedTextures( ) ,
+                            extractor.getTextureEncoder( ).getExtension( ) );
+                    return dFile;
+                } , writeExecutor )
+                .exceptionally( error -> {
+                    LOGGER.log( Level.SEVERE , "Extraction of " + wanted + " failed." , error );
+                    return null;
+                } );
+    }
+
+    private Optional < DDSFile > read( Path outputPath , String wanted ) {
+        try {
+            Optional < DDSFile > file = ggpk.extractDDS( outputPath , wanted );
+
+            if ( file.isEmpty( ) )
+                LOGGER.log( Level.WARNING , "No file was returned. File for: " + wanted + " was not extracted." );
+
+            return file;
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Converts the .dds file with the converter, or decodes the atlas natively if no converter is set, so the
+     * decoding runs on the decode executor instead of in the write stage.
+     */
+    private DecodedFile decode( DDSFile file ) {
+        if ( converter != null )
+            return new DecodedFile( converter.convert( file ) , null );
+
+        try {
+            return new DecodedFile( file , extractor.decodeAtlas( file ).orElse( null ) );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private DDSFile write( DecodedFile decoded , Path texturesOutput , Consumer < ExtractionResult > sink ) {
+        DDSFile file = decoded.ddsFile( );
+        Consumer < Path > onTexture = sink == null ? null : texture -> emit( sink , ExtractionResult.texture( file , texture ) );
+
+        if ( decoded.atlas( ) != null ) {
+            extractor.extractSubTextures( file , decoded.atlas( ) , texturesOutput , onTexture );
+        } else {
+            extractor.extractSubTextures( file , texturesOutput , onTexture );
+        }
+
+        emit( sink , ExtractionResult.complete( file ) );
+        return file;
+    }
+
+    /**
+     * Reads the .dds file into memory, writing it to its per file directory if intermediates are kept.
+     */
+    private Optional < InMemoryFile > open( String wanted , Path intermediatesOutput ) {
+        try {
+            Optional < ByteBuffer > data = ggpk.open( wanted );
+
+            if ( data.isEmpty( ) ) {
+                LOGGER.log( Level.WARNING , wanted + " was not found in the Content.ggpk file or bundles." );
+                return Optional.empty( );
+            }
+
+            Path diskPath = Path.of( wanted );
+
+            if ( intermediatesOutput != null ) {
+                Path outputDir = intermediatesOutput.resolve( wanted.replace( "/" , "_" ).replace( ".dds" , "" ) );
+                String fileName = wanted.substring( wanted.lastIndexOf( "/" ) + 1 );
+
+                Files.createDirectories( outputDir );
+                diskPath = outputDir.resolve( fileName );
+
+                try ( FileChannel out = FileChannel.open( diskPath , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                        StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                    ByteBuffer view = data.get( ).duplicate( );
+
+                    while ( view.hasRemaining( ) ) {
+                        out.write( view );
+                    }
+                }
+
+                Files.writeString( outputDir.resolve( fileName + "_path.txt" ) , wanted );
+            }
+
+            List < Texture > textures = ggpk.getTexturesFor( wanted );
+            return Optional.of( new InMemoryFile( new DDSFile( wanted , textures , diskPath ) , data.get( ) , null , textures ) );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Compares the .dds file against the manifest, reading it into memory only if it has textures to extract or
+     * its hash is not stored in the Content.ggpk file.
+     */
+    private Optional < InMemoryFile > openChanged( String wanted , ExtractionManifest manifest ) {
+        try {
+            List < Texture > listed = ggpk.getTexturesFor( wanted );
+            Optional < byte[] > stored = ggpk.getStoredHash( wanted );
+            Optional < ByteBuffer > data = stored.isPresent( ) ? Optional.empty( ) : ggpk.open( wanted );
+
+            if ( stored.isEmpty( ) && data.isEmpty( ) ) {
+                LOGGER.log( Level.WARNING , wanted + " was not found in the Content.ggpk file or bundles." );
+                return Optional.empty( );
+            }
+
+            byte[] hash = stored.isPresent( ) ? stored.get( ) : ExtractionManifest.hash( data.get( ) );
+            Optional < ExtractionManifest.Entry > previous = manifest.getEntry( wanted );
+            List < Texture > changed = manifest.compare( wanted , hash , listed );
+
+            /*
+             * The AtlasCache is keyed by path only, so an atlas decoded from the previous .dds file would otherwise
+             * be cropped from again.
+             */
+            if ( previous.isEmpty( ) || !Arrays.equals( previous.get( ).hash( ) , hash ) )
+                extractor.getAtlasCache( ).invalidate( wanted );
+
+            if ( changed.isEmpty( ) ) {
+                manifest.update( wanted , hash , listed , List.of( ) );
+                return Optional.empty( );
+            }
+
+            if ( data.isEmpty( ) )
+                data = ggpk.open( wanted );
+
+            if ( data.isEmpty( ) )
+                throw new NoSuchFileException( wanted );
+
+            return Optional.of( new InMemoryFile( new DDSFile( wanted , changed , Path.of( wanted ) ) , data.get( ) , hash , listed ) );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Decodes the whole atlas, unless only a few textures are wanted and the extractor will decode them on their
+     * own. The atlas is handed to the write stage with the file, so it is neither looked up nor decoded again
+     * there, even if the AtlasCache evicted it in the meantime.
+     */
+    private InMemoryFile decode( InMemoryFile file , boolean keep ) {
+        try {
+            String ddsPath = file.ddsFile( ).getDdsPath( );
+
+            if ( keep || !DDSExtractor2.decodesRegions( file.data( ) , file.ddsFile( ).getUnextractedTextures( ) ) )
+                return file.withAtlas( extractor.getAtlas( ddsPath , file.data( ) ) );
+
+            return file;
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private DDSFile write( InMemoryFile file , Path texturesOutput , boolean keep ) {
+        DDSFile dFile = file.ddsFile( );
+
+        if ( keep && file.atlas( ) != null ) {
+            try {
+                Path png = Path.of( dFile.getDiskPath( ).toString( ).replace( ".dds" , ".png" ) );
+
+                PngEncoder.getDefault( ).write( file.atlas( ) , png );
+                dFile.setPNGPath( png );
+            } catch ( IOException e ) {
+                LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+            }
+        }
+
+        if ( file.atlas( ) != null )
+            return extractor.extractSubTextures( dFile , file.atlas( ) , texturesOutput , null );
+
+        return extractor.extractSubTextures( dFile , file.data( ) , texturesOutput , null );
+    }
+
+    private static void emit( Consumer < ExtractionResult > sink , ExtractionResult result ) {
+        if ( sink != null )
+            sink.accept( result );
+    }
+
+    /**
+     * Waits until the value fits in the queue, giving up once the stream is closed.
+     */
+    private static void offer( BlockingQueue < Object > queue , Object value , AtomicBoolean closed ) {
+        try {
+            while ( !closed.get( ) ) {
+                if ( queue.offer( value , 100 , TimeUnit.MILLISECONDS ) )
+                    return;
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread( ).interrupt( );
+        }
+    }
+
+    /**
+     * Shuts down the executors, if they were created by the engine.
+     */
+    @Override
+    public void close( ) {
+        if ( ownsExecutors ) {
+            readExecutor.shutdown( );
+            decodeExecutor.shutdown( );
+            writeExecutor.shutdown( );
+        }
+    }
+
+    /**
+     * A DDSFile passed from the decode to the write stage.
+     *
+     * @param atlas The atlas decoded by the decode stage, or null if the write stage reads the textures itself.
+     */
+    private record DecodedFile( DDSFile ddsFile , DDSImage atlas ) {
+    }
+
+    /**
+     * A DDSFile together with the .dds data it was read from.
+     *
+     * @param hash   The SHA-256 hash of the .dds file. Only set for incremental extractions.
+     * @param listed Every texture listed for the .dds file, the DDSFile may only hold some of them.
+     * @param atlas  The atlas decoded by the decode stage, or null if the textures are decoded on their own.
+     */
+    private record InMemoryFile( DDSFile ddsFile , ByteBuffer data , byte[] hash , List < Texture > listed , DDSImage atlas ) {
+
+        InMemoryFile( DDSFile ddsFile , ByteBuffer data , byte[] hash , List < Texture > listed ) {
+            this( ddsFile , data , hash , listed , null );
+        }
+
+        InMemoryFile withAtlas( DDSImage atlas ) {
+            return new InMemoryFile( ddsFile , data , hash , listed , atlas );
+        }
+    }
+
+    private static int cores( ) {
+        return Runtime.getRuntime( ).availableProcessors( );
+    }
+
+    /**
+     * Creates daemon threads named after the stage, so stage threads are easy to spot in a thread dump.
+     */
+    private static ThreadFactory threads( String stage ) {
+        AtomicInteger count = new AtomicInteger( );
+
+        return runnable -> {
+            Thread thread = new Thread( runnable , "extraction-" + stage + "-" + count.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,407 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSExtractor2;
+import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Record of what a previous extraction produced, saved in the textures output directory, so the next extraction
+ * after a game patch only extracts what changed.
+ * <br>
+ * For every .dds file, the manifest stores its internal path, the SHA-256 hash of its content, and the name,
+ * coordinates and output file of each texture cropped from it. A texture is unchanged if the .dds file has the
+ * same hash, the texture has the same coordinates, and its output file still exists.
+ * <br>
+ * While compare() and update() are called for each .dds file, the manifest collects a Report of the added, changed
+ * and removed textures. The manifest is only written to disk by save().
+ * <br>
+ * The manifest is written to a temporary file first and moved into place, like the GGPKIndex, so an interrupted
+ * write never leaves a broken manifest behind. It is safe to call compare() and update() from several threads.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ExtractionManifest {
+
+    private static final Logger LOGGER = Logger.getLogger( ExtractionManifest.class.getName( ) );
+
+    /**
+     * Name of the manifest file within the output directory.
+     */
+    public static final String FILE_NAME = "extraction.manifest";
+
+    /**
+     * "EXMF" written at the start of the manifest file.
+     */
+    static final int MAGIC = 0x45584D46;
+
+    /**
+     * Bumped whenever the layout of the manifest file changes.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * A texture cropped from a .dds file.
+     *
+     * @param name        The name of the texture.
+     * @param coordinates The coordinates of the texture, in the layout of Texture.coordinates().
+     * @param output      The output file, relative to the output directory. Empty if the texture was not written.
+     */
+    public record Output( String name , int[] coordinates , String output ) {
+
+    }
+
+    /**
+     * A .dds file and the textures cropped from it.
+     *
+     * @param ddsPath The internal path of the .dds file.
+     * @param hash    The SHA-256 hash of the .dds file.
+     * @param outputs The textures cropped from the .dds file.
+     */
+    public record Entry( String ddsPath , byte[] hash , List < Output > outputs ) {
+
+    }
+
+    /**
+     * The textures added, changed and removed since the previous extraction, by name.
+     *
+     * @param added     Textures that were not in the manifest.
+     * @param changed   Textures whose .dds file or coordinates changed.
+     * @param removed   Textures no longer listed for their .dds file, or whose .dds file no longer exists.
+     * @param unchanged The amount of textures that were skipped.
+     */
+    public record Report( List < String > added , List < String > changed , List < String > removed , int unchanged ) {
+
+        /**
+         * Returns true if nothing was added, changed or removed.
+         */
+        public boolean isEmpty( ) {
+            return added.isEmpty( ) && changed.isEmpty( ) && removed.isEmpty( );
+        }
+    }
+
+    private final Path directory;
+
+    /**
+     * Entries keyed by the lowercase .dds path.
+     */
+    private final Map < String, Entry > entries;
+
+    private final List < String > added = Collections.synchronizedList( new ArrayList <>( ) );
+
+    private final List < String > changed = Collections.synchronizedList( new ArrayList <>( ) );
+
+    private final List < String > removed = Collections.synchronizedList( new ArrayList <>( ) );
+
+    private final AtomicInteger unchanged = new AtomicInteger( );
+
+    private ExtractionManifest( Path directory , Map < String, Entry > entries ) {
+        this.directory = directory;
+        this.entries = new ConcurrentHashMap <>( entries );
+    }
+
+    /**
+     * Reads the manifest of the output directory. An empty manifest is returned if the directory has none, it
+     * was written by a different format version, or it could not be read, in which case everything is extracted.
+     */
+    public static ExtractionManifest load( Path directory ) {
+        Path file = directory.resolve( FILE_NAME );
+        Map < String, Entry > entries = new HashMap <>( );
+
+        if ( !Files.isRegularFile( file ) )
+            return new ExtractionManifest( directory , entries );
+
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+            if ( in.readInt( ) != MAGIC || in.readInt( ) != FORMAT_VERSION ) {
+                LOGGER.log( Level.INFO , "Manifest " + file + " is from a different version, everything will be extracted." );
+                return new ExtractionManifest( directory , entries );
+            }
+
+            long size = Files.size( file );
+            int count = in.readInt( );
+
+            //Every entry takes at least 7 bytes, and every texture 20, so a larger count means the file is corrupt.
+            if ( count < 0 || count > size / 7 )
+                throw new IOException( "Manifest holds " + count + " entries, which does not match its size." );
+
+            for ( int i = 0; i < count; i++ ) {
+                String ddsPath = in.readUTF( );
+                byte[] hash = new byte[ in.readUnsignedByte( ) ];
+                in.readFully( hash );
+
+                int textures = in.readInt( );
+
+                if ( textures < 0 || textures > size / 20 )
+                    throw new IOException( "Manifest entry " + ddsPath + " holds " + textures + " textures, which does not match its size." );
+
+                List < Output > outputs = new ArrayList <>( textures );
+
+                for ( int t = 0; t < textures; t++ ) {
+                    String name = in.readUTF( );
+                    int[] coordinates = { in.readInt( ) , in.readInt( ) , in.readInt( ) , in.readInt( ) };
+                    outputs.add( new Output( name , coordinates , in.readUTF( ) ) );
+                }
+
+                entries.put( key( ddsPath ) , new Entry( ddsPath , hash , Collections.unmodifiableList( outputs ) ) );
+            }
+        } catch ( IOException | RuntimeException e ) {
+            LOGGER.log( Level.WARNING , "Manifest " + file + " could not be read, everything will be extracted." , e );
+            entries.clear( );
+        }
+
+        return new ExtractionManifest( directory , entries );
+    }
+
+    /**
+     * Returns the SHA-256 hash of the data, from the position of the buffer. The buffer is not modified.
+     * <br>
+     * For files stored in the Content.ggpk file, this is the same hash the FILE record stores.
+     */
+    public static byte[] hash( ByteBuffer data ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( data.duplicate( ) );
+            return digest.digest( );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "SHA-256 is not available." , e );
+        }
+    }
+
+    /**
+     * Returns the entry of the .dds file from the previous extraction, if there was one.
+     */
+    public Optional < Entry > getEntry( String ddsPath ) {
+        return Optional.ofNullable( entries.get( key( ddsPath ) ) );
+    }
+
+    /**
+     * Compares the .dds file against the previous extraction and returns the textures that have to be extracted,
+     * adding them to the Report.
+     * <br>
+     * The output files of changed and removed textures are deleted, so they are written again even if the
+     * extractor does not overwrite existing files. Textures whose output file was deleted since the previous
+     * extraction are extracted again, but not reported.
+     *
+     * @param ddsPath  The internal path of the .dds file.
+     * @param hash     The SHA-256 hash of the .dds file.
+     * @param textures Every texture currently listed for the .dds file.
+     */
+    public List < Texture > compare( String ddsPath , byte[] hash , List < Texture > textures ) {
+        Entry previous = entries.get( key( ddsPath ) );
+        List < Texture > wanted = new ArrayList <>( );
+
+        Map < String, Output > outputs = new HashMap <>( );
+        if ( previous != null ) {
+            for ( Output o : previous.outputs( ) ) {
+                outputs.put( o.name( ) , o );
+            }
+        }
+
+        boolean sameHash = previous != null && Arrays.equals( previous.hash( ) , hash );
+
+        for ( Texture t : textures ) {
+            Output o = outputs.remove( t.name( ) );
+
+            if ( o == null ) {
+                added.add( t.name( ) );
+                wanted.add( t );
+            } else if ( !sameHash || !Arrays.equals( o.coordinates( ) , t.coordinates( ) ) ) {
+                changed.add( t.name( ) );
+                delete( o );
+                wanted.add( t );
+            } else if ( o.output( ).isEmpty( ) || !Files.exists( directory.resolve( o.output( ) ) ) ) {
+                wanted.add( t );
+            } else {
+                unchanged.incrementAndGet( );
+            }
+        }
+
+        for ( Output o : outputs.values( ) ) {
+            removed.add( o.name( ) );
+            delete( o );
+        }
+
+        return wanted;
+    }
+
+    /**
+     * Records the .dds file once its textures have been extracted. Textures that were not extracted keep the
+     * output file of the previous extraction.
+     *
+     * @param ddsPath  The internal path of the .dds file.
+     * @param hash     The SHA-256 hash of the .dds file.
+     * @param textures Every texture currently listed for the .dds file.
+     * @param written  The texture files written by this extraction.
+     */
+    public void update( String ddsPath , byte[] hash , List < Texture > textures , List < Path > written ) {
+        update( ddsPath , hash , textures , written , "png" );
+    }
+
+    /**
+     * Records the .dds file once its textures have been extracted, written with a TextureEncoder of the extension.
+     */
+    public void update( String ddsPath , byte[] hash , List < Texture > textures , List < Path > written , String extension ) {
+        Entry previous = entries.get( key( ddsPath ) );
+        Map < String, Output > outputs = new HashMap <>( );
+
+        if ( previous != null ) {
+            for ( Output o : previous.outputs( ) ) {
+                outputs.put( o.name( ) , o );
+            }
+        }
+
+        Set < Path > writtenFiles = Set.copyOf( written );
+        List < Output > updated = new ArrayList <>( textures.size( ) );
+
+        for ( Texture t : textures ) {
+            Path file = DDSExtractor2.getOutputFile( directory , null , t.name( ) , extension );
+            Output o = outputs.get( t.name( ) );
+            String output;
+
+            if ( writtenFiles.contains( file ) ) {
+                output = directory.relativize( file ).toString( );
+            } else {
+                output = o != null && Arrays.equals( o.coordinates( ) , t.coordinates( ) ) ? o.output( ) : "";
+            }
+
+            updated.add( new Output( t.name( ) , t.coordinates( ).clone( ) , output ) );
+        }
+
+        entries.put( key( ddsPath ) , new Entry( ddsPath , hash.clone( ) , Collections.unmodifiableList( updated ) ) );
+    }
+
+    /**
+     * Drops every .dds file that no longer exists, reporting its textures as removed and deleting their output files.
+     *
+     * @param exists Returns true if the internal path of the .dds file still exists.
+     */
+    public void removeMissing( Predicate < String > exists ) {
+        var iterator = entries.values( ).iterator( );
+
+        while ( iterator.hasNext( ) ) {
+            Entry entry = iterator.next( );
+
+            if ( exists.test( entry.ddsPath( ) ) )
+                continue;
+
+            for ( Output o : entry.outputs( ) ) {
+                removed.add( o.name( ) );
+                delete( o );
+            }
+
+            iterator.remove( );
+        }
+    }
+
+    /**
+     * Returns the textures added, changed and removed so far.
+     */
+    public Report getReport( ) {
+        synchronized ( added ) {
+            synchronized ( changed ) {
+                synchronized ( removed ) {
+                    return new Report( List.copyOf( added ) , List.copyOf( changed ) , List.copyOf( removed ) , unchanged.get( ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of .dds files in the manifest.
+     */
+    public int size( ) {
+        return entries.size( );
+    }
+
+    /**
+     * Writes the manifest into the output directory.
+     */
+    public void save( ) throws IOException {
+        Path file = directory.resolve( FILE_NAME );
+        Path temp = file.resolveSibling( FILE_NAME + ".tmp" );
+
+        List < String > keys = new ArrayList <>( entries.keySet( ) );
+        Collections.sort( keys );
+
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( keys.size( ) );
+
+            for ( String key : keys ) {
+                Entry entry = entries.get( key );
+
+                out.writeUTF( entry.ddsPath( ) );
+                out.writeByte( entry.hash( ).length );
+                out.write( entry.hash( ) );
+                out.writeInt( entry.outputs( ).size( ) );
+
+                for ( Output o : entry.outputs( ) ) {
+                    out.writeUTF( o.name( ) );
+
+                    for ( int c : o.coordinates( ) ) {
+                        out.writeInt( c );
+                    }
+
+                    out.writeUTF( o.output( ) );
+                }
+            }
+        }
+
+        Files.move( temp , file , StandardCopyOption.REPLACE_EXISTING );
+        LOGGER.log( Level.INFO , "Saved manifest of " + keys.size( ) + " .dds files to " + file );
+    }
+
+    /**
+     * Deletes the output file of the texture, unless its path leads outside of the output directory.
+     */
+    private void delete( Output o ) {
+        if ( o.output( ).isEmpty( ) )
+            return;
+
+        try {
+            Path root = directory.toAbsolutePath( ).normalize( );
+            Path target = root.resolve( o.output( ) ).normalize( );
+
+            if ( !target.startsWith( root ) || target.equals( root ) ) {
+                LOGGER.log( Level.WARNING , "Output " + o.output( ) + " of " + o.name( ) + " is outside of " + root + " and was not deleted." );
+                return;
+            }
+
+            Files.deleteIfExists( target );
+        } catch ( IOException | InvalidPathException e ) {
+            LOGGER.log( Level.WARNING , e.getMessage( ) , e );
+        }
+    }
+
+    private static String key( String ddsPath ) {
+        return ddsPath.replace( '\\' , '/' ).toLowerCase( Locale.ROOT );
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKEntry;
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKReader;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleEntry;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The order wanted files are extracted in.
+ * <br>
+ * Every wanted path is resolved before anything is extracted. Duplicates are dropped, and the rest are sorted by
+ * where they are physically stored: files in the Content.ggpk file by offset, bundled files by bundle and then by
+ * offset within the bundle. Extracting in this order turns random reads into one sequential pass over the archive,
+ * and lets every file in a bundle block be served from the block cache before the block is evicted.
+ * <br>
+ * Paths that could not be resolved are kept at the end, in the order they were requested, to be handled by
+ * ExtractGGPK.exe.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ExtractionPlan {
+
+    /**
+     * Container id of files stored directly in the Content.ggpk file.
+     */
+    public static final int CONTENT_GGPK = -1;
+
+    /**
+     * Container id of files neither reader could resolve.
+     */
+    public static final int UNRESOLVED = -2;
+
+    /**
+     * A planned file.
+     *
+     * @param path      The internal path, as it was requested.
+     * @param container CONTENT_GGPK, UNRESOLVED, or the index of the bundle the file is stored in.
+     * @param offset    The offset of the file within the Content.ggpk file or decompressed bundle.
+     * @param length    The size of the file in bytes. -1 if unresolved.
+     */
+    public record Item( String path , int container , long offset , long length ) {
+
+    }
+
+    /**
+     * Orders the items. Files in the Content.ggpk file come first, then bundles in index order, then unresolved
+     * files, which keep their original order since their offset is always 0.
+     */
+    private static final Comparator < Item > PHYSICAL_ORDER = Comparator
+            .comparingInt( ( Item i ) -> i.container == UNRESOLVED ? Integer.MAX_VALUE : i.container )
+            .thenComparingLong( Item::offset );
+
+    private final List < Item > items;
+
+    private ExtractionPlan( List < Item > items ) {
+        this.items = items;
+    }
+
+    /**
+     * Resolves, de-duplicates and sorts the wanted files.
+     *
+     * @param wantedFiles The internal paths of the wanted files.
+     * @param reader      Reader of the Content.ggpk file. Can be null.
+     * @param bundles     Reader of the bundles. Can be null.
+     */
+    public static ExtractionPlan build( List < String > wantedFiles , GGPKReader reader , BundleReader bundles ) {
+        List < Item > items = new ArrayList <>( wantedFiles.size( ) );
+        Set < String > seen = new HashSet <>( );
+
+        for ( String wanted : wantedFiles ) {
+            if ( !seen.add( wanted.replace( '\\' , '/' ).toLowerCase( Locale.ROOT ) ) )
+                continue;
+
+            Optional < GGPKEntry > entry = reader == null ? Optional.empty( ) : reader.find( wanted );
+
+            if ( entry.isPresent( ) ) {
+                items.add( new Item( wanted , CONTENT_GGPK , entry.get( ).offset( ) , entry.get( ).length( ) ) );
+                continue;
+            }
+
+            Optional < BundleEntry > bundled = bundles == null ? Optional.empty( ) : bundles.find( wanted );
+
+            if ( bundled.isPresent( ) ) {
+                BundleEntry b = bundled.get( );
+                items.add( new Item( wanted , b.bundle( ) , b.offset( ) , b.size( ) ) );
+            } else {
+                items.add( new Item( wanted , UNRESOLVED , 0 , -1 ) );
+            }
+        }
+
+        items.sort( PHYSICAL_ORDER );
+
+        return new ExtractionPlan( Collections.unmodifiableList( items ) );
+    }
+
+    /**
+     * Returns the planned files in extraction order.
+     */
+    public List < Item > getItems( ) {
+        return items;
+    }
+
+    /**
+     * Returns the internal paths in extraction order.
+     */
+    public List < String > getPaths( ) {
+        return items.stream( ).map( Item::path ).toList( );
+    }
+
+    /**
+     * Returns the internal paths that could not be resolved by either reader.
+     */
+    public List < String > getUnresolved( ) {
+        return items.stream( ).filter( i -> i.container == UNRESOLVED ).map( Item::path ).toList( );
+    }
+
+    /**
+     * Returns the number of planned files.
+     */
+    public int size( ) {
+        return items.size( );
+    }
+}
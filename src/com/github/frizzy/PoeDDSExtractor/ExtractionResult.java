@@ -0,0 +1,60 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSFile;
+
+import java.nio.file.Path;
+
+/**
+ * A single step of a streamed extraction, published by ExtractionEngine as soon as it happens.
+ * <br>
+ * Every wanted .dds file produces an ATLAS result once it has been read and decoded, a TEXTURE result for every
+ * texture cropped from it, and finally a COMPLETE result. A file failing in any stage produces a FAILED result
+ * instead of the remaining results.
+ *
+ * @param kind     What happened.
+ * @param ddsPath  The internal path of the .dds file.
+ * @param file     The DDSFile. Null for FAILED results if the file was never read.
+ * @param texture  The extracted texture on disk. Only set for TEXTURE results.
+ * @param error    Why the file failed. Only set for FAILED results.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public record ExtractionResult( Kind kind , String ddsPath , DDSFile file , Path texture , Throwable error ) {
+
+    public enum Kind {
+        /**
+         * The .dds file was read from the archive and decoded.
+         */
+        ATLAS,
+        /**
+         * A texture was cropped from the .dds file and written.
+         */
+        TEXTURE,
+        /**
+         * Every texture of the .dds file was extracted.
+         */
+        COMPLETE,
+        /**
+         * The .dds file could not be extracted.
+         */
+        FAILED
+    }
+
+    static ExtractionResult atlas( DDSFile file ) {
+        return new ExtractionResult( Kind.ATLAS , file.getDdsPath( ) , file , null , null );
+    }
+
+    static ExtractionResult texture( DDSFile file , Path texture ) {
+        return new ExtractionResult( Kind.TEXTURE , file.getDdsPath( ) , file , texture , null );
+    }
+
+    static ExtractionResult complete( DDSFile file ) {
+        return new ExtractionResult( Kind.COMPLETE , file.getDdsPath( ) , file , null , null );
+    }
+
+    static ExtractionResult failed( String ddsPath , Throwable error ) {
+        return new ExtractionResult( Kind.FAILED , ddsPath , null , null , error );
+    }
+}
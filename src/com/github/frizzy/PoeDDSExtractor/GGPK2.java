@@ -1,25 +1,48 @@
 package com.github.frizzy.PoeDDSExtractor;
 
+import com.github.frizzy.PoeDDSExtractor.Archive.ByteBufferInputStream;
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKEntry;
+import com.github.frizzy.PoeDDSExtractor.Archive.GGPKReader;
 import com.github.frizzy.PoeDDSExtractor.Bank.BankFile;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BlockCache;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BlockDecompressor;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleEntry;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleReader;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleSource;
 import com.github.frizzy.PoeDDSExtractor.Command.CommandArg;
-import com.github.frizzy.PoeDDSExtractor.Command.CommandPair;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolResult;
+import com.github.frizzy.PoeDDSExtractor.Command.ToolRunner;
 import com.github.frizzy.PoeDDSExtractor.DDS.DDSFile;
 import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
 import com.github.frizzy.PoeDDSExtractor.Exception.GGPKException;
-import org.apache.commons.exec.DefaultExecuteResultHandler;
+import com.github.frizzy.PoeDDSExtractor.Metrics.ExtractionMetrics;
+import com.github.frizzy.PoeDDSExtractor.Metrics.Stage;
+import com.github.frizzy.PoeDDSExtractor.Output.OutputSink;
 import org.apache.commons.exec.ExecuteException;
 import org.apache.commons.io.FilenameUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,12 +55,17 @@ import java.util.stream.Stream;
  * <br>
  * As of right now, only stand alone PoE clients work with this process, until the command line
  * tool is updated to process steam distros.
+ * <br>
+ * When the content path is a Content.ggpk file, the record tree is read once with GGPKReader and files are
+ * copied straight out of the archive. If a BlockDecompressor is provided, files stored in the bundles
+ * ( either the Steam _.index.bin file, or the Bundles2 directory within the Content.ggpk file ) are read
+ * with BundleReader. ExtractGGPK.exe is only used for files neither reader can serve.
  *
  * @author Frizzy
  * @version 0.0.2
  * @since 0.0.2
  */
-public class GGPK2 {
+public class GGPK2 implements Closeable {
 
     private static final Logger LOGGER = Logger.getLogger( GGPK2.class.getPackageName( ) );
 
@@ -66,13 +94,54 @@ public class GGPK2 {
 
     static final String GGPK_TOOL = "ExtractGGPK.exe";
 
+    /**
+     * Name of the GGPKReader index file, saved in the same directory as the extracted uiimages.txt files.
+     */
+    static final String INDEX_FILE = "Content.ggpk.index";
+
     /**
      * The File object of ExtractGGPK3.exe.
      * This is used to extract bank files or files not stored
      * within the internal bundles, such as a .bank file.
+     * <br>
+     * Can be null if the Content.ggpk file was opened by the GGPKReader.
      */
     private final Path extractGGPKexe;
 
+    /**
+     * Read-only channel of the Content.ggpk or _.index.bin file, opened once and held until close() is called.
+     * The GGPKReader reads through it with positional reads and mapped windows, so any amount of threads can read
+     * at once without opening the file again.
+     */
+    private final FileChannel contentChannel;
+
+    /**
+     * Shared lock on the content file, held until close() is called. Other readers such as ExtractGGPK.exe can
+     * still read the file, but nothing can take an exclusive lock to patch it while it is being extracted from.
+     * <br>
+     * GGPK2 instances reading the same file share one lock. Null if the file system does not support locks.
+     */
+    private final SharedLock contentLock;
+
+    /**
+     * Set once close() was called, so the shared lock is released only once.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean( );
+
+    /**
+     * Native reader of the Content.ggpk record tree.
+     * <br>
+     * Null if the content path is not a .ggpk file or the archive could not be read.
+     */
+    private final GGPKReader reader;
+
+    /**
+     * Reader of the bundles.
+     * <br>
+     * Null if no BlockDecompressor was provided, or the _.index.bin file could not be read.
+     */
+    private final BundleReader bundles;
+
     /**
      * Path to the uiimages.txt file on disk.
      */
@@ -94,7 +163,23 @@ public class GGPK2 {
      * Setting this to true has a huge performance improvement. Unless your extracted .dds files
      * are corrupted or modified, and you want to replace them, I would always set this to true.
      */
-    private boolean overwrite;
+    private volatile boolean overwrite;
+
+    /**
+     * LibGGPK3 is not thread-safe and locks the Content.ggpk file while in use, so only one ExtractGGPK.exe
+     * process runs at a time, even when GGPK2 is used from several threads.
+     */
+    private final ReentrantLock toolLock = new ReentrantLock( );
+
+    /**
+     * Registry reads and extractions report into.
+     */
+    private volatile ExtractionMetrics metrics = ExtractionMetrics.getDefault( );
+
+    /**
+     * Runs ExtractGGPK.exe.
+     */
+    private volatile ToolRunner toolRunner = ToolRunner.getDefault( );
 
     /**
      * @param ggpkPath    Path to the directory containing the LibGPPK tools.
@@ -102,23 +187,60 @@ public class GGPK2 {
      * @param overwrite   Determines if previously extracted files should be overwritten.
      */
     public GGPK2( final Path ggpkPath , Path contentPath, boolean overwrite ) throws FileNotFoundException, GGPKException {
+        this( ggpkPath , contentPath , overwrite , null );
+    }
+
+    /**
+     * @param ggpkPath     Path to the directory containing the LibGPPK tools.
+     * @param contentPath  Path to the content.gppk file or the _.index.bin file.
+     * @param overwrite    Determines if previously extracted files should be overwritten.
+     * @param decompressor Decompressor for the bundle blocks. Can be null, in which case bundled files are
+     *                     extracted with ExtractGGPK.exe.
+     */
+    public GGPK2( final Path ggpkPath , Path contentPath , boolean overwrite , BlockDecompressor decompressor )
+            throws FileNotFoundException, GGPKException {
         if ( !Files.exists( contentPath ) )
             throw new FileNotFoundException( "Content.gppk was not found" );
 
         this.contentPath = contentPath;
         this.overwrite = overwrite;
 
-        Optional < Path > egOpt = getGPPKExe( ggpkPath );
+        contentChannel = openContent( contentPath );
+        SharedLock lock = null;
 
-        extractGGPKexe = egOpt.orElseThrow( ( ) -> new FileNotFoundException( "ExtractGGPK3.exe was not found." ) );
+        try {
+            lock = lockContent( contentPath );
+            contentLock = lock;
+            reader = openReader( contentPath , Path.of( ggpkPath + File.separator + INDEX_FILE ) ).orElse( null );
+            bundles = openBundles( decompressor ).orElse( null );
 
-        uiImagesDiskPath = extractUIImagesTXT( ggpkPath )
-                .orElseThrow( ( ) ->
-                        new GGPKException( "uiimages.txt was not returned. GGPK2 extraction processes will not function." ) );
+            Optional < Path > egOpt = getGPPKExe( ggpkPath );
 
-        uiDivinationImagesDiskPath = extractUIDivinationImagesTXT( ggpkPath )
-                .orElseThrow( ( ) ->
-                        new GGPKException( "uidivinationimages.txt was not returned. GGPK2 extraction processes will not function." ) );
+            if ( reader == null && bundles == null ) {
+                extractGGPKexe = egOpt.orElseThrow( ( ) -> new FileNotFoundException( "ExtractGGPK3.exe was not found." ) );
+            } else {
+                extractGGPKexe = egOpt.orElse( null );
+            }
+
+            uiImagesDiskPath = extractUIImagesTXT( ggpkPath )
+                    .orElseThrow( ( ) ->
+                            new GGPKException( "uiimages.txt was not returned. GGPK2 extraction processes will not function." ) );
+
+            uiDivinationImagesDiskPath = extractUIDivinationImagesTXT( ggpkPath )
+                    .orElseThrow( ( ) ->
+                            new GGPKException( "uidivinationimages.txt was not returned. GGPK2 extraction processes will not function." ) );
+        } catch ( FileNotFoundException | GGPKException | RuntimeException e ) {
+            try {
+                contentChannel.close( );
+
+                if ( lock != null )
+                    lock.release( );
+            } catch ( IOException ce ) {
+                e.addSuppressed( ce );
+            }
+
+            throw e;
+        }
     }
 
     /**
@@ -142,6 +264,27 @@ public class GGPK2 {
         return uiDivinationImagesDiskPath;
     }
 
+    /**
+     * Returns the parsed uiimages.txt file. The index is shared with every other user of the same file.
+     */
+    public UiImagesIndex getUiImagesIndex( ) throws IOException {
+        return UiImagesIndex.of( uiImagesDiskPath );
+    }
+
+    /**
+     * Returns the parsed uidivinationimages.txt file. The index is shared with every other user of the same file.
+     */
+    public UiImagesIndex getUiDivinationImagesIndex( ) throws IOException {
+        return UiImagesIndex.of( uiDivinationImagesDiskPath );
+    }
+
+    /**
+     * Returns true if the shared lock on the Content.ggpk file is held, keeping other tools from patching it.
+     */
+    public boolean isLocked( ) {
+        return contentLock != null && contentLock.isValid( );
+    }
+
     /**
      * If previously extracted files should be overwritten.
      */
@@ -149,6 +292,122 @@ public class GGPK2 {
         this.overwrite = overwrite;
     }
 
+    /**
+     * Sets the registry reads and extractions report into, instead of the default registry.
+     */
+    public void setMetrics( ExtractionMetrics metrics ) {
+        this.metrics = metrics;
+
+        if ( bundles != null )
+            metrics.registerCache( "BlockCache" , bundles.getCache( ) , BlockCache::getHits , BlockCache::getMisses );
+    }
+
+    /**
+     * Sets the runner ExtractGGPK.exe is run by, instead of the default runner. Only one ExtractGGPK.exe process runs
+     * at a time either way.
+     */
+    public void setToolRunner( ToolRunner toolRunner ) {
+        this.toolRunner = toolRunner;
+    }
+
+    /**
+     * Resolves the wanted files and orders them by where they are stored, dropping duplicates. Extracting in
+     * the returned order reads the archive sequentially instead of jumping around it.
+     */
+    public ExtractionPlan plan( List < String > wantedFiles ) {
+        return ExtractionPlan.build( wantedFiles , reader , bundles );
+    }
+
+    /**
+     * Returns a read-only view of the internal file, served straight from the memory mapped Content.ggpk file.
+     * Nothing is written to disk. Files stored in the bundles are decompressed into memory instead.
+     * <br>
+     * An empty Optional is returned if neither the GGPKReader or BundleReader are available, or the file
+     * does not exist within them.
+     *
+     * @param internalPath The internal path of the wanted file, such as "art/uiimages1.txt".
+     */
+    public Optional < ByteBuffer > open( String internalPath ) throws IOException {
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.GGPK_READ ) ) {
+            Optional < ByteBuffer > data = Optional.empty( );
+
+            try {
+                data = read( internalPath );
+                return data;
+            } finally {
+                data.ifPresentOrElse( d -> timer.read( d.remaining( ) ) , timer::failed );
+            }
+        }
+    }
+
+    private Optional < ByteBuffer > read( String internalPath ) throws IOException {
+        Optional < GGPKEntry > entry = reader == null ? Optional.empty( ) : reader.find( internalPath );
+
+        if ( entry.isPresent( ) ) {
+            return Optional.of( reader.map( entry.get( ) ) );
+        }
+
+        if ( bundles != null ) {
+            return bundles.read( internalPath );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Returns true if the Content.ggpk file or bundles hold the internal file. Always false if neither the
+     * GGPKReader or BundleReader are available.
+     */
+    public boolean contains( String internalPath ) {
+        return ( reader != null && reader.find( internalPath ).isPresent( ) )
+                || ( bundles != null && bundles.find( internalPath ).isPresent( ) );
+    }
+
+    /**
+     * Returns the SHA-256 hash the Content.ggpk FILE record stores for the internal file, without reading the file.
+     * <br>
+     * The bundle index only stores hashes of the paths, so an empty Optional is returned for bundled files. Hash
+     * the data returned by open() instead.
+     */
+    public Optional < byte[] > getStoredHash( String internalPath ) {
+        if ( reader == null )
+            return Optional.empty( );
+
+        return reader.find( internalPath ).map( GGPKEntry::hash );
+    }
+
+    /**
+     * Same as open(), returning the view as an InputStream for code that expects a stream.
+     */
+    public Optional < InputStream > openStream( String internalPath ) throws IOException {
+        Optional < ByteBuffer > buffer = open( internalPath );
+
+        if ( buffer.isPresent( ) ) {
+            return Optional.of( new ByteBufferInputStream( buffer.get( ) ) );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Closes the Content.ggpk file, releasing the shared lock on it once no other GGPK2 instance reads the file.
+     */
+    @Override
+    public void close( ) throws IOException {
+        if ( !closed.compareAndSet( false , true ) )
+            return;
+
+        try {
+            if ( reader != null )
+                reader.close( );
+
+            contentChannel.close( );
+        } finally {
+            if ( contentLock != null )
+                contentLock.release( );
+        }
+    }
+
     /**
      * Extracts the wanted .bank files and returns them in a list.
      */
@@ -172,7 +431,7 @@ public class GGPK2 {
             return extracted;
         }
 
-        for ( String wb : wantedBanks ) {
+        for ( String wb : plan( wantedBanks ).getPaths( ) ) {
             try {
 
                 if ( contentPath.toString( ).endsWith( "ggpk" ) ) {
@@ -212,13 +471,15 @@ public class GGPK2 {
     /**
      * Extracts all the wanted files from the Content.gppk file and saves them to the specified directory.
      * <br>
-     * The function will iterate through the provided list and locate the .dds files one by one. The returned list
-     * contains each extracted file to be easily passed to the DDSConverter and then finally the DDSExtractor to complete
+     * The function will resolve every file in the provided list first, then extract them in the order they are stored
+     * in the archive, skipping duplicates. The returned list follows that order, not the order of the provided list,
+     * and contains each extracted file to be easily passed to the DDSConverter and then finally the DDSExtractor to complete
      * the entire process.
      * <br>
      * If overwrite has been set to false, any previously extracted .dds files will be returned.
      * <br>
-     * As a side note, LibGGPK3 is not thread-safe. Do not execute this function on more than one thread.
+     * As a side note, LibGGPK3 is not thread-safe, so files that need ExtractGGPK.exe are extracted one at a time,
+     * even when this function runs on more than one thread.
      *
      * @param outputPath  The output directory where extracted .dds files and related files will be extracted to.
      * @param wantedFiles The internal content.gppk file paths for the wanted .dds files.
@@ -254,7 +515,7 @@ public class GGPK2 {
             return extracted;
         }
 
-        for ( String wf : wantedFiles ) {
+        for ( String wf : plan( wantedFiles ).getPaths( ) ) {
             try {
                 Optional < ? > ef = extractContentFile( outputPath , wf );
 
@@ -273,6 +534,70 @@ public class GGPK2 {
         return extracted;
     }
 
+    /**
+     * Extracts a single .dds file, the same way extractDDS() does for a list of files.
+     * <br>
+     * Files read by the GGPKReader or BundleReader can be extracted from several threads at once. Files that
+     * need ExtractGGPK.exe are extracted one at a time.
+     *
+     * @param outputPath The output directory where the extracted .dds file and related files will be extracted to.
+     * @param wantedFile The internal content.gppk file path of the wanted .dds file.
+     */
+    public Optional < DDSFile > extractDDS( final Path outputPath , String wantedFile ) throws IOException {
+        Optional < ? > ef = extractContentFile( outputPath , wantedFile );
+
+        if ( ef.isPresent( ) && ef.get( ) instanceof DDSFile df ) {
+            return Optional.of( df );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Extracts the wanted files into the OutputSink, such as a ZipSink, in the order they are stored in. The
+     * entries follow the layout the files are extracted to a directory in: a .dds or .txt file is written into a
+     * directory named after its internal path, next to its path.txt file, and any other file, such as a .bank
+     * file, is written by its file name alone.
+     * <br>
+     * The files are read into memory from the Content.ggpk file or bundles, ExtractGGPK.exe is not used and the
+     * overwrite flag does not apply. The sink is not closed.
+     *
+     * @param wantedFiles The internal paths of the wanted files.
+     * @return The internal paths of the files written, in the order they were written.
+     */
+    public List < String > extractTo( OutputSink sink , List < String > wantedFiles ) throws IOException {
+        List < String > written = new ArrayList <>( );
+
+        for ( String wanted : plan( wantedFiles ).getPaths( ) ) {
+            Optional < ByteBuffer > data = open( wanted );
+
+            try ( ExtractionMetrics.Timer timer = metrics.start( Stage.GGPK_EXTRACT ) ) {
+                if ( data.isEmpty( ) ) {
+                    timer.failed( );
+                    LOGGER.log( Level.WARNING , wanted + " was not found in the Content.ggpk file or bundles." );
+                    continue;
+                }
+
+                String fileName = wanted.substring( wanted.lastIndexOf( "/" ) + 1 );
+                String extension = FilenameUtils.getExtension( wanted );
+
+                if ( extension.equalsIgnoreCase( "dds" ) || extension.equalsIgnoreCase( "txt" ) ) {
+                    String dir = FilenameUtils.removeExtension( wanted.replaceAll( "/" , "_" ) ) + "/";
+
+                    sink.write( dir + fileName , data.get( ) );
+                    sink.write( dir + fileName + "_path.txt" , wanted.getBytes( StandardCharsets.UTF_8 ) );
+                } else {
+                    sink.write( fileName , data.get( ) );
+                }
+
+                timer.written( data.get( ).remaining( ) );
+                written.add( wanted );
+            }
+        }
+
+        return written;
+    }
+
     /**
      * Extracts all interface .dds files from the Content.ggpk file, returning everything extracted in a list. The DDSFile
      * values contain the internal path of the .dds file, a list of textures the file contains, and a java.io.File
@@ -284,35 +609,33 @@ public class GGPK2 {
 
         List < DDSFile > allFiles = new ArrayList <>( );
 
-        List < String[] > gppkFiles = GGPKUtils.getAllLinesSplit( uiImagesDiskPath );
         /*
-         * Validation list tracks what .dds files have already been extracted, as the uiimages.txt will
-         * have the .dds file paths referenced multiple times.
+         * The UiImagesIndex lists every .dds file once, ExtractionPlan orders them by where they are stored.
          */
-        List < String > validation = new ArrayList <>( );
-
-        for ( String[] array : gppkFiles ) {
-            String internalPath = array[ 1 ];
+        List < String > internalPaths;
 
-            if ( !validation.contains( internalPath ) ) {
-                try {
-                    Optional < ? > opt = extractContentFile( outputPath , internalPath );
+        try {
+            internalPaths = getUiImagesIndex( ).getDDSPaths( );
+        } catch ( IOException e ) {
+            throw new GGPKException( "uiimages.txt could not be read. " + e.getMessage( ) );
+        }
 
-                    opt.ifPresentOrElse( extracted -> {
-                        if ( extracted instanceof DDSFile df ) {
-                            allFiles.add( df );
-                        }
+        for ( String internalPath : plan( internalPaths ).getPaths( ) ) {
+            try {
+                Optional < ? > opt = extractContentFile( outputPath , internalPath );
 
-                    } , ( ) -> {
-                        LOGGER.log( Level.WARNING , "Optional returned empty for: " + internalPath +
-                                "\nSome uiimages.txt paths do not produce a .dds file. Validate this is accurate." +
-                                "\nThe create directory process could have failed as well." );
-                    } );
+                opt.ifPresentOrElse( extracted -> {
+                    if ( extracted instanceof DDSFile df ) {
+                        allFiles.add( df );
+                    }
 
-                    validation.add( internalPath );
-                } catch ( IOException e ) {
-                    LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
-                }
+                } , ( ) -> {
+                    LOGGER.log( Level.WARNING , "Optional returned empty for: " + internalPath +
+                            "\nSome uiimages.txt paths do not produce a .dds file. Validate this is accurate." +
+                            "\nThe create directory process could have failed as well." );
+                } );
+            } catch ( IOException e ) {
+                LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
             }
         }
 
@@ -373,15 +696,11 @@ public class GGPK2 {
      * @throws IOException
      */
     private Optional < Path > extractTextFile( Path outputPath , String wantedFile ) throws IOException {
-        if ( GGPKUtils.testLock( contentPath ) ) {
-            throw new IOException( "Content.ggpk file is locked. Check to see if another tool is currently using the file." );
-        }
-
         String temp = wantedFile.replaceAll( "/" , "_" ).replace( ".txt" , "" );
         Path outputDir = Path.of ( outputPath.toString( ) + File.separator + temp );
 
         Path potentialCur = Path.of( outputDir + File.separator + Path.of( wantedFile.substring( wantedFile.lastIndexOf( "/" ) ) ) );
-        if ( Files.exists( potentialCur ) && !overwrite ) {
+        if ( Files.exists( potentialCur ) && ( !overwrite || isUnchanged( wantedFile , potentialCur ) ) ) {
             return Optional.of( potentialCur );
         } else if ( Files.exists( potentialCur ) && overwrite ) {
             boolean deleted = Files.deleteIfExists( potentialCur );
@@ -400,14 +719,7 @@ public class GGPK2 {
                 }
             }
 
-            CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > cPair = GGPKUtils.runCommandLine(
-                    extractGGPKexe, new CommandArg <>( contentPath.toString( ) , true ),
-                    new CommandArg <>( wantedFile, true ), new CommandArg <> ( outputDir.toString() , true ) ) ;
-
-            int exitValue = cPair.rh.getExitValue();
-            LOGGER.log( Level.INFO , cPair.bs.toString() );
-
-            if ( exitValue == 0 ) {
+            if ( extractFile( wantedFile , outputDir ) ) {
                 try ( Stream < Path > paths = Files.list( outputDir ) ) {
                     List < Path > pathList = paths.toList();
 
@@ -421,9 +733,6 @@ public class GGPK2 {
                 } catch ( IOException e ) {
                     LOGGER.log( Level.SEVERE, e.getMessage(), e );
                 }
-            } else {
-                ExecuteException ee = cPair.rh.getException();
-                LOGGER.log( Level.SEVERE , ee.getMessage( ) , ee );
             }
         }
 
@@ -439,10 +748,6 @@ public class GGPK2 {
      * @param wantedFile The internal .dds file wanted.
      */
     private Optional < ? > extractContentFile( Path outputPath , String wantedFile ) throws IOException {
-        if ( GGPKUtils.testLock( contentPath ) ) {
-            throw new IOException( "Content.ggpk file is locked. Check to see if another tool is currently using the file." );
-        }
-
         /*
          * We name the output directory to the ggpk archive path of the file.
          * This is probably temporary.
@@ -482,15 +787,7 @@ public class GGPK2 {
                 }
             }
 
-            CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > cPair = GGPKUtils.runCommandLine(
-                    extractGGPKexe , new CommandArg <>( contentPath.toString( ), true ) ,
-                    new CommandArg <>( wantedFile, true ), new CommandArg <>( outputDir.toString( ), true ) );
-
-            int exitCode = cPair.rh.getExitValue( );
-
-            LOGGER.log( Level.INFO , cPair.bs.toString( ) );
-
-            if ( exitCode == 0 ) {
+            if ( extractFile( wantedFile , outputDir ) ) {
                 try ( Stream < Path > paths = Files.list( outputDir ) ) {
                     List < Path > pathList = paths.toList( );
 
@@ -509,13 +806,7 @@ public class GGPK2 {
                             }
 
                             if ( extension.equalsIgnoreCase( "dds" ) ) {
-                                List < Texture > textures;
-
-                                if ( wantedFile.toLowerCase( ).contains( "divinationcards" ) ) {
-                                    textures = GGPKUtils.getAllTexturesFor2( uiDivinationImagesDiskPath , wantedFile );
-                                } else {
-                                    textures = GGPKUtils.getAllTexturesFor2( uiImagesDiskPath , wantedFile );
-                                }
+                                List < Texture > textures = getTexturesFor( wantedFile );
 
                                 DDSFile dFile = new DDSFile( wantedFile , textures , p );
 
@@ -575,7 +866,7 @@ public class GGPK2 {
                  */
                 if ( toAdd != null && txt != null ) {
                     final String p = Files.readString( txt );
-                    List < Texture > textures = GGPKUtils.getAllTexturesFor2( uiImagesDiskPath , p );
+                    List < Texture > textures = getTexturesFor( p );
 
                     DDSFile dFile = new DDSFile( p , textures , toAdd );
 
@@ -588,6 +879,202 @@ public class GGPK2 {
         return Optional.empty( );
     }
 
+    /**
+     * Looks up the textures stored in the .dds file, in the uidivinationimages.txt file for divination cards and
+     * the uiimages.txt file for everything else.
+     */
+    List < Texture > getTexturesFor( String wantedFile ) {
+        try {
+            UiImagesIndex index = wantedFile.toLowerCase( ).contains( "divinationcards" )
+                    ? getUiDivinationImagesIndex( ) : getUiImagesIndex( );
+
+            return index.getTextures( wantedFile );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
+        }
+
+        return new ArrayList <>( );
+    }
+
+    /**
+     * Extracts the wanted file into the output directory.
+     * <br>
+     * If the GGPKReader knows the file, its data is copied straight out of the Content.ggpk file. If the
+     * BundleReader knows the file, it is decompressed from its bundle. Otherwise, ExtractGGPK.exe is run for the file.
+     *
+     * @return True if the file was extracted.
+     */
+    private boolean extractFile( String wantedFile , Path outputDir ) throws IOException {
+        try ( ExtractionMetrics.Timer timer = metrics.start( Stage.GGPK_EXTRACT ) ) {
+            boolean extracted = false;
+
+            try {
+                extracted = extractFile( wantedFile , outputDir , timer );
+                return extracted;
+            } finally {
+                if ( !extracted )
+                    timer.failed( );
+            }
+        }
+    }
+
+    private boolean extractFile( String wantedFile , Path outputDir , ExtractionMetrics.Timer timer ) throws IOException {
+        Optional < GGPKEntry > entry = reader == null ? Optional.empty( ) : reader.find( wantedFile );
+
+        if ( entry.isPresent( ) ) {
+            GGPKEntry e = entry.get( );
+            Path target = Path.of( outputDir + File.separator + e.fileName( ) );
+
+            try ( FileChannel out = FileChannel.open( target , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                    StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                reader.copyTo( e , out );
+            }
+
+            timer.written( e.length( ) );
+            LOGGER.log( Level.FINE , "Copied " + e.length( ) + " bytes of " + e.path( ) + " from the Content.ggpk file." );
+            return true;
+        }
+
+        Optional < BundleEntry > bundled = bundles == null ? Optional.empty( ) : bundles.find( wantedFile );
+
+        if ( bundled.isPresent( ) ) {
+            Path target = Path.of( outputDir + File.separator + wantedFile.substring( wantedFile.lastIndexOf( "/" ) + 1 ) );
+
+            try ( FileChannel out = FileChannel.open( target , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                    StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                ByteBuffer data = bundles.read( bundled.get( ) );
+                timer.written( data.remaining( ) );
+
+                while ( data.hasRemaining( ) ) {
+                    out.write( data );
+                }
+            }
+
+            LOGGER.log( Level.FINE , "Read " + bundled.get( ).size( ) + " bytes of " + wantedFile + " from bundle "
+                    + bundled.get( ).bundleName( ) );
+            return true;
+        }
+
+        if ( extractGGPKexe == null ) {
+            LOGGER.log( Level.WARNING , wantedFile + " was not found in the Content.ggpk file and ExtractGGPK.exe is not available." );
+            return false;
+        }
+
+        toolLock.lock( );
+
+        try {
+            ToolResult result = toolRunner.run( extractGGPKexe , line -> LOGGER.log( Level.INFO , line ) ,
+                    new CommandArg <>( contentPath.toString( ), true ) ,
+                    new CommandArg <>( wantedFile, true ), new CommandArg <>( outputDir.toString( ), true ) );
+
+            if ( !result.isSuccess( ) && result.exception( ) != null )
+                LOGGER.log( Level.SEVERE , result.exception( ).getMessage( ) , result.exception( ) );
+
+            return result.isSuccess( );
+        } finally {
+            toolLock.unlock( );
+        }
+    }
+
+    /**
+     * Returns true if the previously extracted file has the size and SHA-256 hash the FILE record of the entry
+     * stores, meaning extracting it again would produce the same file. A file of the same size from before a
+     * patch is extracted again.
+     */
+    private boolean isUnchanged( String wantedFile , Path extracted ) throws IOException {
+        if ( reader == null )
+            return false;
+
+        Optional < GGPKEntry > entry = reader.find( wantedFile );
+
+        if ( entry.isEmpty( ) || entry.get( ).length( ) != Files.size( extracted ) )
+            return false;
+
+        byte[] hash = ExtractionManifest.hash( ByteBuffer.wrap( Files.readAllBytes( extracted ) ) );
+        return Arrays.equals( hash , entry.get( ).hash( ) );
+    }
+
+    /**
+     * Opens the read-only channel held for the whole session.
+     */
+    private static FileChannel openContent( Path contentPath ) throws GGPKException {
+        try {
+            return FileChannel.open( contentPath , StandardOpenOption.READ );
+        } catch ( IOException e ) {
+            throw new GGPKException( contentPath + " could not be opened: " + e.getMessage( ) );
+        }
+    }
+
+    /**
+     * Takes a shared lock on the whole content file, checking once that no other tool holds an exclusive lock on it.
+     * <br>
+     * The lock is held until close() is called, so this replaces testing the lock before every extraction.
+     */
+    private static SharedLock lockContent( Path contentPath ) throws GGPKException {
+        try {
+            return SharedLock.acquire( contentPath );
+        } catch ( OverlappingFileLockException e ) {
+            throw new GGPKException( contentPath + " is already locked by other code in this JVM, outside of GGPK2." );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.WARNING , "A shared lock could not be taken on " + contentPath + ", it is read without one." , e );
+            return null;
+        }
+    }
+
+    /**
+     * Attempts to open the Content.ggpk file with the GGPKReader. An empty Optional is returned if the
+     * content path is not a .ggpk file, or the record tree could not be read.
+     * <br>
+     * The index file is reused if the Content.ggpk file has not changed since it was written, skipping the
+     * walk over the whole record tree.
+     */
+    private Optional < GGPKReader > openReader( Path contentPath , Path indexPath ) {
+        if ( !contentPath.toString( ).toLowerCase( ).endsWith( ".ggpk" ) )
+            return Optional.empty( );
+
+        try {
+            return Optional.of( GGPKReader.open( contentPath , contentChannel , indexPath ) );
+        } catch ( IOException | RuntimeException e ) {
+            LOGGER.log( Level.WARNING , "Content.ggpk could not be read natively, ExtractGGPK.exe will be used instead." , e );
+        }
+
+        return Optional.empty( );
+    }
+
+    /**
+     * Attempts to open the bundles with the BundleReader. The bundles are read from the directory of the
+     * _.index.bin file for Steam clients, or from the Bundles2 directory within the Content.ggpk file for
+     * standalone clients.
+     * <br>
+     * An empty Optional is returned if no decompressor was provided or the _.index.bin file could not be read.
+     */
+    private Optional < BundleReader > openBundles( BlockDecompressor decompressor ) {
+        if ( decompressor == null )
+            return Optional.empty( );
+
+        BundleSource source = null;
+
+        if ( contentPath.getFileName( ).toString( ).equalsIgnoreCase( BundleSource.INDEX_NAME ) ) {
+            source = BundleSource.directory( contentPath.getParent( ) );
+        } else if ( reader != null && reader.find( "Bundles2/" + BundleSource.INDEX_NAME ).isPresent( ) ) {
+            source = BundleSource.ggpk( reader );
+        }
+
+        if ( source == null )
+            return Optional.empty( );
+
+        try {
+            BlockCache cache = new BlockCache( );
+            metrics.registerCache( "BlockCache" , cache , BlockCache::getHits , BlockCache::getMisses );
+
+            return Optional.of( new BundleReader( source , decompressor , cache ) );
+        } catch ( IOException e ) {
+            LOGGER.log( Level.WARNING , "Bundles could not be read, ExtractGGPK.exe will be used instead." , e );
+        }
+
+        return Optional.empty( );
+    }
+
     /**
      * Attempts to retrieve the ExtractGGPK.exe and returns an Optional instance.
      */
@@ -609,4 +1096,84 @@ public class GGPK2 {
 
         return Optional.empty( );
     }
+
+    /**
+     * A shared lock on a content file, held by every GGPK2 instance of this JVM reading the file.
+     * <br>
+     * File locks are held by the whole JVM, so a second instance can not take a lock of its own on the same file.
+     * The instances share one lock instead, taken through a channel of its own so closing the instance that took
+     * it does not release it. The last instance to close releases it.
+     */
+    private static final class SharedLock {
+
+        /**
+         * The held locks, keyed by the real path of the content file.
+         */
+        private static final Map < Path, SharedLock > LOCKS = new HashMap <>( );
+
+        private final Path key;
+
+        private final FileChannel channel;
+
+        private final FileLock lock;
+
+        /**
+         * The amount of GGPK2 instances holding the lock. Guarded by LOCKS.
+         */
+        private int holders;
+
+        private SharedLock( Path key , FileChannel channel , FileLock lock ) {
+            this.key = key;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        /**
+         * Returns the lock held on the content file, taking it if no GGPK2 instance holds it yet.
+         */
+        static SharedLock acquire( Path contentPath ) throws IOException, GGPKException {
+            Path key = contentPath.toRealPath( );
+
+            synchronized ( LOCKS ) {
+                SharedLock shared = LOCKS.get( key );
+
+                if ( shared == null ) {
+                    FileChannel channel = FileChannel.open( key , StandardOpenOption.READ );
+
+                    try {
+                        FileLock lock = channel.tryLock( 0 , Long.MAX_VALUE , true );
+
+                        if ( lock == null )
+                            throw new GGPKException( "Content.ggpk file is locked. Check to see if another tool is currently using the file." );
+
+                        shared = new SharedLock( key , channel , lock );
+                        LOCKS.put( key , shared );
+                    } catch ( IOException | GGPKException | RuntimeException e ) {
+                        channel.close( );
+                        throw e;
+                    }
+                }
+
+                shared.holders++;
+                return shared;
+            }
+        }
+
+        boolean isValid( ) {
+            return lock.isValid( );
+        }
+
+        /**
+         * Gives up one hold on the lock, releasing it once no GGPK2 instance holds it anymore.
+         */
+        void release( ) throws IOException {
+            synchronized ( LOCKS ) {
+                if ( --holders > 0 )
+                    return;
+
+                LOCKS.remove( key );
+                channel.close( );
+            }
+        }
+    }
 }
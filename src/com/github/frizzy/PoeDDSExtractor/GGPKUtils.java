@@ -10,7 +10,6 @@ import org.apache.commons.exec.PumpStreamHandler;
 
 import java.io.*;
 import java.nio.channels.FileLock;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -41,8 +40,11 @@ public class GGPKUtils {
      * <br>
      * Since the resulting CommandPair is required to continue, this method waits for the executor to
      * finish executing.
-     *
+     * <br>
+     * Deprecated, every call starts an unbounded process and buffers all of its output. Use ToolRunner instead,
+     * which bounds the running processes and streams the output line by line.
      */
+    @Deprecated
     @SafeVarargs
     public static CommandPair < DefaultExecuteResultHandler, ByteArrayOutputStream > runCommandLine ( final Path tool, CommandArg < String, Boolean >... args ) throws IOException {
         CommandLine cmdLine;
@@ -76,9 +78,14 @@ public class GGPKUtils {
 
     /**
      * Tests if there is a lock on the Content.ggpk file.
+     * <br>
+     * Deprecated, this opens the file read-write, takes an exclusive lock and renames the file back and forth, which
+     * is slow and unsafe while the game is running. GGPK2 holds a shared lock on the file for as long as it is open
+     * instead, see GGPK2.isLocked().
      * @param contentggpkPath Path to the Content.ggpk file.
      * @return True if there is a lock, false otherwise.
      */
+    @Deprecated
     public static boolean testLock ( Path contentggpkPath ) {
         boolean bLocked = false;
         File p_fi = contentggpkPath.toFile();
@@ -110,14 +117,11 @@ public class GGPKUtils {
     public static List < String[] > getAllLinesSplit ( Path uiimagesTxt ) {
         List < String [ ] > lines = new ArrayList <>(  );
 
-        try ( BufferedReader bReader = new BufferedReader( new InputStreamReader( Files.newInputStream( uiimagesTxt ) , StandardCharsets.UTF_16LE ) ) ) {
-            String line;
-            while ( ( line = bReader.readLine( ) ) != null ) {
-                String[] split = line.split( "\" " );
-                split [ 0 ] = split [ 0 ].replace( "\"" , "" );
-                split [ 1 ] = split [ 1 ].replace( "\"" , "" );
+        try {
+            UiImagesScanner scanner = UiImagesScanner.scan( uiimagesTxt );
 
-                lines.add( split );
+            for ( int i = 0; i < scanner.size(); i++ ) {
+                lines.add( new String[] { scanner.name( i ), scanner.path( i ), scanner.coordinateText( i ) } );
             }
         } catch ( IOException | NullPointerException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
@@ -134,17 +138,12 @@ public class GGPKUtils {
     public static List < String > getAllTexturesFor1( File uiimagesTxt, String gppkDDSFilePath ) {
         List < String > textures = new ArrayList <>(  );
 
-        try ( BufferedReader bReader = new BufferedReader( new InputStreamReader( new FileInputStream( uiimagesTxt ) , StandardCharsets.UTF_16LE ) ) ) {
-            String line;
-            while ( ( line = bReader.readLine( ) ) != null ) {
-                if ( line.toLowerCase( ).contains( gppkDDSFilePath.toLowerCase(  ) ) ) {
-                    String textureName = line.substring( 1 , line.indexOf( "\" " )  );
-
-                    if ( !textures.contains( textureName ) ) {
-                        textures.add( textureName );
-                    }
+        try {
+            UiImagesIndex.of( uiimagesTxt.toPath() ).getTable( gppkDDSFilePath ).ifPresent( table -> {
+                for ( int i = 0; i < table.size(); i++ ) {
+                    textures.add( table.getName( i ) );
                 }
-            }
+            } );
         } catch ( IOException | NullPointerException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
         }
@@ -154,65 +153,32 @@ public class GGPKUtils {
 
     /**
      * Gets all the textures stored in the .dds file of the provided gppk path.
+     * <br>
+     * The file is parsed once into a shared UiImagesIndex, later calls for the same file are a map lookup.
      */
     public static List < Texture > getAllTexturesFor2( Path uiimagesTxt, String gppkDDSFilePath ) {
-        List < Texture > textures = new ArrayList <>(  );
-        List < String > validation = new ArrayList <>(  );
-
-        try ( BufferedReader bReader = new BufferedReader( new InputStreamReader( Files.newInputStream( uiimagesTxt ) , StandardCharsets.UTF_16LE ) ) ) {
-            String line;
-            while ( ( line = bReader.readLine( ) ) != null ) {
-                if ( line.toLowerCase( ).contains( gppkDDSFilePath.toLowerCase(  ) ) ) {
-                    String textureName = line.substring( 1 , line.indexOf( "\" " )  );
-
-                    if ( !validation.contains( textureName ) ) {
-                        Texture texture = new Texture( textureName, gppkDDSFilePath, getCoordinatesFrom( line ) );
-                        textures.add( texture );
-
-                        validation.add( textureName );
-                    }
-                }
-            }
+        try {
+            return UiImagesIndex.of( uiimagesTxt ).getTextures( gppkDDSFilePath );
         } catch ( IOException | NullPointerException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
         }
 
-        return textures;
+        return new ArrayList <>(  );
     }
 
     /**
      * Gets a list of textures that only match up with the specified wantedTextures list.
+     * <br>
+     * The file is parsed once into a shared UiImagesIndex, later calls for the same file are a map lookup.
      */
     public static List < Texture > getSpecificTexturesFor ( Path txtFile, String ggpkDDSFilePath, List < String > wantedTextures ) {
-        List < Texture > textures = new ArrayList <>(  );
-        List < String > validation = new ArrayList <>(  );
-
-        try ( BufferedReader bReader = new BufferedReader( new InputStreamReader( Files.newInputStream( txtFile ) , StandardCharsets.UTF_16LE ) ) ) {
-            String line;
-            while ( ( line = bReader.readLine( ) ) != null ) {
-                if ( line.toLowerCase( ).contains( ggpkDDSFilePath.toLowerCase(  ) ) ) {
-                    String textureName = line.substring( 1 , line.indexOf( "\" " )  );
-
-                    if ( !validation.contains( textureName ) ) {
-
-                        for ( String tPath : wantedTextures ) {
-                            if ( textureName.equalsIgnoreCase( tPath ) ) {
-                                Texture texture = new Texture( tPath, ggpkDDSFilePath, getCoordinatesFrom( line ) );
-
-                                textures.add( texture );
-                            }
-                        }
-
-                        validation.add( textureName );
-                    }
-                }
-            }
+        try {
+            return UiImagesIndex.of( txtFile ).getTextures( ggpkDDSFilePath , wantedTextures );
         } catch ( IOException | NullPointerException e ) {
             LOGGER.log( Level.SEVERE , e.getMessage( ) , e );
         }
 
-        return textures;
-
+        return new ArrayList <>(  );
     }
 
     /**
@@ -221,29 +187,26 @@ public class GGPKUtils {
      * The returned array layout is index 0 is the x1 coordinate, index 1 is y1, index 2 is x2, index 3 is y2.
      */
     public static int[] getCoordinatesFrom ( String uiimagesTxtLine ) {
-        String coordinates = uiimagesTxtLine.substring( uiimagesTxtLine.lastIndexOf( "\"" ) + 2 );
-        String[] split = coordinates.split( " " ); // i0 is x1, i1 is y1, i2 is x2, i3 is y2
-        int[] coords = new int[4];
+        int pos = uiimagesTxtLine.lastIndexOf( "\"" ) + 1;
+        int[] raw = new int[4]; // i0 is x1, i1 is y1, i2 is x2, i3 is y2
 
-        coords [ 0 ] = Integer.parseInt( split[ 0 ] ); // x1
-        coords [ 1 ] = Integer.parseInt( split[ 1 ] ); // y
+        for ( int c = 0; c < 4; c++ ) {
+            while ( pos < uiimagesTxtLine.length() && uiimagesTxtLine.charAt( pos ) == ' ' ) {
+                pos++;
+            }
 
-        /*
-         * If subtracting x1 from x2 or y1 from y2 is less than or equal to 0, then the x2 or y2 is likely
-         * the same as x1 or y1.
-         */
-        if ( Integer.parseInt( split [ 2 ] ) - coords [ 0 ]  <= 0 ) {
-            coords [ 2 ] = coords [ 0 ];
-        } else {
-            coords [ 2 ] = Integer.parseInt( split[ 2 ] ) - coords [ 0 ]; // x2
-        }
+            int end = pos;
+            while ( end < uiimagesTxtLine.length() && uiimagesTxtLine.charAt( end ) != ' ' ) {
+                end++;
+            }
 
-        if ( Integer.parseInt( split [ 3 ] ) - coords [ 1 ]  <= 0 ) {
-            coords [ 3 ] = coords [ 1 ];
-        } else {
-            coords [ 3 ] = Integer.parseInt( split[ 3 ] ) - coords [ 1 ]; // y2
+            raw [ c ] = Integer.parseInt( uiimagesTxtLine, pos, end, 10 );
+            pos = end;
         }
 
+        int[] coords = new int[4];
+        UiImagesScanner.toTextureCoordinates( raw[ 0 ], raw[ 1 ], raw[ 2 ], raw[ 3 ], coords, 0 );
+
         return coords;
     }
 
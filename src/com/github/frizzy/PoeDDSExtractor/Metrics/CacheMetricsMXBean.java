@@ -0,0 +1,21 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+/**
+ * JMX view of a cache registered with ExtractionMetrics, registered as
+ * com.github.frizzy.PoeDDSExtractor:type=Cache,name=[name].
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public interface CacheMetricsMXBean {
+
+    long getHits( );
+
+    long getMisses( );
+
+    /**
+     * Returns the hits divided by every lookup, or 0 if nothing was looked up.
+     */
+    double getHitRate( );
+}
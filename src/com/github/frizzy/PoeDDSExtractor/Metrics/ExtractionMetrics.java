@@ -0,0 +1,365 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry the extraction stages report into: per stage latency histograms, bytes read and written, files per
+ * second and in flight files, plus the hit rates of the caches.
+ * <br>
+ * GGPK2, DDSConverter2, DDSExtractor2 and BankExtractor report into the default registry unless another one is
+ * set on them. A stage is timed by starting a Timer and closing it once the file is done:
+ * <pre>
+ * try ( ExtractionMetrics.Timer timer = metrics.start( Stage.DDS_CONVERT ) ) {
+ *     ...
+ *     timer.written( Files.size( pngFile ) );
+ * }
+ * </pre>
+ * The metrics can be read directly, exposed through JMX with registerMBeans(), or forwarded sample by sample to a
+ * MetricsListener.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ExtractionMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger( ExtractionMetrics.class.getName( ) );
+
+    /**
+     * Domain of the registered MXBeans.
+     */
+    public static final String JMX_DOMAIN = "com.github.frizzy.PoeDDSExtractor";
+
+    private static final ExtractionMetrics DEFAULT = new ExtractionMetrics( );
+
+    /**
+     * One completed file of a stage.
+     *
+     * @param stage        The stage the file went through.
+     * @param nanos        How long the stage took.
+     * @param bytesRead    Bytes read by the stage.
+     * @param bytesWritten Bytes written by the stage.
+     * @param failed       True if the stage did not produce its output.
+     */
+    public record Sample( Stage stage , long nanos , long bytesRead , long bytesWritten , boolean failed ) {
+
+    }
+
+    /**
+     * Times one file going through a stage. Closing the timer records the sample, a timer is closed only once.
+     */
+    public final class Timer implements AutoCloseable {
+
+        private final StageMetrics stage;
+
+        private final long start;
+
+        private long bytesRead;
+
+        private long bytesWritten;
+
+        private boolean failed;
+
+        private boolean closed;
+
+        private Timer( StageMetrics stage ) {
+            this.stage = stage;
+            this.start = System.nanoTime( );
+            stage.started( start );
+        }
+
+        /**
+         * Adds to the bytes read by the stage.
+         */
+        public void read( long bytes ) {
+            bytesRead += bytes;
+        }
+
+        /**
+         * Adds to the bytes written by the stage.
+         */
+        public void written( long bytes ) {
+            bytesWritten += bytes;
+        }
+
+        /**
+         * Marks the file as failed.
+         */
+        public void failed( ) {
+            failed = true;
+        }
+
+        @Override
+        public void close( ) {
+            if ( closed )
+                return;
+
+            closed = true;
+            long end = System.nanoTime( );
+            Sample sample = new Sample( stage.getStage( ) , end - start , bytesRead , bytesWritten , failed );
+
+            stage.completed( sample , end );
+            notifyListeners( sample );
+        }
+    }
+
+    private final Map < Stage, StageMetrics > stages = new EnumMap <>( Stage.class );
+
+    private final Map < String, CacheMetrics > caches = new ConcurrentHashMap <>( );
+
+    private final List < MetricsListener > listeners = new CopyOnWriteArrayList <>( );
+
+    /**
+     * The MBeanServer the MXBeans are registered with, or null if registerMBeans() has not been called.
+     */
+    private volatile MBeanServer server;
+
+    public ExtractionMetrics( ) {
+        for ( Stage stage : Stage.values( ) ) {
+            stages.put( stage , new StageMetrics( stage ) );
+        }
+    }
+
+    /**
+     * Returns the registry every stage reports into unless another one is set on it.
+     */
+    public static ExtractionMetrics getDefault( ) {
+        return DEFAULT;
+    }
+
+    /**
+     * Starts timing a file going through the stage. The file counts as in flight until the timer is closed.
+     */
+    public Timer start( Stage stage ) {
+        return new Timer( stages.get( stage ) );
+    }
+
+    /**
+     * Returns the metrics of the stage.
+     */
+    public StageMetrics getStage( Stage stage ) {
+        return stages.get( stage );
+    }
+
+    /**
+     * Registers a cache, so its hit rate is reported along with the stages. A cache registered under the same name
+     * replaces the previous one.
+     * <br>
+     * The cache is only weakly referenced, so registering it does not keep it alive. A collected cache reports 0
+     * hits and misses.
+     *
+     * @param name   Name of the cache, such as "AtlasCache".
+     * @param cache  The cache.
+     * @param hits   Returns the hits of the cache.
+     * @param misses Returns the misses of the cache.
+     */
+    public < T > void registerCache( String name , T cache , ToLongFunction < T > hits , ToLongFunction < T > misses ) {
+        CacheMetrics metrics = new CacheMetrics( new WeakReference <>( cache ) , hits , misses );
+        caches.put( name , metrics );
+
+        MBeanServer s = server;
+        if ( s != null )
+            register( s , cacheName( name ) , metrics );
+    }
+
+    /**
+     * Same as registerCache(), but never replaces another cache that is still alive. If one is registered under
+     * the name, the cache is registered under the name followed by "-2", "-3" and so on instead. Registering the
+     * same cache under the same name again keeps that name.
+     *
+     * @return The name the cache was registered under.
+     */
+    public synchronized < T > String registerUniqueCache( String name , T cache , ToLongFunction < T > hits ,
+                                                          ToLongFunction < T > misses ) {
+        String unique = name;
+
+        for ( int i = 2; ; i++ ) {
+            CacheMetrics existing = caches.get( unique );
+
+            if ( existing == null || existing.cache.get( ) == null || existing.cache.get( ) == cache )
+                break;
+
+            unique = name + "-" + i;
+        }
+
+        registerCache( unique , cache , hits , misses );
+        return unique;
+    }
+
+    /**
+     * Returns the metrics of the cache registered under the name, or null if none is.
+     */
+    public CacheMetricsMXBean getCache( String name ) {
+        return caches.get( name );
+    }
+
+    /**
+     * Adds a listener receiving every sample recorded from now on.
+     */
+    public void addListener( MetricsListener listener ) {
+        listeners.add( listener );
+    }
+
+    public void removeListener( MetricsListener listener ) {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Registers an MXBean for every stage and cache with the platform MBeanServer, so tools like JConsole or a JMX
+     * exporter can read them. Caches registered later are registered as well.
+     * <br>
+     * Only one registry can be registered at a time, since the MXBean names do not include the registry.
+     */
+    public synchronized void registerMBeans( ) throws JMException {
+        if ( server != null )
+            return;
+
+        MBeanServer s = ManagementFactory.getPlatformMBeanServer( );
+
+        for ( StageMetrics stage : stages.values( ) ) {
+            s.registerMBean( stage , stageName( stage.getStage( ) ) );
+        }
+
+        server = s;
+
+        for ( Map.Entry < String, CacheMetrics > cache : caches.entrySet( ) ) {
+            register( s , cacheName( cache.getKey( ) ) , cache.getValue( ) );
+        }
+    }
+
+    /**
+     * Unregisters the MXBeans registered by registerMBeans().
+     */
+    public synchronized void unregisterMBeans( ) throws JMException {
+        MBeanServer s = server;
+
+        if ( s == null )
+            return;
+
+        server = null;
+
+        for ( Stage stage : stages.keySet( ) ) {
+            if ( s.isRegistered( stageName( stage ) ) )
+                s.unregisterMBean( stageName( stage ) );
+        }
+
+        for ( String cache : caches.keySet( ) ) {
+            if ( s.isRegistered( cacheName( cache ) ) )
+                s.unregisterMBean( cacheName( cache ) );
+        }
+    }
+
+    /**
+     * Clears the counters of every stage.
+     */
+    public void reset( ) {
+        for ( StageMetrics stage : stages.values( ) ) {
+            stage.reset( );
+        }
+    }
+
+    /**
+     * Returns one line per stage that completed a file, and one per registered cache.
+     */
+    @Override
+    public String toString( ) {
+        StringBuilder builder = new StringBuilder( );
+
+        for ( StageMetrics stage : stages.values( ) ) {
+            if ( stage.getCompleted( ) > 0 || stage.getInFlight( ) > 0 )
+                builder.append( stage ).append( System.lineSeparator( ) );
+        }
+
+        for ( Map.Entry < String, CacheMetrics > cache : caches.entrySet( ) ) {
+            builder.append( String.format( "%s: %d hits, %d misses, %.1f%% hit rate" , cache.getKey( ) ,
+                    cache.getValue( ).getHits( ) , cache.getValue( ).getMisses( ) , cache.getValue( ).getHitRate( ) * 100 ) )
+                    .append( System.lineSeparator( ) );
+        }
+
+        return builder.toString( );
+    }
+
+    private void notifyListeners( Sample sample ) {
+        for ( MetricsListener listener : listeners ) {
+            try {
+                listener.onSample( sample );
+            } catch ( RuntimeException e ) {
+                LOGGER.log( Level.WARNING , "Metrics listener failed." , e );
+            }
+        }
+    }
+
+    /**
+     * Registers the MXBean, replacing an MXBean previously registered under the name.
+     */
+    private static void register( MBeanServer s , ObjectName name , Object mxBean ) {
+        try {
+            if ( s.isRegistered( name ) )
+                s.unregisterMBean( name );
+
+            s.registerMBean( mxBean , name );
+        } catch ( JMException e ) {
+            LOGGER.log( Level.WARNING , "MXBean " + name + " could not be registered." , e );
+        }
+    }
+
+    private static ObjectName stageName( Stage stage ) throws JMException {
+        return new ObjectName( JMX_DOMAIN + ":type=Stage,name=" + stage.name( ) );
+    }
+
+    private static ObjectName cacheName( String name ) {
+        try {
+            return new ObjectName( JMX_DOMAIN + ":type=Cache,name=" + ObjectName.quote( name ) );
+        } catch ( JMException e ) {
+            throw new IllegalArgumentException( "Invalid cache name: " + name , e );
+        }
+    }
+
+    private static final class CacheMetrics implements CacheMetricsMXBean {
+
+        private final ToLongFunction < Object > hits;
+
+        private final ToLongFunction < Object > misses;
+
+        private final WeakReference < ? > cache;
+
+        @SuppressWarnings( "unchecked" )
+        < T > CacheMetrics( WeakReference < T > cache , ToLongFunction < T > hits , ToLongFunction < T > misses ) {
+            this.cache = cache;
+            this.hits = ( ToLongFunction < Object > ) hits;
+            this.misses = ( ToLongFunction < Object > ) misses;
+        }
+
+        @Override
+        public long getHits( ) {
+            Object c = cache.get( );
+            return c == null ? 0 : hits.applyAsLong( c );
+        }
+
+        @Override
+        public long getMisses( ) {
+            Object c = cache.get( );
+            return c == null ? 0 : misses.applyAsLong( c );
+        }
+
+        @Override
+        public double getHitRate( ) {
+            long h = getHits( );
+            long lookups = h + getMisses( );
+
+            return lookups == 0 ? 0 : ( double ) h / lookups;
+        }
+    }
+}
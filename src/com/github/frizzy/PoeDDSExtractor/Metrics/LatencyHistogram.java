@@ -0,0 +1,114 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies in nanoseconds, with a bucket per power of two.
+ * <br>
+ * Recording is a couple of additions, so every thread of an extraction can record into the same histogram without
+ * contending. Percentiles are the upper bound of the bucket they fall in, so they are at most twice the real
+ * latency, plenty to tell where the time goes.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket i counts latencies below 2^i nanoseconds, and at least 2^(i - 1).
+     */
+    private final LongAdder[] buckets = new LongAdder[ 64 ];
+
+    private final LongAdder count = new LongAdder( );
+
+    private final LongAdder total = new LongAdder( );
+
+    private final LongAccumulator max = new LongAccumulator( Math::max , 0 );
+
+    public LatencyHistogram( ) {
+        for ( int i = 0; i < buckets.length; i++ ) {
+            buckets[ i ] = new LongAdder( );
+        }
+    }
+
+    /**
+     * Records a latency. Negative latencies are recorded as 0.
+     */
+    public void record( long nanos ) {
+        nanos = Math.max( 0 , nanos );
+
+        buckets[ Math.min( 63 , 64 - Long.numberOfLeadingZeros( nanos ) ) ].increment( );
+        count.increment( );
+        total.add( nanos );
+        max.accumulate( nanos );
+    }
+
+    /**
+     * Returns the amount of recorded latencies.
+     */
+    public long getCount( ) {
+        return count.sum( );
+    }
+
+    /**
+     * Returns the sum of the recorded latencies in nanoseconds.
+     */
+    public long getTotal( ) {
+        return total.sum( );
+    }
+
+    /**
+     * Returns the highest recorded latency in nanoseconds.
+     */
+    public long getMax( ) {
+        return max.get( );
+    }
+
+    /**
+     * Returns the mean latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean( ) {
+        long c = getCount( );
+        return c == 0 ? 0 : ( double ) getTotal( ) / c;
+    }
+
+    /**
+     * Returns the latency in nanoseconds the percentile of recorded latencies falls below, or 0 if nothing was
+     * recorded.
+     *
+     * @param percentile Between 0 and 100.
+     */
+    public long getPercentile( double percentile ) {
+        long c = getCount( );
+
+        if ( c == 0 )
+            return 0;
+
+        long rank = Math.max( 1 , ( long ) Math.ceil( c * percentile / 100 ) );
+        long seen = 0;
+
+        for ( int i = 0; i < buckets.length; i++ ) {
+            seen += buckets[ i ].sum( );
+
+            if ( seen >= rank )
+                return Math.min( getMax( ) , i == 63 ? Long.MAX_VALUE : 1L << i );
+        }
+
+        return getMax( );
+    }
+
+    /**
+     * Clears every recorded latency.
+     */
+    public void reset( ) {
+        for ( LongAdder bucket : buckets ) {
+            bucket.reset( );
+        }
+
+        count.reset( );
+        total.reset( );
+        max.reset( );
+    }
+}
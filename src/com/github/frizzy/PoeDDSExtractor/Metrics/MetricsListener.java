@@ -0,0 +1,16 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+/**
+ * Receives every sample recorded by ExtractionMetrics, for example to forward it to a dashboard.
+ * <br>
+ * Listeners are called on the thread that completed the sample, often several at once, and should return quickly.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    void onSample( ExtractionMetrics.Sample sample );
+}
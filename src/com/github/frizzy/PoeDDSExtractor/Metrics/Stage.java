@@ -0,0 +1,41 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+/**
+ * The stages of an extraction that report into ExtractionMetrics.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public enum Stage {
+
+    /**
+     * Reading a file into memory from the Content.ggpk file or the bundles.
+     */
+    GGPK_READ,
+
+    /**
+     * Extracting a file from the Content.ggpk file or the bundles to disk, natively or with ExtractGGPK.exe.
+     */
+    GGPK_EXTRACT,
+
+    /**
+     * Converting a .dds file to a .png file, with texconv.exe or DDSDecoder.
+     */
+    DDS_CONVERT,
+
+    /**
+     * Decoding a whole atlas, from a .dds file, a .png file or memory.
+     */
+    DDS_DECODE,
+
+    /**
+     * Cropping the textures out of an atlas and writing them.
+     */
+    TEXTURE_EXTRACT,
+
+    /**
+     * Extracting the .wav files of a .bank file.
+     */
+    BANK_EXTRACT
+}
@@ -0,0 +1,137 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies, byte counters and in flight files of one stage.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class StageMetrics implements StageMetricsMXBean {
+
+    private final Stage stage;
+
+    private final LatencyHistogram latencies = new LatencyHistogram( );
+
+    private final LongAdder failed = new LongAdder( );
+
+    private final LongAdder bytesRead = new LongAdder( );
+
+    private final LongAdder bytesWritten = new LongAdder( );
+
+    private final AtomicInteger inFlight = new AtomicInteger( );
+
+    /**
+     * System.nanoTime() of the first file starting since the last reset, or Long.MAX_VALUE if none has.
+     */
+    private final AtomicLong firstStart = new AtomicLong( Long.MAX_VALUE );
+
+    private final AtomicLong lastEnd = new AtomicLong( );
+
+    StageMetrics( Stage stage ) {
+        this.stage = stage;
+    }
+
+    public Stage getStage( ) {
+        return stage;
+    }
+
+    /**
+     * Returns the latencies of the completed files.
+     */
+    public LatencyHistogram getLatencies( ) {
+        return latencies;
+    }
+
+    void started( long start ) {
+        inFlight.incrementAndGet( );
+        firstStart.accumulateAndGet( start , Math::min );
+    }
+
+    void completed( ExtractionMetrics.Sample sample , long end ) {
+        inFlight.decrementAndGet( );
+        lastEnd.accumulateAndGet( end , Math::max );
+        latencies.record( sample.nanos( ) );
+        bytesRead.add( sample.bytesRead( ) );
+        bytesWritten.add( sample.bytesWritten( ) );
+
+        if ( sample.failed( ) )
+            failed.increment( );
+    }
+
+    @Override
+    public long getCompleted( ) {
+        return latencies.getCount( );
+    }
+
+    @Override
+    public long getFailed( ) {
+        return failed.sum( );
+    }
+
+    @Override
+    public int getInFlight( ) {
+        return inFlight.get( );
+    }
+
+    @Override
+    public long getBytesRead( ) {
+        return bytesRead.sum( );
+    }
+
+    @Override
+    public long getBytesWritten( ) {
+        return bytesWritten.sum( );
+    }
+
+    @Override
+    public double getFilesPerSecond( ) {
+        long elapsed = lastEnd.get( ) - firstStart.get( );
+
+        if ( elapsed <= 0 )
+            return 0;
+
+        return getCompleted( ) / ( elapsed / 1_000_000_000.0 );
+    }
+
+    @Override
+    public double getMeanMillis( ) {
+        return latencies.getMean( ) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP50Millis( ) {
+        return latencies.getPercentile( 50 ) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP99Millis( ) {
+        return latencies.getPercentile( 99 ) / 1_000_000.0;
+    }
+
+    @Override
+    public double getMaxMillis( ) {
+        return latencies.getMax( ) / 1_000_000.0;
+    }
+
+    @Override
+    public void reset( ) {
+        latencies.reset( );
+        failed.reset( );
+        bytesRead.reset( );
+        bytesWritten.reset( );
+        firstStart.set( Long.MAX_VALUE );
+        lastEnd.set( 0 );
+    }
+
+    @Override
+    public String toString( ) {
+        return String.format( "%s: %d completed, %d failed, %d in flight, %.1f files/s, mean %.2f ms, p99 %.2f ms, "
+                        + "%d bytes read, %d bytes written" , stage , getCompleted( ) , getFailed( ) , getInFlight( ) ,
+                getFilesPerSecond( ) , getMeanMillis( ) , getP99Millis( ) , getBytesRead( ) , getBytesWritten( ) );
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.frizzy.PoeDDSExtractor.Metrics;
+
+/**
+ * JMX view of the metrics of one stage, registered as
+ * com.github.frizzy.PoeDDSExtractor:type=Stage,name=[stage].
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public interface StageMetricsMXBean {
+
+    /**
+     * Returns the amount of files the stage has completed, failed or not.
+     */
+    long getCompleted( );
+
+    long getFailed( );
+
+    /**
+     * Returns the amount of files the stage is working on right now.
+     */
+    int getInFlight( );
+
+    long getBytesRead( );
+
+    long getBytesWritten( );
+
+    /**
+     * Returns the completed files per second, between the first file starting and the last file completing.
+     */
+    double getFilesPerSecond( );
+
+    double getMeanMillis( );
+
+    double getP50Millis( );
+
+    double getP99Millis( );
+
+    double getMaxMillis( );
+
+    /**
+     * Clears every counter except in flight files.
+     */
+    void reset( );
+}
@@ -0,0 +1,57 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every entry to its own file in a directory, the layout the extraction writes without a sink. The
+ * directories of an entry's name are created as needed, and existing files are overwritten.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class DirectorySink extends QueuedSink {
+
+    private final Path directory;
+
+    public DirectorySink( Path directory ) throws IOException {
+        this( directory , DEFAULT_MAX_QUEUED_BYTES );
+    }
+
+    /**
+     * @param maxQueuedBytes The amount of bytes waiting to be written before write() blocks.
+     */
+    public DirectorySink( Path directory , int maxQueuedBytes ) throws IOException {
+        super( directory , maxQueuedBytes );
+        this.directory = Files.createDirectories( directory ).toAbsolutePath( ).normalize( );
+
+        start( );
+    }
+
+    @Override
+    protected void writeEntry( String name , ByteBuffer data ) throws IOException {
+        Path target = directory.resolve( name ).normalize( );
+
+        if ( !target.startsWith( directory ) || target.equals( directory ) )
+            throw new IOException( "Entry " + name + " is outside of " + directory );
+
+        Files.createDirectories( target.getParent( ) );
+
+        try ( FileChannel out = FileChannel.open( target , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            while ( data.hasRemaining( ) ) {
+                out.write( data );
+            }
+        }
+    }
+
+    @Override
+    protected void finish( ) {
+        //Every file is closed once written.
+    }
+}
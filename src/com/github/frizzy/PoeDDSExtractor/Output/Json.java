@@ -0,0 +1,42 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+/**
+ * Helpers for the JSON manifests written next to the outputs, such as the sprite sheet and TextureStore manifests.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public final class Json {
+
+    private Json( ) {
+
+    }
+
+    /**
+     * Returns the string as a JSON string literal.
+     */
+    public static String quote( String s ) {
+        StringBuilder builder = new StringBuilder( s.length( ) + 2 ).append( '"' );
+
+        for ( int i = 0; i < s.length( ); i++ ) {
+            char c = s.charAt( i );
+
+            switch ( c ) {
+                case '"' -> builder.append( "\\\"" );
+                case '\\' -> builder.append( "\\\\" );
+                case '\n' -> builder.append( "\\n" );
+                case '\r' -> builder.append( "\\r" );
+                case '\t' -> builder.append( "\\t" );
+                default -> {
+                    if ( c < 0x20 )
+                        builder.append( String.format( "\\u%04x" , ( int ) c ) );
+                    else
+                        builder.append( c );
+                }
+            }
+        }
+
+        return builder.append( '"' ).toString( );
+    }
+}
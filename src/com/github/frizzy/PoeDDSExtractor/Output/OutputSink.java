@@ -0,0 +1,69 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Where extracted files are written to: a directory, or a single .zip or .tar archive.
+ * <br>
+ * Every file is written as an entry, named by a relative path using "/" as separator, such as
+ * "Art_2DArt_Atlases_Atlas/Atlas.dds" or "ButtonTickNormal.png". GGPK2.extractTo(), DDSExtractor2 and BankExtractor
+ * write into a sink once it is set on them.
+ * <br>
+ * write() hands the entry to a single writer thread and returns, so the calling stage does not wait for the disk,
+ * and entries are written one after another in the order they were handed over. Writing to a sink can be done
+ * from several threads. close() waits until every entry is written, and finishes the archive.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Writes the entry, from the position to the limit of the data. The data is written later on the writer
+     * thread, and must not be changed after it was handed over.
+     *
+     * @throws IOException If a previous entry could not be written, or the sink was closed.
+     */
+    void write( String name , ByteBuffer data ) throws IOException;
+
+    /**
+     * Writes the bytes as an entry. The array must not be changed after it was handed over.
+     */
+    default void write( String name , byte[] data ) throws IOException {
+        write( name , ByteBuffer.wrap( data ) );
+    }
+
+    /**
+     * Reads the file into memory and writes it as an entry, so the file can be deleted once this returns.
+     */
+    default void write( String name , Path file ) throws IOException {
+        write( name , Files.readAllBytes( file ) );
+    }
+
+    /**
+     * Returns the directory or archive the sink writes to.
+     */
+    Path getPath( );
+
+    /**
+     * Returns a TarSink for a path ending with .tar, a ZipSink for a path ending with .zip, and a DirectorySink
+     * otherwise.
+     */
+    static OutputSink of( Path path ) throws IOException {
+        String name = path.getFileName( ).toString( ).toLowerCase( Locale.ROOT );
+
+        if ( name.endsWith( ".zip" ) )
+            return new ZipSink( path );
+
+        if ( name.endsWith( ".tar" ) )
+            return new TarSink( path );
+
+        return new DirectorySink( path );
+    }
+}
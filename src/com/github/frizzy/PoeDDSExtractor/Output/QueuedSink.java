@@ -0,0 +1,186 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base of the OutputSinks, handing every entry to a single writer thread through a queue.
+ * <br>
+ * Writing the entries one at a time from one thread keeps an archive's entries from interleaving, and keeps the
+ * disk writing sequentially instead of seeking between files written by several threads. At most
+ * maxQueuedBytes of entries wait in the queue, write() blocks once it is full, so a slow disk holds back the
+ * stages instead of filling the memory.
+ * <br>
+ * Once an entry fails to be written, the following entries are dropped and write() and close() throw the error.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public abstract class QueuedSink implements OutputSink {
+
+    private static final Logger LOGGER = Logger.getLogger( QueuedSink.class.getName( ) );
+
+    /**
+     * The default amount of bytes waiting in the queue before write() blocks.
+     */
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 64 * 1024 * 1024;
+
+    private static final AtomicInteger THREADS = new AtomicInteger( );
+
+    /**
+     * Marks the end of the queue.
+     */
+    private static final Entry END = new Entry( null , null , 0 );
+
+    private final Path path;
+
+    private final int maxQueuedBytes;
+
+    private final Semaphore queuedBytes;
+
+    private final BlockingQueue < Entry > queue = new LinkedBlockingQueue <>( );
+
+    private final Object lock = new Object( );
+
+    private Thread writer;
+
+    private boolean closed;
+
+    private volatile IOException error;
+
+    private record Entry( String name , ByteBuffer data , int permits ) {
+
+    }
+
+    /**
+     * @param path           The directory or archive written to.
+     * @param maxQueuedBytes The amount of bytes waiting in the queue before write() blocks.
+     */
+    protected QueuedSink( Path path , int maxQueuedBytes ) {
+        if ( maxQueuedBytes < 1 )
+            throw new IllegalArgumentException( "maxQueuedBytes must be at least 1." );
+
+        this.path = path;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.queuedBytes = new Semaphore( maxQueuedBytes );
+    }
+
+    /**
+     * Starts the writer thread. Called by the sinks once they are constructed.
+     */
+    protected final void start( ) {
+        writer = new Thread( this::drain , "output-sink-" + THREADS.incrementAndGet( ) );
+        writer.setDaemon( true );
+        writer.start( );
+    }
+
+    /**
+     * Writes the entry, called on the writer thread only.
+     */
+    protected abstract void writeEntry( String name , ByteBuffer data ) throws IOException;
+
+    /**
+     * Finishes the output and releases it, called on the writer thread once every entry is written, also after an
+     * entry failed.
+     */
+    protected abstract void finish( ) throws IOException;
+
+    @Override
+    public void write( String name , ByteBuffer data ) throws IOException {
+        throwIfFailed( );
+
+        //An entry larger than the queue waits for the queue to be empty.
+        int permits = Math.max( 1 , Math.min( data.remaining( ) , maxQueuedBytes ) );
+
+        try {
+            queuedBytes.acquire( permits );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread( ).interrupt( );
+            throw new InterruptedIOException( "Interrupted while waiting to write " + name );
+        }
+
+        synchronized ( lock ) {
+            if ( closed ) {
+                queuedBytes.release( permits );
+                throw new IOException( "The output sink for " + path + " was closed, " + name + " was not written." );
+            }
+
+            queue.add( new Entry( name , data.duplicate( ) , permits ) );
+        }
+    }
+
+    @Override
+    public Path getPath( ) {
+        return path;
+    }
+
+    /**
+     * Waits until every entry is written, and finishes the output.
+     *
+     * @throws IOException If an entry could not be written, or the output could not be finished.
+     */
+    @Override
+    public void close( ) throws IOException {
+        synchronized ( lock ) {
+            if ( !closed ) {
+                closed = true;
+                queue.add( END );
+            }
+        }
+
+        try {
+            writer.join( );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread( ).interrupt( );
+            throw new InterruptedIOException( "Interrupted while waiting for " + path + " to be written." );
+        }
+
+        throwIfFailed( );
+    }
+
+    private void throwIfFailed( ) throws IOException {
+        IOException e = error;
+
+        if ( e != null )
+            throw new IOException( "Writing to " + path + " failed." , e );
+    }
+
+    private void drain( ) {
+        try {
+            for ( Entry entry = queue.take( ); entry != END; entry = queue.take( ) ) {
+                try {
+                    if ( error == null )
+                        writeEntry( entry.name( ) , entry.data( ) );
+                } catch ( IOException | RuntimeException e ) {
+                    fail( "Could not write " + entry.name( ) + " to " + path , e );
+                } finally {
+                    queuedBytes.release( entry.permits( ) );
+                }
+            }
+        } catch ( InterruptedException e ) {
+            fail( "The writer of " + path + " was interrupted." , e );
+        }
+
+        try {
+            finish( );
+        } catch ( IOException | RuntimeException e ) {
+            fail( "Could not finish " + path , e );
+        }
+    }
+
+    private void fail( String message , Exception e ) {
+        LOGGER.log( Level.SEVERE , message , e );
+
+        if ( error == null )
+            error = e instanceof IOException io ? io : new IOException( message , e );
+    }
+}
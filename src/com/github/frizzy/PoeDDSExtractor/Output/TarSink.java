@@ -0,0 +1,188 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams every entry into a single uncompressed .tar file, in the POSIX ustar format.
+ * <br>
+ * Names too long for a ustar header, or not plain ASCII, are written in a pax extended header before the entry,
+ * which every current tar reads. The .tar file is not compressed, so writing it costs little more than writing the
+ * bytes; it can be compressed as a whole afterwards.
+ * <br>
+ * Like in a DirectorySink, a later entry of a name already written replaces it once the .tar file is extracted.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class TarSink extends QueuedSink {
+
+    private static final int BLOCK = 512;
+
+    private static final int NAME_LENGTH = 100;
+
+    private static final int PREFIX_LENGTH = 155;
+
+    private final OutputStream out;
+
+    private final long mtime = System.currentTimeMillis( ) / 1000;
+
+    private final byte[] buffer = new byte[ 64 * 1024 ];
+
+    public TarSink( Path file ) throws IOException {
+        this( file , DEFAULT_MAX_QUEUED_BYTES );
+    }
+
+    /**
+     * @param maxQueuedBytes The amount of bytes waiting to be written before write() blocks.
+     */
+    public TarSink( Path file , int maxQueuedBytes ) throws IOException {
+        super( file , maxQueuedBytes );
+
+        if ( file.getParent( ) != null )
+            Files.createDirectories( file.getParent( ) );
+
+        this.out = new BufferedOutputStream( Files.newOutputStream( file ) , buffer.length );
+
+        start( );
+    }
+
+    @Override
+    protected void writeEntry( String name , ByteBuffer data ) throws IOException {
+        byte[] nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+        int split = split( name , nameBytes );
+
+        if ( split < 0 ) {
+            byte[] record = paxRecord( "path" , name );
+            String paxName = "PaxHeaders/" + ascii( name , NAME_LENGTH - "PaxHeaders/".length( ) );
+
+            writeHeader( paxName , "" , record.length , 'x' );
+            writeData( ByteBuffer.wrap( record ) );
+            writeHeader( ascii( name , NAME_LENGTH ) , "" , data.remaining( ) , '0' );
+        } else {
+            writeHeader( name.substring( split == 0 ? 0 : split + 1 ) , split == 0 ? "" : name.substring( 0 , split ) ,
+                    data.remaining( ) , '0' );
+        }
+
+        writeData( data );
+    }
+
+    /**
+     * Writes the two empty blocks ending a .tar file.
+     */
+    @Override
+    protected void finish( ) throws IOException {
+        try ( out ) {
+            out.write( new byte[ BLOCK * 2 ] );
+        }
+    }
+
+    /**
+     * Returns where the name is split into the ustar prefix and name, 0 if it fits the name field alone, or -1 if
+     * it needs a pax header.
+     */
+    private static int split( String name , byte[] bytes ) {
+        if ( bytes.length != name.length( ) )
+            return -1;
+
+        if ( bytes.length <= NAME_LENGTH )
+            return 0;
+
+        for ( int i = name.indexOf( '/' ); i > 0; i = name.indexOf( '/' , i + 1 ) ) {
+            if ( i <= PREFIX_LENGTH && bytes.length - i - 1 <= NAME_LENGTH && i < bytes.length - 1 )
+                return i;
+        }
+
+        return -1;
+    }
+
+    private void writeHeader( String name , String prefix , long size , char type ) throws IOException {
+        byte[] header = new byte[ BLOCK ];
+
+        put( header , 0 , NAME_LENGTH , name );
+        octal( header , 100 , 8 , 0644 );
+        octal( header , 108 , 8 , 0 );
+        octal( header , 116 , 8 , 0 );
+        octal( header , 124 , 12 , size );
+        octal( header , 136 , 12 , mtime );
+        header[ 156 ] = ( byte ) type;
+        put( header , 257 , 6 , "ustar" );
+        put( header , 263 , 2 , "00" );
+        put( header , 345 , PREFIX_LENGTH , prefix );
+
+        //The checksum is computed with its own field filled with spaces.
+        for ( int i = 148; i < 156; i++ ) {
+            header[ i ] = ' ';
+        }
+
+        int checksum = 0;
+        for ( byte b : header ) {
+            checksum += b & 0xFF;
+        }
+
+        octal( header , 148 , 7 , checksum );
+        header[ 154 ] = 0;
+        out.write( header );
+    }
+
+    /**
+     * Writes the data, padded with zeros to a whole block.
+     */
+    private void writeData( ByteBuffer data ) throws IOException {
+        int length = data.remaining( );
+
+        if ( data.hasArray( ) ) {
+            out.write( data.array( ) , data.arrayOffset( ) + data.position( ) , length );
+        } else {
+            while ( data.hasRemaining( ) ) {
+                int n = Math.min( buffer.length , data.remaining( ) );
+                data.get( buffer , 0 , n );
+                out.write( buffer , 0 , n );
+            }
+        }
+
+        int padding = ( BLOCK - length % BLOCK ) % BLOCK;
+        out.write( new byte[ padding ] );
+    }
+
+    /**
+     * Returns a pax record, "LENGTH KEY=VALUE\n", where LENGTH counts the whole record including itself.
+     */
+    private static byte[] paxRecord( String key , String value ) {
+        int length = key.length( ) + value.getBytes( StandardCharsets.UTF_8 ).length + 3;
+        int total = length + String.valueOf( length ).length( );
+
+        if ( String.valueOf( total ).length( ) > String.valueOf( length ).length( ) )
+            total++;
+
+        return ( total + " " + key + "=" + value + "\n" ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Returns the last maxLength characters of the name with anything that is not plain ASCII replaced, for the
+     * name field of an entry whose real name is in a pax header.
+     */
+    private static String ascii( String name , int maxLength ) {
+        String tail = name.length( ) > maxLength ? name.substring( name.length( ) - maxLength ) : name;
+        return tail.replaceAll( "[^\\x20-\\x7E]" , "_" );
+    }
+
+    private static void put( byte[] header , int offset , int length , String value ) {
+        byte[] bytes = value.getBytes( StandardCharsets.US_ASCII );
+        System.arraycopy( bytes , 0 , header , offset , Math.min( length , bytes.length ) );
+    }
+
+    /**
+     * Writes the value as zero padded octal digits followed by a NUL.
+     */
+    private static void octal( byte[] header , int offset , int length , long value ) {
+        String digits = Long.toOctalString( value );
+        put( header , offset , length - 1 , "0".repeat( Math.max( 0 , length - 1 - digits.length( ) ) ) + digits );
+    }
+}
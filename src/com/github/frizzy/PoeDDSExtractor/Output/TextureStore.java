@@ -0,0 +1,282 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSImage;
+import com.github.frizzy.PoeDDSExtractor.DDS.PngEncoder;
+import com.github.frizzy.PoeDDSExtractor.DDS.TextureEncoder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes every distinct texture once, no matter how many names it is listed under.
+ * <br>
+ * The same icon is often listed several times in uiimages.txt, under different names or in different atlases.
+ * Each added texture's pixels are hashed with SHA-256, along with its size, and the texture is named after the
+ * first 128 bits of the hash, such as "3f2a...c1.png". A texture whose pixels were already added is neither encoded
+ * nor written again, only its name is recorded as an alias of the stored file.
+ * <br>
+ * writeManifest() writes textures.json into the sink, mapping every texture name to its file and every file to the
+ * names it is stored for:
+ * <pre>
+ * {
+ *   "files": {
+ *     "3f2a...c1.png": { "width": 32, "height": 32, "textures": [ "Art/.../ButtonTickNormal", "Art/.../TickNormal" ] }
+ *   },
+ *   "textures": {
+ *     "Art/.../ButtonTickNormal": "3f2a...c1.png",
+ *     "Art/.../TickNormal": "3f2a...c1.png"
+ *   }
+ * }
+ * </pre>
+ * add() can be called from several threads. The sink is not closed by the store.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class TextureStore {
+
+    private static final Logger LOGGER = Logger.getLogger( TextureStore.class.getName( ) );
+
+    /**
+     * Name of the manifest entry written by writeManifest().
+     */
+    public static final String MANIFEST_NAME = "textures.json";
+
+    /**
+     * The amount of hash bytes a stored file is named after.
+     */
+    private static final int NAME_BYTES = 16;
+
+    private static final ThreadLocal < MessageDigest > SHA_256 = ThreadLocal.withInitial( ( ) -> {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "SHA-256 is not available." , e );
+        }
+    } );
+
+    private final OutputSink sink;
+
+    private final TextureEncoder encoder;
+
+    /**
+     * Stored files keyed by their entry name.
+     */
+    private final ConcurrentHashMap < String, StoredFile > files = new ConcurrentHashMap <>( );
+
+    /**
+     * Entry names of the stored files keyed by texture name.
+     */
+    private final ConcurrentHashMap < String, String > textures = new ConcurrentHashMap <>( );
+
+    /**
+     * What add() did with a texture.
+     *
+     * @param entry     The entry the texture is stored as.
+     * @param duplicate True if the pixels were already stored, and nothing was written.
+     * @param written   The amount of bytes written, 0 for a duplicate.
+     */
+    public record Stored( String entry , boolean duplicate , long written ) {
+
+    }
+
+    private static final class StoredFile {
+
+        private final int width;
+
+        private final int height;
+
+        private final List < String > textures = new ArrayList <>( );
+
+        /**
+         * Completes once the file is written, or exceptionally if it could not be.
+         */
+        private final CompletableFuture < Void > written = new CompletableFuture <>( );
+
+        StoredFile( int width , int height ) {
+            this.width = width;
+            this.height = height;
+        }
+
+        synchronized void add( String textureName ) {
+            textures.add( textureName );
+        }
+
+        synchronized void remove( String textureName ) {
+            textures.remove( textureName );
+        }
+
+        synchronized List < String > getTextures( ) {
+            return textures.stream( ).sorted( ).toList( );
+        }
+
+        boolean isWritten( ) {
+            return written.isDone( ) && !written.isCompletedExceptionally( );
+        }
+    }
+
+    /**
+     * Stores the textures as .png files written by PngEncoder.getDefault().
+     */
+    public TextureStore( OutputSink sink ) {
+        this( sink , PngEncoder.getDefault( ) );
+    }
+
+    public TextureStore( OutputSink sink , TextureEncoder encoder ) {
+        this.sink = sink;
+        this.encoder = encoder;
+    }
+
+    /**
+     * Adds the texture, encoding and writing it only if no texture of the same pixels was added before.
+     * <br>
+     * A texture of the same pixels as one still being written by another thread waits until it is written, and
+     * takes over writing it if that fails. The name is only recorded once its file is written, so if the texture
+     * can not be written, the name keeps the file it was stored as before, if any.
+     */
+    public Stored add( String textureName , BufferedImage image ) throws IOException {
+        DDSImage pixels = DDSImage.of( image );
+        String entry = hash( pixels ) + "." + encoder.getExtension( );
+
+        while ( true ) {
+            StoredFile created = new StoredFile( pixels.getWidth( ) , pixels.getHeight( ) );
+            StoredFile stored = files.putIfAbsent( entry , created );
+
+            if ( stored == null )
+                return write( textureName , entry , image , created );
+
+            try {
+                stored.written.join( );
+            } catch ( CompletionException | CancellationException e ) {
+                //The texture could not be written by the other thread, so it is tried again.
+                continue;
+            }
+
+            record( textureName , entry , stored );
+            LOGGER.log( Level.FINE , "Texture " + textureName + " is a duplicate of " + entry + " and was not written." );
+            return new Stored( entry , true , 0 );
+        }
+    }
+
+    private Stored write( String textureName , String entry , BufferedImage image , StoredFile created ) throws IOException {
+        try {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream( );
+            encoder.encode( image , encoded );
+            sink.write( entry , encoded.toByteArray( ) );
+
+            record( textureName , entry , created );
+            created.written.complete( null );
+
+            return new Stored( entry , false , encoded.size( ) );
+        } catch ( IOException | RuntimeException e ) {
+            files.remove( entry , created );
+            created.written.completeExceptionally( e );
+            throw e;
+        }
+    }
+
+    /**
+     * Lists the texture under the written file, moving it off the file it was stored as before.
+     */
+    private void record( String textureName , String entry , StoredFile file ) {
+        String previous = textures.put( textureName , entry );
+
+        if ( previous != null && !previous.equals( entry ) ) {
+            LOGGER.log( Level.WARNING , "Texture " + textureName + " was added again with other pixels, the earlier one is no longer listed for it." );
+
+            StoredFile earlier = files.get( previous );
+            if ( earlier != null )
+                earlier.remove( textureName );
+        }
+
+        if ( !entry.equals( previous ) )
+            file.add( textureName );
+    }
+
+    /**
+     * Returns the amount of texture names added.
+     */
+    public int getTextureCount( ) {
+        return textures.size( );
+    }
+
+    /**
+     * Returns the amount of distinct textures written.
+     */
+    public int getFileCount( ) {
+        return ( int ) files.values( ).stream( ).filter( StoredFile::isWritten ).count( );
+    }
+
+    /**
+     * Writes the manifest of every texture added so far into the sink, as MANIFEST_NAME.
+     */
+    public void writeManifest( ) throws IOException {
+        Map < String, StoredFile > sortedFiles = new TreeMap <>( );
+
+        //Files still being written have no textures listed yet.
+        files.forEach( ( entry , file ) -> {
+            if ( file.isWritten( ) )
+                sortedFiles.put( entry , file );
+        } );
+
+        Map < String, String > sortedTextures = new TreeMap <>( textures );
+        StringBuilder json = new StringBuilder( "{\n  \"files\": {\n" );
+        int written = 0;
+
+        for ( Map.Entry < String, StoredFile > e : sortedFiles.entrySet( ) ) {
+            StoredFile file = e.getValue( );
+            List < String > names = file.getTextures( ).stream( ).map( Json::quote ).toList( );
+
+            json.append( "    " ).append( Json.quote( e.getKey( ) ) ).append( ": { \"width\": " ).append( file.width )
+                    .append( ", \"height\": " ).append( file.height ).append( ", \"textures\": [ " )
+                    .append( String.join( ", " , names ) ).append( " ] }" )
+                    .append( ++written < sortedFiles.size( ) ? ",\n" : "\n" );
+        }
+
+        json.append( "  },\n  \"textures\": {\n" );
+        written = 0;
+
+        for ( Map.Entry < String, String > e : sortedTextures.entrySet( ) ) {
+            json.append( "    " ).append( Json.quote( e.getKey( ) ) ).append( ": " ).append( Json.quote( e.getValue( ) ) )
+                    .append( ++written < sortedTextures.size( ) ? ",\n" : "\n" );
+        }
+
+        json.append( "  }\n}\n" );
+        sink.write( MANIFEST_NAME , json.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+
+        LOGGER.log( Level.INFO , sortedTextures.size( ) + " textures were stored as " + sortedFiles.size( ) + " files." );
+    }
+
+    /**
+     * Returns the hex of the first NAME_BYTES of the SHA-256 hash of the size and pixels.
+     */
+    private static String hash( DDSImage pixels ) {
+        int[] argb = pixels.getARGB( );
+        ByteBuffer bytes = ByteBuffer.allocate( 8 + argb.length * 4 );
+
+        bytes.putInt( pixels.getWidth( ) ).putInt( pixels.getHeight( ) );
+        bytes.asIntBuffer( ).put( argb );
+
+        MessageDigest digest = SHA_256.get( );
+        digest.reset( );
+
+        return HexFormat.of( ).formatHex( digest.digest( bytes.array( ) ) , 0 , NAME_BYTES );
+    }
+}
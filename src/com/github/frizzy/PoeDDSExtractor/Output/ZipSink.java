@@ -0,0 +1,112 @@
+package com.github.frizzy.PoeDDSExtractor.Output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every entry into a single .zip file.
+ * <br>
+ * Entries that are already compressed, such as .png, .webp and .ogg files, are STORED instead of deflated again,
+ * which would cost time without making them smaller. Everything else, like .dds and .wav files, is deflated.
+ * <br>
+ * A .zip file can not hold two entries of the same name; a later entry of a name already written is skipped with
+ * a warning, where a DirectorySink would overwrite the file.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class ZipSink extends QueuedSink {
+
+    private static final Logger LOGGER = Logger.getLogger( ZipSink.class.getName( ) );
+
+    /**
+     * Extensions of the entries that are stored without compressing them.
+     */
+    private static final Set < String > COMPRESSED = Set.of( "png" , "webp" , "qoi" , "jpg" , "jpeg" , "ogg" , "mp3" ,
+            "zip" , "gz" , "bank" );
+
+    private final ZipOutputStream out;
+
+    private final Set < String > names = new HashSet <>( );
+
+    private final CRC32 crc = new CRC32( );
+
+    private final byte[] buffer = new byte[ 64 * 1024 ];
+
+    public ZipSink( Path file ) throws IOException {
+        this( file , Deflater.DEFAULT_COMPRESSION , DEFAULT_MAX_QUEUED_BYTES );
+    }
+
+    /**
+     * @param level          The Deflater level entries that are not yet compressed are deflated with.
+     * @param maxQueuedBytes The amount of bytes waiting to be written before write() blocks.
+     */
+    public ZipSink( Path file , int level , int maxQueuedBytes ) throws IOException {
+        super( file , maxQueuedBytes );
+
+        if ( file.getParent( ) != null )
+            Files.createDirectories( file.getParent( ) );
+
+        this.out = new ZipOutputStream( new BufferedOutputStream( Files.newOutputStream( file ) , buffer.length ) );
+        this.out.setLevel( level );
+
+        start( );
+    }
+
+    @Override
+    protected void writeEntry( String name , ByteBuffer data ) throws IOException {
+        if ( !names.add( name ) ) {
+            LOGGER.log( Level.WARNING , "Entry " + name + " was already written to " + getPath( ) + ", the duplicate was skipped." );
+            return;
+        }
+
+        ZipEntry entry = new ZipEntry( name );
+
+        if ( isCompressed( name ) ) {
+            crc.reset( );
+            crc.update( data.duplicate( ) );
+
+            entry.setMethod( ZipEntry.STORED );
+            entry.setSize( data.remaining( ) );
+            entry.setCompressedSize( data.remaining( ) );
+            entry.setCrc( crc.getValue( ) );
+        }
+
+        out.putNextEntry( entry );
+
+        if ( data.hasArray( ) ) {
+            out.write( data.array( ) , data.arrayOffset( ) + data.position( ) , data.remaining( ) );
+        } else {
+            while ( data.hasRemaining( ) ) {
+                int n = Math.min( buffer.length , data.remaining( ) );
+                data.get( buffer , 0 , n );
+                out.write( buffer , 0 , n );
+            }
+        }
+
+        out.closeEntry( );
+    }
+
+    @Override
+    protected void finish( ) throws IOException {
+        out.close( );
+    }
+
+    private static boolean isCompressed( String name ) {
+        String extension = name.substring( name.lastIndexOf( '.' ) + 1 ).toLowerCase( Locale.ROOT );
+        return COMPRESSED.contains( extension );
+    }
+}
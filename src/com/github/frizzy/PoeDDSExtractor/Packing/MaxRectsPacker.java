@@ -0,0 +1,180 @@
+package com.github.frizzy.PoeDDSExtractor.Packing;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Packs rectangles into a bin with the MaxRects algorithm, placing each rectangle by best short side fit, from
+ * Jukka Jylanki's "A Thousand Ways to Pack the Bin".
+ * <br>
+ * The packer keeps every maximal free rectangle of the bin. A placed rectangle goes into the free rectangle that
+ * leaves the smallest leftover along its shorter side, and every free rectangle it overlaps is split into the up
+ * to four free rectangles around it. Free rectangles contained in another are dropped. Only the rectangles split
+ * by an insert are compared with the rest, instead of comparing every pair.
+ * <br>
+ * Rectangles are never rotated. Packing works best when the rectangles are inserted largest first.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class MaxRectsPacker {
+
+    private final int width;
+
+    private final int height;
+
+    private final List < Rectangle > free = new ArrayList <>( );
+
+    private int usedWidth;
+
+    private int usedHeight;
+
+    private long usedArea;
+
+    public MaxRectsPacker( int width , int height ) {
+        if ( width < 1 || height < 1 )
+            throw new IllegalArgumentException( "The bin must be at least 1x1." );
+
+        this.width = width;
+        this.height = height;
+        free.add( new Rectangle( 0 , 0 , width , height ) );
+    }
+
+    /**
+     * Places a rectangle of the size, returning where it was placed, or an empty Optional if it does not fit.
+     */
+    public Optional < Rectangle > insert( int w , int h ) {
+        if ( w < 1 || h < 1 )
+            throw new IllegalArgumentException( "Rectangle of " + w + "x" + h + " can not be packed." );
+
+        Rectangle best = null;
+        int bestShort = Integer.MAX_VALUE;
+        int bestLong = Integer.MAX_VALUE;
+
+        for ( Rectangle r : free ) {
+            if ( r.width < w || r.height < h )
+                continue;
+
+            int leftoverX = r.width - w;
+            int leftoverY = r.height - h;
+            int shortSide = Math.min( leftoverX , leftoverY );
+            int longSide = Math.max( leftoverX , leftoverY );
+
+            if ( shortSide < bestShort || shortSide == bestShort && longSide < bestLong ) {
+                best = r;
+                bestShort = shortSide;
+                bestLong = longSide;
+            }
+        }
+
+        if ( best == null )
+            return Optional.empty( );
+
+        Rectangle placed = new Rectangle( best.x , best.y , w , h );
+        place( placed );
+
+        return Optional.of( placed );
+    }
+
+    /**
+     * Returns the width of the bin.
+     */
+    public int getWidth( ) {
+        return width;
+    }
+
+    /**
+     * Returns the height of the bin.
+     */
+    public int getHeight( ) {
+        return height;
+    }
+
+    /**
+     * Returns the right edge of the rightmost placed rectangle.
+     */
+    public int getUsedWidth( ) {
+        return usedWidth;
+    }
+
+    /**
+     * Returns the bottom edge of the lowest placed rectangle.
+     */
+    public int getUsedHeight( ) {
+        return usedHeight;
+    }
+
+    /**
+     * Returns the share of the used area covered by placed rectangles, from 0 to 1.
+     */
+    public double getOccupancy( ) {
+        long area = ( long ) usedWidth * usedHeight;
+        return area == 0 ? 0 : ( double ) usedArea / area;
+    }
+
+    private void place( Rectangle placed ) {
+        List < Rectangle > split = new ArrayList <>( );
+
+        for ( int i = free.size( ) - 1; i >= 0; i-- ) {
+            Rectangle r = free.get( i );
+
+            if ( r.intersects( placed ) ) {
+                free.remove( i );
+                split( r , placed , split );
+            }
+        }
+
+        prune( split );
+
+        usedWidth = Math.max( usedWidth , placed.x + placed.width );
+        usedHeight = Math.max( usedHeight , placed.y + placed.height );
+        usedArea += ( long ) placed.width * placed.height;
+    }
+
+    /**
+     * Adds the parts of the free rectangle left, right, above and below the placed rectangle.
+     */
+    private static void split( Rectangle r , Rectangle placed , List < Rectangle > split ) {
+        if ( placed.y > r.y )
+            split.add( new Rectangle( r.x , r.y , r.width , placed.y - r.y ) );
+
+        if ( placed.y + placed.height < r.y + r.height )
+            split.add( new Rectangle( r.x , placed.y + placed.height , r.width , r.y + r.height - placed.y - placed.height ) );
+
+        if ( placed.x > r.x )
+            split.add( new Rectangle( r.x , r.y , placed.x - r.x , r.height ) );
+
+        if ( placed.x + placed.width < r.x + r.width )
+            split.add( new Rectangle( placed.x + placed.width , r.y , r.x + r.width - placed.x - placed.width , r.height ) );
+    }
+
+    /**
+     * Adds the split rectangles to the free rectangles, dropping every rectangle contained in another. The free
+     * rectangles left untouched never contain each other, so only pairs involving a split rectangle are compared.
+     */
+    private void prune( List < Rectangle > split ) {
+        for ( int i = 0; i < split.size( ); i++ ) {
+            Rectangle r = split.get( i );
+            boolean contained = false;
+
+            for ( int j = 0; j < split.size( ) && !contained; j++ ) {
+                Rectangle other = split.get( j );
+                contained = j != i && other.contains( r ) && ( !r.equals( other ) || j < i );
+            }
+
+            for ( int j = 0; j < free.size( ) && !contained; j++ ) {
+                contained = free.get( j ).contains( r );
+            }
+
+            if ( contained ) {
+                split.remove( i-- );
+            }
+        }
+
+        free.removeIf( r -> split.stream( ).anyMatch( s -> s.contains( r ) ) );
+        free.addAll( split );
+    }
+}
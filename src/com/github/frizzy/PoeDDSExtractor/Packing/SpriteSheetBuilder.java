@@ -0,0 +1,300 @@
+package com.github.frizzy.PoeDDSExtractor.Packing;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.DDSImage;
+import com.github.frizzy.PoeDDSExtractor.DDS.PngEncoder;
+import com.github.frizzy.PoeDDSExtractor.DDS.TextureEncoder;
+import com.github.frizzy.PoeDDSExtractor.Output.Json;
+import com.github.frizzy.PoeDDSExtractor.Output.OutputSink;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects cropped textures and packs them into a few sprite sheets, written along with a JSON manifest of where
+ * each texture is, instead of writing every texture to its own file.
+ * <br>
+ * Set on a DDSExtractor2 with setSpriteSheets(), every texture it crops is added here instead of being written.
+ * Once the extraction is done, write() packs the textures with a MaxRectsPacker, largest first, into sheets of at
+ * most maxSize x maxSize pixels, and writes them with the TextureEncoder. Textures are keyed by their full name,
+ * such as "Art/2DArt/UIImages/Common/4K/ButtonTickNormal", so textures sharing the last part of their name no
+ * longer overwrite each other.
+ * <br>
+ * The manifest, NAME.json, looks like:
+ * <pre>
+ * {
+ *   "sheets": [
+ *     { "file": "sheet_0.png", "width": 4096, "height": 3320 }
+ *   ],
+ *   "textures": {
+ *     "Art/2DArt/UIImages/Common/4K/ButtonTickNormal": { "sheet": 0, "x": 0, "y": 0, "width": 32, "height": 32 }
+ *   }
+ * }
+ * </pre>
+ * Added textures are held in memory until write() is called. add() can be called from several threads.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class SpriteSheetBuilder {
+
+    private static final Logger LOGGER = Logger.getLogger( SpriteSheetBuilder.class.getName( ) );
+
+    /**
+     * The default width and height limit of a sheet, the largest texture size most GPUs and browsers handle.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final ConcurrentHashMap < String, DDSImage > textures = new ConcurrentHashMap <>( );
+
+    private String name = "sheet";
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private int padding = 1;
+
+    private TextureEncoder encoder = PngEncoder.getDefault( );
+
+    /**
+     * Where a texture was packed.
+     *
+     * @param sheet The index of the sheet.
+     * @param area  The area of the texture within the sheet.
+     */
+    public record Placement( int sheet , Rectangle area ) {
+
+    }
+
+    /**
+     * The files written by write(), or the entries when written into an OutputSink.
+     *
+     * @param sheets     The sheet files, in the order of their index.
+     * @param manifest   The JSON manifest.
+     * @param placements Where each texture was packed, by name.
+     */
+    public record Output( List < Path > sheets , Path manifest , Map < String, Placement > placements ) {
+
+    }
+
+    /**
+     * Sets the name the sheets and manifest are written under, "sheet" by default.
+     */
+    public void setName( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the largest width and height of a sheet. A texture larger than that gets a sheet of its own size.
+     */
+    public void setMaxSize( int maxSize ) {
+        if ( maxSize < 1 )
+            throw new IllegalArgumentException( "maxSize must be at least 1." );
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Sets the transparent pixels kept between textures, 1 by default, so sampling a texture with filtering does
+     * not bleed its neighbours in.
+     */
+    public void setPadding( int padding ) {
+        if ( padding < 0 )
+            throw new IllegalArgumentException( "padding can not be negative." );
+
+        this.padding = padding;
+    }
+
+    /**
+     * Sets the encoder the sheets are written with, PngEncoder.getDefault() by default.
+     */
+    public void setEncoder( TextureEncoder encoder ) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Adds the texture to be packed. The pixels are copied, so the image can be a sub image of an atlas.
+     *
+     * @return False if a texture of the same name was already added, in which case this one is skipped.
+     */
+    public boolean add( String textureName , BufferedImage image ) {
+        DDSImage copy = DDSImage.of( image );
+
+        if ( textures.putIfAbsent( textureName , copy ) != null ) {
+            LOGGER.log( Level.WARNING , "Texture " + textureName + " was already added, the duplicate was skipped." );
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the amount of textures added.
+     */
+    public int size( ) {
+        return textures.size( );
+    }
+
+    /**
+     * Packs every texture added so far into as few sheets as fit them, without writing anything.
+     */
+    public Map < String, Placement > pack( ) {
+        List < Map.Entry < String, DDSImage > > sorted = new ArrayList <>( textures.entrySet( ) );
+        sorted.sort( Comparator.comparingInt( ( Map.Entry < String, DDSImage > e ) -> Math.max( e.getValue( ).getWidth( ) , e.getValue( ).getHeight( ) ) )
+                .thenComparingInt( e -> Math.min( e.getValue( ).getWidth( ) , e.getValue( ).getHeight( ) ) )
+                .reversed( )
+                .thenComparing( Map.Entry::getKey ) );
+
+        List < MaxRectsPacker > sheets = new ArrayList <>( );
+        Map < String, Placement > placements = new TreeMap <>( );
+
+        for ( Map.Entry < String, DDSImage > e : sorted ) {
+            int w = e.getValue( ).getWidth( ) + padding;
+            int h = e.getValue( ).getHeight( ) + padding;
+            Optional < Placement > placement = Optional.empty( );
+
+            for ( int i = 0; i < sheets.size( ) && placement.isEmpty( ); i++ ) {
+                int sheet = i;
+                placement = sheets.get( i ).insert( w , h ).map( area -> new Placement( sheet , area ) );
+            }
+
+            if ( placement.isEmpty( ) ) {
+                if ( w > maxSize || h > maxSize )
+                    LOGGER.log( Level.WARNING , "Texture " + e.getKey( ) + " is larger than " + maxSize + " pixels and was given a sheet of its own." );
+
+                MaxRectsPacker packer = new MaxRectsPacker( Math.max( w , maxSize ) , Math.max( h , maxSize ) );
+                sheets.add( packer );
+                placement = packer.insert( w , h ).map( area -> new Placement( sheets.size( ) - 1 , area ) );
+            }
+
+            Rectangle area = placement.get( ).area( );
+            placements.put( e.getKey( ) , new Placement( placement.get( ).sheet( ) ,
+                    new Rectangle( area.x , area.y , e.getValue( ).getWidth( ) , e.getValue( ).getHeight( ) ) ) );
+        }
+
+        return placements;
+    }
+
+    /**
+     * Packs every texture added so far and writes the sheets and manifest into the directory.
+     */
+    public Output write( Path directory ) throws IOException {
+        return write( ( entry , sheet ) -> {
+            Path file = directory.resolve( entry );
+            encoder.write( sheet , file );
+            return file;
+        } , ( entry , manifest ) -> {
+            Path file = directory.resolve( entry );
+            Files.writeString( file , manifest , StandardCharsets.UTF_8 );
+            return file;
+        } );
+    }
+
+    /**
+     * Packs every texture added so far and writes the sheets and manifest into the sink, as entries named like
+     * the files write( directory ) writes. The sheets and manifest of the returned Output are the entry names.
+     */
+    public Output write( OutputSink sink ) throws IOException {
+        return write( ( entry , sheet ) -> {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream( );
+            encoder.encode( sheet , encoded );
+            sink.write( entry , encoded.toByteArray( ) );
+            return Path.of( entry );
+        } , ( entry , manifest ) -> {
+            sink.write( entry , manifest.getBytes( StandardCharsets.UTF_8 ) );
+            return Path.of( entry );
+        } );
+    }
+
+    /**
+     * Writes a sheet or the manifest under its entry name, returning where it was written.
+     */
+    @FunctionalInterface
+    private interface EntryWriter < T > {
+
+        Path write( String entry , T content ) throws IOException;
+    }
+
+    private Output write( EntryWriter < BufferedImage > sheetWriter , EntryWriter < String > manifestWriter ) throws IOException {
+        Map < String, Placement > placements = pack( );
+        List < int[] > sizes = new ArrayList <>( );
+
+        for ( Placement p : placements.values( ) ) {
+            while ( sizes.size( ) <= p.sheet( ) ) {
+                sizes.add( new int[ 2 ] );
+            }
+
+            int[] size = sizes.get( p.sheet( ) );
+            size[ 0 ] = Math.max( size[ 0 ] , p.area( ).x + p.area( ).width );
+            size[ 1 ] = Math.max( size[ 1 ] , p.area( ).y + p.area( ).height );
+        }
+
+        List < Path > files = new ArrayList <>( );
+
+        for ( int sheet = 0; sheet < sizes.size( ); sheet++ ) {
+            int[] size = sizes.get( sheet );
+            int[] argb = new int[ size[ 0 ] * size[ 1 ] ];
+
+            for ( Map.Entry < String, Placement > e : placements.entrySet( ) ) {
+                Placement p = e.getValue( );
+
+                if ( p.sheet( ) != sheet )
+                    continue;
+
+                int[] pixels = textures.get( e.getKey( ) ).getARGB( );
+                Rectangle area = p.area( );
+
+                for ( int row = 0; row < area.height; row++ ) {
+                    System.arraycopy( pixels , row * area.width , argb , ( area.y + row ) * size[ 0 ] + area.x , area.width );
+                }
+            }
+
+            Path file = sheetWriter.write( name + "_" + sheet + "." + encoder.getExtension( ) ,
+                    new DDSImage( size[ 0 ] , size[ 1 ] , argb ).toBufferedImage( ) );
+            files.add( file );
+
+            LOGGER.log( Level.INFO , "Wrote sprite sheet " + file + " of " + size[ 0 ] + "x" + size[ 1 ] + " pixels." );
+        }
+
+        Path manifest = manifestWriter.write( name + ".json" , manifest( files , sizes , placements ) );
+
+        return new Output( List.copyOf( files ) , manifest , placements );
+    }
+
+    private static String manifest( List < Path > files , List < int[] > sizes , Map < String, Placement > placements ) {
+        StringBuilder json = new StringBuilder( "{\n  \"sheets\": [\n" );
+
+        for ( int i = 0; i < files.size( ); i++ ) {
+            json.append( "    { \"file\": " ).append( Json.quote( files.get( i ).getFileName( ).toString( ) ) )
+                    .append( ", \"width\": " ).append( sizes.get( i )[ 0 ] ).append( ", \"height\": " ).append( sizes.get( i )[ 1 ] )
+                    .append( " }" ).append( i + 1 < files.size( ) ? ",\n" : "\n" );
+        }
+
+        json.append( "  ],\n  \"textures\": {\n" );
+        int written = 0;
+
+        for ( Map.Entry < String, Placement > e : placements.entrySet( ) ) {
+            Rectangle area = e.getValue( ).area( );
+
+            json.append( "    " ).append( Json.quote( e.getKey( ) ) ).append( ": { \"sheet\": " ).append( e.getValue( ).sheet( ) )
+                    .append( ", \"x\": " ).append( area.x ).append( ", \"y\": " ).append( area.y )
+                    .append( ", \"width\": " ).append( area.width ).append( ", \"height\": " ).append( area.height ).append( " }" )
+                    .append( ++written < placements.size( ) ? ",\n" : "\n" );
+        }
+
+        return json.append( "  }\n}\n" ).toString( );
+    }
+}
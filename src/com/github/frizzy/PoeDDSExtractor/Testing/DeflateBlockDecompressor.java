@@ -0,0 +1,51 @@
+package com.github.frizzy.PoeDDSExtractor.Testing;
+
+import com.github.frizzy.PoeDDSExtractor.Bundle.BlockDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Stand-in for Oodle used with the bundles written by SyntheticBundles. Blocks are compressed with raw deflate,
+ * so the bundle code can be exercised without the game or the Oodle library.
+ *
+ * @author Frizzy
+ */
+public class DeflateBlockDecompressor implements BlockDecompressor {
+
+    /**
+     * Encoding id written into synthetic bundle headers. Not used by the game.
+     */
+    public static final int ENCODING = 0x44464C54;
+
+    @Override
+    public void decompress( int encoding , ByteBuffer compressed , byte[] destination , int decompressedLength ) throws IOException {
+        if ( encoding != ENCODING )
+            throw new IOException( "Block encoding " + encoding + " is not a synthetic deflate block." );
+
+        Inflater inflater = new Inflater( true );
+
+        try {
+            inflater.setInput( compressed );
+            int total = 0;
+
+            while ( total < decompressedLength && !inflater.finished( ) ) {
+                int read = inflater.inflate( destination , total , decompressedLength - total );
+
+                if ( read == 0 && ( inflater.needsInput( ) || inflater.needsDictionary( ) ) )
+                    break;
+
+                total += read;
+            }
+
+            if ( total != decompressedLength )
+                throw new IOException( "Block decompressed to " + total + " bytes, expected " + decompressedLength );
+        } catch ( DataFormatException e ) {
+            throw new IOException( e.getMessage( ) , e );
+        } finally {
+            inflater.end( );
+        }
+    }
+}
@@ -0,0 +1,732 @@
+package com.github.frizzy.PoeDDSExtractor.Testing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a synthetic Content.ggpk file for reproducible performance tests, so extraction can be measured on any
+ * machine without a game install.
+ * <br>
+ * The Content.ggpk file holds BCn encoded atlases, and matching UTF-16LE art/uiimages1.txt and
+ * art/uidivinationimages.txt files listing the textures of every atlas, like the real files do. Textures are
+ * packed into each atlas in shelves, with seeded random sizes around the texture size, until the density is
+ * reached. Texture names are unique, since extracted textures are named after the last part of the name. Every
+ * texture is a gradient of its own color, so cropped textures can be told apart.
+ * <br>
+ * Everything is derived from the seed, the same settings always produce the same Content.ggpk file. The atlases
+ * are written to the file as they are encoded, so large fixtures do not have to fit in memory.
+ * <br>
+ * The name hashes of PDIR children are left 0, GGPKReader does not use them.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class FixtureGenerator {
+
+    /**
+     * Block compressed formats the atlases can be encoded with.
+     */
+    public enum Format {
+        /**
+         * DXT1 FourCC header, no alpha.
+         */
+        BC1,
+        /**
+         * DXT5 FourCC header.
+         */
+        BC3,
+        /**
+         * DX10 header, encoded with BC7 mode 6.
+         */
+        BC7
+    }
+
+    /**
+     * The written fixture.
+     *
+     * @param contentPath     The Content.ggpk file.
+     * @param ddsPaths        Internal paths of the atlases listed in uiimages1.txt.
+     * @param divinationPaths Internal paths of the atlases listed in uidivinationimages.txt.
+     * @param textures        The total amount of textures listed.
+     */
+    public record Fixture( Path contentPath , List < String > ddsPaths , List < String > divinationPaths , int textures ) {
+
+    }
+
+    private final long seed;
+
+    private int atlases = 64;
+
+    private int divinationAtlases = 4;
+
+    private int atlasSize = 1024;
+
+    private int textureSize = 64;
+
+    private double density = 0.75;
+
+    private int scale = 1;
+
+    private Format format = Format.BC7;
+
+    /**
+     * @param seed Seed every texture size, color and position is derived from.
+     */
+    public FixtureGenerator( long seed ) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the amount of atlases listed in uiimages1.txt. Defaults to 64.
+     */
+    public void setAtlases( int atlases ) {
+        if ( atlases < 1 )
+            throw new IllegalArgumentException( "atlases must be at least 1." );
+
+        this.atlases = atlases;
+    }
+
+    /**
+     * Sets the amount of atlases listed in uidivinationimages.txt. Defaults to 4.
+     */
+    public void setDivinationAtlases( int divinationAtlases ) {
+        if ( divinationAtlases < 0 )
+            throw new IllegalArgumentException( "divinationAtlases can not be negative." );
+
+        this.divinationAtlases = divinationAtlases;
+    }
+
+    /**
+     * Sets the width and height of every atlas, a multiple of 4. Defaults to 1024.
+     */
+    public void setAtlasSize( int atlasSize ) {
+        if ( atlasSize < 4 || atlasSize % 4 != 0 )
+            throw new IllegalArgumentException( "atlasSize must be a positive multiple of 4." );
+
+        this.atlasSize = atlasSize;
+    }
+
+    /**
+     * Sets the typical texture size. Textures are between half and twice this size. Defaults to 64.
+     */
+    public void setTextureSize( int textureSize ) {
+        if ( textureSize < 4 )
+            throw new IllegalArgumentException( "textureSize must be at least 4." );
+
+        this.textureSize = textureSize;
+    }
+
+    /**
+     * Sets how much of each atlas is covered by textures, from 0 to 1. Defaults to 0.75.
+     */
+    public void setDensity( double density ) {
+        if ( density <= 0 || density > 1 )
+            throw new IllegalArgumentException( "density must be above 0 and at most 1." );
+
+        this.density = density;
+    }
+
+    /**
+     * Multiplies the amount of atlases and divination atlases, to measure how extraction scales. Defaults to 1.
+     */
+    public void setScale( int scale ) {
+        if ( scale < 1 )
+            throw new IllegalArgumentException( "scale must be at least 1." );
+
+        this.scale = scale;
+    }
+
+    /**
+     * Sets the format the atlases are encoded with. Defaults to BC7.
+     */
+    public void setFormat( Format format ) {
+        this.format = format;
+    }
+
+    /**
+     * Writes the Content.ggpk file into the directory.
+     */
+    public Fixture write( Path directory ) throws IOException {
+        Files.createDirectories( directory );
+        Path contentPath = directory.resolve( "Content.ggpk" );
+        Random random = new Random( seed );
+
+        List < String > ddsPaths = new ArrayList <>( );
+        List < String > divinationPaths = new ArrayList <>( );
+        StringBuilder uiImages = new StringBuilder( );
+        StringBuilder divinationImages = new StringBuilder( );
+        int textures = 0;
+
+        try ( GGPKWriter writer = new GGPKWriter( contentPath ) ) {
+            for ( int i = 0; i < atlases * scale; i++ ) {
+                String ddsPath = "Art/Textures/Interface/2D/2DArt/UIImages/Fixture/" + ( i / 100 ) + "/" + i + ".dds";
+                textures += writeAtlas( writer , random , ddsPath , "Art/2DArt/UIImages/Fixture/Atlas" + i + "Texture" , uiImages );
+                ddsPaths.add( ddsPath );
+            }
+
+            for ( int i = 0; i < divinationAtlases * scale; i++ ) {
+                String ddsPath = "Art/Textures/Interface/2D/DivinationCards/Fixture" + i + ".dds";
+                textures += writeAtlas( writer , random , ddsPath , "Art/2DArt/UIImages/DivinationCards/Fixture" + i + "Card" , divinationImages );
+                divinationPaths.add( ddsPath );
+            }
+
+            writer.add( "Art/UIImages1.txt" , utf16( uiImages ) );
+            writer.add( "Art/UIDivinationImages.txt" , utf16( divinationImages ) );
+        }
+
+        return new Fixture( contentPath , List.copyOf( ddsPaths ) , List.copyOf( divinationPaths ) , textures );
+    }
+
+    /**
+     * Writes a Content.ggpk file holding the files, with a PDIR record for every directory of their paths.
+     *
+     * @param files Internal paths and the contents of each file.
+     */
+    public static void writeGGPK( Path contentPath , Map < String, byte[] > files ) throws IOException {
+        try ( GGPKWriter writer = new GGPKWriter( contentPath ) ) {
+            for ( Map.Entry < String, byte[] > file : files.entrySet( ) ) {
+                writer.add( file.getKey( ) , file.getValue( ) );
+            }
+        }
+    }
+
+    /**
+     * Packs, draws and encodes one atlas, listing its textures in the .txt file.
+     *
+     * @return The amount of textures in the atlas.
+     */
+    private int writeAtlas( GGPKWriter writer , Random random , String ddsPath , String namePrefix , StringBuilder txt )
+            throws IOException {
+        int[] argb = new int[ atlasSize * atlasSize ];
+        long target = ( long ) ( density * atlasSize * atlasSize );
+        long area = 0;
+        int count = 0;
+        int x = 0;
+        int y = 0;
+        int shelf = 0;
+
+        int min = Math.max( 4 , textureSize / 2 );
+        int max = Math.min( atlasSize , textureSize * 2 );
+
+        while ( area < target ) {
+            int w = Math.min( atlasSize , roundUp4( min + random.nextInt( max - min + 1 ) ) );
+            int h = Math.min( atlasSize , roundUp4( min + random.nextInt( max - min + 1 ) ) );
+
+            if ( x + w > atlasSize ) {
+                x = 0;
+                y += shelf;
+                shelf = 0;
+            }
+
+            if ( y + h > atlasSize )
+                break;
+
+            draw( argb , x , y , w , h , random.nextInt( ) );
+            txt.append( '"' ).append( namePrefix ).append( count ).append( "\" \"" ).append( ddsPath ).append( "\" " )
+                    .append( x ).append( ' ' ).append( y ).append( ' ' ).append( x + w ).append( ' ' ).append( y + h )
+                    .append( "\r\n" );
+
+            x += w;
+            shelf = Math.max( shelf , h );
+            area += ( long ) w * h;
+            count++;
+        }
+
+        writer.add( ddsPath , encode( argb ) );
+        return count;
+    }
+
+    /**
+     * Fills the texture with a gradient of the color. Alpha fades towards the bottom right, except for BC1.
+     */
+    private void draw( int[] argb , int x , int y , int w , int h , int color ) {
+        for ( int ty = 0; ty < h; ty++ ) {
+            for ( int tx = 0; tx < w; tx++ ) {
+                int r = clamp( ( ( color >> 16 ) & 0xFF ) + tx * 64 / w - 32 );
+                int g = clamp( ( ( color >> 8 ) & 0xFF ) + ty * 64 / h - 32 );
+                int b = color & 0xFF;
+                int a = format == Format.BC1 ? 0xFF : 255 - ( tx + ty ) * 96 / ( w + h );
+
+                argb[ ( y + ty ) * atlasSize + x + tx ] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    /**
+     * Encodes the atlas into a .dds file.
+     */
+    private byte[] encode( int[] argb ) {
+        int blocksWide = atlasSize / 4;
+        int blockSize = format == Format.BC1 ? 8 : 16;
+        int headerSize = format == Format.BC7 ? 148 : 128;
+
+        ByteBuffer dds = ByteBuffer.allocate( headerSize + blocksWide * blocksWide * blockSize ).order( ByteOrder.LITTLE_ENDIAN );
+        dds.put( ascii( "DDS " ) );
+        dds.putInt( 124 );
+        dds.putInt( 0x81007 ); //Caps, height, width, pixel format and linear size.
+        dds.putInt( atlasSize );
+        dds.putInt( atlasSize );
+        dds.putInt( blocksWide * blocksWide * blockSize );
+        dds.putInt( 0 );
+        dds.putInt( 1 );
+        dds.position( 76 );
+        dds.putInt( 32 );
+        dds.putInt( 0x4 ); //DDPF_FOURCC
+        dds.put( ascii( switch ( format ) {
+            case BC1 -> "DXT1";
+            case BC3 -> "DXT5";
+            case BC7 -> "DX10";
+        } ) );
+        dds.position( 108 );
+        dds.putInt( 0x1000 ); //DDSCAPS_TEXTURE
+
+        dds.position( 128 );
+        if ( format == Format.BC7 ) {
+            dds.putInt( 98 ); //DXGI_FORMAT_BC7_UNORM
+            dds.putInt( 3 ); //Texture2D
+            dds.putInt( 0 );
+            dds.putInt( 1 );
+            dds.putInt( 0 );
+        }
+
+        int[] block = new int[ 16 ];
+
+        for ( int by = 0; by < blocksWide; by++ ) {
+            for ( int bx = 0; bx < blocksWide; bx++ ) {
+                for ( int i = 0; i < 16; i++ ) {
+                    block[ i ] = argb[ ( by * 4 + i / 4 ) * atlasSize + bx * 4 + i % 4 ];
+                }
+
+                switch ( format ) {
+                    case BC1 -> encodeColor( block , dds );
+                    case BC3 -> {
+                        encodeAlpha( block , dds );
+                        encodeColor( block , dds );
+                    }
+                    case BC7 -> encodeMode6( block , dds );
+                }
+            }
+        }
+
+        return dds.array( );
+    }
+
+    /**
+     * Encodes a BC1 color block, using the brightest and darkest pixels as the endpoints.
+     */
+    private static void encodeColor( int[] block , ByteBuffer out ) {
+        int hi = block[ 0 ];
+        int lo = block[ 0 ];
+
+        for ( int p : block ) {
+            if ( luma( p ) > luma( hi ) )
+                hi = p;
+            if ( luma( p ) < luma( lo ) )
+                lo = p;
+        }
+
+        int c0 = rgb565( hi );
+        int c1 = rgb565( lo );
+
+        if ( c0 < c1 ) {
+            int swap = c0;
+            c0 = c1;
+            c1 = swap;
+        }
+
+        int indices = 0;
+
+        if ( c0 != c1 ) {
+            int[] palette = new int[ 4 ];
+            palette[ 0 ] = expand565( c0 );
+            palette[ 1 ] = expand565( c1 );
+            palette[ 2 ] = mix( palette[ 0 ] , palette[ 1 ] , 2 , 1 , 3 );
+            palette[ 3 ] = mix( palette[ 0 ] , palette[ 1 ] , 1 , 2 , 3 );
+
+            for ( int i = 0; i < 16; i++ ) {
+                indices |= nearest( block[ i ] , palette , 4 ) << ( i * 2 );
+            }
+        }
+
+        out.putShort( ( short ) c0 );
+        out.putShort( ( short ) c1 );
+        out.putInt( indices );
+    }
+
+    /**
+     * Encodes a BC3 alpha block, using the highest and lowest alpha as the endpoints.
+     */
+    private static void encodeAlpha( int[] block , ByteBuffer out ) {
+        int a0 = 0;
+        int a1 = 255;
+
+        for ( int p : block ) {
+            a0 = Math.max( a0 , p >>> 24 );
+            a1 = Math.min( a1 , p >>> 24 );
+        }
+
+        long indices = 0;
+
+        if ( a0 != a1 ) {
+            int[] palette = new int[ 8 ];
+            palette[ 0 ] = a0;
+            palette[ 1 ] = a1;
+            for ( int i = 1; i < 7; i++ ) {
+                palette[ i + 1 ] = ( ( 7 - i ) * a0 + i * a1 ) / 7;
+            }
+
+            for ( int i = 0; i < 16; i++ ) {
+                int alpha = block[ i ] >>> 24;
+                int best = 0;
+
+                for ( int c = 1; c < 8; c++ ) {
+                    if ( Math.abs( palette[ c ] - alpha ) < Math.abs( palette[ best ] - alpha ) )
+                        best = c;
+                }
+
+                indices |= ( long ) best << ( i * 3 );
+            }
+        }
+
+        out.put( ( byte ) a0 );
+        out.put( ( byte ) a1 );
+
+        for ( int i = 0; i < 6; i++ ) {
+            out.put( ( byte ) ( indices >>> ( i * 8 ) ) );
+        }
+    }
+
+    /**
+     * Encodes a BC7 mode 6 block, with the per channel minimum and maximum as the endpoints and the pixels projected
+     * onto the line between them.
+     */
+    private static void encodeMode6( int[] block , ByteBuffer out ) {
+        int[] min = { 255 , 255 , 255 , 255 };
+        int[] max = { 0 , 0 , 0 , 0 };
+
+        for ( int p : block ) {
+            for ( int c = 0; c < 4; c++ ) {
+                int v = channel( p , c );
+                min[ c ] = Math.min( min[ c ] , v );
+                max[ c ] = Math.max( max[ c ] , v );
+            }
+        }
+
+        //The 7 bit endpoints are extended by a p-bit, 0 for the low endpoint and 1 for the high endpoint.
+        int[] e0 = new int[ 4 ];
+        int[] e1 = new int[ 4 ];
+        for ( int c = 0; c < 4; c++ ) {
+            e0[ c ] = min[ c ] >> 1;
+            e1[ c ] = max[ c ] >> 1;
+        }
+
+        int[] indices = new int[ 16 ];
+        long lengthSquared = 0;
+        for ( int c = 0; c < 4; c++ ) {
+            int d = ( e1[ c ] << 1 | 1 ) - ( e0[ c ] << 1 );
+            lengthSquared += ( long ) d * d;
+        }
+
+        for ( int i = 0; i < 16; i++ ) {
+            long dot = 0;
+
+            for ( int c = 0; c < 4; c++ ) {
+                int d = ( e1[ c ] << 1 | 1 ) - ( e0[ c ] << 1 );
+                dot += ( long ) ( channel( block[ i ] , c ) - ( e0[ c ] << 1 ) ) * d;
+            }
+
+            indices[ i ] = lengthSquared == 0 ? 0 : ( int ) Math.max( 0 , Math.min( 15 , Math.round( dot * 15.0 / lengthSquared ) ) );
+        }
+
+        int p0 = 0;
+        int p1 = 1;
+
+        //The first index is stored with 3 bits, so its highest bit has to be 0. Swapping the endpoints flips it.
+        if ( indices[ 0 ] > 7 ) {
+            int[] swap = e0;
+            e0 = e1;
+            e1 = swap;
+            p0 = 1;
+            p1 = 0;
+
+            for ( int i = 0; i < 16; i++ ) {
+                indices[ i ] = 15 - indices[ i ];
+            }
+        }
+
+        BitWriter bits = new BitWriter( );
+        bits.write( 1 << 6 , 7 );
+
+        for ( int c : new int[] { 2 , 1 , 0 , 3 } ) {
+            bits.write( e0[ c ] , 7 );
+            bits.write( e1[ c ] , 7 );
+        }
+
+        bits.write( p0 , 1 );
+        bits.write( p1 , 1 );
+        bits.write( indices[ 0 ] , 3 );
+
+        for ( int i = 1; i < 16; i++ ) {
+            bits.write( indices[ i ] , 4 );
+        }
+
+        out.putLong( bits.lo );
+        out.putLong( bits.hi );
+    }
+
+    /**
+     * Returns channel c of the ARGB pixel, 0 to 3 being blue, green, red and alpha.
+     */
+    private static int channel( int argb , int c ) {
+        return ( argb >>> ( c * 8 ) ) & 0xFF;
+    }
+
+    private static int luma( int argb ) {
+        return ( ( argb >> 16 ) & 0xFF ) * 299 + ( ( argb >> 8 ) & 0xFF ) * 587 + ( argb & 0xFF ) * 114;
+    }
+
+    private static int rgb565( int argb ) {
+        return ( ( argb >> 19 ) & 0x1F ) << 11 | ( ( argb >> 10 ) & 0x3F ) << 5 | ( argb >> 3 ) & 0x1F;
+    }
+
+    private static int expand565( int c ) {
+        int r = ( c >> 11 ) & 0x1F;
+        int g = ( c >> 5 ) & 0x3F;
+        int b = c & 0x1F;
+        return ( r << 3 | r >> 2 ) << 16 | ( g << 2 | g >> 4 ) << 8 | ( b << 3 | b >> 2 );
+    }
+
+    private static int mix( int a , int b , int wa , int wb , int total ) {
+        int result = 0;
+
+        for ( int shift = 0; shift <= 16; shift += 8 ) {
+            int v = ( ( ( a >> shift ) & 0xFF ) * wa + ( ( b >> shift ) & 0xFF ) * wb ) / total;
+            result |= v << shift;
+        }
+
+        return result;
+    }
+
+    private static int nearest( int argb , int[] palette , int size ) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+
+        for ( int i = 0; i < size; i++ ) {
+            int distance = 0;
+
+            for ( int shift = 0; shift <= 16; shift += 8 ) {
+                int d = ( ( argb >> shift ) & 0xFF ) - ( ( palette[ i ] >> shift ) & 0xFF );
+                distance += d * d;
+            }
+
+            if ( distance < bestDistance ) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+
+        return best;
+    }
+
+    private static int clamp( int v ) {
+        return Math.max( 0 , Math.min( 255 , v ) );
+    }
+
+    private static int roundUp4( int v ) {
+        return ( v + 3 ) & ~3;
+    }
+
+    private static byte[] ascii( String s ) {
+        return s.getBytes( StandardCharsets.US_ASCII );
+    }
+
+    private static byte[] utf16( CharSequence text ) {
+        return text.toString( ).getBytes( StandardCharsets.UTF_16LE );
+    }
+
+    private static byte[] sha256( byte[] data ) {
+        try {
+            return MessageDigest.getInstance( "SHA-256" ).digest( data );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "SHA-256 is not available." , e );
+        }
+    }
+
+    /**
+     * Writes 128 bits from the lowest bit up, the order BC7 blocks are read in.
+     */
+    private static final class BitWriter {
+
+        private long lo;
+
+        private long hi;
+
+        private int position;
+
+        void write( int value , int count ) {
+            for ( int i = 0; i < count; i++ ) {
+                long bit = ( value >>> i ) & 1L;
+
+                if ( position < 64 ) {
+                    lo |= bit << position;
+                } else {
+                    hi |= bit << ( position - 64 );
+                }
+
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Writes FILE records to the Content.ggpk file as they are added, and the PDIR records, FREE record and GGPK
+     * header once it is closed.
+     */
+    private static final class GGPKWriter implements Closeable {
+
+        private final FileChannel channel;
+
+        private final Directory root = new Directory( "" );
+
+        GGPKWriter( Path contentPath ) throws IOException {
+            channel = FileChannel.open( contentPath , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                    StandardOpenOption.TRUNCATE_EXISTING );
+            channel.position( 28 );
+        }
+
+        void add( String internalPath , byte[] data ) throws IOException {
+            String[] parts = internalPath.split( "/" );
+            Directory directory = root;
+
+            for ( int i = 0; i < parts.length - 1; i++ ) {
+                directory = directory.directories.computeIfAbsent( parts[ i ] , Directory::new );
+            }
+
+            String name = parts[ parts.length - 1 ];
+            byte[] nameBytes = name( name );
+            byte[] hash = sha256( data );
+
+            ByteBuffer head = ByteBuffer.allocate( 12 + hash.length + nameBytes.length ).order( ByteOrder.LITTLE_ENDIAN );
+            head.putInt( head.capacity( ) + data.length );
+            head.put( ascii( "FILE" ) );
+            head.putInt( name.length( ) + 1 );
+            head.put( hash );
+            head.put( nameBytes );
+
+            directory.children.add( channel.position( ) );
+            directory.hashes.add( hash );
+            writeFully( head.flip( ) );
+            writeFully( ByteBuffer.wrap( data ) );
+        }
+
+        @Override
+        public void close( ) throws IOException {
+            try {
+                long rootOffset = writeDirectory( root );
+                long freeOffset = channel.position( );
+
+                ByteBuffer free = ByteBuffer.allocate( 16 ).order( ByteOrder.LITTLE_ENDIAN );
+                free.putInt( 16 );
+                free.put( ascii( "FREE" ) );
+                free.putLong( 0 );
+                writeFully( free.flip( ) );
+
+                ByteBuffer header = ByteBuffer.allocate( 28 ).order( ByteOrder.LITTLE_ENDIAN );
+                header.putInt( 28 );
+                header.put( ascii( "GGPK" ) );
+                header.putInt( 3 );
+                header.putLong( rootOffset );
+                header.putLong( freeOffset );
+                channel.position( 0 );
+                writeFully( header.flip( ) );
+            } finally {
+                channel.close( );
+            }
+        }
+
+        /**
+         * Writes the PDIR records of the directory and everything below it, returning the offset of its record.
+         */
+        private long writeDirectory( Directory directory ) throws IOException {
+            for ( Directory child : directory.directories.values( ) ) {
+                directory.children.add( writeDirectory( child ) );
+                directory.hashes.add( child.hash );
+            }
+
+            byte[] nameBytes = name( directory.name );
+            MessageDigest digest;
+
+            try {
+                digest = MessageDigest.getInstance( "SHA-256" );
+            } catch ( NoSuchAlgorithmException e ) {
+                throw new IllegalStateException( "SHA-256 is not available." , e );
+            }
+
+            digest.update( nameBytes );
+            for ( byte[] hash : directory.hashes ) {
+                digest.update( hash );
+            }
+            directory.hash = digest.digest( );
+
+            ByteBuffer record = ByteBuffer.allocate( 16 + 32 + nameBytes.length + 12 * directory.children.size( ) )
+                    .order( ByteOrder.LITTLE_ENDIAN );
+            record.putInt( record.capacity( ) );
+            record.put( ascii( "PDIR" ) );
+            record.putInt( directory.name.length( ) + 1 );
+            record.putInt( directory.children.size( ) );
+            record.put( directory.hash );
+            record.put( nameBytes );
+
+            for ( long child : directory.children ) {
+                record.putInt( 0 );
+                record.putLong( child );
+            }
+
+            long offset = channel.position( );
+            writeFully( record.flip( ) );
+            return offset;
+        }
+
+        private void writeFully( ByteBuffer buffer ) throws IOException {
+            while ( buffer.hasRemaining( ) ) {
+                channel.write( buffer );
+            }
+        }
+
+        private static byte[] name( String name ) {
+            return ( name + "\0" ).getBytes( StandardCharsets.UTF_16LE );
+        }
+    }
+
+    private static final class Directory {
+
+        private final String name;
+
+        private final Map < String, Directory > directories = new LinkedHashMap <>( );
+
+        private final List < Long > children = new ArrayList <>( );
+
+        private final List < byte[] > hashes = new ArrayList <>( );
+
+        private byte[] hash;
+
+        Directory( String name ) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.frizzy.PoeDDSExtractor.Testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a Bundles2 directory ( _.index.bin and .bundle.bin files ) holding the provided files, compressed
+ * with DeflateBlockDecompressor's stand-in codec instead of Oodle. Paths are hashed with MurmurHash64A, like
+ * current clients.
+ *
+ * @author Frizzy
+ */
+public class SyntheticBundles {
+
+    /**
+     * Block granularity used by the game.
+     */
+    public static final int GRANULARITY = 256 * 1024;
+
+    private SyntheticBundles( ) {
+
+    }
+
+    /**
+     * Writes the files into bundles within the directory.
+     *
+     * @param bundles2Directory The directory the _.index.bin file and bundles are written to.
+     * @param files             Internal paths and the contents of each file. Iteration order decides bundle order.
+     * @param filesPerBundle    How many files are packed into each bundle.
+     */
+    public static void write( Path bundles2Directory , Map < String, byte[] > files , int filesPerBundle ) throws IOException {
+        ByteArrayOutputStream bundleTable = new ByteArrayOutputStream( );
+        ByteArrayOutputStream fileTable = new ByteArrayOutputStream( );
+        ByteArrayOutputStream pathData = new ByteArrayOutputStream( );
+
+        List < Map.Entry < String, byte[] > > entries = new ArrayList <>( files.entrySet( ) );
+        int bundleCount = ( entries.size( ) + filesPerBundle - 1 ) / filesPerBundle;
+        writeInt( bundleTable , bundleCount );
+
+        for ( int b = 0; b < bundleCount; b++ ) {
+            String name = "Folders/synthetic" + b;
+            ByteArrayOutputStream content = new ByteArrayOutputStream( );
+
+            for ( int i = b * filesPerBundle; i < Math.min( entries.size( ) , ( b + 1 ) * filesPerBundle ); i++ ) {
+                String path = entries.get( i ).getKey( ).toLowerCase( Locale.ROOT );
+                byte[] data = entries.get( i ).getValue( );
+
+                writeLong( fileTable , murmurHash64A( path.getBytes( StandardCharsets.UTF_8 ) ) );
+                writeInt( fileTable , b );
+                writeInt( fileTable , content.size( ) );
+                writeInt( fileTable , data.length );
+                content.write( data );
+
+                writeInt( pathData , 1 );
+                pathData.write( path.getBytes( StandardCharsets.UTF_8 ) );
+                pathData.write( 0 );
+            }
+
+            byte[] nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+            writeInt( bundleTable , nameBytes.length );
+            bundleTable.write( nameBytes );
+            writeInt( bundleTable , content.size( ) );
+
+            Path bundleFile = Path.of( bundles2Directory + File.separator + name.replace( "/" , File.separator ) + ".bundle.bin" );
+            Files.createDirectories( bundleFile.getParent( ) );
+            Files.write( bundleFile , bundle( content.toByteArray( ) ) );
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream( );
+        index.write( bundleTable.toByteArray( ) );
+        writeInt( index , entries.size( ) );
+        index.write( fileTable.toByteArray( ) );
+        writeInt( index , 1 );
+        writeLong( index , murmurHash64A( new byte[ 0 ] ) );
+        writeInt( index , 0 );
+        writeInt( index , pathData.size( ) );
+        writeInt( index , pathData.size( ) );
+        index.write( bundle( pathData.toByteArray( ) ) );
+
+        Files.createDirectories( bundles2Directory );
+        Files.write( Path.of( bundles2Directory + File.separator + "_.index.bin" ) , bundle( index.toByteArray( ) ) );
+    }
+
+    /**
+     * Compresses the data into the .bundle.bin layout.
+     */
+    public static byte[] bundle( byte[] data ) {
+        int blockCount = ( data.length + GRANULARITY - 1 ) / GRANULARITY;
+        List < byte[] > blocks = new ArrayList <>( );
+        Deflater deflater = new Deflater( Deflater.BEST_SPEED , true );
+
+        for ( int i = 0; i < blockCount; i++ ) {
+            int start = i * GRANULARITY;
+            deflater.reset( );
+            deflater.setInput( data , start , Math.min( GRANULARITY , data.length - start ) );
+            deflater.finish( );
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream( );
+            byte[] chunk = new byte[ 64 * 1024 ];
+            while ( !deflater.finished( ) ) {
+                block.write( chunk , 0 , deflater.deflate( chunk ) );
+            }
+            blocks.add( block.toByteArray( ) );
+        }
+        deflater.end( );
+
+        int payload = blocks.stream( ).mapToInt( b -> b.length ).sum( );
+        ByteBuffer out = ByteBuffer.allocate( 60 + 4 * blockCount + payload ).order( ByteOrder.LITTLE_ENDIAN );
+        out.putInt( data.length );
+        out.putInt( payload );
+        out.putInt( 48 + 4 * blockCount );
+        out.putInt( DeflateBlockDecompressor.ENCODING );
+        out.putInt( 1 );
+        out.putLong( data.length );
+        out.putLong( payload );
+        out.putInt( blockCount );
+        out.putInt( GRANULARITY );
+        out.putInt( 0 ).putInt( 0 ).putInt( 0 ).putInt( 0 );
+
+        for ( byte[] block : blocks ) {
+            out.putInt( block.length );
+        }
+        for ( byte[] block : blocks ) {
+            out.put( block );
+        }
+
+        return out.array( );
+    }
+
+    private static void writeInt( ByteArrayOutputStream out , int value ) {
+        out.write( value );
+        out.write( value >>> 8 );
+        out.write( value >>> 16 );
+        out.write( value >>> 24 );
+    }
+
+    private static void writeLong( ByteArrayOutputStream out , long value ) {
+        writeInt( out , ( int ) value );
+        writeInt( out , ( int ) ( value >>> 32 ) );
+    }
+
+    /**
+     * MurmurHash64A with the seed used by the game.
+     */
+    private static long murmurHash64A( byte[] data ) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+
+        long h = 0x1337b33fL ^ ( data.length * m );
+        int blocks = data.length / 8;
+
+        for ( int i = 0; i < blocks; i++ ) {
+            long k = ByteBuffer.wrap( data , i * 8 , 8 ).order( ByteOrder.LITTLE_ENDIAN ).getLong( );
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+
+        int remaining = data.length & 7;
+        if ( remaining > 0 ) {
+            for ( int i = remaining - 1; i >= 0; i-- ) {
+                h ^= ( data[ blocks * 8 + i ] & 0xFFL ) << ( 8 * i );
+            }
+            h *= m;
+        }
+
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+
+        return h;
+    }
+}
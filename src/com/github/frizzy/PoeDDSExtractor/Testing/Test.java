@@ -3,6 +3,9 @@ package com.github.frizzy.PoeDDSExtractor.Testing;
 import com.github.frizzy.PoeDDSExtractor.*;
 import com.github.frizzy.PoeDDSExtractor.Bank.BankExtractor;
 import com.github.frizzy.PoeDDSExtractor.Bank.BankFile;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BlockCache;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleReader;
+import com.github.frizzy.PoeDDSExtractor.Bundle.BundleSource;
 import com.github.frizzy.PoeDDSExtractor.Command.CommandArg;
 import com.github.frizzy.PoeDDSExtractor.Command.CommandPair;
 import com.github.frizzy.PoeDDSExtractor.DDS.DDSConverter2;
@@ -15,6 +18,8 @@ import org.apache.commons.exec.DefaultExecuteResultHandler;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +32,125 @@ public class Test {
 
     }
 
+    /**
+     * Writes synthetic bundles with the deflate stand-in codec and reads every file back through BundleReader.
+     * Runs anywhere, no game install needed.
+     */
+    public static void testBundles ( ) throws IOException {
+        Path bundles2 = Files.createTempDirectory( "Bundles2" );
+        Map < String, byte[] > files = new LinkedHashMap <>( );
+        Random random = new Random( 1 );
+
+        for ( int i = 0; i < 2000; i++ ) {
+            byte[] data = new byte[ 100 + random.nextInt( 4000 ) ];
+            random.nextBytes( data );
+            files.put( "art/textures/interface/2d/synthetic/" + i + ".dds", data );
+        }
+
+        SyntheticBundles.write( bundles2, files, 500 );
+
+        BlockCache cache = new BlockCache( );
+        BundleReader reader = new BundleReader( BundleSource.directory( bundles2 ), new DeflateBlockDecompressor( ), cache );
+
+        long start = System.nanoTime();
+        int mismatches = 0;
+        for ( Map.Entry < String, byte[] > file : files.entrySet() ) {
+            ByteBuffer read = reader.read( file.getKey().toUpperCase() ).orElseThrow( );
+            byte[] bytes = new byte[ read.remaining() ];
+            read.get( bytes );
+
+            if ( !Arrays.equals( bytes, file.getValue() ) )
+                mismatches++;
+        }
+
+        System.out.println( "Read " + files.size() + " files in " + getHumanReadableTime( System.nanoTime() - start ) );
+        System.out.println( "Mismatches: " + mismatches + ", cache hits: " + cache.getHits() + ", misses: " + cache.getMisses() );
+        System.out.println( "Listed paths: " + reader.getIndex().readPaths( new DeflateBlockDecompressor( ) ).size() );
+    }
+
+    /**
+     * Generates a fixture Content.ggpk file at 10 times the default size and extracts every atlas in memory.
+     * Runs anywhere, no game install needed.
+     */
+    public static void testFixtures ( ) throws Exception {
+        Path directory = Files.createTempDirectory( "Fixture" );
+        Path texturesOutput = Files.createDirectories( directory.resolve( "Textures" ) );
+
+        FixtureGenerator generator = new FixtureGenerator( 1 );
+        generator.setScale( 10 );
+
+        long start = System.nanoTime();
+        FixtureGenerator.Fixture fixture = generator.write( directory );
+        System.out.println( "Wrote " + fixture.textures() + " textures in " + getHumanReadableTime( System.nanoTime() - start ) );
+
+        List < String > wantedFiles = new ArrayList <>( fixture.ddsPaths() );
+        wantedFiles.addAll( fixture.divinationPaths() );
+
+        try ( GGPK2 ggpk = new GGPK2( directory, fixture.contentPath(), true ) ) {
+            DDSExtractor2 extractor = new DDSExtractor2( ggpk.getuiImagesTxtFile(), true );
+
+            try ( ExtractionEngine engine = new ExtractionEngine( ggpk, null, extractor ) ) {
+                start = System.nanoTime();
+                List < DDSFile > ddsFiles = engine.extractInMemory( wantedFiles, texturesOutput ).get();
+                int extracted = ddsFiles.stream().mapToInt( f -> f.getExtractedTextures().size() ).sum();
+
+                System.out.println( "Extracted " + extracted + " textures from " + ddsFiles.size() + " atlases in "
+                        + getHumanReadableTime( System.nanoTime() - start ) );
+            }
+        }
+    }
+
+    /**
+     * Extracts a fixture incrementally, then a fixture of another seed over the same paths through the same
+     * extractor, and compares every texture against a fresh extraction of the second fixture. Atlases decoded
+     * from the first fixture must not be cropped from again. Runs anywhere, no game install needed.
+     */
+    public static void testIncrementalChanged ( ) throws Exception {
+        Path directory = Files.createTempDirectory( "Incremental" );
+        Path texturesOutput = Files.createDirectories( directory.resolve( "Textures" ) );
+        Path freshOutput = Files.createDirectories( directory.resolve( "Fresh" ) );
+
+        FixtureGenerator.Fixture first = new FixtureGenerator( 1 ).write( directory.resolve( "First" ) );
+        FixtureGenerator.Fixture second = new FixtureGenerator( 2 ).write( directory.resolve( "Second" ) );
+        DDSExtractor2 extractor = null;
+
+        for ( FixtureGenerator.Fixture fixture : List.of( first, second ) ) {
+            try ( GGPK2 ggpk = new GGPK2( directory, fixture.contentPath(), true ) ) {
+                if ( extractor == null )
+                    extractor = new DDSExtractor2( ggpk.getuiImagesTxtFile(), true );
+
+                try ( ExtractionEngine engine = new ExtractionEngine( ggpk, null, extractor ) ) {
+                    ExtractionManifest.Report report = engine.extractIncremental( fixture.ddsPaths(), texturesOutput ).get();
+                    System.out.println( "Added: " + report.added().size() + ", changed: " + report.changed().size()
+                            + ", removed: " + report.removed().size() + ", unchanged: " + report.unchanged() );
+                }
+            }
+        }
+
+        try ( GGPK2 ggpk = new GGPK2( directory, second.contentPath(), true ) ) {
+            DDSExtractor2 fresh = new DDSExtractor2( ggpk.getuiImagesTxtFile(), true );
+
+            try ( ExtractionEngine engine = new ExtractionEngine( ggpk, null, fresh ) ) {
+                engine.extractInMemory( second.ddsPaths(), freshOutput ).get();
+            }
+        }
+
+        int compared = 0;
+        int stale = 0;
+
+        try ( var files = Files.list( freshOutput ) ) {
+            for ( Path file : files.toList() ) {
+                Path incremental = texturesOutput.resolve( file.getFileName() );
+                compared++;
+
+                if ( !Files.exists( incremental ) || Files.mismatch( file, incremental ) != -1 )
+                    stale++;
+            }
+        }
+
+        System.out.println( "Compared " + compared + " textures, " + stale + " differ from a fresh extraction." );
+    }
+
     public static void testTxtExtract ( ) throws FileNotFoundException, GGPKException {
         Path ggpkLocation = Path.of( "C:\\Users\\frizz\\Documents\\GGGFiles\\LibGGPK3\\" );
         Path contentLocation = Path.of( "C:\\Program Files (x86)\\Grinding Gear Games\\Path of Exile\\Content.ggpk" );
@@ -1,7 +1,7 @@
 package com.github.frizzy.PoeDDSExtractor.Testing;
 
 import com.github.frizzy.PoeDDSExtractor.DDS.DDSFile;
-import com.github.frizzy.PoeDDSExtractor.GGPKUtils;
+import com.github.frizzy.PoeDDSExtractor.UiImagesIndex;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -34,63 +34,65 @@ public class WantedTextureBuilder {
      * of paths pointing to the textures stored in each file.
      */
     public List < DDSFile > buildWantedTextures ( List < DDSFile > ddsFiles ) throws IOException {
+        UiImagesIndex index = UiImagesIndex.of( txtFile );
+
         for ( DDSFile dFile : ddsFiles ) {
                 String path = dFile.getDdsPath();
 
                 switch ( path ) {
                     case "art/textures/interface/2d/2dart/uiimages/common/4k/1.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4k1DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4k1DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/common/4k/2.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4k2DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4k2DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/common/4k/3.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4k3DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4k3DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/4k/6.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4k6DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4k6DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/4k/11.dds"  -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4k11DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4k11DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/1.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted1DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted1DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/2.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted2DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted2DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/3.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted3DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted3DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/4.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted4DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted4DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/5.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted5DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted5DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/7.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted7DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted7DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/10.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted10DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted10DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/13.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted13DDSTextures() ) );;
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted13DDSTextures() ) );;
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/15.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted15DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted15DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/16.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted16DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted16DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/17.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWanted17DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWanted17DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/marketplace/1.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWantedM1DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWantedM1DDSTextures() ) );
                     }
                     case "art/textures/interface/2d/2dart/uiimages/ingame/marketplace/2.dds" -> {
-                        dFile.setUnextractedTextures( GGPKUtils.getSpecificTexturesFor( txtFile, path, getWantedM2DDSTextures() ) );
+                        dFile.setUnextractedTextures( index.getTextures( path, getWantedM2DDSTextures() ) );
                     }
 
             }
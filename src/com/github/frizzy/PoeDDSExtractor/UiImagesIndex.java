@@ -0,0 +1,319 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import com.github.frizzy.PoeDDSExtractor.DDS.Texture;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The uiimages.txt or uidivinationimages.txt file, parsed once into a table of textures per .dds file.
+ * <br>
+ * Every line of the file names a texture, the .dds file it is stored in and its x1, y1, x2, y2 coordinates:
+ * <br>
+ * "Art/2DArt/UIImages/Common/4K/ButtonTickNormal" "Art/Textures/Interface/2D/2DArt/UIImages/Common/4K/1.dds" 0 0 64 64
+ * <br>
+ * The textures of a .dds file are looked up by its internal path, ignoring case, without reading the file again.
+ * Instances are immutable and can be shared between threads. of( Path ) keeps one instance per file, so GGPK2,
+ * the extractors and the WantedTextureBuilder all share the same parsed index.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public class UiImagesIndex {
+
+    private static final Logger LOGGER = Logger.getLogger( UiImagesIndex.class.getName( ) );
+
+    /**
+     * Indexes shared through of( Path ), keyed by the absolute path of the .txt file.
+     */
+    private static final ConcurrentHashMap < Path, UiImagesIndex > SHARED = new ConcurrentHashMap <>( );
+
+    /**
+     * The textures stored in a single .dds file, in the order they appear in the .txt file.
+     * <br>
+     * Coordinates are packed 4 ints per texture, in the layout of Texture.coordinates().
+     */
+    public static final class TextureTable {
+
+        private final String ddsPath;
+
+        private final String[] names;
+
+        private final int[] coordinates;
+
+        private TextureTable( String ddsPath , String[] names , int[] coordinates ) {
+            this.ddsPath = ddsPath;
+            this.names = names;
+            this.coordinates = coordinates;
+        }
+
+        /**
+         * Returns the internal path of the .dds file, as it is written in the .txt file.
+         */
+        public String getDdsPath( ) {
+            return ddsPath;
+        }
+
+        /**
+         * Returns the number of textures.
+         */
+        public int size( ) {
+            return names.length;
+        }
+
+        /**
+         * Returns the name of texture i.
+         */
+        public String getName( int i ) {
+            return names[ i ];
+        }
+
+        /**
+         * Returns a copy of the coordinates of texture i.
+         */
+        public int[] getCoordinates( int i ) {
+            return Arrays.copyOfRange( coordinates , i * 4 , i * 4 + 4 );
+        }
+
+        /**
+         * Creates a Texture for every texture in the table.
+         *
+         * @param ddsPath The .dds path the Textures are created with, usually the path as it was requested.
+         */
+        public List < Texture > toTextures( String ddsPath ) {
+            List < Texture > textures = new ArrayList <>( names.length );
+
+            for ( int i = 0; i < names.length; i++ ) {
+                textures.add( new Texture( names[ i ] , ddsPath , getCoordinates( i ) ) );
+            }
+
+            return textures;
+        }
+    }
+
+    private final Path txtFile;
+
+    /**
+     * File size and modification time the index was built from, used to notice when the file is replaced.
+     */
+    private final long fileSize;
+
+    private final long modified;
+
+    /**
+     * Tables keyed by the lowercase .dds path, in the order the .dds files first appear.
+     */
+    private final Map < String, TextureTable > tables;
+
+    private UiImagesIndex( Path txtFile , long fileSize , long modified , Map < String, TextureTable > tables ) {
+        this.txtFile = txtFile;
+        this.fileSize = fileSize;
+        this.modified = modified;
+        this.tables = tables;
+    }
+
+    /**
+     * Returns the shared index of the .txt file, parsing it if it was not parsed yet or has changed on disk since.
+     */
+    public static UiImagesIndex of( Path txtFile ) throws IOException {
+        Path key = txtFile.toAbsolutePath( ).normalize( );
+        long fileSize = Files.size( key );
+        long modified = Files.getLastModifiedTime( key ).toMillis( );
+
+        UiImagesIndex index = SHARED.get( key );
+
+        if ( index == null || index.fileSize != fileSize || index.modified != modified ) {
+            index = load( key );
+            SHARED.put( key , index );
+        }
+
+        return index;
+    }
+
+    /**
+     * Parses the .txt file into a new index, without sharing it.
+     */
+    public static UiImagesIndex load( Path txtFile ) throws IOException {
+        long fileSize = Files.size( txtFile );
+        long modified = Files.getLastModifiedTime( txtFile ).toMillis( );
+
+        UiImagesScanner scanner = UiImagesScanner.scan( txtFile );
+        List < TableBuilder > builders = new ArrayList <>( );
+
+        /*
+         * Lines are grouped by .dds path through an open addressing table of path hashes, so a String is only
+         * created once per .dds file instead of once per line.
+         */
+        int[] slots = new int[ Integer.highestOneBit( Math.max( 16 , scanner.size( ) ) ) << 2 ];
+        int[] coords = new int[ 4 ];
+
+        for ( int line = 0; line < scanner.size( ); line++ ) {
+            int slot = scanner.pathHash( line ) & ( slots.length - 1 );
+            TableBuilder builder = null;
+
+            while ( slots[ slot ] != 0 ) {
+                TableBuilder candidate = builders.get( slots[ slot ] - 1 );
+
+                if ( scanner.samePath( line , candidate.firstLine ) ) {
+                    builder = candidate;
+                    break;
+                }
+
+                slot = ( slot + 1 ) & ( slots.length - 1 );
+            }
+
+            if ( builder == null ) {
+                builder = new TableBuilder( scanner.path( line ) , line );
+                builders.add( builder );
+                slots[ slot ] = builders.size( );
+            }
+
+            scanner.textureCoordinates( line , coords , 0 );
+            builder.add( scanner , line , coords );
+        }
+
+        Map < String, TextureTable > tables = new LinkedHashMap <>( builders.size( ) * 2 );
+        for ( TableBuilder builder : builders ) {
+            tables.putIfAbsent( key( builder.ddsPath ) , builder.build( ) );
+        }
+
+        LOGGER.log( Level.INFO , "Indexed " + tables.size( ) + " .dds files from " + txtFile );
+
+        return new UiImagesIndex( txtFile , fileSize , modified , Collections.unmodifiableMap( tables ) );
+    }
+
+    /**
+     * Returns the texture table of the .dds file, if the .txt file lists it.
+     *
+     * @param ddsPath The internal path of the .dds file. Case is ignored.
+     */
+    public Optional < TextureTable > getTable( String ddsPath ) {
+        return Optional.ofNullable( tables.get( key( ddsPath ) ) );
+    }
+
+    /**
+     * Returns every texture stored in the .dds file. Textures listed more than once are only returned once.
+     *
+     * @param ddsPath The internal path of the .dds file. Case is ignored.
+     */
+    public List < Texture > getTextures( String ddsPath ) {
+        return getTable( ddsPath ).map( t -> t.toTextures( ddsPath ) ).orElseGet( ArrayList::new );
+    }
+
+    /**
+     * Returns the textures of the .dds file matching the wanted texture names. Case is ignored, and the returned
+     * Textures are named as they were requested.
+     *
+     * @param ddsPath        The internal path of the .dds file.
+     * @param wantedTextures The names of the wanted textures.
+     */
+    public List < Texture > getTextures( String ddsPath , List < String > wantedTextures ) {
+        List < Texture > textures = new ArrayList <>( );
+        Optional < TextureTable > table = getTable( ddsPath );
+
+        if ( table.isEmpty( ) )
+            return textures;
+
+        Map < String, List < String > > wanted = new HashMap <>( );
+        for ( String name : wantedTextures ) {
+            wanted.computeIfAbsent( name.toLowerCase( Locale.ROOT ) , k -> new ArrayList <>( ) ).add( name );
+        }
+
+        TextureTable t = table.get( );
+        for ( int i = 0; i < t.size( ); i++ ) {
+            List < String > requested = wanted.get( t.getName( i ).toLowerCase( Locale.ROOT ) );
+
+            if ( requested != null ) {
+                for ( String name : requested ) {
+                    textures.add( new Texture( name , ddsPath , t.getCoordinates( i ) ) );
+                }
+            }
+        }
+
+        return textures;
+    }
+
+    /**
+     * Returns the internal paths of every .dds file listed, in the order they first appear, as written in the
+     * .txt file.
+     */
+    public List < String > getDDSPaths( ) {
+        return tables.values( ).stream( ).map( TextureTable::getDdsPath ).toList( );
+    }
+
+    /**
+     * Returns the number of .dds files listed.
+     */
+    public int size( ) {
+        return tables.size( );
+    }
+
+    /**
+     * Returns the .txt file the index was parsed from.
+     */
+    public Path getTxtFile( ) {
+        return txtFile;
+    }
+
+    private static String key( String ddsPath ) {
+        return ddsPath.replace( '\\' , '/' ).toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * Collects the textures of one .dds file while the .txt file is parsed.
+     */
+    private static final class TableBuilder {
+
+        private final String ddsPath;
+
+        /**
+         * The first line listing the .dds file, compared against to group the following lines.
+         */
+        private final int firstLine;
+
+        private final List < String > names = new ArrayList <>( );
+
+        private final Set < String > seen = new HashSet <>( );
+
+        private int[] coordinates = new int[ 64 ];
+
+        TableBuilder( String ddsPath , int firstLine ) {
+            this.ddsPath = ddsPath;
+            this.firstLine = firstLine;
+        }
+
+        void add( UiImagesScanner scanner , int line , int[] coords ) {
+            String name = scanner.name( line );
+
+            if ( !seen.add( name ) )
+                return;
+
+            int at = names.size( ) * 4;
+            if ( at + 4 > coordinates.length )
+                coordinates = Arrays.copyOf( coordinates , coordinates.length * 2 );
+
+            System.arraycopy( coords , 0 , coordinates , at , 4 );
+            names.add( name );
+        }
+
+        TextureTable build( ) {
+            return new TextureTable( ddsPath , names.toArray( String[]::new ) , Arrays.copyOf( coordinates , names.size( ) * 4 ) );
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.github.frizzy.PoeDDSExtractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scans the UTF-16LE uiimages.txt and uidivinationimages.txt files in place.
+ * <br>
+ * The file is mapped and read through a CharBuffer view of the mapped bytes, so nothing is decoded or copied.
+ * For every line, the scanner only records where the quoted texture name and .dds path start and end, a hash of
+ * the .dds path ignoring case, and the four coordinates parsed straight from the digits. Everything is stored in
+ * primitive arrays; Strings are only created when name( int ) or path( int ) is called.
+ * <br>
+ * Lines that do not follow the "name" "path" x1 y1 x2 y2 layout are skipped and logged.
+ *
+ * @author Frizzy
+ * @version 0.0.3
+ * @since 0.0.3
+ */
+public final class UiImagesScanner {
+
+    private static final Logger LOGGER = Logger.getLogger( UiImagesScanner.class.getName( ) );
+
+    /**
+     * Name start, name end, path start, path end, line end and path hash of each line.
+     */
+    private static final int FIELDS = 6;
+
+    /**
+     * Byte order mark some editors write at the start of UTF-16 files.
+     */
+    private static final char BOM = 0xFEFF;
+
+    private final CharBuffer chars;
+
+    private int[] fields;
+
+    private int[] coordinates;
+
+    private int count;
+
+    private UiImagesScanner( CharBuffer chars ) {
+        this.chars = chars;
+        //Lines are around 100 characters long, which is enough to avoid most regrowth.
+        int estimate = Math.max( 16 , chars.limit( ) / 96 );
+        this.fields = new int[ estimate * FIELDS ];
+        this.coordinates = new int[ estimate * 4 ];
+    }
+
+    /**
+     * Maps and scans the .txt file.
+     */
+    public static UiImagesScanner scan( Path txtFile ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( txtFile , StandardOpenOption.READ ) ) {
+            //The mapping stays valid once the channel is closed.
+            return scan( channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size( ) ) );
+        }
+    }
+
+    /**
+     * Scans the UTF-16LE bytes held in the buffer, from its position. The buffer must not be modified while the
+     * scanner is in use, as names and paths are read from it.
+     */
+    public static UiImagesScanner scan( ByteBuffer utf16 ) {
+        CharBuffer chars = utf16.slice( ).order( ByteOrder.LITTLE_ENDIAN ).asCharBuffer( );
+        UiImagesScanner scanner = new UiImagesScanner( chars );
+        scanner.scanLines( );
+        return scanner;
+    }
+
+    /**
+     * Returns the number of scanned lines.
+     */
+    public int size( ) {
+        return count;
+    }
+
+    /**
+     * Returns the texture name of line i.
+     */
+    public String name( int i ) {
+        return string( fields[ i * FIELDS ] , fields[ i * FIELDS + 1 ] );
+    }
+
+    /**
+     * Returns the .dds path of line i.
+     */
+    public String path( int i ) {
+        return string( fields[ i * FIELDS + 2 ] , fields[ i * FIELDS + 3 ] );
+    }
+
+    /**
+     * Returns the text after the .dds path of line i, normally the four coordinates separated by spaces.
+     */
+    public String coordinateText( int i ) {
+        int start = Math.min( fields[ i * FIELDS + 3 ] + 2 , fields[ i * FIELDS + 4 ] );
+        return string( start , fields[ i * FIELDS + 4 ] );
+    }
+
+    /**
+     * Returns the hash of the .dds path of line i, ignoring case.
+     */
+    public int pathHash( int i ) {
+        return fields[ i * FIELDS + 5 ];
+    }
+
+    /**
+     * Returns coordinate c of line i, 0 to 3 being x1, y1, x2 and y2 as written in the file.
+     */
+    public int coordinate( int i , int c ) {
+        return coordinates[ i * 4 + c ];
+    }
+
+    /**
+     * Writes the coordinates of line i in the layout of Texture.coordinates() into out, starting at offset.
+     */
+    public void textureCoordinates( int i , int[] out , int offset ) {
+        toTextureCoordinates( coordinates[ i * 4 ] , coordinates[ i * 4 + 1 ] , coordinates[ i * 4 + 2 ] ,
+                coordinates[ i * 4 + 3 ] , out , offset );
+    }
+
+    /**
+     * Returns true if lines i and j name the same .dds path, ignoring case.
+     */
+    public boolean samePath( int i , int j ) {
+        return regionEquals( fields[ i * FIELDS + 2 ] , fields[ i * FIELDS + 3 ] , fields[ j * FIELDS + 2 ] ,
+                fields[ j * FIELDS + 3 ] , true );
+    }
+
+    /**
+     * Returns true if lines i and j name the same texture, respecting case.
+     */
+    public boolean sameName( int i , int j ) {
+        return regionEquals( fields[ i * FIELDS ] , fields[ i * FIELDS + 1 ] , fields[ j * FIELDS ] ,
+                fields[ j * FIELDS + 1 ] , false );
+    }
+
+    /**
+     * Converts x1, y1, x2, y2 as written in the .txt file into the layout of Texture.coordinates(): x, y, width
+     * and height.
+     * <br>
+     * If subtracting x1 from x2 or y1 from y2 is less than or equal to 0, the x2 or y2 is likely the same as
+     * x1 or y1, and x1 or y1 is used as the width or height, matching GGPKUtils.getCoordinatesFrom.
+     */
+    public static void toTextureCoordinates( int x1 , int y1 , int x2 , int y2 , int[] out , int offset ) {
+        out[ offset ] = x1;
+        out[ offset + 1 ] = y1;
+        out[ offset + 2 ] = x2 - x1 <= 0 ? x1 : x2 - x1;
+        out[ offset + 3 ] = y2 - y1 <= 0 ? y1 : y2 - y1;
+    }
+
+    private void scanLines( ) {
+        int limit = chars.limit( );
+        int pos = 0;
+        int number = 0;
+
+        if ( limit > 0 && chars.get( 0 ) == BOM )
+            pos = 1;
+
+        while ( pos < limit ) {
+            int end = pos;
+            while ( end < limit && chars.get( end ) != '\n' ) {
+                end++;
+            }
+
+            number++;
+            int lineEnd = end > pos && chars.get( end - 1 ) == '\r' ? end - 1 : end;
+
+            if ( lineEnd > pos && !scanLine( pos , lineEnd ) && !isBlank( pos , lineEnd ) )
+                LOGGER.log( Level.WARNING , "Skipping malformed line " + number + "." );
+
+            pos = end + 1;
+        }
+    }
+
+    /**
+     * Scans one line, recording it if it is well-formed.
+     */
+    private boolean scanLine( int start , int end ) {
+        if ( chars.get( start ) != '"' )
+            return false;
+
+        int nameStart = start + 1;
+        int nameEnd = indexOf( '"' , nameStart , end );
+
+        if ( nameEnd < 0 || nameEnd + 2 >= end || chars.get( nameEnd + 1 ) != ' ' || chars.get( nameEnd + 2 ) != '"' )
+            return false;
+
+        int pathStart = nameEnd + 3;
+        int pathEnd = indexOf( '"' , pathStart , end );
+
+        if ( pathEnd < 0 )
+            return false;
+
+        ensureCapacity( );
+
+        int at = count * 4;
+        int pos = pathEnd + 1;
+
+        for ( int c = 0; c < 4; c++ ) {
+            while ( pos < end && chars.get( pos ) == ' ' ) {
+                pos++;
+            }
+
+            boolean negative = pos < end && chars.get( pos ) == '-';
+            if ( negative )
+                pos++;
+
+            int digits = 0;
+            int value = 0;
+
+            while ( pos < end ) {
+                int digit = chars.get( pos ) - '0';
+                if ( digit < 0 || digit > 9 )
+                    break;
+
+                value = value * 10 + digit;
+                digits++;
+                pos++;
+            }
+
+            if ( digits == 0 )
+                return false;
+
+            coordinates[ at + c ] = negative ? -value : value;
+        }
+
+        int hash = 0;
+        for ( int i = pathStart; i < pathEnd; i++ ) {
+            hash = 31 * hash + lower( chars.get( i ) );
+        }
+
+        int f = count * FIELDS;
+        fields[ f ] = nameStart;
+        fields[ f + 1 ] = nameEnd;
+        fields[ f + 2 ] = pathStart;
+        fields[ f + 3 ] = pathEnd;
+        fields[ f + 4 ] = end;
+        fields[ f + 5 ] = hash;
+        count++;
+
+        return true;
+    }
+
+    private void ensureCapacity( ) {
+        if ( ( count + 1 ) * FIELDS > fields.length ) {
+            fields = Arrays.copyOf( fields , fields.length * 2 );
+            coordinates = Arrays.copyOf( coordinates , coordinates.length * 2 );
+        }
+    }
+
+    private int indexOf( char c , int from , int end ) {
+        for ( int i = from; i < end; i++ ) {
+            if ( chars.get( i ) == c )
+                return i;
+        }
+
+        return -1;
+    }
+
+    private boolean isBlank( int start , int end ) {
+        for ( int i = start; i < end; i++ ) {
+            if ( !Character.isWhitespace( chars.get( i ) ) )
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean regionEquals( int aStart , int aEnd , int bStart , int bEnd , boolean ignoreCase ) {
+        if ( aEnd - aStart != bEnd - bStart )
+            return false;
+
+        for ( int i = 0; i < aEnd - aStart; i++ ) {
+            char a = chars.get( aStart + i );
+            char b = chars.get( bStart + i );
+
+            if ( a != b && ( !ignoreCase || lower( a ) != lower( b ) ) )
+                return false;
+        }
+
+        return true;
+    }
+
+    private String string( int start , int end ) {
+        return chars.subSequence( start , end ).toString( );
+    }
+
+    /**
+     * Lowercases the character, treating '\' like '/' so both separators hash and compare the same.
+     */
+    private static char lower( char c ) {
+        if ( c == '\\' )
+            return '/';
+
+        return c < 128 ? ( char ) ( c >= 'A' && c <= 'Z' ? c + 32 : c ) : Character.toLowerCase( c );
+    }
+}